@@ -123,9 +123,11 @@ public class ApplicationTokenCredentials extends AzureTokenCredentials {
     @Override
     public synchronized String getToken(String resource) throws IOException {
         AuthenticationResult authenticationResult = tokens.get(resource);
-        if (authenticationResult == null || authenticationResult.getExpiresOnDate().before(new Date())) {
+        boolean cached = authenticationResult != null && !authenticationResult.getExpiresOnDate().before(new Date());
+        if (!cached) {
             authenticationResult = acquireAccessToken(resource);
         }
+        markTokenCached(cached);
         tokens.put(resource, authenticationResult);
         return authenticationResult.getAccessToken();
     }
@@ -111,8 +111,10 @@ final class AzureCliSubscription {
                     }
                     // Exact match and token hasn't expired
                     if (token != null && !token.expired()) {
+                        markTokenCached(true);
                         return token.accessToken();
                     }
+                    markTokenCached(false);
                     // If found then refresh
                     boolean shouldRefresh = token != null;
                     // If not found for the resource, but is MRRT then also refresh
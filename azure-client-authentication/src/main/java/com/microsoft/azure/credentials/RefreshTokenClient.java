@@ -13,13 +13,12 @@ import com.microsoft.rest.LogLevel;
 import com.microsoft.rest.interceptors.LoggingInterceptor;
 import com.microsoft.rest.serializer.JacksonAdapter;
 import okhttp3.OkHttpClient;
+import retrofit2.Call;
 import retrofit2.Retrofit;
-import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
 import retrofit2.http.Field;
 import retrofit2.http.FormUrlEncoded;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
-import rx.Observable;
 
 import java.net.Proxy;
 import java.util.Date;
@@ -37,7 +36,6 @@ final class RefreshTokenClient {
             builder = builder.proxy(proxy);
         }
         service = new Retrofit.Builder()
-                .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
                 .addConverterFactory(new JacksonAdapter().converterFactory())
                 .baseUrl(baseUrl)
                 .client(builder.build())
@@ -46,8 +44,9 @@ final class RefreshTokenClient {
 
     AuthenticationResult refreshToken(String tenant, String clientId, String resource, String refreshToken, boolean isMultipleResourceRefreshToken) {
         try {
+            // executed on the calling thread, the refresh is always blocking
             RefreshTokenResult result = service.refreshToken(tenant, clientId, "refresh_token", resource, refreshToken)
-                .toBlocking().single();
+                .execute().body();
             if (result == null) {
                 return null;
             }
@@ -67,7 +66,7 @@ final class RefreshTokenClient {
     private interface RefreshTokenService {
         @FormUrlEncoded
         @POST("{tenant}/oauth2/token")
-        Observable<RefreshTokenResult> refreshToken(
+        Call<RefreshTokenResult> refreshToken(
             @Path("tenant") String tenant,
             @Field("client_id") String clientId,
             @Field("grant_type") String grantType,
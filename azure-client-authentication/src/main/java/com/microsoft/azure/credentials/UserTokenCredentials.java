@@ -76,8 +76,10 @@ public class UserTokenCredentials extends AzureTokenCredentials {
         AuthenticationResult authenticationResult = tokens.get(resource);
         // Return if found and not expired
         if (authenticationResult != null && authenticationResult.getExpiresOnDate().after(new Date())) {
+            markTokenCached(true);
             return authenticationResult.getAccessToken();
         }
+        markTokenCached(false);
         // If found then refresh
         boolean shouldRefresh = authenticationResult != null;
         // If not found for the resource, but is MRRT then also refresh
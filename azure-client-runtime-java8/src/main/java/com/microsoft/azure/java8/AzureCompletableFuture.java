@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.java8;
+
+import com.microsoft.azure.AzureClient;
+import com.microsoft.azure.Page;
+import com.microsoft.rest.ServiceResponse;
+import com.microsoft.rest.java8.ServiceCompletableFuture;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A {@link java.util.concurrent.CompletableFuture} completed by a long running
+ * operation or a paging operation, the counterpart of
+ * {@link com.microsoft.azure.AzureServiceFuture} for non-blocking composition.
+ * Cancelling the future stops the polling or the paging.
+ *
+ * @param <T> the type of the returning object
+ */
+public final class AzureCompletableFuture<T> extends ServiceCompletableFuture<T> {
+    private AzureCompletableFuture() {
+    }
+
+    /**
+     * Creates a future completed when a PUT or PATCH long running operation finishes.
+     *
+     * @param client the client polling the operation
+     * @param observable the observable of the initial request
+     * @param resourceType the type of the resource
+     * @param <T> the type of the resource
+     * @return the created future
+     */
+    public static <T> AzureCompletableFuture<T> fromPutOrPatch(AzureClient client, Observable<Response<ResponseBody>> observable, Type resourceType) {
+        AzureCompletableFuture<T> future = new AzureCompletableFuture<>();
+        future.subscribe(client.<T>getPutOrPatchResultAsync(observable, resourceType), ServiceResponse::body);
+        return future;
+    }
+
+    /**
+     * Creates a future completed when a POST or DELETE long running operation finishes.
+     *
+     * @param client the client polling the operation
+     * @param observable the observable of the initial request
+     * @param resourceType the type of the result
+     * @param <T> the type of the result
+     * @return the created future
+     */
+    public static <T> AzureCompletableFuture<T> fromPostOrDelete(AzureClient client, Observable<Response<ResponseBody>> observable, Type resourceType) {
+        AzureCompletableFuture<T> future = new AzureCompletableFuture<>();
+        future.subscribe(client.<T>getPostOrDeleteResultAsync(observable, resourceType), ServiceResponse::body);
+        return future;
+    }
+
+    /**
+     * Creates a future completed with the items of all the pages of a paging operation.
+     * The next page is requested when the previous one arrives, without blocking.
+     *
+     * @param first the observable to the first page
+     * @param next the function returning the observable to the page at a next page link
+     * @param <E> the element type
+     * @return the created future
+     */
+    public static <E> AzureCompletableFuture<List<E>> fromPageResponse(Observable<ServiceResponse<Page<E>>> first,
+                                                                       Function<String, Observable<ServiceResponse<Page<E>>>> next) {
+        AzureCompletableFuture<List<E>> future = new AzureCompletableFuture<>();
+        new PagingSubscriber<>(future, next, new ArrayList<E>()).request(first);
+        return future;
+    }
+
+    /**
+     * The subscriber collecting the items of each page and requesting the next page.
+     *
+     * @param <E> the element type
+     */
+    private static final class PagingSubscriber<E> extends Subscriber<ServiceResponse<Page<E>>> {
+        private final AzureCompletableFuture<List<E>> future;
+        private final Function<String, Observable<ServiceResponse<Page<E>>>> next;
+        private final List<E> items;
+        private String nextPageLink;
+
+        private PagingSubscriber(AzureCompletableFuture<List<E>> future,
+                                 Function<String, Observable<ServiceResponse<Page<E>>>> next,
+                                 List<E> items) {
+            this.future = future;
+            this.next = next;
+            this.items = items;
+        }
+
+        private void request(Observable<ServiceResponse<Page<E>>> page) {
+            future.setCanceller(page.subscribe(this)::unsubscribe);
+        }
+
+        @Override
+        public void onNext(ServiceResponse<Page<E>> response) {
+            Page<E> page = response.body();
+            if (page.items() != null) {
+                items.addAll(page.items());
+            }
+            nextPageLink = page.nextPageLink();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            future.completeExceptionally(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if (nextPageLink == null) {
+                future.complete(items);
+            } else if (!future.isCancelled()) {
+                // a subscriber can only be used once, so each page gets a new one
+                Observable<ServiceResponse<Page<E>>> page;
+                try {
+                    page = next.apply(nextPageLink);
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                    return;
+                }
+                new PagingSubscriber<>(future, next, items).request(page);
+            }
+        }
+    }
+}
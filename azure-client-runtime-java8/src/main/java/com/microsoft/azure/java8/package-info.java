@@ -0,0 +1,5 @@
+/**
+ * The package contains CompletableFuture based APIs for Azure long running
+ * operations and paging operations. It requires Java 8.
+ */
+package com.microsoft.azure.java8;
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.java8;
+
+import com.microsoft.rest.ServiceResponse;
+import com.microsoft.rest.ServiceResponseWithHeaders;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A {@link CompletableFuture} completed by a REST call, the counterpart of
+ * {@link com.microsoft.rest.ServiceFuture} for non-blocking composition. Cancelling
+ * the future cancels the underlying call.
+ *
+ * The future completes on the thread delivering the result, which can be a thread
+ * of the HTTP dispatcher: use the asynchronous variants of the composition methods
+ * for dependent work that blocks.
+ *
+ * @param <T> the type of the returning object
+ */
+public class ServiceCompletableFuture<T> extends CompletableFuture<T> {
+    /** Cancels the call or subscription the future is completed by. */
+    private volatile Runnable canceller;
+
+    protected ServiceCompletableFuture() {
+    }
+
+    /**
+     * Creates a future from an observable of service responses. The future completes
+     * with the body of the last response.
+     *
+     * @param observable the observable to create from
+     * @param <T> the type of the response body
+     * @return the created future
+     */
+    public static <T> ServiceCompletableFuture<T> fromResponse(Observable<ServiceResponse<T>> observable) {
+        ServiceCompletableFuture<T> future = new ServiceCompletableFuture<>();
+        future.subscribe(observable, ServiceResponse::body);
+        return future;
+    }
+
+    /**
+     * Creates a future from an observable of service responses with headers. The
+     * future completes with the body of the last response.
+     *
+     * @param observable the observable of a REST call that returns JSON in a header
+     * @param <T> the type of the response body
+     * @param <V> the type of the response header
+     * @return the created future
+     */
+    public static <T, V> ServiceCompletableFuture<T> fromHeaderResponse(Observable<ServiceResponseWithHeaders<T, V>> observable) {
+        ServiceCompletableFuture<T> future = new ServiceCompletableFuture<>();
+        future.subscribe(observable, ServiceResponse::body);
+        return future;
+    }
+
+    /**
+     * Creates a future from an observable. The future completes with the last item.
+     *
+     * @param observable the observable to create from
+     * @param <T> the type of the items
+     * @return the created future
+     */
+    public static <T> ServiceCompletableFuture<T> fromBody(Observable<T> observable) {
+        ServiceCompletableFuture<T> future = new ServiceCompletableFuture<>();
+        future.subscribe(observable, Function.identity());
+        return future;
+    }
+
+    /**
+     * Creates a future from a Retrofit call, for services declaring {@link Call} return
+     * types. The call is enqueued right away and the future is completed from the HTTP
+     * callback, without going through RxJava.
+     *
+     * @param call the call to enqueue
+     * @param <T> the type of the response body
+     * @return the created future
+     */
+    public static <T> ServiceCompletableFuture<Response<T>> fromCall(Call<T> call) {
+        ServiceCompletableFuture<Response<T>> future = new ServiceCompletableFuture<>();
+        future.setCanceller(call::cancel);
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> c, Response<T> response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Call<T> c, Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Subscribes to an observable and completes the future with the mapped last item.
+     *
+     * @param observable the observable to subscribe to
+     * @param mapper the function mapping the last item to the result
+     * @param <R> the type of the items
+     */
+    protected <R> void subscribe(Observable<R> observable, Function<? super R, ? extends T> mapper) {
+        Subscription subscription = observable.subscribe(new Subscriber<R>() {
+            private R last;
+            private boolean hasValue;
+
+            @Override
+            public void onNext(R item) {
+                last = item;
+                hasValue = true;
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                completeExceptionally(e);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (!hasValue) {
+                    completeExceptionally(new NoSuchElementException("Sequence contains no elements"));
+                    return;
+                }
+                try {
+                    complete(mapper.apply(last));
+                } catch (RuntimeException e) {
+                    completeExceptionally(e);
+                }
+            }
+        });
+        setCanceller(subscription::unsubscribe);
+    }
+
+    /**
+     * Sets what to do when the future is cancelled, running it right away if the
+     * future was cancelled before.
+     *
+     * @param canceller the action cancelling the underlying work
+     */
+    protected void setCanceller(Runnable canceller) {
+        this.canceller = canceller;
+        if (isCancelled()) {
+            canceller.run();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Runnable current = canceller;
+        if (cancelled && current != null) {
+            current.run();
+        }
+        return cancelled;
+    }
+}
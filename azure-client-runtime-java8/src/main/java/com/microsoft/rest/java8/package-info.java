@@ -0,0 +1,5 @@
+/**
+ * The package contains CompletableFuture based APIs for REST calls. It requires
+ * Java 8.
+ */
+package com.microsoft.rest.java8;
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.java8;
+
+import com.microsoft.azure.Page;
+import com.microsoft.rest.RestClient;
+import com.microsoft.rest.ServiceResponse;
+import com.microsoft.rest.ServiceResponseBuilder;
+import com.microsoft.rest.java8.ServiceCompletableFuture;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.Response;
+import retrofit2.http.GET;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CompletableFutureTests {
+    private interface Service {
+        @GET("test")
+        Call<ResponseBody> get();
+    }
+
+    @Test
+    public void futureCompletesWithLastBody() throws Exception {
+        CompletableFuture<String> future = ServiceCompletableFuture.fromResponse(
+                Observable.just(new ServiceResponse<>("first", null), new ServiceResponse<>("last", null))
+                        .subscribeOn(Schedulers.io()));
+        Assert.assertEquals("LAST", future.thenApply(String::toUpperCase).get(10, TimeUnit.SECONDS));
+        try {
+            ServiceCompletableFuture.fromBody(Observable.empty()).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof NoSuchElementException);
+        }
+    }
+
+    @Test
+    public void cancelUnsubscribes() {
+        AtomicBoolean unsubscribed = new AtomicBoolean();
+        CompletableFuture<String> future = ServiceCompletableFuture.fromBody(
+                Observable.<String>never().doOnUnsubscribe(() -> unsubscribed.set(true)));
+        Assert.assertFalse(unsubscribed.get());
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(unsubscribed.get());
+        Assert.assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void callCompletesFromHttpCallback() throws Exception {
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withInterceptor(chain -> new okhttp3.Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .body(ResponseBody.create(MediaType.parse("text/plain"), "hello"))
+                        .build())
+                .build();
+        CompletableFuture<Response<ResponseBody>> future = ServiceCompletableFuture.fromCall(
+                restClient.retrofit().create(Service.class).get());
+        Assert.assertEquals("hello", future.get(10, TimeUnit.SECONDS).body().string());
+    }
+
+    @Test
+    public void pagesAreCollected() throws Exception {
+        CompletableFuture<List<Integer>> future = AzureCompletableFuture.fromPageResponse(page(0), link -> page(Integer.parseInt(link)));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), future.get(10, TimeUnit.SECONDS));
+    }
+
+    private static Observable<ServiceResponse<Page<Integer>>> page(int number) {
+        Page<Integer> page = new Page<Integer>() {
+            @Override
+            public String nextPageLink() {
+                return number < 2 ? Integer.toString(number + 1) : null;
+            }
+
+            @Override
+            public List<Integer> items() {
+                return Arrays.asList(number * 2, number * 2 + 1);
+            }
+        };
+        return Observable.just(new ServiceResponse<>(page, null)).subscribeOn(Schedulers.io());
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * The deserialization of an object from JSON by a {@code JacksonAdapter}.
+ */
+@Name("com.microsoft.rest.Deserialization")
+@Label("JSON Deserialization")
+@Category({"Azure", "REST Client"})
+@Description("The deserialization of an object from JSON")
+@Threshold("1 ms")
+final class DeserializationEvent extends jdk.jfr.Event {
+    @Label("Type")
+    String type;
+
+    @Label("Size")
+    @Description("The number of characters read")
+    long size;
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call through a client, from its start until its response body is closed. The
+ * stack trace would be the one closing the body, so it is not recorded.
+ */
+@Name("com.microsoft.rest.HttpCall")
+@Label("HTTP Call")
+@Category({"Azure", "REST Client"})
+@Description("A call through a client, retries included, until its response body is closed")
+@StackTrace(false)
+final class HttpCallEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Method")
+    String method;
+
+    @Label("URL")
+    @Description("The URL, without its query")
+    String url;
+
+    @Label("Status Code")
+    @Description("The status code of the response, or 0 if the call failed")
+    int statusCode;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    long bytesSent;
+
+    @Label("Bytes Received")
+    @DataAmount
+    long bytesReceived;
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.jfr;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.events.RuntimeEventListener;
+import com.microsoft.rest.events.RuntimeEventType;
+import jdk.jfr.Event;
+
+/**
+ * Records the events of the runtime as Java Flight Recorder events, in the
+ * "Azure / REST Client" category. It is found by {@link java.util.ServiceLoader}
+ * once the module is on the class path; an event that is not enabled in the
+ * running recordings costs an allocation and a check.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class JfrEventListener implements RuntimeEventListener {
+    @Override
+    public Object begin(RuntimeEventType type) {
+        Event event;
+        switch (type) {
+            case HTTP_CALL:
+                event = new HttpCallEvent();
+                break;
+            case SERIALIZATION:
+                event = new SerializationEvent();
+                break;
+            case DESERIALIZATION:
+                event = new DeserializationEvent();
+                break;
+            case POLL:
+                event = new PollEvent();
+                break;
+            case PAGE_LOAD:
+                event = new PageLoadEvent();
+                break;
+            case TOKEN:
+                event = new TokenEvent();
+                break;
+            default:
+                return null;
+        }
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void httpCallEnded(Object event, String operation, String method, String url, int statusCode,
+                              long bytesSent, long bytesReceived) {
+        HttpCallEvent httpCall = (HttpCallEvent) event;
+        httpCall.operation = operation;
+        httpCall.method = method;
+        httpCall.url = url;
+        httpCall.statusCode = statusCode;
+        httpCall.bytesSent = bytesSent;
+        httpCall.bytesReceived = bytesReceived;
+        httpCall.commit();
+    }
+
+    @Override
+    public void serializationEnded(Object event, String type, long size) {
+        SerializationEvent serialization = (SerializationEvent) event;
+        serialization.type = type;
+        serialization.size = size;
+        serialization.commit();
+    }
+
+    @Override
+    public void deserializationEnded(Object event, String type, long size) {
+        DeserializationEvent deserialization = (DeserializationEvent) event;
+        deserialization.type = type;
+        deserialization.size = size;
+        deserialization.commit();
+    }
+
+    @Override
+    public void pollEnded(Object event, String operation, int statusCode) {
+        PollEvent poll = (PollEvent) event;
+        poll.operation = operation;
+        poll.statusCode = statusCode;
+        poll.commit();
+    }
+
+    @Override
+    public void pageLoadEnded(Object event, String list, int items, boolean hasNextPage) {
+        PageLoadEvent pageLoad = (PageLoadEvent) event;
+        pageLoad.list = list;
+        pageLoad.items = items;
+        pageLoad.hasNextPage = hasNextPage;
+        pageLoad.commit();
+    }
+
+    @Override
+    public void tokenEnded(Object event, String resource, Boolean cached) {
+        TokenEvent token = (TokenEvent) event;
+        token.resource = resource;
+        token.source = cached == null ? "unknown" : cached ? "cached" : "acquired";
+        token.commit();
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The load of the next page of a {@code PagedList}.
+ */
+@Name("com.microsoft.azure.PageLoad")
+@Label("Page Load")
+@Category({"Azure", "REST Client"})
+@Description("The load of the next page of a paged list")
+final class PageLoadEvent extends jdk.jfr.Event {
+    @Label("List")
+    String list;
+
+    @Label("Items")
+    @Description("The number of items in the page, or -1 if there was none or it failed to load")
+    int items;
+
+    @Label("Has Next Page")
+    boolean hasNextPage;
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A poll of a long running operation by an {@code AzureClient}.
+ */
+@Name("com.microsoft.azure.Poll")
+@Label("Long Running Operation Poll")
+@Category({"Azure", "REST Client"})
+@Description("A poll of a long running operation")
+final class PollEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Status Code")
+    @Description("The status code of the poll, or 0 if it failed")
+    int statusCode;
+}
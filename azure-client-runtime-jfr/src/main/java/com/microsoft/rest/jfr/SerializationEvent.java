@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * The serialization of an object to JSON by a {@code JacksonAdapter}.
+ */
+@Name("com.microsoft.rest.Serialization")
+@Label("JSON Serialization")
+@Category({"Azure", "REST Client"})
+@Description("The serialization of an object to JSON")
+@Threshold("1 ms")
+final class SerializationEvent extends jdk.jfr.Event {
+    @Label("Type")
+    String type;
+
+    @Label("Size")
+    @Description("The number of characters written")
+    long size;
+}
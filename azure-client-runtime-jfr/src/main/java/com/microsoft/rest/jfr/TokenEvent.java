@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The authentication of a request by {@code AzureTokenCredentials}.
+ */
+@Name("com.microsoft.azure.Token")
+@Label("Token")
+@Category({"Azure", "REST Client"})
+@Description("The authentication of a request with an Azure token, cached or acquired")
+final class TokenEvent extends jdk.jfr.Event {
+    @Label("Resource")
+    String resource;
+
+    @Label("Source")
+    @Description("\"cached\", \"acquired\", or \"unknown\" if the credentials did not tell")
+    String source;
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains the Java Flight Recorder events of the runtime. It
+ * requires Java 11.
+ */
+package com.microsoft.rest.jfr;
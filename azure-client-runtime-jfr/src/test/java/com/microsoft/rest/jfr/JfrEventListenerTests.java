@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.jfr;
+
+import com.microsoft.azure.Page;
+import com.microsoft.azure.PagedList;
+import com.microsoft.rest.events.RuntimeEvents;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class JfrEventListenerTests {
+    @Test
+    public void listenerIsFoundOnTheClassPath() {
+        Assert.assertTrue(RuntimeEvents.listener() instanceof JfrEventListener);
+    }
+
+    @Test
+    public void eventsAreRecorded() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.microsoft.rest.Serialization").withThreshold(Duration.ZERO);
+            recording.enable("com.microsoft.rest.Deserialization").withThreshold(Duration.ZERO);
+            recording.enable("com.microsoft.azure.PageLoad");
+            recording.start();
+
+            JacksonAdapter adapter = new JacksonAdapter();
+            String json = adapter.serialize(Arrays.asList("a", "b"));
+            List<String> list = adapter.deserialize(json, List.class);
+            Assert.assertEquals(2, list.size());
+            PagedList<String> pagedList = new PagedList<String>(new TestPage("first", "next")) {
+                @Override
+                public Page<String> nextPage(String nextPageLink) {
+                    return new TestPage("second", null);
+                }
+            };
+            Assert.assertEquals(2, pagedList.size());
+
+            recording.stop();
+            Path file = Files.createTempFile("runtime", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            names.add(event.getEventType().getName());
+            if (event.getEventType().getName().equals("com.microsoft.rest.Serialization")) {
+                Assert.assertEquals("java.util.Arrays$ArrayList", event.getString("type"));
+                Assert.assertEquals(9, event.getLong("size"));
+            } else if (event.getEventType().getName().equals("com.microsoft.rest.Deserialization")) {
+                Assert.assertEquals("java.util.List", event.getString("type"));
+            } else if (event.getEventType().getName().equals("com.microsoft.azure.PageLoad")) {
+                Assert.assertEquals(1, event.getInt("items"));
+                Assert.assertFalse(event.getBoolean("hasNextPage"));
+            }
+        }
+        Assert.assertTrue(names.toString(), names.contains("com.microsoft.rest.Serialization"));
+        Assert.assertTrue(names.toString(), names.contains("com.microsoft.rest.Deserialization"));
+        Assert.assertTrue(names.toString(), names.contains("com.microsoft.azure.PageLoad"));
+    }
+
+    private static final class TestPage implements Page<String> {
+        private final String item;
+        private final String nextPageLink;
+
+        private TestPage(String item, String nextPageLink) {
+            this.item = item;
+            this.nextPageLink = nextPageLink;
+        }
+
+        @Override
+        public String nextPageLink() {
+            return nextPageLink;
+        }
+
+        @Override
+        public List<String> items() {
+            return Arrays.asList(item);
+        }
+    }
+}
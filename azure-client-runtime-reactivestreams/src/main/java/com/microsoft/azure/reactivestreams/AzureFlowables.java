@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.reactivestreams;
+
+import com.microsoft.azure.AzureClient;
+import com.microsoft.azure.Page;
+import com.microsoft.azure.PollingState;
+import com.microsoft.rest.ServiceResponse;
+import com.microsoft.rest.reactivestreams.ServiceFlowables;
+import io.reactivex.Flowable;
+import okhttp3.ResponseBody;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import retrofit2.Response;
+import rx.Observable;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Reactive Streams publishers for long running and paging operations, the
+ * counterpart of {@link com.microsoft.azure.AzureServiceFuture} for consumers
+ * running on RxJava 2 or Reactor.
+ *
+ * Paging publishers are driven by demand: a page is fetched only once the consumer
+ * has requested it, and cancelling the subscription cancels the page in flight.
+ */
+public final class AzureFlowables {
+    private AzureFlowables() {
+    }
+
+    /**
+     * Creates a flowable emitting the final response of a PUT or PATCH long running
+     * operation.
+     *
+     * @param client the client polling the operation
+     * @param observable the observable of the initial request
+     * @param resourceType the type of the resource
+     * @param <T> the type of the resource
+     * @return the created flowable
+     */
+    public static <T> Flowable<ServiceResponse<T>> fromPutOrPatch(AzureClient client, Observable<Response<ResponseBody>> observable, Type resourceType) {
+        return ServiceFlowables.fromObservable(client.<T>getPutOrPatchResultAsync(observable, resourceType));
+    }
+
+    /**
+     * Creates a flowable emitting the final response of a POST or DELETE long running
+     * operation.
+     *
+     * @param client the client polling the operation
+     * @param observable the observable of the initial request
+     * @param resourceType the type of the result
+     * @param <T> the type of the result
+     * @return the created flowable
+     */
+    public static <T> Flowable<ServiceResponse<T>> fromPostOrDelete(AzureClient client, Observable<Response<ResponseBody>> observable, Type resourceType) {
+        return ServiceFlowables.fromObservable(client.<T>getPostOrDeleteResultAsync(observable, resourceType));
+    }
+
+    /**
+     * Creates a flowable emitting the polling states of a long running operation until
+     * it reaches a terminal state.
+     *
+     * @param client the client polling the operation
+     * @param pollingState the current polling state
+     * @param resourceType the type of the resource
+     * @param <T> the type of the resource
+     * @return the created flowable
+     */
+    public static <T> Flowable<PollingState<T>> fromPollingState(AzureClient client, PollingState<T> pollingState, Type resourceType) {
+        return ServiceFlowables.fromObservable(client.pollAsync(pollingState, resourceType));
+    }
+
+    /**
+     * Creates a flowable emitting the pages of a paging operation. Each page is fetched
+     * when the consumer requests it, after the previous page has arrived.
+     *
+     * @param first the observable to the first page
+     * @param next the function returning the observable to the page at a next page link
+     * @param <E> the element type
+     * @return the created flowable
+     */
+    public static <E> Flowable<Page<E>> fromPageResponse(Observable<ServiceResponse<Page<E>>> first,
+                                                         Function<String, Observable<ServiceResponse<Page<E>>>> next) {
+        if (first == null || next == null) {
+            throw new NullPointerException("first == null || next == null");
+        }
+        return new PageFlowable<>(first, next);
+    }
+
+    /**
+     * Creates a flowable emitting the items of all the pages of a paging operation.
+     * The items of a page are emitted through a fused iterable, and the next page is
+     * fetched while the items of the current one are consumed, so at most one page is
+     * held ahead of the consumer.
+     *
+     * @param first the observable to the first page
+     * @param next the function returning the observable to the page at a next page link
+     * @param <E> the element type
+     * @return the created flowable
+     */
+    public static <E> Flowable<E> fromPageItems(Observable<ServiceResponse<Page<E>>> first,
+                                                Function<String, Observable<ServiceResponse<Page<E>>>> next) {
+        return fromPageResponse(first, next).concatMapIterable(page -> {
+            List<E> items = page.items();
+            return items == null ? Collections.<E>emptyList() : items;
+        }, 1);
+    }
+
+    /**
+     * A flowable fetching the pages of a paging operation on demand.
+     *
+     * @param <E> the element type
+     */
+    private static final class PageFlowable<E> extends Flowable<Page<E>> {
+        private final Observable<ServiceResponse<Page<E>>> first;
+        private final Function<String, Observable<ServiceResponse<Page<E>>>> next;
+
+        private PageFlowable(Observable<ServiceResponse<Page<E>>> first,
+                             Function<String, Observable<ServiceResponse<Page<E>>>> next) {
+            this.first = first;
+            this.next = next;
+        }
+
+        @Override
+        protected void subscribeActual(Subscriber<? super Page<E>> subscriber) {
+            subscriber.onSubscribe(new PageSubscription<>(subscriber, first, next));
+        }
+    }
+
+    /**
+     * The subscription fetching one page at a time while there is outstanding demand.
+     * The pages are fetched one after the other, so the signals to the subscriber are
+     * serialized by the page callbacks.
+     *
+     * @param <E> the element type
+     */
+    private static final class PageSubscription<E> implements Subscription {
+        private final Subscriber<? super Page<E>> actual;
+        private final Function<String, Observable<ServiceResponse<Page<E>>>> next;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        /** The observable of the page to fetch next, null once the last page was emitted. */
+        private volatile Observable<ServiceResponse<Page<E>>> pending;
+        private volatile boolean fetching;
+        private volatile boolean cancelled;
+        private volatile rx.Subscription current;
+
+        private PageSubscription(Subscriber<? super Page<E>> actual,
+                                 Observable<ServiceResponse<Page<E>>> first,
+                                 Function<String, Observable<ServiceResponse<Page<E>>>> next) {
+            this.actual = actual;
+            this.next = next;
+            this.pending = first;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                actual.onError(new IllegalArgumentException("§3.9 violated: positive request amount required but it was " + n));
+                return;
+            }
+            long r;
+            do {
+                r = requested.get();
+            } while (!requested.compareAndSet(r, addCap(r, n)));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            rx.Subscription subscription = current;
+            if (subscription != null) {
+                subscription.unsubscribe();
+            }
+        }
+
+        private static long addCap(long requested, long n) {
+            long result = requested + n;
+            return result < 0 ? Long.MAX_VALUE : result;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                Observable<ServiceResponse<Page<E>>> page = pending;
+                if (!cancelled && !fetching && page != null && requested.get() > 0) {
+                    fetching = true;
+                    current = page.subscribe(new PageSubscriber());
+                    if (cancelled) {
+                        current.unsubscribe();
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void onPage(Page<E> page) {
+            if (cancelled) {
+                return;
+            }
+            String nextPageLink = page == null ? null : page.nextPageLink();
+            if (page != null) {
+                actual.onNext(page);
+                requested.decrementAndGet();
+            }
+            if (nextPageLink == null) {
+                pending = null;
+                cancelled = true;
+                actual.onComplete();
+                return;
+            }
+            try {
+                pending = next.apply(nextPageLink);
+            } catch (RuntimeException e) {
+                onFailure(e);
+                return;
+            }
+            fetching = false;
+            drain();
+        }
+
+        private void onFailure(Throwable e) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            actual.onError(e);
+        }
+
+        /**
+         * The subscriber to a single page; a subscriber can only be used once, so each
+         * page gets a new one.
+         */
+        private final class PageSubscriber extends rx.Subscriber<ServiceResponse<Page<E>>> {
+            private Page<E> page;
+
+            @Override
+            public void onNext(ServiceResponse<Page<E>> response) {
+                page = response.body();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                onFailure(e);
+            }
+
+            @Override
+            public void onCompleted() {
+                onPage(page);
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains Reactive Streams based APIs for long running and paging
+ * operations, built on RxJava 2. It requires Java 8.
+ */
+package com.microsoft.azure.reactivestreams;
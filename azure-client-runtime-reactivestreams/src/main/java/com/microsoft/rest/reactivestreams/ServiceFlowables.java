@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.reactivestreams;
+
+import io.reactivex.Flowable;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rx.Observable;
+import rx.Single;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bridges the RxJava 1 {@link Observable}s and {@link Single}s returned by the
+ * clients to RxJava 2 {@link Flowable}s, which are Reactive Streams publishers that
+ * can be consumed by Reactor with {@code Flux.from(publisher)}.
+ *
+ * The bridged observable is subscribed to on the first request, so no REST call
+ * is made until the consumer signals demand, and the demand is forwarded to it.
+ * Cancelling the subscription unsubscribes from the observable, which cancels the
+ * call in flight.
+ */
+public final class ServiceFlowables {
+    private ServiceFlowables() {
+    }
+
+    /**
+     * Creates a flowable from an observable.
+     *
+     * @param observable the observable to create from
+     * @param <T> the type of the items
+     * @return the created flowable
+     */
+    public static <T> Flowable<T> fromObservable(Observable<T> observable) {
+        if (observable == null) {
+            throw new NullPointerException("observable == null");
+        }
+        return new ObservableFlowable<>(observable);
+    }
+
+    /**
+     * Creates a flowable from a single.
+     *
+     * @param single the single to create from
+     * @param <T> the type of the item
+     * @return the created flowable
+     */
+    public static <T> Flowable<T> fromSingle(Single<T> single) {
+        if (single == null) {
+            throw new NullPointerException("single == null");
+        }
+        return new ObservableFlowable<>(single.toObservable());
+    }
+
+    /**
+     * A flowable subscribing to an observable on the first request.
+     *
+     * @param <T> the type of the items
+     */
+    private static final class ObservableFlowable<T> extends Flowable<T> {
+        private final Observable<T> observable;
+
+        private ObservableFlowable(Observable<T> observable) {
+            this.observable = observable;
+        }
+
+        @Override
+        protected void subscribeActual(Subscriber<? super T> subscriber) {
+            BridgeSubscriber<T> bridge = new BridgeSubscriber<>(subscriber);
+            subscriber.onSubscribe(new BridgeSubscription<>(observable, bridge));
+        }
+    }
+
+    /**
+     * The RxJava 1 subscriber forwarding the signals to a Reactive Streams subscriber.
+     *
+     * @param <T> the type of the items
+     */
+    private static final class BridgeSubscriber<T> extends rx.Subscriber<T> {
+        private final Subscriber<? super T> actual;
+        private boolean done;
+
+        private BridgeSubscriber(Subscriber<? super T> actual) {
+            this.actual = actual;
+        }
+
+        private void requestMore(long n) {
+            request(n);
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (done) {
+                return;
+            }
+            if (item == null) {
+                unsubscribe();
+                onError(new NullPointerException("The observable emitted null, which Reactive Streams does not allow"));
+                return;
+            }
+            actual.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if (done) {
+                return;
+            }
+            done = true;
+            actual.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            if (done) {
+                return;
+            }
+            done = true;
+            actual.onComplete();
+        }
+    }
+
+    /**
+     * The subscription subscribing to the observable on the first request.
+     *
+     * @param <T> the type of the items
+     */
+    private static final class BridgeSubscription<T> implements Subscription {
+        private final Observable<T> observable;
+        private final BridgeSubscriber<T> bridge;
+        private final AtomicBoolean subscribed = new AtomicBoolean();
+
+        private BridgeSubscription(Observable<T> observable, BridgeSubscriber<T> bridge) {
+            this.observable = observable;
+            this.bridge = bridge;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                bridge.onError(new IllegalArgumentException("§3.9 violated: positive request amount required but it was " + n));
+                return;
+            }
+            // requested before subscribing, so the observable starts with this demand
+            // instead of an unbounded one
+            bridge.requestMore(n);
+            if (subscribed.compareAndSet(false, true)) {
+                observable.subscribe(bridge);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            subscribed.set(true);
+            bridge.unsubscribe();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.reactivestreams;
+
+import com.microsoft.azure.Page;
+import com.microsoft.rest.ServiceResponse;
+import com.microsoft.rest.reactivestreams.ServiceFlowables;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReactiveStreamsTests {
+    @Test
+    public void observableIsSubscribedOnDemand() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        AtomicBoolean unsubscribed = new AtomicBoolean();
+        TestSubscriber<Integer> subscriber = ServiceFlowables.fromObservable(
+                Observable.range(1, 10)
+                        .doOnSubscribe(subscriptions::incrementAndGet)
+                        .doOnUnsubscribe(() -> unsubscribed.set(true)))
+                .test(0);
+        Assert.assertEquals(0, subscriptions.get());
+        subscriber.request(2);
+        Assert.assertEquals(1, subscriptions.get());
+        subscriber.assertValues(1, 2).assertNotComplete();
+        subscriber.request(1);
+        subscriber.assertValues(1, 2, 3);
+        subscriber.cancel();
+        Assert.assertTrue(unsubscribed.get());
+    }
+
+    @Test
+    public void pagesAreFetchedOnDemand() {
+        AtomicInteger fetches = new AtomicInteger();
+        TestSubscriber<Page<Integer>> subscriber = AzureFlowables.fromPageResponse(
+                page(0, fetches), link -> page(Integer.parseInt(link), fetches))
+                .test(0);
+        Assert.assertEquals(0, fetches.get());
+        subscriber.request(1);
+        Assert.assertEquals(1, fetches.get());
+        subscriber.assertValueCount(1).assertNotComplete();
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.assertValueCount(3).assertComplete();
+        Assert.assertEquals(3, fetches.get());
+    }
+
+    @Test
+    public void itemsAreEmittedAcrossPages() {
+        AtomicInteger fetches = new AtomicInteger();
+        List<Integer> items = AzureFlowables.fromPageItems(
+                page(0, fetches).subscribeOn(Schedulers.io()),
+                link -> page(Integer.parseInt(link), fetches).subscribeOn(Schedulers.io()))
+                .toList()
+                .blockingGet();
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), items);
+    }
+
+    @Test
+    public void cancelStopsPaging() {
+        AtomicBoolean unsubscribed = new AtomicBoolean();
+        AtomicInteger fetches = new AtomicInteger();
+        TestSubscriber<Page<Integer>> subscriber = AzureFlowables.fromPageResponse(
+                page(0, fetches), link -> Observable.<ServiceResponse<Page<Integer>>>never()
+                        .doOnUnsubscribe(() -> unsubscribed.set(true)))
+                .test(2);
+        subscriber.assertValueCount(1);
+        subscriber.cancel();
+        Assert.assertTrue(unsubscribed.get());
+        subscriber.assertNotComplete().assertNoErrors();
+    }
+
+    private static Observable<ServiceResponse<Page<Integer>>> page(int number, AtomicInteger fetches) {
+        Page<Integer> page = new Page<Integer>() {
+            @Override
+            public String nextPageLink() {
+                return number < 2 ? Integer.toString(number + 1) : null;
+            }
+
+            @Override
+            public List<Integer> items() {
+                return Arrays.asList(number * 2, number * 2 + 1);
+            }
+        };
+        return Observable.defer(() -> {
+            fetches.incrementAndGet();
+            return Observable.just(new ServiceResponse<>(page, null));
+        });
+    }
+}
@@ -6,16 +6,30 @@
 
 package com.microsoft.azure;
 
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
 import com.microsoft.rest.ServiceResponse;
 import com.microsoft.rest.ServiceResponseWithHeaders;
+import com.microsoft.rest.admission.PriorityHandler;
+import com.microsoft.rest.admission.RequestPriority;
+import com.microsoft.rest.cache.CachePolicy;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.context.RequestScope;
+import com.microsoft.rest.events.RuntimeEventListener;
+import com.microsoft.rest.events.RuntimeEventType;
+import com.microsoft.rest.events.RuntimeEvents;
+import com.microsoft.rest.introspection.ClientSnapshot;
+import com.microsoft.rest.introspection.Introspectable;
+import com.microsoft.rest.template.RequestTemplate;
+import okhttp3.Interceptor;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
-import retrofit2.http.GET;
-import retrofit2.http.Header;
-import retrofit2.http.Url;
 import rx.Observable;
 import rx.Single;
 import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.schedulers.Schedulers;
 
@@ -25,12 +39,23 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An instance of this class defines a ServiceClient that handles polling and
  * retrying for long running operations when accessing Azure resources.
  */
-public final class AzureClient extends AzureServiceClient {
+public final class AzureClient extends AzureServiceClient implements Introspectable {
+    /**
+     * The request polling a long running operation, compiled once for all the polls.
+     */
+    private static final RequestTemplate POLL_TEMPLATE = new RequestTemplate.Builder("GET", "{+url}")
+            .withHeader("User-Agent")
+            .withHeader(RequestContext.LOGGING_CONTEXT_HEADER)
+            .withHeader(RequestPriority.HEADER_NAME)
+            .build();
+
     /**
      * The interval time between two long running operation polls. Default is 30 seconds.
      */
@@ -41,6 +66,11 @@ public final class AzureClient extends AzureServiceClient {
      */
     private final String serviceClientUserAgent;
 
+    /**
+     * The number of long running operations being polled.
+     */
+    private final AtomicInteger pollingOperations = new AtomicInteger();
+
     /**
      * Initializes an instance of this class with customized client metadata.
      *
@@ -73,6 +103,18 @@ public final class AzureClient extends AzureServiceClient {
         this.longRunningOperationRetryTimeout = longRunningOperationRetryTimeout;
     }
 
+    /**
+     * Takes a snapshot of the state of the REST client, with the number of long
+     * running operations this client is polling.
+     *
+     * @return a snapshot of the state of the client
+     */
+    @Beta(SinceVersion.V1_2_0)
+    @Override
+    public ClientSnapshot snapshot() {
+        return restClient().snapshot().withPollingOperations(pollingOperations.get());
+    }
+
     /**
      * Handles an initial response from a PUT or PATCH operation response by polling
      * the status of the operation until the long running operation terminates.
@@ -86,8 +128,38 @@ public final class AzureClient extends AzureServiceClient {
      * @throws IOException thrown by deserialization
      */
     private <T> ServiceResponse<T> getPutOrPatchResult(Observable<Response<ResponseBody>> observable, Type resourceType) throws CloudException, InterruptedException, IOException {
-        Observable<ServiceResponse<T>> asyncObservable = getPutOrPatchResultAsync(observable, resourceType);
-        return asyncObservable.toBlocking().last();
+        return getPutOrPatchResult(observable.toBlocking().single(), resourceType);
+    }
+
+    /**
+     * Handles an initial response from a PUT or PATCH operation by polling the status
+     * of the operation on the calling thread until the long running operation terminates.
+     * The polls are executed directly on the HTTP client, without RxJava operators or
+     * thread hops.
+     *
+     * @param response the initial response from the PUT or PATCH operation.
+     * @param resourceType the java.lang.reflect.Type of the resource.
+     * @param <T> the return type of the caller
+     * @return the terminal response for the operation.
+     * @throws CloudException REST exception
+     * @throws InterruptedException interrupted exception
+     * @throws IOException thrown by the polls or by deserialization
+     */
+    @Beta(SinceVersion.V1_2_0)
+    public <T> ServiceResponse<T> getPutOrPatchResult(Response<ResponseBody> response, Type resourceType) throws CloudException, InterruptedException, IOException {
+        PollingState<T> pollingState = createPutOrPatchState(response, resourceType);
+        pollingState.withRequestScope(RequestScope.current());
+        pollingOperations.incrementAndGet();
+        try {
+            pollPutOrPatch(pollingState);
+            while (!pollingState.isStatusTerminal()) {
+                Thread.sleep(pollingState.delayInMilliseconds());
+                pollPutOrPatch(pollingState);
+            }
+        } finally {
+            pollingOperations.decrementAndGet();
+        }
+        return new ServiceResponse<>(pollingState.resource(), pollingState.response());
     }
 
     /**
@@ -154,19 +226,14 @@ public final class AzureClient extends AzureServiceClient {
      * @return the observable of which a subscription will lead PUT or PATCH action.
      */
     public <T> Single<PollingState<T>> beginPutOrPatchAsync(Observable<Response<ResponseBody>> observable, final Type resourceType) {
+        // the polls are made in the scope of the caller, not the one of the subscribing thread
+        final RequestContext scope = RequestScope.current();
         return observable.map(new Func1<Response<ResponseBody>, PollingState<T>>() {
             @Override
             public PollingState<T> call(Response<ResponseBody> response) {
-                RuntimeException exception = createExceptionFromResponse(response, 200, 201, 202);
-                if (exception != null) {
-                    throw  exception;
-                }
                 try {
-                    final PollingState<T> pollingState = PollingState.create(response, longRunningOperationRetryTimeout(), resourceType, restClient().serializerAdapter());
-                    pollingState.withPollingUrlFromResponse(response);
-                    pollingState.withPollingRetryTimeoutFromResponse(response);
-                    pollingState.withPutOrPatchResourceUri(response.raw().request().url().toString());
-                    return pollingState;
+                    PollingState<T> pollingState = createPutOrPatchState(response, resourceType);
+                    return pollingState.withRequestScope(scope);
                 } catch (IOException ioException) {
                     throw Exceptions.propagate(ioException);
                 }
@@ -174,6 +241,27 @@ public final class AzureClient extends AzureServiceClient {
         }).toSingle();
     }
 
+    /**
+     * Creates the polling state of a PUT or PATCH operation from its initial response.
+     *
+     * @param response the initial response
+     * @param resourceType the java.lang.reflect.Type of the resource.
+     * @param <T> the type of the resource
+     * @return the polling state
+     * @throws IOException thrown by deserialization
+     */
+    private <T> PollingState<T> createPutOrPatchState(Response<ResponseBody> response, Type resourceType) throws IOException {
+        RuntimeException exception = createExceptionFromResponse(response, 200, 201, 202);
+        if (exception != null) {
+            throw  exception;
+        }
+        final PollingState<T> pollingState = PollingState.create(response, longRunningOperationRetryTimeout(), resourceType, restClient().serializerAdapter());
+        pollingState.withPollingUrlFromResponse(response);
+        pollingState.withPollingRetryTimeoutFromResponse(response);
+        pollingState.withPutOrPatchResourceUri(response.raw().request().url().toString());
+        return pollingState;
+    }
+
     /**
      * Given a polling state representing state of a PUT or PATCH operation, this method returns {@link Single} object,
      * when subscribed to it, a single poll will be performed and emits the latest polling state. A poll will be
@@ -216,6 +304,31 @@ public final class AzureClient extends AzureServiceClient {
                 .toSingle();
     }
 
+    /**
+     * Performs a single poll of a PUT or PATCH operation on the calling thread, the
+     * blocking counterpart of {@link #pollPutOrPatchSingleAsync(PollingState, Type)}.
+     *
+     * @param pollingState the current polling state
+     * @param <T> the type of the resource
+     * @throws CloudException REST exception
+     * @throws IOException thrown by the poll or by deserialization
+     */
+    private <T> void pollPutOrPatch(PollingState<T> pollingState) throws CloudException, IOException {
+        if (!pollingState.isStatusTerminal()) {
+            if (pollingState.azureAsyncOperationHeaderLink() != null) {
+                updateStateFromAzureAsyncOperationHeaderOnPut(pollingState, poll(pollingState.azureAsyncOperationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope()));
+            } else if (pollingState.locationHeaderLink() != null) {
+                updateStateFromLocationHeaderOnPut(pollingState, poll(pollingState.locationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope()));
+            } else {
+                updateStateFromGetResourceOperation(pollingState, poll(pollingState.putOrPatchResourceUri(), pollingState.loggingContext(), pollingState.requestScope()));
+            }
+            pollingState.throwCloudExceptionIfInFailedState();
+        }
+        if (pollingState.isStatusSucceeded() && pollingState.resource() == null) {
+            updateStateFromGetResourceOperation(pollingState, poll(pollingState.putOrPatchResourceUri(), pollingState.loggingContext(), pollingState.requestScope()));
+        }
+    }
+
     /**
      * Given a polling state representing state of a PUT or PATCH operation, this method returns {@link Observable} object,
      * when subscribed to it, a series of polling will be performed and emits each polling state to downstream.
@@ -231,7 +344,7 @@ public final class AzureClient extends AzureServiceClient {
     private <T> Observable<PollingState<T>> pollPutOrPatchAsync(final PollingState<T> pollingState, final Type resourceType) {
         pollingState.withResourceType(resourceType);
         pollingState.withSerializerAdapter(restClient().serializerAdapter());
-        return Observable.just(true)
+        return countPolling(Observable.just(true)
                 .flatMap(new Func1<Boolean, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Boolean aBoolean) {
@@ -244,7 +357,7 @@ public final class AzureClient extends AzureServiceClient {
                             @Override
                             public Observable<Long> call(Void aVoid) {
                                 return Observable.timer(pollingState.delayInMilliseconds(),
-                                        TimeUnit.MILLISECONDS, Schedulers.immediate());
+                                        TimeUnit.MILLISECONDS, Schedulers.io());
                             }
                         });
                     }
@@ -253,7 +366,7 @@ public final class AzureClient extends AzureServiceClient {
                     public Boolean call(PollingState<T> tPollingState) {
                         return pollingState.isStatusTerminal();
                     }
-                });
+                }));
     }
 
     /**
@@ -299,8 +412,38 @@ public final class AzureClient extends AzureServiceClient {
      * @throws IOException thrown by deserialization
      */
     private <T> ServiceResponse<T> getPostOrDeleteResult(Observable<Response<ResponseBody>> observable, Type resourceType) throws CloudException, InterruptedException, IOException {
-        Observable<ServiceResponse<T>> asyncObservable = getPostOrDeleteResultAsync(observable, resourceType);
-        return asyncObservable.toBlocking().last();
+        return getPostOrDeleteResult(observable.toBlocking().single(), resourceType);
+    }
+
+    /**
+     * Handles an initial response from a POST or DELETE operation by polling the status
+     * of the operation on the calling thread until the long running operation terminates.
+     * The polls are executed directly on the HTTP client, without RxJava operators or
+     * thread hops.
+     *
+     * @param response the initial response from the POST or DELETE operation.
+     * @param resourceType the java.lang.reflect.Type of the resource.
+     * @param <T> the return type of the caller
+     * @return the terminal response for the operation.
+     * @throws CloudException REST exception
+     * @throws InterruptedException interrupted exception
+     * @throws IOException thrown by the polls or by deserialization
+     */
+    @Beta(SinceVersion.V1_2_0)
+    public <T> ServiceResponse<T> getPostOrDeleteResult(Response<ResponseBody> response, Type resourceType) throws CloudException, InterruptedException, IOException {
+        PollingState<T> pollingState = createPostOrDeleteState(response, resourceType);
+        pollingState.withRequestScope(RequestScope.current());
+        pollingOperations.incrementAndGet();
+        try {
+            pollPostOrDelete(pollingState);
+            while (!pollingState.isStatusTerminal()) {
+                Thread.sleep(pollingState.delayInMilliseconds());
+                pollPostOrDelete(pollingState);
+            }
+        } finally {
+            pollingOperations.decrementAndGet();
+        }
+        return new ServiceResponse<>(pollingState.resource(), pollingState.response());
     }
 
     /**
@@ -365,18 +508,14 @@ public final class AzureClient extends AzureServiceClient {
      * @return the observable of which a subscription will lead POST or DELETE action.
      */
     public <T> Single<PollingState<T>> beginPostOrDeleteAsync(Observable<Response<ResponseBody>> observable, final Type resourceType) {
+        // the polls are made in the scope of the caller, not the one of the subscribing thread
+        final RequestContext scope = RequestScope.current();
         return observable.map(new Func1<Response<ResponseBody>, PollingState<T>>() {
             @Override
             public PollingState<T> call(Response<ResponseBody> response) {
-                RuntimeException exception = createExceptionFromResponse(response, 200, 202, 204);
-                if (exception != null) {
-                    throw  exception;
-                }
                 try {
-                    final PollingState<T> pollingState = PollingState.create(response, longRunningOperationRetryTimeout(), resourceType, restClient().serializerAdapter());
-                    pollingState.withPollingUrlFromResponse(response);
-                    pollingState.withPollingRetryTimeoutFromResponse(response);
-                    return pollingState;
+                    PollingState<T> pollingState = createPostOrDeleteState(response, resourceType);
+                    return pollingState.withRequestScope(scope);
                 } catch (IOException ioException) {
                     throw Exceptions.propagate(ioException);
                 }
@@ -384,6 +523,26 @@ public final class AzureClient extends AzureServiceClient {
         }).toSingle();
     }
 
+    /**
+     * Creates the polling state of a POST or DELETE operation from its initial response.
+     *
+     * @param response the initial response
+     * @param resourceType the java.lang.reflect.Type of the resource.
+     * @param <T> the type of the resource
+     * @return the polling state
+     * @throws IOException thrown by deserialization
+     */
+    private <T> PollingState<T> createPostOrDeleteState(Response<ResponseBody> response, Type resourceType) throws IOException {
+        RuntimeException exception = createExceptionFromResponse(response, 200, 202, 204);
+        if (exception != null) {
+            throw  exception;
+        }
+        final PollingState<T> pollingState = PollingState.create(response, longRunningOperationRetryTimeout(), resourceType, restClient().serializerAdapter());
+        pollingState.withPollingUrlFromResponse(response);
+        pollingState.withPollingRetryTimeoutFromResponse(response);
+        return pollingState;
+    }
+
     /**
      * Given a polling state representing state of a POST or DELETE operation, this method returns {@link Single} object,
      * when subscribed to it, a single poll will be performed and emits the latest polling state. A poll will be
@@ -423,6 +582,31 @@ public final class AzureClient extends AzureServiceClient {
                 .toSingle();
     }
 
+    /**
+     * Performs a single poll of a POST or DELETE operation on the calling thread, the
+     * blocking counterpart of {@link #pollPostOrDeleteSingleAsync(PollingState, Type)}.
+     *
+     * @param pollingState the current polling state
+     * @param <T> the type of the resource
+     * @throws CloudException REST exception
+     * @throws IOException thrown by the poll or by deserialization
+     */
+    private <T> void pollPostOrDelete(PollingState<T> pollingState) throws CloudException, IOException {
+        if (!pollingState.isStatusTerminal()) {
+            if (pollingState.azureAsyncOperationHeaderLink() != null) {
+                updateStateFromAzureAsyncOperationHeaderOnPostOrDelete(pollingState, poll(pollingState.azureAsyncOperationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope()));
+            } else if (pollingState.locationHeaderLink() != null) {
+                updateStateFromLocationHeaderOnPostOrDelete(pollingState, poll(pollingState.locationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope()));
+            } else {
+                throw new CloudException("Response does not contain an Azure-AsyncOperation or Location header.", pollingState.response(), pollingState.errorBody());
+            }
+            pollingState.throwCloudExceptionIfInFailedState();
+        }
+        if (pollingState.resourcePending()) {
+            updateStateFromLocationHeaderOnPostOrDelete(pollingState, poll(pollingState.locationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope()));
+        }
+    }
+
     /**
      * Given a polling state representing state of a POST or DELETE operation, this method returns {@link Observable} object,
      * when subscribed to it, a series of polling will be performed and emits each polling state to downstream.
@@ -436,7 +620,7 @@ public final class AzureClient extends AzureServiceClient {
     private <T> Observable<PollingState<T>> pollPostOrDeleteAsync(final PollingState<T> pollingState, final Type resourceType) {
         pollingState.withResourceType(resourceType);
         pollingState.withSerializerAdapter(restClient().serializerAdapter());
-        return Observable.just(true)
+        return countPolling(Observable.just(true)
                 .flatMap(new Func1<Boolean, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Boolean aBoolean) {
@@ -449,7 +633,7 @@ public final class AzureClient extends AzureServiceClient {
                             @Override
                             public Observable<Long> call(Void aVoid) {
                                 return Observable.timer(pollingState.delayInMilliseconds(),
-                                        TimeUnit.MILLISECONDS, Schedulers.immediate());
+                                        TimeUnit.MILLISECONDS, Schedulers.io());
                             }
                         });
                     }
@@ -458,7 +642,7 @@ public final class AzureClient extends AzureServiceClient {
                     public Boolean call(PollingState<T> tPollingState) {
                         return pollingState.isStatusTerminal();
                     }
-                });
+                }));
     }
 
     /**
@@ -546,26 +730,44 @@ public final class AzureClient extends AzureServiceClient {
      * @param <T> the return type of the caller.
      */
     private <T> Observable<PollingState<T>> updateStateFromLocationHeaderOnPutAsync(final PollingState<T> pollingState) {
-        return pollAsync(pollingState.locationHeaderLink(), pollingState.loggingContext())
+        return pollAsync(pollingState.locationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope())
                 .flatMap(new Func1<Response<ResponseBody>, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Response<ResponseBody> response) {
-                        int statusCode = response.code();
-                        if (statusCode == 202) {
-                            pollingState.withResponse(response);
-                            pollingState.withStatus(AzureAsyncOperation.IN_PROGRESS_STATUS);
-                        } else if (statusCode == 200 || statusCode == 201) {
-                            try {
-                                pollingState.updateFromResponseOnPutPatch(response);
-                            } catch (CloudException | IOException e) {
-                                return Observable.error(e);
-                            }
+                        try {
+                            updateStateFromLocationHeaderOnPut(pollingState, response);
+                        } catch (CloudException | IOException e) {
+                            return Observable.error(e);
                         }
                         return Observable.just(pollingState);
                     }
                 });
     }
 
+    /**
+     * Updates the polling state with the polling response from the location header
+     * for a PUT operation.
+     *
+     * @param pollingState the polling state for the current operation.
+     * @param response the polling response.
+     * @param <T> the return type of the caller.
+     * @throws CloudException thrown if the response is invalid
+     * @throws IOException thrown by deserialization
+     */
+    private <T> void updateStateFromLocationHeaderOnPut(PollingState<T> pollingState, Response<ResponseBody> response) throws CloudException, IOException {
+        int statusCode = response.code();
+        if (statusCode == 202) {
+            if (response.body() != null) {
+                // nothing is read from an in-progress poll, hand the connection back
+                response.body().close();
+            }
+            pollingState.withResponse(response);
+            pollingState.withStatus(AzureAsyncOperation.IN_PROGRESS_STATUS);
+        } else if (statusCode == 200 || statusCode == 201) {
+            pollingState.updateFromResponseOnPutPatch(response);
+        }
+    }
+
     /**
      * Polls from the location header and updates the polling state with the
      * polling response for a POST or DELETE operation.
@@ -574,26 +776,43 @@ public final class AzureClient extends AzureServiceClient {
      * @param <T> the return type of the caller.
      */
     private <T> Observable<PollingState<T>> updateStateFromLocationHeaderOnPostOrDeleteAsync(final PollingState<T> pollingState) {
-        return pollAsync(pollingState.locationHeaderLink(), pollingState.loggingContext())
+        return pollAsync(pollingState.locationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope())
                 .flatMap(new Func1<Response<ResponseBody>, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Response<ResponseBody> response) {
-                        int statusCode = response.code();
-                        if (statusCode == 202) {
-                            pollingState.withResponse(response);
-                            pollingState.withStatus(AzureAsyncOperation.IN_PROGRESS_STATUS);
-                        } else if (statusCode == 200 || statusCode == 201 || statusCode == 204) {
-                            try {
-                                pollingState.updateFromResponseOnDeletePost(response);
-                            } catch (IOException e) {
-                                return Observable.error(e);
-                            }
+                        try {
+                            updateStateFromLocationHeaderOnPostOrDelete(pollingState, response);
+                        } catch (IOException e) {
+                            return Observable.error(e);
                         }
                         return Observable.just(pollingState);
                     }
                 });
     }
 
+    /**
+     * Updates the polling state with the polling response from the location header
+     * for a POST or DELETE operation.
+     *
+     * @param pollingState the polling state for the current operation.
+     * @param response the polling response.
+     * @param <T> the return type of the caller.
+     * @throws IOException thrown by deserialization
+     */
+    private <T> void updateStateFromLocationHeaderOnPostOrDelete(PollingState<T> pollingState, Response<ResponseBody> response) throws IOException {
+        int statusCode = response.code();
+        if (statusCode == 202) {
+            if (response.body() != null) {
+                // nothing is read from an in-progress poll, hand the connection back
+                response.body().close();
+            }
+            pollingState.withResponse(response);
+            pollingState.withStatus(AzureAsyncOperation.IN_PROGRESS_STATUS);
+        } else if (statusCode == 200 || statusCode == 201 || statusCode == 204) {
+            pollingState.updateFromResponseOnDeletePost(response);
+        }
+    }
+
     /**
      * Polls from the provided URL and updates the polling state with the
      * polling response.
@@ -603,12 +822,12 @@ public final class AzureClient extends AzureServiceClient {
      * @param <T> the return type of the caller.
      */
     private <T> Observable<PollingState<T>> updateStateFromGetResourceOperationAsync(final PollingState<T> pollingState, String url) {
-        return pollAsync(url, pollingState.loggingContext())
+        return pollAsync(url, pollingState.loggingContext(), pollingState.requestScope())
                 .flatMap(new Func1<Response<ResponseBody>, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Response<ResponseBody> response) {
                         try {
-                            pollingState.updateFromResponseOnPutPatch(response);
+                            updateStateFromGetResourceOperation(pollingState, response);
                             return Observable.just(pollingState);
                         } catch (CloudException | IOException e) {
                             return Observable.error(e);
@@ -617,6 +836,19 @@ public final class AzureClient extends AzureServiceClient {
                 });
     }
 
+    /**
+     * Updates the polling state with the polling response from the resource URL.
+     *
+     * @param pollingState the polling state for the current operation.
+     * @param response the polling response.
+     * @param <T> the return type of the caller.
+     * @throws CloudException thrown if the response is invalid
+     * @throws IOException thrown by deserialization
+     */
+    private <T> void updateStateFromGetResourceOperation(PollingState<T> pollingState, Response<ResponseBody> response) throws CloudException, IOException {
+        pollingState.updateFromResponseOnPutPatch(response);
+    }
+
     /**
      * Polls from the 'Azure-AsyncOperation' header and updates the polling
      * state with the polling response.
@@ -625,25 +857,37 @@ public final class AzureClient extends AzureServiceClient {
      * @param <T> the return type of the caller.
      */
     private <T> Observable<PollingState<T>> updateStateFromAzureAsyncOperationHeaderOnPutAsync(final PollingState<T> pollingState) {
-        return pollAsync(pollingState.azureAsyncOperationHeaderLink(), pollingState.loggingContext())
+        return pollAsync(pollingState.azureAsyncOperationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope())
                 .flatMap(new Func1<Response<ResponseBody>, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Response<ResponseBody> response) {
-                        final AzureAsyncOperation asyncOperation;
                         try {
-                            asyncOperation = AzureAsyncOperation.fromResponse(restClient().serializerAdapter(), response);
+                            updateStateFromAzureAsyncOperationHeaderOnPut(pollingState, response);
                         } catch (CloudException exception) {
                             return Observable.error(exception);
                         }
-                        pollingState.withStatus(asyncOperation.status());
-                        pollingState.withErrorBody(asyncOperation.getError());
-                        pollingState.withResponse(response);
-                        pollingState.withResource(null);
                         return Observable.just(pollingState);
                     }
                 });
     }
 
+    /**
+     * Updates the polling state with the polling response from the
+     * 'Azure-AsyncOperation' header for a PUT or PATCH operation.
+     *
+     * @param pollingState the polling state for the current operation.
+     * @param response the polling response.
+     * @param <T> the return type of the caller.
+     * @throws CloudException thrown if the response is invalid
+     */
+    private <T> void updateStateFromAzureAsyncOperationHeaderOnPut(PollingState<T> pollingState, Response<ResponseBody> response) throws CloudException {
+        AzureAsyncOperation asyncOperation = AzureAsyncOperation.fromResponse(restClient().serializerAdapter(), response);
+        pollingState.withStatus(asyncOperation.status());
+        pollingState.withErrorBody(asyncOperation.getError());
+        pollingState.withResponse(response);
+        pollingState.withResource(null);
+    }
+
     /**
      * Polls from the 'Azure-AsyncOperation' header and updates the polling
      * state with the polling response.
@@ -652,51 +896,93 @@ public final class AzureClient extends AzureServiceClient {
      * @param <T> the return type of the caller.
      */
     private <T> Observable<PollingState<T>> updateStateFromAzureAsyncOperationHeaderOnPostOrDeleteAsync(final PollingState<T> pollingState) {
-        return pollAsync(pollingState.azureAsyncOperationHeaderLink(), pollingState.loggingContext())
+        return pollAsync(pollingState.azureAsyncOperationHeaderLink(), pollingState.loggingContext(), pollingState.requestScope())
                 .flatMap(new Func1<Response<ResponseBody>, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Response<ResponseBody> response) {
-                        final AzureAsyncOperation asyncOperation;
                         try {
-                            asyncOperation = AzureAsyncOperation.fromResponse(restClient().serializerAdapter(), response);
+                            updateStateFromAzureAsyncOperationHeaderOnPostOrDelete(pollingState, response);
                         } catch (CloudException exception) {
                             return Observable.error(exception);
                         }
-                        pollingState.withStatus(asyncOperation.status());
-                        pollingState.withErrorBody(asyncOperation.getError());
-                        pollingState.withResponse(response);
-                        try {
-                            T resource = restClient().serializerAdapter().deserialize(asyncOperation.rawString(), pollingState.resourceType());
-                            pollingState.withResource(resource);
-                        } catch (IOException e) {
-                            // Ignore and let resource be null
-                        }
                         return Observable.just(pollingState);
                     }
                 });
     }
 
+    /**
+     * Updates the polling state with the polling response from the
+     * 'Azure-AsyncOperation' header for a POST or DELETE operation.
+     *
+     * @param pollingState the polling state for the current operation.
+     * @param response the polling response.
+     * @param <T> the return type of the caller.
+     * @throws CloudException thrown if the response is invalid
+     */
+    private <T> void updateStateFromAzureAsyncOperationHeaderOnPostOrDelete(PollingState<T> pollingState, Response<ResponseBody> response) throws CloudException {
+        AzureAsyncOperation asyncOperation = AzureAsyncOperation.fromResponse(restClient().serializerAdapter(), response);
+        pollingState.withStatus(asyncOperation.status());
+        pollingState.withErrorBody(asyncOperation.getError());
+        pollingState.withResponse(response);
+        try {
+            T resource = restClient().serializerAdapter().deserialize(asyncOperation.rawString(), pollingState.resourceType());
+            pollingState.withResource(resource);
+        } catch (IOException e) {
+            // Ignore and let resource be null
+        }
+    }
+
     /**
      * Polls from the URL provided.
      *
      * @param url the URL to poll from.
+     * @param loggingContext the logging context of the operation.
+     * @param scope the request scope of the operation.
      * @return the raw response.
      */
-    private Observable<Response<ResponseBody>> pollAsync(String url, String loggingContext) {
-        URL endpoint;
+    private Observable<Response<ResponseBody>> pollAsync(String url, String loggingContext, final RequestContext scope) {
+        final URL endpoint;
         try {
             endpoint = new URL(url);
         } catch (MalformedURLException e) {
             return Observable.error(e);
         }
-        AsyncService service = restClient().retrofit().create(AsyncService.class);
-        if (loggingContext != null && !loggingContext.endsWith(" (poll)")) {
-            loggingContext += " (poll)";
+        final String pollLoggingContext = pollLoggingContext(loggingContext);
+        final RuntimeEventListener listener = RuntimeEvents.listener();
+        if (listener == null) {
+            return pollAsync(endpoint, pollLoggingContext, scope, null, null);
         }
-        return service.get(endpoint.getFile(), serviceClientUserAgent, loggingContext)
+        // begin the event when the poll is subscribed to, which may be after a delay
+        return Observable.defer(new Func0<Observable<Response<ResponseBody>>>() {
+            @Override
+            public Observable<Response<ResponseBody>> call() {
+                return pollAsync(endpoint, pollLoggingContext, scope, listener, RuntimeEvents.begin(listener, RuntimeEventType.POLL));
+            }
+        });
+    }
+
+    private Observable<Response<ResponseBody>> pollAsync(URL endpoint, final String loggingContext, RequestContext scope,
+                                                         final RuntimeEventListener listener, final Object event) {
+        Observable<Response<ResponseBody>> responses;
+        try (RequestScope restored = RequestScope.restore(pollScope(scope))) {
+            responses = restClient().requestEngine()
+                    .executeAsync(POLL_TEMPLATE, endpoint.getFile(), serviceClientUserAgent, loggingContext, pollPriority());
+        }
+        return responses
+                .doOnError(new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        if (event != null) {
+                            listener.pollEnded(event, loggingContext, 0);
+                        }
+                    }
+                })
                 .flatMap(new Func1<Response<ResponseBody>, Observable<Response<ResponseBody>>>() {
                     @Override
                     public Observable<Response<ResponseBody>> call(Response<ResponseBody> response) {
+                        if (event != null) {
+                            listener.pollEnded(event, loggingContext, response.code());
+                        }
                         RuntimeException exception = createExceptionFromResponse(response, 200, 201, 202, 204);
                         if (exception != null) {
                             return Observable.error(exception);
@@ -707,6 +993,79 @@ public final class AzureClient extends AzureServiceClient {
                 });
     }
 
+    /**
+     * Polls are never served from a resource cache, but the final GET of the resource
+     * updates it.
+     *
+     * @param scope the request scope of the operation
+     * @return the request scope of its polls
+     */
+    private static RequestContext pollScope(RequestContext scope) {
+        return scope.newBuilder().withAttribute(CachePolicy.class, CachePolicy.REFRESH).build();
+    }
+
+    /**
+     * Polls from the URL provided on the calling thread.
+     *
+     * @param url the URL to poll from.
+     * @param loggingContext the logging context of the operation.
+     * @param scope the request scope of the operation.
+     * @return the raw response.
+     * @throws IOException thrown by the HTTP call or if the URL is malformed
+     */
+    private Response<ResponseBody> poll(String url, String loggingContext, RequestContext scope) throws IOException {
+        URL endpoint = new URL(url);
+        RuntimeEventListener listener = RuntimeEvents.listener();
+        Object event = RuntimeEvents.begin(listener, RuntimeEventType.POLL);
+        Response<ResponseBody> response;
+        try (RequestScope restored = RequestScope.restore(pollScope(scope))) {
+            response = restClient().requestEngine()
+                    .execute(POLL_TEMPLATE, endpoint.getFile(), serviceClientUserAgent, pollLoggingContext(loggingContext), pollPriority());
+        } catch (IOException | RuntimeException e) {
+            if (event != null) {
+                listener.pollEnded(event, pollLoggingContext(loggingContext), 0);
+            }
+            throw e;
+        }
+        if (event != null) {
+            listener.pollEnded(event, pollLoggingContext(loggingContext), response.code());
+        }
+        RuntimeException exception = createExceptionFromResponse(response, 200, 201, 202, 204);
+        if (exception != null) {
+            throw exception;
+        }
+        return response;
+    }
+
+    /**
+     * Counts a polling observable among the long running operations being polled
+     * while it is subscribed to.
+     */
+    private <T> Observable<T> countPolling(final Observable<T> polling) {
+        return Observable.defer(new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                final AtomicBoolean counted = new AtomicBoolean(true);
+                pollingOperations.incrementAndGet();
+                return polling.doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        if (counted.compareAndSet(true, false)) {
+                            pollingOperations.decrementAndGet();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static String pollLoggingContext(String loggingContext) {
+        if (loggingContext != null && !loggingContext.endsWith(" (poll)")) {
+            return loggingContext + " (poll)";
+        }
+        return loggingContext;
+    }
+
     private RuntimeException createExceptionFromResponse(Response<ResponseBody> response, Integer... allowedStatusCodes) {
         int statusCode = response.code();
         ResponseBody responseBody;
@@ -756,10 +1115,16 @@ public final class AzureClient extends AzureServiceClient {
     }
 
     /**
-     * The Retrofit service used for polling.
+     * Polls run as background requests when the client admits requests by priority.
+     *
+     * @return the priority header value for polls, or null to leave the header out
      */
-    private interface AsyncService {
-        @GET
-        Observable<Response<ResponseBody>> get(@Url String url, @Header("User-Agent") String userAgent, @Header("x-ms-logging-context") String loggingHeader);
+    private String pollPriority() {
+        for (Interceptor interceptor : restClient().httpClient().interceptors()) {
+            if (interceptor instanceof PriorityHandler) {
+                return RequestPriority.BACKGROUND.headerValue();
+            }
+        }
+        return null;
     }
 }
\ No newline at end of file
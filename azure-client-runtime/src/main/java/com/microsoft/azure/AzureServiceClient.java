@@ -57,13 +57,22 @@ public abstract class AzureServiceClient extends ServiceClient {
      * @return the user agent string.
      */
     public String userAgent() {
-        return String.format("Azure-SDK-For-Java/%s OS:%s MacAddressHash:%s Java:%s",
-                getClass().getPackage().getImplementationVersion(),
-                OS,
-                MAC_ADDRESS_HASH,
-                JAVA_VERSION);
+        String userAgent = defaultUserAgent;
+        if (userAgent == null) {
+            // racing threads compute the same string
+            userAgent = String.format("Azure-SDK-For-Java/%s OS:%s MacAddressHash:%s Java:%s",
+                    getClass().getPackage().getImplementationVersion(),
+                    OS,
+                    MAC_ADDRESS_HASH,
+                    JAVA_VERSION);
+            defaultUserAgent = userAgent;
+        }
+        return userAgent;
     }
 
+    /** The default User-Agent header, formatted once. */
+    private volatile String defaultUserAgent;
+
     private static final String MAC_ADDRESS_HASH;
     private static final String OS;
     private static final String JAVA_VERSION;
@@ -9,6 +9,8 @@ package com.microsoft.azure;
 import com.microsoft.rest.ServiceFuture;
 import com.microsoft.rest.ServiceResponse;
 import com.microsoft.rest.ServiceResponseWithHeaders;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.context.RequestScope;
 import rx.Observable;
 import rx.Subscriber;
 import rx.functions.Func1;
@@ -37,10 +39,7 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
      */
     public static <E> ServiceFuture<List<E>> fromPageResponse(Observable<ServiceResponse<Page<E>>> first, final Func1<String, Observable<ServiceResponse<Page<E>>>> next, final ListOperationCallback<E> callback) {
         final AzureServiceFuture<List<E>> serviceCall = new AzureServiceFuture<>();
-        final PagingSubscriber<E> subscriber = new PagingSubscriber<>(serviceCall, next, callback);
-        serviceCall.setSubscription(first
-            .single()
-            .subscribe(subscriber));
+        new PagingSubscriber<>(serviceCall, next, callback, RequestScope.current()).subscribe(first);
         return serviceCall;
     }
 
@@ -56,7 +55,7 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
      */
     public static <E, V> ServiceFuture<List<E>> fromHeaderPageResponse(Observable<ServiceResponseWithHeaders<Page<E>, V>> first, final Func1<String, Observable<ServiceResponseWithHeaders<Page<E>, V>>> next, final ListOperationCallback<E> callback) {
         final AzureServiceFuture<List<E>> serviceCall = new AzureServiceFuture<>();
-        final PagingSubscriber<E> subscriber = new PagingSubscriber<>(serviceCall, new Func1<String, Observable<ServiceResponse<Page<E>>>>() {
+        new PagingSubscriber<>(serviceCall, new Func1<String, Observable<ServiceResponse<Page<E>>>>() {
             @Override
             public Observable<ServiceResponse<Page<E>>> call(String s) {
                 return next.call(s)
@@ -67,15 +66,13 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
                             }
                         });
             }
-        }, callback);
-        serviceCall.setSubscription(first
-                .single()
-                .subscribe(subscriber));
+        }, callback, RequestScope.current()).subscribe(first);
         return serviceCall;
     }
 
     /**
      * The subscriber that handles user callback and automatically subscribes to the next page.
+     * A subscriber handles a single page, as it is unsubscribed when its page completes.
      *
      * @param <E> the element type
      */
@@ -84,11 +81,20 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
         private Func1<String, Observable<ServiceResponse<Page<E>>>> next;
         private ListOperationCallback<E> callback;
         private ServiceResponse<Page<E>> lastResponse;
+        /** The request scope the operation was started in, which the pages are requested in. */
+        private RequestContext requestScope;
 
-        PagingSubscriber(final AzureServiceFuture<List<E>> serviceCall, final Func1<String, Observable<ServiceResponse<Page<E>>>> next, final ListOperationCallback<E> callback) {
+        PagingSubscriber(final AzureServiceFuture<List<E>> serviceCall, final Func1<String, Observable<ServiceResponse<Page<E>>>> next,
+                         final ListOperationCallback<E> callback, RequestContext requestScope) {
             this.serviceCall = serviceCall;
             this.next = next;
             this.callback = callback;
+            this.requestScope = requestScope;
+        }
+
+        private void subscribe(Observable<? extends ServiceResponse<Page<E>>> page) {
+            serviceCall.setSubscription(this);
+            page.single().subscribe(this);
         }
 
         @Override
@@ -117,7 +123,11 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
             if (behavior == ListOperationCallback.PagingBehavior.STOP || serviceResponse.body().nextPageLink() == null) {
                 serviceCall.set(lastResponse.body().items());
             } else {
-                serviceCall.setSubscription(next.call(serviceResponse.body().nextPageLink()).single().subscribe(this));
+                Observable<ServiceResponse<Page<E>>> nextPage;
+                try (RequestScope restored = RequestScope.restore(requestScope)) {
+                    nextPage = next.call(serviceResponse.body().nextPageLink());
+                }
+                new PagingSubscriber<>(serviceCall, next, callback, requestScope).subscribe(nextPage);
             }
         }
     }
@@ -7,6 +7,11 @@
 package com.microsoft.azure;
 
 import com.microsoft.rest.RestException;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.context.RequestScope;
+import com.microsoft.rest.events.RuntimeEventListener;
+import com.microsoft.rest.events.RuntimeEventType;
+import com.microsoft.rest.events.RuntimeEvents;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -29,6 +34,8 @@ public abstract class PagedList<E> implements List<E> {
     private Page<E> currentPage;
     /** Cached page right after the current one. */
     private Page<E> cachedPage;
+    /** The request scope the list was created in, which the pages are loaded in. */
+    private final RequestContext requestScope = RequestScope.current();
 
     /**
      * Creates an instance of Pagedlist.
@@ -58,7 +65,7 @@ public abstract class PagedList<E> implements List<E> {
     private void cachePage(String nextPageLink) {
         try {
             while (nextPageLink != null) {
-                cachedPage = nextPage(nextPageLink);
+                cachedPage = loadPage(nextPageLink);
                 if (cachedPage == null) {
                     break;
                 }
@@ -73,6 +80,28 @@ public abstract class PagedList<E> implements List<E> {
         }
     }
 
+    private Page<E> loadPage(String nextPageLink) throws IOException {
+        try (RequestScope restored = RequestScope.restore(requestScope)) {
+            return loadPageInScope(nextPageLink);
+        }
+    }
+
+    private Page<E> loadPageInScope(String nextPageLink) throws IOException {
+        RuntimeEventListener listener = RuntimeEvents.listener();
+        Object event = RuntimeEvents.begin(listener, RuntimeEventType.PAGE_LOAD);
+        if (event == null) {
+            return nextPage(nextPageLink);
+        }
+        Page<E> page = null;
+        try {
+            page = nextPage(nextPageLink);
+            return page;
+        } finally {
+            int items = page == null ? -1 : page.items() == null ? 0 : page.items().size();
+            listener.pageLoadEnded(event, getClass().getName(), items, page != null && page.nextPageLink() != null);
+        }
+    }
+
     /**
      * Override this method to load the next page of items from a next page link.
      *
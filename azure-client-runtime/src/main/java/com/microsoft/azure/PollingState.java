@@ -15,6 +15,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.microsoft.rest.context.RequestContext;
 import com.microsoft.rest.protocol.SerializerAdapter;
 import com.microsoft.rest.serializer.Base64UrlSerializer;
 import com.microsoft.rest.serializer.ByteArraySerializer;
@@ -53,12 +54,12 @@ public class PollingState<T> {
 
     // Non-serializable properties
     //
-    /** The logging context header name. **/
-    @JsonIgnore
-    private static final String LOGGING_HEADER = "x-ms-logging-context";
     /** The Retrofit response object. */
     @JsonIgnore
     private Response<ResponseBody> response;
+    /** The request scope the operation was started in, which the polls are made in. */
+    @JsonIgnore
+    private RequestContext requestScope = RequestContext.EMPTY;
     /** The response resource object. */
     @JsonIgnore
     private T resource;
@@ -96,7 +97,7 @@ public class PollingState<T> {
         pollingState.withResponse(response);
         pollingState.resourceType = resourceType;
         pollingState.serializerAdapter = serializerAdapter;
-        pollingState.loggingContext = response.raw().request().header(LOGGING_HEADER);
+        pollingState.loggingContext = RequestContext.of(response.raw().request()).loggingContext();
 
         String responseContent = null;
         PollingResource resource = null;
@@ -165,6 +166,7 @@ public class PollingState<T> {
         pollingState.defaultRetryTimeout = other.defaultRetryTimeout;
         pollingState.retryTimeout = other.retryTimeout;
         pollingState.loggingContext = other.loggingContext;
+        pollingState.requestScope = other.requestScope;
         return pollingState;
     }
 
@@ -351,6 +353,26 @@ public class PollingState<T> {
         return loggingContext;
     }
 
+    /**
+     * Gets the request scope the operation was started in.
+     *
+     * @return the request scope
+     */
+    RequestContext requestScope() {
+        return requestScope;
+    }
+
+    /**
+     * Sets the request scope the operation was started in.
+     *
+     * @param requestScope the context of the scope
+     * @return the polling state
+     */
+    PollingState<T> withRequestScope(RequestContext requestScope) {
+        this.requestScope = requestScope;
+        return this;
+    }
+
     /**
      * Sets the polling status.
      *
@@ -9,6 +9,9 @@ package com.microsoft.azure.credentials;
 import com.microsoft.azure.AzureEnvironment;
 import com.microsoft.azure.AzureEnvironment.Endpoint;
 import com.microsoft.rest.credentials.TokenCredentials;
+import com.microsoft.rest.events.RuntimeEventListener;
+import com.microsoft.rest.events.RuntimeEventType;
+import com.microsoft.rest.events.RuntimeEvents;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 
@@ -21,6 +24,9 @@ import java.util.Map;
  * Resource management.
  */
 public abstract class AzureTokenCredentials extends TokenCredentials {
+    /** Whether the token of the request authenticated on the thread was cached, while an event records it. */
+    private static final ThreadLocal<Boolean[]> TOKEN_CACHED = new ThreadLocal<>();
+
     private final AzureEnvironment environment;
     private final String domain;
     private String defaultSubscription;
@@ -53,7 +59,33 @@ public abstract class AzureTokenCredentials extends TokenCredentials {
                 }
             }
         }
-        return getToken(resource);
+        RuntimeEventListener listener = RuntimeEvents.listener();
+        Object event = RuntimeEvents.begin(listener, RuntimeEventType.TOKEN);
+        if (event == null) {
+            return getToken(resource);
+        }
+        Boolean[] cached = new Boolean[1];
+        TOKEN_CACHED.set(cached);
+        try {
+            return getToken(resource);
+        } finally {
+            TOKEN_CACHED.remove();
+            listener.tokenEnded(event, resource, cached[0]);
+        }
+    }
+
+    /**
+     * Tells whether the token being returned by {@link #getToken(String)} was
+     * cached or had to be acquired, for the runtime events; implementations
+     * caching their tokens should call it.
+     *
+     * @param cached true if the token was cached, false if it was acquired
+     */
+    protected final void markTokenCached(boolean cached) {
+        Boolean[] holder = TOKEN_CACHED.get();
+        if (holder != null && holder[0] == null) {
+            holder[0] = cached;
+        }
     }
 
     /**
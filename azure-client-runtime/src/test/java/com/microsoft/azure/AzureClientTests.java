@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.microsoft.azure.serializer.AzureJacksonAdapter;
+import com.microsoft.rest.RestClient;
+import com.microsoft.rest.ServiceResponse;
+import com.microsoft.rest.cache.CachePolicy;
+import com.microsoft.rest.context.HeaderScope;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.introspection.CallPhase;
+import com.microsoft.rest.introspection.ClientSnapshot;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.http.DELETE;
+import retrofit2.http.PUT;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AzureClientTests {
+    private interface Service {
+        @PUT("resource")
+        Call<ResponseBody> put();
+
+        @DELETE("resource")
+        Call<ResponseBody> delete();
+
+        @PUT("resource")
+        Observable<retrofit2.Response<ResponseBody>> putAsync();
+    }
+
+    @Test
+    public void putIsPolledOnTheCallingThread() throws Exception {
+        final List<String> polls = new ArrayList<>();
+        AzureClient azureClient = newAzureClient(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                polls.add(request.method() + " " + request.url().encodedPath() + " " + Thread.currentThread().getName());
+                if (request.method().equals("PUT")) {
+                    return response(request, 201, "{\"properties\":{\"provisioningState\":\"Accepted\"}}")
+                            .header("Azure-AsyncOperation", "http://localhost/operation")
+                            .build();
+                }
+                if (request.url().encodedPath().equals("/operation")) {
+                    String status = polls.size() < 3 ? "InProgress" : "Succeeded";
+                    return response(request, 200, "{\"status\":\"" + status + "\"}").build();
+                }
+                return response(request, 200, "{\"id\":\"1\",\"properties\":{\"provisioningState\":\"Succeeded\"}}").build();
+            }
+        });
+        Service service = azureClient.restClient().retrofit().create(Service.class);
+        ServiceResponse<Map<String, Object>> response = azureClient.getPutOrPatchResult(service.put().execute(), Map.class);
+        Assert.assertEquals("1", response.body().get("id"));
+        String thread = " " + Thread.currentThread().getName();
+        Assert.assertEquals("PUT /resource" + thread, polls.get(0));
+        Assert.assertEquals("GET /operation" + thread, polls.get(1));
+        Assert.assertEquals("GET /operation" + thread, polls.get(2));
+        Assert.assertEquals("GET /resource" + thread, polls.get(3));
+        Assert.assertEquals(4, polls.size());
+    }
+
+    @Test
+    public void deleteIsPolledOnTheCallingThread() throws Exception {
+        final List<String> polls = new ArrayList<>();
+        AzureClient azureClient = newAzureClient(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                polls.add(request.method() + " " + request.url().encodedPath());
+                if (request.method().equals("DELETE")) {
+                    return response(request, 202, "")
+                            .header("Location", "http://localhost/location")
+                            .build();
+                }
+                if (polls.size() < 3) {
+                    return response(request, 202, "").build();
+                }
+                return response(request, 200, "{\"name\":\"deleted\"}").build();
+            }
+        });
+        Service service = azureClient.restClient().retrofit().create(Service.class);
+        ServiceResponse<Map<String, Object>> response = azureClient.getPostOrDeleteResult(service.delete().execute(), Map.class);
+        Assert.assertEquals("deleted", response.body().get("name"));
+        Assert.assertEquals(200, response.response().code());
+        Assert.assertEquals(3, polls.size());
+
+        // an accepted operation without polling header fails without polling
+        polls.clear();
+        try {
+            azureClient.getPostOrDeleteResult(service.put().execute(), Map.class);
+            Assert.fail();
+        } catch (CloudException e) {
+            Assert.assertEquals(202, e.response().code());
+            Assert.assertEquals(1, polls.size());
+        }
+    }
+
+    @Test
+    public void pollingOperationsAreIntrospected() throws Exception {
+        final List<ClientSnapshot> snapshots = new ArrayList<>();
+        final AzureClient[] azureClient = new AzureClient[1];
+        azureClient[0] = newAzureClient(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                if (request.method().equals("PUT")) {
+                    return response(request, 201, "{\"properties\":{\"provisioningState\":\"Accepted\"}}")
+                            .header("Azure-AsyncOperation", "http://localhost/operation")
+                            .build();
+                }
+                if (request.url().encodedPath().equals("/operation")) {
+                    snapshots.add(azureClient[0].snapshot());
+                    return response(request, 200, "{\"status\":\"Succeeded\"}").build();
+                }
+                return response(request, 200, "{\"id\":\"1\",\"properties\":{\"provisioningState\":\"Succeeded\"}}").build();
+            }
+        });
+        Service service = azureClient[0].restClient().retrofit().create(Service.class);
+        azureClient[0].<Map<String, Object>>getPutOrPatchResult(service.put().execute(), Map.class);
+        azureClient[0].<Map<String, Object>>getPutOrPatchResultAsync(
+                Observable.just(service.put().execute()), Map.class).toBlocking().last();
+
+        Assert.assertEquals(2, snapshots.size());
+        for (ClientSnapshot snapshot : snapshots) {
+            Assert.assertEquals(1, snapshot.pollingOperations());
+            Assert.assertEquals(1, snapshot.inFlightCalls().size());
+            Assert.assertEquals("/operation", snapshot.inFlightCalls().get(0).path());
+            Assert.assertEquals(CallPhase.PREPARING, snapshot.inFlightCalls().get(0).phase());
+        }
+        ClientSnapshot snapshot = azureClient[0].snapshot();
+        Assert.assertEquals(0, snapshot.pollingOperations());
+        Assert.assertTrue(snapshot.inFlightCalls().isEmpty());
+    }
+
+    @Test
+    public void locationPollsReleaseTheirConnections() throws Exception {
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger polls = new AtomicInteger();
+        final ServerSocket server = new ServerSocket(0);
+        try {
+            startKeepAliveServer(server, connections, polls);
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl("http://localhost:" + server.getLocalPort() + "/")
+                    .withSerializerAdapter(new AzureJacksonAdapter())
+                    .withResponseBuilderFactory(new AzureResponseBuilder.Factory())
+                    .build();
+            AzureClient azureClient = new AzureClient(new AzureServiceClient(restClient) { });
+            azureClient.setLongRunningOperationRetryTimeout(0);
+            Service service = restClient.retrofit().create(Service.class);
+
+            ServiceResponse<Map<String, Object>> response = azureClient.getPostOrDeleteResult(service.delete().execute(), Map.class);
+            Assert.assertEquals("deleted", response.body().get("name"));
+            polls.set(0);
+            response = azureClient.<Map<String, Object>>getPostOrDeleteResultAsync(
+                    Observable.just(service.delete().execute()), Map.class).toBlocking().last();
+            Assert.assertEquals("deleted", response.body().get("name"));
+
+            // every in-progress poll handed its connection back to the pool
+            Assert.assertEquals(1, connections.get());
+            Assert.assertEquals(1, restClient.httpClient().connectionPool().connectionCount());
+            Assert.assertEquals(1, restClient.httpClient().connectionPool().idleConnectionCount());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void pollsAreMadeInTheScopeOfTheOperation() throws Exception {
+        final List<String> scopes = new CopyOnWriteArrayList<>();
+        AzureClient azureClient = newAzureClient(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                scopes.add(request.method() + " " + RequestContext.of(request).headerOverrides().get("x-ms-correlation-request-id"));
+                if (request.method().equals("PUT")) {
+                    return response(request, 201, "{\"properties\":{\"provisioningState\":\"Accepted\"}}")
+                            .header("Azure-AsyncOperation", "http://localhost/operation")
+                            .build();
+                }
+                if (request.url().encodedPath().equals("/operation")) {
+                    String status = scopes.size() < 3 ? "InProgress" : "Succeeded";
+                    return response(request, 200, "{\"status\":\"" + status + "\"}").build();
+                }
+                return response(request, 200, "{\"id\":\"1\",\"properties\":{\"provisioningState\":\"Succeeded\"}}").build();
+            }
+        });
+        final Service service = azureClient.restClient().retrofit().create(Service.class);
+        Observable<ServiceResponse<Map<String, Object>>> operation;
+        try (HeaderScope scope = HeaderScope.open("x-ms-correlation-request-id", "operation")) {
+            operation = azureClient.getPutOrPatchResultAsync(service.putAsync(), Map.class);
+        }
+        Assert.assertEquals("1", operation.subscribeOn(Schedulers.newThread()).toBlocking().last().body().get("id"));
+        Assert.assertEquals(4, scopes.size());
+        for (String scope : scopes) {
+            Assert.assertTrue(scope, scope.endsWith(" operation"));
+        }
+    }
+
+    @Test
+    public void pollsRefreshTheCacheWithoutSendingCacheControl() throws Exception {
+        final List<String> polls = new CopyOnWriteArrayList<>();
+        AzureClient azureClient = newAzureClient(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                if (request.method().equals("PUT")) {
+                    return response(request, 201, "{\"properties\":{\"provisioningState\":\"Accepted\"}}")
+                            .header("Azure-AsyncOperation", "http://localhost/operation")
+                            .build();
+                }
+                polls.add(request.header("Cache-Control") + " " + RequestContext.of(request).attribute(CachePolicy.class));
+                if (request.url().encodedPath().equals("/operation")) {
+                    return response(request, 200, "{\"status\":\"Succeeded\"}").build();
+                }
+                return response(request, 200, "{\"id\":\"1\",\"properties\":{\"provisioningState\":\"Succeeded\"}}").build();
+            }
+        });
+        Service service = azureClient.restClient().retrofit().create(Service.class);
+        ServiceResponse<Map<String, Object>> response = azureClient.getPutOrPatchResult(service.put().execute(), Map.class);
+        Assert.assertEquals("1", response.body().get("id"));
+        Assert.assertEquals(2, polls.size());
+        for (String poll : polls) {
+            Assert.assertEquals("null REFRESH", poll);
+        }
+    }
+
+    private static AzureClient newAzureClient(Interceptor interceptor) {
+        final RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new AzureJacksonAdapter())
+                .withResponseBuilderFactory(new AzureResponseBuilder.Factory())
+                .withInterceptor(interceptor)
+                .build();
+        AzureClient azureClient = new AzureClient(new AzureServiceClient(restClient) { });
+        azureClient.setLongRunningOperationRetryTimeout(0);
+        return azureClient;
+    }
+
+    /**
+     * Serves a DELETE accepted with a Location header that stays in progress for
+     * five polls, keeping the connections alive between requests.
+     */
+    private static void startKeepAliveServer(final ServerSocket server, final AtomicInteger connections, final AtomicInteger polls) {
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = server.accept();
+                        connections.incrementAndGet();
+                        Thread worker = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    serve(socket, server.getLocalPort(), polls);
+                                } catch (IOException e) {
+                                    // the client went away
+                                }
+                            }
+                        });
+                        worker.setDaemon(true);
+                        worker.start();
+                    }
+                } catch (IOException e) {
+                    // the server was closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static void serve(Socket socket, int port, AtomicInteger polls) throws IOException {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = reader.readLine()) != null) {
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    // the requests carry no body
+                }
+                String status = "202 Accepted";
+                String body = "{}";
+                if (requestLine.startsWith("GET") && polls.incrementAndGet() > 5) {
+                    status = "200 OK";
+                    body = "{\"name\":\"deleted\"}";
+                }
+                String head = "HTTP/1.1 " + status + "\r\n"
+                        + "Content-Type: application/json\r\n"
+                        + "Content-Length: " + body.length() + "\r\n"
+                        + "Location: http://localhost:" + port + "/location\r\n\r\n";
+                out.write((head + body).getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static Response.Builder response(Request request, int code, String body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(ResponseBody.create(MediaType.parse("application/json"), body));
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.microsoft.rest.ServiceFuture;
+import com.microsoft.rest.ServiceResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AzureServiceFutureTests {
+    @Test
+    public void asyncPagesAreAllLoaded() throws Exception {
+        ListOperationCallback<Integer> callback = new ListOperationCallback<Integer>() {
+            @Override
+            public PagingBehavior progress(List<Integer> partial) {
+                load(partial);
+                return PagingBehavior.CONTINUE;
+            }
+
+            @Override
+            public void success() {
+            }
+
+            @Override
+            public void failure(Throwable t) {
+            }
+        };
+        ServiceFuture<List<Integer>> future = AzureServiceFuture.fromPageResponse(page(0), new Func1<String, Observable<ServiceResponse<Page<Integer>>>>() {
+            @Override
+            public Observable<ServiceResponse<Page<Integer>>> call(String nextPageLink) {
+                return page(Integer.parseInt(nextPageLink));
+            }
+        }, callback);
+        Assert.assertNotNull(future.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, callback.pageCount());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), callback.get());
+        Assert.assertFalse(future.isCancelled());
+    }
+
+    @Test
+    public void cancelStopsPaging() throws Exception {
+        final AtomicBoolean unsubscribed = new AtomicBoolean();
+        ServiceFuture<List<Integer>> future = AzureServiceFuture.fromPageResponse(page(0), new Func1<String, Observable<ServiceResponse<Page<Integer>>>>() {
+            @Override
+            public Observable<ServiceResponse<Page<Integer>>> call(String nextPageLink) {
+                return Observable.<ServiceResponse<Page<Integer>>>never().doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        unsubscribed.set(true);
+                    }
+                });
+            }
+        }, null);
+        Thread.sleep(200);
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(unsubscribed.get());
+    }
+
+    private static Observable<ServiceResponse<Page<Integer>>> page(final int number) {
+        Page<Integer> page = new Page<Integer>() {
+            @Override
+            public String nextPageLink() {
+                return number < 2 ? Integer.toString(number + 1) : null;
+            }
+
+            @Override
+            public List<Integer> items() {
+                return new ArrayList<>(Arrays.asList(number * 2, number * 2 + 1));
+            }
+        };
+        return Observable.just(new ServiceResponse<>(page, null)).delay(10, TimeUnit.MILLISECONDS, Schedulers.io());
+    }
+}
@@ -8,42 +8,75 @@ package com.microsoft.rest;
 
 import com.microsoft.azure.management.apigeneration.Beta;
 import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.admission.BulkheadHandler;
+import com.microsoft.rest.admission.PriorityHandler;
+import com.microsoft.rest.batch.BatchHandler;
+import com.microsoft.rest.cache.ResourceCache;
+import com.microsoft.rest.cache.ResourceCacheHandler;
+import com.microsoft.rest.context.RequestContextCallFactory;
+import com.microsoft.rest.context.RequestScopeCallAdapterFactory;
 import com.microsoft.rest.credentials.ServiceClientCredentials;
+import com.microsoft.rest.events.RuntimeEvents;
+import com.microsoft.rest.events.RuntimeEventsInterceptor;
+import com.microsoft.rest.interceptors.AsyncLoggingInterceptor;
 import com.microsoft.rest.interceptors.BaseUrlHandler;
+import com.microsoft.rest.interceptors.ClientHeadersInterceptor;
 import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
 import com.microsoft.rest.interceptors.LoggingInterceptor;
-import com.microsoft.rest.interceptors.RequestIdHeaderInterceptor;
 import com.microsoft.rest.interceptors.UserAgentInterceptor;
+import com.microsoft.rest.introspection.CallTracker;
+import com.microsoft.rest.introspection.ClientSnapshot;
+import com.microsoft.rest.introspection.Introspectable;
+import com.microsoft.rest.metrics.JmxMetricsRecorder;
+import com.microsoft.rest.metrics.MetricsInterceptor;
+import com.microsoft.rest.metrics.MetricsRecorder;
+import com.microsoft.rest.metrics.ResponseTimingInterceptor;
+import com.microsoft.rest.network.ConnectionHealthMonitor;
+import com.microsoft.rest.network.TlsSessionCache;
+import com.microsoft.rest.network.TunedSocketFactory;
 import com.microsoft.rest.protocol.Environment;
 import com.microsoft.rest.protocol.ResponseBuilder;
 import com.microsoft.rest.protocol.SerializerAdapter;
 import com.microsoft.rest.retry.RetryHandler;
 import com.microsoft.rest.retry.RetryStrategy;
+import com.microsoft.rest.template.RequestEngine;
+import com.microsoft.rest.tracing.SpanExporter;
+import com.microsoft.rest.tracing.TracingInterceptor;
 import okhttp3.Authenticator;
+import okhttp3.Call;
 import okhttp3.ConnectionPool;
+import okhttp3.ConnectionSpec;
+import okhttp3.Dispatcher;
 import okhttp3.Interceptor;
 import okhttp3.JavaNetCookieJar;
 import okhttp3.OkHttpClient;
 import okio.AsyncTimeout;
+import retrofit2.CallAdapter;
+import retrofit2.Converter;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
 
+import javax.net.SocketFactory;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.net.Proxy;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * An instance of this class stores the client information for making REST calls.
  */
-public final class RestClient {
+public final class RestClient implements Introspectable {
     /** The {@link okhttp3.OkHttpClient} object. */
     private final OkHttpClient httpClient;
     /** The {@link retrofit2.Retrofit} object. */
     private final Retrofit retrofit;
     /** The original builder for this rest client. */
     private final RestClient.Builder builder;
+    /** The engine executing request templates on the HTTP client. */
+    private final RequestEngine requestEngine;
 
     private RestClient(OkHttpClient httpClient,
                        Retrofit retrofit,
@@ -51,6 +84,23 @@ public final class RestClient {
         this.httpClient = httpClient;
         this.retrofit = retrofit;
         this.builder = builder;
+        this.requestEngine = new RequestEngine(callFactory(httpClient, builder),
+                retrofit.baseUrl(), builder.serializerAdapter, builder.asyncCalls);
+    }
+
+    /**
+     * Gets the factory of the calls of a client, checking them against their bulkhead
+     * scope, then admitting them by priority, before they reach the dispatcher.
+     */
+    private static Call.Factory callFactory(OkHttpClient httpClient, Builder builder) {
+        Call.Factory callFactory = httpClient;
+        if (builder.priorityHandler != null) {
+            callFactory = builder.priorityHandler.callFactory(callFactory, builder.customHeadersInterceptor);
+        }
+        if (builder.bulkheadHandler != null) {
+            callFactory = builder.bulkheadHandler.callFactory(callFactory, builder.customHeadersInterceptor);
+        }
+        return callFactory;
     }
 
     /**
@@ -88,6 +138,29 @@ public final class RestClient {
         return retrofit;
     }
 
+    /**
+     * @return the engine executing precompiled request templates on the HTTP client,
+     * without going through Retrofit
+     */
+    @Beta(SinceVersion.V1_2_0)
+    public RequestEngine requestEngine() {
+        return requestEngine;
+    }
+
+    /**
+     * Takes a snapshot of the state of the client: the calls queued and running in
+     * its dispatcher, its connection pool, and its calls in flight with their phase,
+     * the oldest first. A {@link com.microsoft.rest.introspection.JmxIntrospection}
+     * exposes it through JMX.
+     *
+     * @return a snapshot of the state of the client
+     */
+    @Beta(SinceVersion.V1_2_0)
+    @Override
+    public ClientSnapshot snapshot() {
+        return ClientSnapshot.of(httpClient, builder.callTracker);
+    }
+
     /**
      * @return the credentials attached to this REST client
      */
@@ -120,6 +193,20 @@ public final class RestClient {
         return new Builder(this);
     }
 
+    /**
+     * Create a new builder for a lightweight client derived from this one. The derived
+     * client shares the connection pool, the dispatcher, the cookie jar, the logging
+     * interceptor, the serializer adapter and the Retrofit converter and call adapter
+     * factories with this client. Only the base URL, the credentials and the custom
+     * headers can be changed.
+     *
+     * @return a builder for a derived RestClient
+     */
+    @Beta(SinceVersion.V1_2_0)
+    public RestClient.DerivedBuilder newDerivedBuilder() {
+        return new DerivedBuilder(this);
+    }
+
     /**
      * Closes the HTTP client and recycles the resources associated. The threads will
      * be recycled after 60 seconds of inactivity.
@@ -152,6 +239,8 @@ public final class RestClient {
      * The builder class for building a REST client.
      */
     public static class Builder {
+        /** The default per host limit of the OkHttp dispatcher. */
+        private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
         /** The dynamic base URL with variables wrapped in "{" and "}". */
         private String baseUrl;
         /** The builder to build an {@link OkHttpClient}. */
@@ -174,6 +263,30 @@ public final class RestClient {
         private LoggingInterceptor loggingInterceptor;
         /** The strategy used for retry failed requests. */
         private RetryStrategy retryStrategy;
+        /** The cache serving the resources read by ID. */
+        private ResourceCache resourceCache;
+        /** The handler combining GET requests into batch requests. */
+        private BatchHandler batchHandler;
+        /** The handler isolating the requests of different scopes. */
+        private BulkheadHandler bulkheadHandler;
+        /** The handler admitting requests by priority class. */
+        private PriorityHandler priorityHandler;
+        /** The interceptor tracing the calls. */
+        private TracingInterceptor tracingInterceptor;
+        /** The interceptor recording the metrics of the calls. */
+        private MetricsInterceptor metricsInterceptor;
+        /** The interceptor recording the timing of each response. */
+        private ResponseTimingInterceptor responseTimingInterceptor;
+        /** Whether the calls in flight are tracked. */
+        private boolean callTracking = true;
+        /** The tracker of the calls in flight of the built client. */
+        private CallTracker callTracker;
+        /** Whether Retrofit calls are enqueued instead of executed on the subscribing thread. */
+        private boolean asyncCalls = true;
+        /** The maximum idle connections in the connection pool. */
+        private int maxIdleConnections = 5;
+        /** The time idle connections are kept alive in the connection pool. */
+        private long keepAliveMillis = TimeUnit.MINUTES.toMillis(5);
 
         /**
          * Creates an instance of the builder with a base URL to the service.
@@ -182,6 +295,36 @@ public final class RestClient {
             this(new OkHttpClient.Builder(), new Retrofit.Builder());
         }
 
+        /**
+         * Creates a shallow copy of another builder without allocating any HTTP or
+         * Retrofit state. Only used for the state of derived clients.
+         *
+         * @param other the builder to copy from
+         */
+        private Builder(final Builder other) {
+            this.baseUrl = other.baseUrl;
+            this.credentials = other.credentials;
+            this.credentialsInterceptor = other.credentialsInterceptor;
+            this.customHeadersInterceptor = other.customHeadersInterceptor;
+            this.userAgent = other.userAgent;
+            this.serializerAdapter = other.serializerAdapter;
+            this.responseBuilderFactory = other.responseBuilderFactory;
+            this.loggingInterceptor = other.loggingInterceptor;
+            this.retryStrategy = other.retryStrategy;
+            this.maxIdleConnections = other.maxIdleConnections;
+            this.keepAliveMillis = other.keepAliveMillis;
+            this.resourceCache = other.resourceCache;
+            this.batchHandler = other.batchHandler;
+            this.bulkheadHandler = other.bulkheadHandler;
+            this.priorityHandler = other.priorityHandler;
+            this.tracingInterceptor = other.tracingInterceptor;
+            this.metricsInterceptor = other.metricsInterceptor;
+            this.responseTimingInterceptor = other.responseTimingInterceptor;
+            this.callTracking = other.callTracking;
+            this.callTracker = other.callTracker;
+            this.asyncCalls = other.asyncCalls;
+        }
+
         private Builder(final RestClient restClient) {
             this(restClient.httpClient.newBuilder(), new Retrofit.Builder());
             this.httpClientBuilder.interceptors().clear();
@@ -189,29 +332,55 @@ public final class RestClient {
             this.baseUrl = restClient.retrofit.baseUrl().toString();
             this.responseBuilderFactory = restClient.builder.responseBuilderFactory;
             this.serializerAdapter = restClient.builder.serializerAdapter;
+            this.asyncCalls = restClient.builder.asyncCalls;
             if (restClient.builder.credentials != null) {
                 this.credentials = restClient.builder.credentials;
             }
             if (restClient.retrofit.callbackExecutor() != null) {
                 this.withCallbackExecutor(restClient.retrofit.callbackExecutor());
             }
+            this.callTracking = false;
             for (Interceptor interceptor : restClient.httpClient.interceptors()) {
-                if (interceptor instanceof UserAgentInterceptor) {
-                    this.userAgent = ((UserAgentInterceptor) interceptor).userAgent();
+                if (interceptor instanceof ClientHeadersInterceptor) {
+                    ClientHeadersInterceptor clientHeaders = (ClientHeadersInterceptor) interceptor;
+                    this.userAgent = clientHeaders.userAgentInterceptor().userAgent();
+                    this.customHeadersInterceptor = new CustomHeadersInterceptor();
+                    this.customHeadersInterceptor.addHeaderMultimap(clientHeaders.customHeadersInterceptor().headers());
                 } else if (interceptor instanceof RetryHandler) {
                     this.retryStrategy = ((RetryHandler) interceptor).strategy();
-                } else if (interceptor instanceof CustomHeadersInterceptor) {
-                    this.customHeadersInterceptor = new CustomHeadersInterceptor();
-                    this.customHeadersInterceptor.addHeaderMultimap(((CustomHeadersInterceptor) interceptor).headers());
-                } else if (interceptor != restClient.builder.credentialsInterceptor) {
+                } else if (interceptor instanceof ResourceCacheHandler) {
+                    this.resourceCache = ((ResourceCacheHandler) interceptor).cache();
+                } else if (interceptor instanceof BatchHandler) {
+                    this.batchHandler = (BatchHandler) interceptor;
+                } else if (interceptor instanceof BulkheadHandler) {
+                    this.bulkheadHandler = (BulkheadHandler) interceptor;
+                } else if (interceptor instanceof PriorityHandler) {
+                    this.priorityHandler = (PriorityHandler) interceptor;
+                } else if (interceptor instanceof TracingInterceptor) {
+                    this.tracingInterceptor = (TracingInterceptor) interceptor;
+                } else if (interceptor instanceof MetricsInterceptor) {
+                    this.metricsInterceptor = (MetricsInterceptor) interceptor;
+                } else if (interceptor instanceof ResponseTimingInterceptor) {
+                    this.responseTimingInterceptor = (ResponseTimingInterceptor) interceptor;
+                } else if (interceptor instanceof CallTracker) {
+                    this.callTracking = true;
+                } else if (interceptor != restClient.builder.credentialsInterceptor
+                        && !(interceptor instanceof RuntimeEventsInterceptor)) {
                     this.withInterceptor(interceptor);
                 }
             }
             for (Interceptor interceptor : restClient.httpClient.networkInterceptors()) {
                 if (interceptor instanceof LoggingInterceptor) {
                     LoggingInterceptor old = (LoggingInterceptor) interceptor;
-                    this.loggingInterceptor = new LoggingInterceptor(old.logLevel());
-                } else {
+                    if (old instanceof AsyncLoggingInterceptor) {
+                        this.loggingInterceptor = ((AsyncLoggingInterceptor) old).copy();
+                    } else {
+                        this.loggingInterceptor = new LoggingInterceptor(old.logLevel());
+                    }
+                } else if ((tracingInterceptor == null || interceptor != tracingInterceptor.networkInterceptor())
+                        && (metricsInterceptor == null || interceptor != metricsInterceptor.networkInterceptor())
+                        && (responseTimingInterceptor == null || interceptor != responseTimingInterceptor.networkInterceptor())
+                        && (restClient.builder.callTracker == null || interceptor != restClient.builder.callTracker.networkInterceptor())) {
                     this.withNetworkInterceptor(interceptor);
                 }
             }
@@ -237,7 +406,6 @@ public final class RestClient {
             this.httpClientBuilder = httpClientBuilder
                     .cookieJar(new JavaNetCookieJar(cookieManager))
                     .readTimeout(60, TimeUnit.SECONDS)
-                    .addInterceptor(new RequestIdHeaderInterceptor())
                     .addInterceptor(new BaseUrlHandler());
             this.retrofitBuilder = retrofitBuilder;
             this.loggingInterceptor = new LoggingInterceptor(LogLevel.NONE);
@@ -327,6 +495,22 @@ public final class RestClient {
             return this;
         }
 
+        /**
+         * Sets the interceptor logging the HTTP traffic, e.g. an {@link AsyncLoggingInterceptor}.
+         * The log level of the interceptor is kept.
+         *
+         * @param loggingInterceptor the logging interceptor.
+         * @return the builder itself for chaining.
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withLoggingInterceptor(LoggingInterceptor loggingInterceptor) {
+            if (loggingInterceptor == null) {
+                throw new NullPointerException("loggingInterceptor == null");
+            }
+            this.loggingInterceptor = loggingInterceptor;
+            return this;
+        }
+
         /**
          * Add an interceptor the Http client pipeline.
          *
@@ -386,7 +570,25 @@ public final class RestClient {
          * @return the builder itself for chaining
          */
         public Builder withMaxIdleConnections(int maxIdleConnections) {
-            httpClientBuilder.connectionPool(new ConnectionPool(maxIdleConnections, 5, TimeUnit.MINUTES));
+            this.maxIdleConnections = maxIdleConnections;
+            httpClientBuilder.connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS));
+            return this;
+        }
+
+        /**
+         * Set how long idle connections are kept alive in the connection pool. Default
+         * is 5 minutes. Use a value below the idle timeout of the load balancers on the
+         * way, e.g. 4 minutes for Azure Load Balancer, so that the pool retires
+         * connections before they are silently dropped.
+         *
+         * @param keepAlive the keep alive duration
+         * @param unit the time unit of the keep alive duration
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withConnectionKeepAlive(long keepAlive, TimeUnit unit) {
+            this.keepAliveMillis = unit.toMillis(keepAlive);
+            httpClientBuilder.connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS));
             return this;
         }
 
@@ -423,6 +625,190 @@ public final class RestClient {
             return this;
         }
 
+        /**
+         * Sets the socket factory for the HTTP client. Use a {@link TunedSocketFactory}
+         * to set socket options like TCP_NODELAY, SO_KEEPALIVE and the buffer sizes.
+         *
+         * @param socketFactory the socket factory to use
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withSocketFactory(SocketFactory socketFactory) {
+            httpClientBuilder.socketFactory(socketFactory);
+            return this;
+        }
+
+        /**
+         * Sets the TLS versions and cipher suites the HTTP client can use.
+         *
+         * @param connectionSpecs the connection specs, in order of preference
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withConnectionSpecs(ConnectionSpec... connectionSpecs) {
+            httpClientBuilder.connectionSpecs(Arrays.asList(connectionSpecs));
+            return this;
+        }
+
+        /**
+         * Sets the TLS session cache for the HTTP client. Pass the same cache, or
+         * {@link TlsSessionCache#shared()}, to several clients to let them resume each
+         * other's TLS sessions.
+         *
+         * @param tlsSessionCache the TLS session cache to use
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withTlsSessionCache(TlsSessionCache tlsSessionCache) {
+            httpClientBuilder.sslSocketFactory(tlsSessionCache.sslSocketFactory(), tlsSessionCache.trustManager());
+            httpClientBuilder.addNetworkInterceptor(tlsSessionCache.networkInterceptor());
+            return this;
+        }
+
+        /**
+         * Sets the monitor managing the health of pooled connections and ejecting slow
+         * remote addresses. A monitor can be shared by several clients.
+         *
+         * @param monitor the connection health monitor to use
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withConnectionHealthMonitor(ConnectionHealthMonitor monitor) {
+            httpClientBuilder.dns(monitor.dns());
+            httpClientBuilder.addNetworkInterceptor(monitor.networkInterceptor());
+            return this;
+        }
+
+        /**
+         * Traces the calls of the client with W3C trace context propagation, exporting
+         * the timed spans of sampled traces.
+         *
+         * @param exporter the exporter of the spans
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withTracing(SpanExporter exporter) {
+            this.tracingInterceptor = new TracingInterceptor(exporter);
+            return this;
+        }
+
+        /**
+         * Records the metrics of the calls of the client: latencies, retries, bytes,
+         * calls in progress, deserialization and token acquisition times.
+         *
+         * @param recorder the recorder of the metrics, e.g. a {@link JmxMetricsRecorder}
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withMetrics(MetricsRecorder recorder) {
+            this.metricsInterceptor = new MetricsInterceptor(recorder);
+            return this;
+        }
+
+        /**
+         * Sets whether to record the timing of each call, broken down into queueing,
+         * token acquisition, network, retry back-off, body read and deserialization,
+         * with the attempt count, connection reuse and response size. The timing is
+         * found on the {@link ServiceResponse} of the call.
+         *
+         * @param responseTiming true to record the timing of each response
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withResponseTiming(boolean responseTiming) {
+            this.responseTimingInterceptor = responseTiming ? new ResponseTimingInterceptor() : null;
+            return this;
+        }
+
+        /**
+         * Sets whether to track the calls in flight, with their phase and age, for
+         * {@link RestClient#snapshot()}. Calls are tracked by default.
+         *
+         * @param callTracking false not to track the calls in flight
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withCallTracking(boolean callTracking) {
+            this.callTracking = callTracking;
+            return this;
+        }
+
+        /**
+         * Sets the cache serving the resources read by their ARM resource ID. The cache
+         * can be shared by the clients of several services.
+         *
+         * @param resourceCache the resource cache to use
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withResourceCache(ResourceCache resourceCache) {
+            this.resourceCache = resourceCache;
+            return this;
+        }
+
+        /**
+         * Sets the handler combining the GET requests issued within a short window into
+         * ARM batch requests. Each request of a batch is checked against its bulkhead
+         * scope, while the batch is admitted and retried as a whole.
+         *
+         * @param batchHandler the batch handler to use
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withBatchHandler(BatchHandler batchHandler) {
+            this.batchHandler = batchHandler;
+            return this;
+        }
+
+        /**
+         * Sets the handler limiting the requests in flight per scope, like a
+         * subscription or a tenant. The calls are checked against their scope when
+         * they are executed or enqueued, before they wait for a priority slot, and an
+         * enqueued call waiting for a slot of its scope holds no thread.
+         *
+         * @param bulkheadHandler the bulkhead handler to use
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withBulkheadHandler(BulkheadHandler bulkheadHandler) {
+            this.bulkheadHandler = bulkheadHandler;
+            return this;
+        }
+
+        /**
+         * Sets the handler admitting requests by priority class. The priority of a
+         * request is read from its {@code x-ms-request-priority} header, which can be
+         * set per call, as a header override of its context, or as a custom header, e.g.
+         * on a client derived with {@link RestClient#newDerivedBuilder()}; the header is
+         * never sent.
+         * Share the handler between clients sharing a dispatcher. The calls are admitted
+         * before they are enqueued to the dispatcher, whose limits are raised to the
+         * limit of the handler if they are lower.
+         *
+         * @param priorityHandler the priority handler to use
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withPriorityHandler(PriorityHandler priorityHandler) {
+            this.priorityHandler = priorityHandler;
+            return this;
+        }
+
+        /**
+         * Sets whether the Observables returned by Retrofit services run their calls
+         * asynchronously. Asynchronous calls are enqueued to the dispatcher of the HTTP
+         * client and hold no thread while in flight. Synchronous calls block the
+         * subscribing thread. Default is true.
+         *
+         * @param asyncCalls true to enqueue calls, false to execute them on the subscribing thread
+         * @return the builder itself for chaining
+         */
+        @Beta(SinceVersion.V1_2_0)
+        public Builder withAsyncCalls(boolean asyncCalls) {
+            this.asyncCalls = asyncCalls;
+            return this;
+        }
+
         /**
          * Adds a retry strategy to the client.
          * @param strategy the retry strategy to add
@@ -433,6 +819,20 @@ public final class RestClient {
             return this;
         }
 
+        /**
+         * Wraps the interceptor applying the credentials to time the token
+         * acquisition, when metrics or response timings are recorded.
+         */
+        private Interceptor timeTokenAcquisition(Interceptor credentialsInterceptor) {
+            if (metricsInterceptor != null) {
+                credentialsInterceptor = metricsInterceptor.timeTokenAcquisition(credentialsInterceptor);
+            }
+            if (responseTimingInterceptor != null) {
+                credentialsInterceptor = responseTimingInterceptor.timeTokenAcquisition(credentialsInterceptor);
+            }
+            return credentialsInterceptor;
+        }
+
         /**
          * Build a RestClient with all the current configurations.
          *
@@ -458,9 +858,30 @@ public final class RestClient {
                 this.credentials.applyCredentialsFilter(httpClientBuilder);
                 // store the interceptor
                 if (httpClientBuilder.interceptors().size() > interceptorCount) {
-                    credentialsInterceptor = httpClientBuilder.interceptors().get(interceptorCount);
+                    credentialsInterceptor = timeTokenAcquisition(httpClientBuilder.interceptors().get(interceptorCount));
+                    httpClientBuilder.interceptors().set(interceptorCount, credentialsInterceptor);
                 }
             }
+            // measure the calls as a whole, before anything else
+            if (responseTimingInterceptor != null) {
+                httpClientBuilder.interceptors().add(0, responseTimingInterceptor);
+                httpClientBuilder.addNetworkInterceptor(responseTimingInterceptor.networkInterceptor());
+            }
+            if (metricsInterceptor != null) {
+                httpClientBuilder.interceptors().add(0, metricsInterceptor);
+                httpClientBuilder.addNetworkInterceptor(metricsInterceptor.networkInterceptor());
+            }
+            // report the calls to a profiler listening to the runtime
+            if (RuntimeEvents.listener() != null) {
+                httpClientBuilder.interceptors().add(0, new RuntimeEventsInterceptor());
+            }
+            // a call is in flight from the moment it reaches the interceptors
+            callTracker = null;
+            if (callTracking) {
+                callTracker = new CallTracker();
+                httpClientBuilder.interceptors().add(0, callTracker);
+                httpClientBuilder.addNetworkInterceptor(callTracker.networkInterceptor());
+            }
 
             RetryHandler retryHandler;
             if (retryStrategy == null) {
@@ -468,21 +889,211 @@ public final class RestClient {
             } else {
                 retryHandler = new RetryHandler(retryStrategy);
             }
+            // the request ID, user agent and custom headers are set in a single rebuild
+            httpClientBuilder.addInterceptor(new ClientHeadersInterceptor(userAgentInterceptor, customHeadersInterceptor));
+            // trace the whole call, cache hits, admission and retries included
+            if (tracingInterceptor != null) {
+                httpClientBuilder.addInterceptor(tracingInterceptor);
+                httpClientBuilder.addNetworkInterceptor(tracingInterceptor.networkInterceptor());
+            }
+            // serve cached resources before anything is sent
+            ResourceCacheHandler resourceCacheHandler = null;
+            if (resourceCache != null) {
+                resourceCacheHandler = new ResourceCacheHandler(resourceCache);
+                httpClientBuilder.addInterceptor(resourceCacheHandler);
+            }
+            // the calls of the client are checked against their scope before they are
+            // enqueued; the bulkhead handler only checks here the calls created on the
+            // HTTP client directly, each request, batched or not
+            if (bulkheadHandler != null) {
+                httpClientBuilder.addInterceptor(bulkheadHandler);
+            }
+            if (batchHandler != null) {
+                httpClientBuilder.addInterceptor(batchHandler);
+            }
+            // the calls of the client are admitted by priority before they are enqueued;
+            // the priority handler only admits here, once before the retries, the calls
+            // created on the HTTP client directly
+            if (priorityHandler != null) {
+                httpClientBuilder.addInterceptor(priorityHandler);
+            }
             OkHttpClient httpClient = httpClientBuilder
-                    .addInterceptor(userAgentInterceptor)
-                    .addInterceptor(customHeadersInterceptor)
                     .addInterceptor(retryHandler)
                     .addNetworkInterceptor(loggingInterceptor)
                     .build();
+            if (resourceCacheHandler != null) {
+                resourceCacheHandler.withHttpClient(httpClient);
+            }
 
+            CallAdapter.Factory callAdapterFactory;
+            if (asyncCalls) {
+                callAdapterFactory = RxJavaAsyncCallAdapterFactory.create();
+                // enqueued calls are subject to the per host limit of the dispatcher, which
+                // executed calls never were: lift the default of 5 for the single ARM host
+                Dispatcher dispatcher = httpClient.dispatcher();
+                if (dispatcher.getMaxRequestsPerHost() == DEFAULT_MAX_REQUESTS_PER_HOST) {
+                    dispatcher.setMaxRequestsPerHost(dispatcher.getMaxRequests());
+                }
+            } else {
+                callAdapterFactory = RxJavaCallAdapterFactory.create();
+            }
+            if (priorityHandler != null) {
+                // admitted calls must not wait again in the first-in first-out queue of the dispatcher
+                Dispatcher dispatcher = httpClient.dispatcher();
+                if (dispatcher.getMaxRequests() < priorityHandler.maxConcurrentRequests()) {
+                    dispatcher.setMaxRequests(priorityHandler.maxConcurrentRequests());
+                }
+                if (dispatcher.getMaxRequestsPerHost() < priorityHandler.maxConcurrentRequests()) {
+                    dispatcher.setMaxRequestsPerHost(priorityHandler.maxConcurrentRequests());
+                }
+            }
             return new RestClient(httpClient,
                     retrofitBuilder
                             .baseUrl(baseUrl)
-                            .client(httpClient)
+                            .callFactory(new RequestContextCallFactory(callFactory(httpClient, this)))
                             .addConverterFactory(serializerAdapter.converterFactory())
-                            .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
+                            .addCallAdapterFactory(RequestScopeCallAdapterFactory.create())
+                            .addCallAdapterFactory(callAdapterFactory)
                             .build(),
                     this);
         }
     }
+
+    /**
+     * The builder class for building a lightweight REST client derived from an
+     * existing one. See {@link RestClient#newDerivedBuilder()}.
+     */
+    @Beta(SinceVersion.V1_2_0)
+    public static final class DerivedBuilder {
+        /** The client to derive from. */
+        private final RestClient parent;
+        /** The base URL for the derived client. */
+        private String baseUrl;
+        /** The credentials for the derived client. */
+        private ServiceClientCredentials credentials;
+        /** The custom headers for the derived client. */
+        private final CustomHeadersInterceptor customHeadersInterceptor;
+
+        private DerivedBuilder(RestClient parent) {
+            this.parent = parent;
+            this.baseUrl = parent.retrofit.baseUrl().toString();
+            this.credentials = parent.builder.credentials;
+            this.customHeadersInterceptor = new CustomHeadersInterceptor()
+                    .addHeaderMultimap(parent.builder.customHeadersInterceptor.headers());
+        }
+
+        /**
+         * Sets the base URL of the derived client.
+         *
+         * @param baseUrl the base URL to use
+         * @return the builder itself for chaining
+         */
+        public DerivedBuilder withBaseUrl(String baseUrl) {
+            if (baseUrl == null) {
+                throw new NullPointerException("baseUrl == null");
+            }
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * Sets the credentials of the derived client.
+         *
+         * @param credentials the credentials object
+         * @return the builder itself for chaining
+         */
+        public DerivedBuilder withCredentials(ServiceClientCredentials credentials) {
+            if (credentials == null) {
+                throw new NullPointerException("credentials == null");
+            }
+            this.credentials = credentials;
+            return this;
+        }
+
+        /**
+         * Sets a custom header on the derived client. A header with the same name
+         * inherited from the parent client gets replaced.
+         *
+         * @param name the name of the header
+         * @param value the value of the header
+         * @return the builder itself for chaining
+         */
+        public DerivedBuilder withHeader(String name, String value) {
+            customHeadersInterceptor.replaceHeader(name, value);
+            return this;
+        }
+
+        /**
+         * Build the derived RestClient.
+         *
+         * @return a {@link RestClient} sharing its resources with the parent client
+         */
+        public RestClient build() {
+            Builder parentBuilder = parent.builder;
+            Builder builder = new Builder(parentBuilder);
+            builder.baseUrl = baseUrl;
+            builder.credentials = credentials;
+            builder.customHeadersInterceptor = customHeadersInterceptor;
+
+            // OkHttpClient.newBuilder() keeps the connection pool, dispatcher, cookie jar
+            // and SSL socket factory, so only the interceptor list has to be touched
+            OkHttpClient.Builder httpClientBuilder = parent.httpClient.newBuilder();
+            List<Interceptor> interceptors = httpClientBuilder.interceptors();
+            int credentialsIndex = -1;
+            int clientHeadersIndex = interceptors.size();
+            ResourceCacheHandler resourceCacheHandler = null;
+            for (int i = 0; i < interceptors.size(); i++) {
+                Interceptor interceptor = interceptors.get(i);
+                if (interceptor == parentBuilder.credentialsInterceptor) {
+                    credentialsIndex = i;
+                } else if (interceptor instanceof ClientHeadersInterceptor) {
+                    UserAgentInterceptor userAgentInterceptor = ((ClientHeadersInterceptor) interceptor).userAgentInterceptor();
+                    interceptors.set(i, new ClientHeadersInterceptor(userAgentInterceptor, customHeadersInterceptor));
+                    clientHeadersIndex = i;
+                } else if (interceptor instanceof ResourceCacheHandler) {
+                    // stale responses are revalidated with the credentials of the derived client
+                    resourceCacheHandler = new ResourceCacheHandler(((ResourceCacheHandler) interceptor).cache());
+                    interceptors.set(i, resourceCacheHandler);
+                }
+            }
+            builder.credentialsInterceptor = null;
+            if (credentials != null) {
+                int interceptorCount = interceptors.size();
+                credentials.applyCredentialsFilter(httpClientBuilder);
+                if (interceptors.size() > interceptorCount) {
+                    builder.credentialsInterceptor = builder.timeTokenAcquisition(interceptors.remove(interceptorCount));
+                }
+            }
+            // keep the credentials at the same position as RestClient.Builder.build() puts them
+            if (credentialsIndex >= 0 && builder.credentialsInterceptor != null) {
+                interceptors.set(credentialsIndex, builder.credentialsInterceptor);
+            } else if (credentialsIndex >= 0) {
+                interceptors.remove(credentialsIndex);
+            } else if (builder.credentialsInterceptor != null) {
+                interceptors.add(clientHeadersIndex, builder.credentialsInterceptor);
+            }
+            OkHttpClient httpClient = httpClientBuilder.build();
+            if (resourceCacheHandler != null) {
+                resourceCacheHandler.withHttpClient(httpClient);
+            }
+
+            // Reuse the converter and call adapter factories, leaving out the ones
+            // Retrofit adds by itself
+            Retrofit.Builder retrofitBuilder = new Retrofit.Builder()
+                    .baseUrl(baseUrl)
+                    .callFactory(new RequestContextCallFactory(callFactory(httpClient, builder)));
+            List<Converter.Factory> converterFactories = parent.retrofit.converterFactories();
+            for (Converter.Factory factory : converterFactories.subList(1, converterFactories.size())) {
+                retrofitBuilder.addConverterFactory(factory);
+            }
+            List<CallAdapter.Factory> adapterFactories = parent.retrofit.callAdapterFactories();
+            for (CallAdapter.Factory factory : adapterFactories.subList(0, adapterFactories.size() - 1)) {
+                retrofitBuilder.addCallAdapterFactory(factory);
+            }
+            if (parent.retrofit.callbackExecutor() != null) {
+                retrofitBuilder.callbackExecutor(parent.retrofit.callbackExecutor());
+            }
+            return new RestClient(httpClient, retrofitBuilder.build(), builder);
+        }
+    }
 }
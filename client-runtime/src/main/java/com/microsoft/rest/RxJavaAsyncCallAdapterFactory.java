@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava.HttpException;
+import retrofit2.adapter.rxjava.Result;
+import rx.Completable;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * A call adapter factory for RxJava {@link Observable}, {@link Single} and
+ * {@link Completable} return types that runs the calls asynchronously with
+ * {@link Call#enqueue(Callback)}. Unlike {@code RxJavaCallAdapterFactory}, no thread
+ * is blocked while a call is in flight, and unsubscribing cancels the call.
+ *
+ * The results are delivered on a scheduler, {@link Schedulers#io()} by default, so
+ * that the thread of the HTTP dispatcher is released as soon as the response headers
+ * are received, even if the subscriber blocks.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RxJavaAsyncCallAdapterFactory extends CallAdapter.Factory {
+    /** The scheduler to deliver the results on. */
+    private final Scheduler scheduler;
+
+    private RxJavaAsyncCallAdapterFactory(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return a factory delivering the results on {@link Schedulers#io()}
+     */
+    public static RxJavaAsyncCallAdapterFactory create() {
+        return new RxJavaAsyncCallAdapterFactory(Schedulers.io());
+    }
+
+    /**
+     * Creates a factory delivering the results on a scheduler.
+     *
+     * @param scheduler the scheduler to deliver the results on
+     * @return the call adapter factory
+     */
+    public static RxJavaAsyncCallAdapterFactory createWithScheduler(Scheduler scheduler) {
+        if (scheduler == null) {
+            throw new NullPointerException("scheduler == null");
+        }
+        return new RxJavaAsyncCallAdapterFactory(scheduler);
+    }
+
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        Class<?> rawType = getRawType(returnType);
+        boolean isSingle = rawType == Single.class;
+        boolean isCompletable = rawType == Completable.class;
+        if (rawType != Observable.class && !isSingle && !isCompletable) {
+            return null;
+        }
+        if (isCompletable) {
+            return new AsyncCallAdapter(Void.class, Mode.BODY, Shape.COMPLETABLE, scheduler);
+        }
+        Shape shape = isSingle ? Shape.SINGLE : Shape.OBSERVABLE;
+        String name = isSingle ? "Single" : "Observable";
+        if (!(returnType instanceof ParameterizedType)) {
+            throw new IllegalStateException(name + " return type must be parameterized"
+                    + " as " + name + "<Foo> or " + name + "<? extends Foo>");
+        }
+        Type observableType = getParameterUpperBound(0, (ParameterizedType) returnType);
+        Class<?> rawObservableType = getRawType(observableType);
+        if (rawObservableType == Response.class || rawObservableType == Result.class) {
+            if (!(observableType instanceof ParameterizedType)) {
+                String inner = rawObservableType == Response.class ? "Response" : "Result";
+                throw new IllegalStateException(inner + " must be parameterized"
+                        + " as " + inner + "<Foo> or " + inner + "<? extends Foo>");
+            }
+            Type responseType = getParameterUpperBound(0, (ParameterizedType) observableType);
+            Mode mode = rawObservableType == Response.class ? Mode.RESPONSE : Mode.RESULT;
+            return new AsyncCallAdapter(responseType, mode, shape, scheduler);
+        }
+        return new AsyncCallAdapter(observableType, Mode.BODY, shape, scheduler);
+    }
+
+    /**
+     * What the adapted call emits.
+     */
+    private enum Mode {
+        /** The {@link Response}. */
+        RESPONSE,
+        /** The {@link Result}, wrapping the response or the failure. */
+        RESULT,
+        /** The body, or a {@link HttpException} for an unsuccessful response. */
+        BODY
+    }
+
+    /**
+     * The reactive type the adapted call is returned as.
+     */
+    private enum Shape {
+        OBSERVABLE,
+        SINGLE,
+        COMPLETABLE
+    }
+
+    /**
+     * Adapts a call by enqueuing it when subscribed to.
+     */
+    private static final class AsyncCallAdapter implements CallAdapter<Object> {
+        private final Type responseType;
+        private final Mode mode;
+        private final Shape shape;
+        private final Scheduler scheduler;
+
+        private AsyncCallAdapter(Type responseType, Mode mode, Shape shape, Scheduler scheduler) {
+            this.responseType = responseType;
+            this.mode = mode;
+            this.shape = shape;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public Type responseType() {
+            return responseType;
+        }
+
+        @Override
+        public <R> Object adapt(final Call<R> call) {
+            Single<Response<R>> responses = Single.create(new Single.OnSubscribe<Response<R>>() {
+                @Override
+                public void call(final SingleSubscriber<? super Response<R>> subscriber) {
+                    // a call can only be used once, so each subscription gets its own
+                    final Call<R> clone = call.clone();
+                    subscriber.add(Subscriptions.create(new Action0() {
+                        @Override
+                        public void call() {
+                            clone.cancel();
+                        }
+                    }));
+                    clone.enqueue(new Callback<R>() {
+                        @Override
+                        public void onResponse(Call<R> c, Response<R> response) {
+                            if (!subscriber.isUnsubscribed()) {
+                                subscriber.onSuccess(response);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Call<R> c, Throwable t) {
+                            Exceptions.throwIfFatal(t);
+                            if (!subscriber.isUnsubscribed()) {
+                                subscriber.onError(t);
+                            }
+                        }
+                    });
+                }
+            }).observeOn(scheduler);
+
+            Single<?> result;
+            switch (mode) {
+                case RESPONSE:
+                    result = responses;
+                    break;
+                case RESULT:
+                    result = responses.map(new Func1<Response<R>, Result<R>>() {
+                        @Override
+                        public Result<R> call(Response<R> response) {
+                            return Result.response(response);
+                        }
+                    }).onErrorReturn(new Func1<Throwable, Result<R>>() {
+                        @Override
+                        public Result<R> call(Throwable throwable) {
+                            return Result.error(throwable);
+                        }
+                    });
+                    break;
+                default:
+                    result = responses.flatMap(new Func1<Response<R>, Single<R>>() {
+                        @Override
+                        public Single<R> call(Response<R> response) {
+                            if (response.isSuccessful()) {
+                                return Single.just(response.body());
+                            }
+                            return Single.error(new HttpException(response));
+                        }
+                    });
+                    break;
+            }
+            switch (shape) {
+                case SINGLE:
+                    return result;
+                case COMPLETABLE:
+                    return result.toCompletable();
+                default:
+                    return result.toObservable();
+            }
+        }
+    }
+}
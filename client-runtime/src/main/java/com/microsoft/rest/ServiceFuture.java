@@ -8,8 +8,9 @@ package com.microsoft.rest;
 
 import com.google.common.util.concurrent.AbstractFuture;
 import rx.Observable;
+import rx.Subscriber;
 import rx.Subscription;
-import rx.functions.Action1;
+import rx.functions.Func1;
 
 /**
  * An instance of this class provides access to the underlying REST call invocation.
@@ -22,7 +23,7 @@ public class ServiceFuture<T> extends AbstractFuture<T> {
     /**
      * The Retrofit method invocation.
      */
-    private Subscription subscription;
+    private volatile Subscription subscription;
 
     protected ServiceFuture() {
     }
@@ -35,21 +36,7 @@ public class ServiceFuture<T> extends AbstractFuture<T> {
      * @return the created ServiceCall
      */
     public static <T> ServiceFuture<T> fromResponse(final Observable<ServiceResponse<T>> observable) {
-        final ServiceFuture<T> serviceFuture = new ServiceFuture<>();
-        serviceFuture.subscription = observable
-            .last()
-            .subscribe(new Action1<ServiceResponse<T>>() {
-                @Override
-                public void call(ServiceResponse<T> t) {
-                    serviceFuture.set(t.body());
-                }
-            }, new Action1<Throwable>() {
-                @Override
-                public void call(Throwable throwable) {
-                    serviceFuture.setException(throwable);
-                }
-            });
-        return serviceFuture;
+        return fromResponse(observable, null);
     }
 
     /**
@@ -62,25 +49,12 @@ public class ServiceFuture<T> extends AbstractFuture<T> {
      */
     public static <T> ServiceFuture<T> fromResponse(final Observable<ServiceResponse<T>> observable, final ServiceCallback<T> callback) {
         final ServiceFuture<T> serviceFuture = new ServiceFuture<>();
-        serviceFuture.subscription = observable
-                .last()
-                .subscribe(new Action1<ServiceResponse<T>>() {
-                    @Override
-                    public void call(ServiceResponse<T> t) {
-                        if (callback != null) {
-                            callback.success(t.body());
-                        }
-                        serviceFuture.set(t.body());
-                    }
-                }, new Action1<Throwable>() {
-                    @Override
-                    public void call(Throwable throwable) {
-                        if (callback != null) {
-                            callback.failure(throwable);
-                        }
-                        serviceFuture.setException(throwable);
-                    }
-                });
+        serviceFuture.subscribe(observable.last(), new Func1<ServiceResponse<T>, T>() {
+            @Override
+            public T call(ServiceResponse<T> t) {
+                return t.body();
+            }
+        }, callback);
         return serviceFuture;
     }
 
@@ -94,25 +68,12 @@ public class ServiceFuture<T> extends AbstractFuture<T> {
      */
     public static <T> ServiceFuture<T> fromBody(final Observable<T> observable, final ServiceCallback<T> callback) {
         final ServiceFuture<T> serviceFuture = new ServiceFuture<>();
-        serviceFuture.subscription = observable
-                .last()
-                .subscribe(new Action1<T>() {
-                    @Override
-                    public void call(T t) {
-                        if (callback != null) {
-                            callback.success(t);
-                        }
-                        serviceFuture.set(t);
-                    }
-                }, new Action1<Throwable>() {
-                    @Override
-                    public void call(Throwable throwable) {
-                        if (callback != null) {
-                            callback.failure(throwable);
-                        }
-                        serviceFuture.setException(throwable);
-                    }
-                });
+        serviceFuture.subscribe(observable.last(), new Func1<T, T>() {
+            @Override
+            public T call(T t) {
+                return t;
+            }
+        }, callback);
         return serviceFuture;
     }
 
@@ -127,26 +88,46 @@ public class ServiceFuture<T> extends AbstractFuture<T> {
      */
     public static <T, V> ServiceFuture<T> fromHeaderResponse(final Observable<ServiceResponseWithHeaders<T, V>> observable, final ServiceCallback<T> callback) {
         final ServiceFuture<T> serviceFuture = new ServiceFuture<>();
-        serviceFuture.subscription = observable
-            .last()
-            .subscribe(new Action1<ServiceResponse<T>>() {
-                @Override
-                public void call(ServiceResponse<T> t) {
-                    if (callback != null) {
-                        callback.success(t.body());
-                    }
-                    serviceFuture.set(t.body());
+        serviceFuture.subscribe(observable.last(), new Func1<ServiceResponseWithHeaders<T, V>, T>() {
+            @Override
+            public T call(ServiceResponseWithHeaders<T, V> t) {
+                return t.body();
+            }
+        }, callback);
+        return serviceFuture;
+    }
+
+    /**
+     * Subscribes to the observable completing this future. The subscription is set
+     * before subscribing, so that the future can be cancelled while a synchronous
+     * call is still running on the subscribing thread.
+     */
+    private <R> void subscribe(Observable<R> observable, final Func1<R, T> mapper, final ServiceCallback<T> callback) {
+        Subscriber<R> subscriber = new Subscriber<R>() {
+            @Override
+            public void onNext(R r) {
+                T t = mapper.call(r);
+                if (callback != null) {
+                    callback.success(t);
                 }
-            }, new Action1<Throwable>() {
-                @Override
-                public void call(Throwable throwable) {
-                    if (callback != null) {
-                        callback.failure(throwable);
-                    }
-                    serviceFuture.setException(throwable);
+                set(t);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (callback != null) {
+                    callback.failure(throwable);
                 }
-            });
-        return serviceFuture;
+                setException(throwable);
+            }
+
+            @Override
+            public void onCompleted() {
+                // the result is set on the only item
+            }
+        };
+        setSubscription(subscriber);
+        observable.subscribe(subscriber);
     }
 
     /**
@@ -158,6 +139,10 @@ public class ServiceFuture<T> extends AbstractFuture<T> {
 
     protected void setSubscription(Subscription subscription) {
         this.subscription = subscription;
+        // the future may have been cancelled while the previous subscription was replaced
+        if (isCancelled()) {
+            subscription.unsubscribe();
+        }
     }
 
     /**
@@ -173,12 +158,12 @@ public class ServiceFuture<T> extends AbstractFuture<T> {
 
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
-        subscription.unsubscribe();
-        return super.cancel(mayInterruptIfRunning);
-    }
-
-    @Override
-    public boolean isCancelled() {
-        return subscription.isUnsubscribed();
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Subscription current = subscription;
+        if (cancelled && current != null) {
+            // unsubscribing cancels the in-flight call and any pending poll or page
+            current.unsubscribe();
+        }
+        return cancelled;
     }
 }
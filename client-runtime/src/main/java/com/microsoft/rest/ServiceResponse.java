@@ -6,6 +6,9 @@
 
 package com.microsoft.rest;
 
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.metrics.ResponseTiming;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 
@@ -78,6 +81,22 @@ public class ServiceResponse<T> {
         return response;
     }
 
+    /**
+     * Gets the timing of the call, broken down into phases, when the client
+     * records response timings.
+     *
+     * @return the timing of the call, or null if it was not recorded
+     */
+    @Beta(SinceVersion.V1_2_0)
+    public ResponseTiming timing() {
+        if (response != null) {
+            return ResponseTiming.of(response.raw().request());
+        } else if (headResponse != null) {
+            return ResponseTiming.of(headResponse.raw().request());
+        }
+        return null;
+    }
+
     /**
      * Gets the raw REST response from a HEAD operation.
      *
@@ -9,8 +9,11 @@ package com.microsoft.rest;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.base.Function;
 import com.google.common.collect.Maps;
+import com.microsoft.rest.metrics.MetricsInterceptor;
+import com.microsoft.rest.metrics.ResponseTimingInterceptor;
 import com.microsoft.rest.protocol.ResponseBuilder;
 import com.microsoft.rest.protocol.SerializerAdapter;
+import okhttp3.Request;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 
@@ -107,9 +110,9 @@ public final class ServiceResponseBuilder<T, E extends RestException> implements
         }
 
         if (responseTypes.containsKey(statusCode)) {
-            return new ServiceResponse<>((T) buildBody(statusCode, responseBody), response);
+            return new ServiceResponse<>((T) buildBody(statusCode, responseBody, response.raw().request()), response);
         } else if (response.isSuccessful() && responseTypes.size() == 1) {
-            return new ServiceResponse<>((T) buildBody(statusCode, responseBody), response);
+            return new ServiceResponse<>((T) buildBody(statusCode, responseBody, response.raw().request()), response);
         } else if (!throwOnGet404 && "GET".equals(response.raw().request().method()) && statusCode == 404) {
             return new ServiceResponse<>(null, response);
         } else {
@@ -119,7 +122,7 @@ public final class ServiceResponseBuilder<T, E extends RestException> implements
                     responseContent = responseBody.source().buffer().clone().readUtf8();
                 }
                 throw exceptionType.getConstructor(String.class, Response.class, (Class<?>) responseTypes.get(0))
-                        .newInstance("Status code " + statusCode + ", " + responseContent, response, buildBody(statusCode, responseBody));
+                        .newInstance("Status code " + statusCode + ", " + responseContent, response, buildBody(statusCode, responseBody, response.raw().request()));
             } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
                 throw new IOException("Status code " + statusCode + ", but an instance of " + exceptionType.getCanonicalName()
                     + " cannot be created.", e);
@@ -182,10 +185,11 @@ public final class ServiceResponseBuilder<T, E extends RestException> implements
      *
      * @param statusCode the HTTP status code
      * @param responseBody the response body
+     * @param request the request the response is for
      * @return the response body, deserialized
      * @throws IOException thrown for any deserialization errors
      */
-    private Object buildBody(int statusCode, ResponseBody responseBody) throws IOException {
+    private Object buildBody(int statusCode, ResponseBody responseBody, Request request) throws IOException {
         if (responseBody == null) {
             return null;
         }
@@ -213,7 +217,12 @@ public final class ServiceResponseBuilder<T, E extends RestException> implements
             if (responseContent.length() <= 0) {
                 return null;
             }
-            return serializerAdapter.deserialize(responseContent, type);
+            long start = System.nanoTime();
+            Object body = serializerAdapter.deserialize(responseContent, type);
+            long nanos = System.nanoTime() - start;
+            MetricsInterceptor.recordDeserialization(request, nanos);
+            ResponseTimingInterceptor.recordDeserialization(request, nanos);
+            return body;
         }
     }
 
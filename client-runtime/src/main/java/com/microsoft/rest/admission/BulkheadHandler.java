@@ -0,0 +1,557 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.admission;
+
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An instance of this class isolates the requests of different scopes, like
+ * subscriptions or tenants, sharing one HTTP client. Each scope gets its own limit
+ * of requests in flight and of requests waiting for them. A request arriving at a
+ * full scope is rejected right away with a {@link RequestRejectedException}, so one
+ * slow or throttled scope cannot take all the threads and connections of the client.
+ *
+ * The calls of the {@link #callFactory(Call.Factory, CustomHeadersInterceptor) call
+ * factory} of the handler are checked against their scope when they are executed or
+ * enqueued, before anything else: an enqueued call waiting for a slot of its scope
+ * holds no thread, neither of the caller nor of the dispatcher of the HTTP client;
+ * {@link com.microsoft.rest.RestClient} creates its calls this way, ahead of the
+ * admission by priority. Requests reaching the handler as an interceptor without
+ * going through the call factory block the thread running them while they wait.
+ *
+ * Requests without a scope are not limited.
+ */
+public final class BulkheadHandler implements Interceptor {
+    /** The header carrying an explicit scope, removed before the request is sent. */
+    public static final String SCOPE_HEADER_NAME = "x-ms-bulkhead-scope";
+
+    /** The resolver taking the scope from a request. */
+    private final ScopeResolver scopeResolver;
+    /** The maximum number of requests in flight per scope. */
+    private final int maxConcurrentRequests;
+    /** The maximum number of requests waiting per scope. */
+    private final int maxQueuedRequests;
+    /** The bulkheads by scope. */
+    private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * Initialize an instance of {@link BulkheadHandler} class.
+     *
+     * @param scopeResolver the resolver taking the scope from a request
+     * @param maxConcurrentRequests the maximum number of requests in flight per scope
+     * @param maxQueuedRequests the maximum number of requests waiting per scope, 0 to reject as soon as the scope is busy
+     */
+    public BulkheadHandler(ScopeResolver scopeResolver, int maxConcurrentRequests, int maxQueuedRequests) {
+        if (scopeResolver == null) {
+            throw new IllegalArgumentException("scopeResolver == null");
+        }
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests < 1");
+        }
+        if (maxQueuedRequests < 0) {
+            throw new IllegalArgumentException("maxQueuedRequests < 0");
+        }
+        this.scopeResolver = scopeResolver;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    /**
+     * @return a resolver scoping requests by the subscription ID in their URL path
+     */
+    public static ScopeResolver bySubscription() {
+        return SubscriptionResolver.INSTANCE;
+    }
+
+    /**
+     * @return a resolver scoping requests by host name
+     */
+    public static ScopeResolver byHost() {
+        return HostResolver.INSTANCE;
+    }
+
+    /**
+     * Returns a resolver scoping requests by the bulkhead scope of their
+     * {@link RequestContext}, or the {@value #SCOPE_HEADER_NAME} header, which can be
+     * set per call or on a client derived for a tenant.
+     *
+     * @return a resolver scoping requests by an explicit header
+     */
+    public static ScopeResolver byHeader() {
+        return HeaderResolver.INSTANCE;
+    }
+
+    /**
+     * @return the scopes seen so far
+     */
+    public Set<String> scopes() {
+        return Collections.unmodifiableSet(bulkheads.keySet());
+    }
+
+    /**
+     * Returns the number of requests of a scope in flight.
+     *
+     * @param scope the scope
+     * @return the number of requests in flight
+     */
+    public int inFlightCount(String scope) {
+        Bulkhead bulkhead = bulkheads.get(scope);
+        return bulkhead == null ? 0 : bulkhead.inFlightCount();
+    }
+
+    /**
+     * Returns the number of requests of a scope waiting for a slot.
+     *
+     * @param scope the scope
+     * @return the number of waiting requests
+     */
+    public int queuedCount(String scope) {
+        Bulkhead bulkhead = bulkheads.get(scope);
+        return bulkhead == null ? 0 : bulkhead.queuedCount();
+    }
+
+    /**
+     * Returns the number of requests of a scope rejected so far.
+     *
+     * @param scope the scope
+     * @return the number of rejected requests
+     */
+    public long rejectedCount(String scope) {
+        Bulkhead bulkhead = bulkheads.get(scope);
+        return bulkhead == null ? 0 : bulkhead.rejected.get();
+    }
+
+    /**
+     * Wraps a call factory so that its calls are checked against their scope when they
+     * are executed or enqueued, and hold their slot until their response headers are
+     * received. An enqueued call waiting for a slot holds no thread. The custom headers
+     * of the client are stamped on the requests after the calls are created, so the
+     * scope is resolved as if they were already there, along with the header
+     * overrides of the {@link RequestContext} of the call.
+     *
+     * @param delegate the factory creating the calls, usually the HTTP client or a factory admitting them by priority
+     * @param customHeaders the custom headers of the client, or null if it has none
+     * @return the isolating call factory
+     */
+    public Call.Factory callFactory(final Call.Factory delegate, final CustomHeadersInterceptor customHeaders) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate == null");
+        }
+        return new Call.Factory() {
+            @Override
+            public Call newCall(Request request) {
+                RequestContext context = RequestContext.of(request);
+                String scope = scopeResolver.scope(withClientHeaders(request, context, customHeaders));
+                if (scope == null) {
+                    return delegate.newCall(request);
+                }
+                // the interceptor lets the calls checked here through
+                Request isolated = request.newBuilder()
+                        .tag(context.newBuilder().withAttribute(BulkheadHandler.class, BulkheadHandler.this).build())
+                        .build();
+                return new IsolatedCall(delegate.newCall(isolated), bulkhead(scope));
+            }
+        };
+    }
+
+    /**
+     * @return the request with the headers the client will stamp on it
+     */
+    private static Request withClientHeaders(Request request, RequestContext context, CustomHeadersInterceptor customHeaders) {
+        Map<String, List<String>> custom = customHeaders == null
+                ? Collections.<String, List<String>>emptyMap()
+                : customHeaders.headers();
+        Headers overrides = context.headerOverrides();
+        if (custom.isEmpty() && overrides.size() == 0) {
+            return request;
+        }
+        Request.Builder builder = request.newBuilder();
+        for (Map.Entry<String, List<String>> header : custom.entrySet()) {
+            List<String> values = header.getValue();
+            if (!values.isEmpty()) {
+                builder.header(header.getKey(), values.get(values.size() - 1));
+            }
+        }
+        for (int i = 0; i < overrides.size(); i++) {
+            builder.header(overrides.name(i), overrides.value(i));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestContext context = RequestContext.of(request);
+        String scope = context.attribute(BulkheadHandler.class) == this ? null : scopeResolver.scope(request);
+        if (request.header(SCOPE_HEADER_NAME) != null) {
+            request = request.newBuilder().removeHeader(SCOPE_HEADER_NAME).build();
+        }
+        if (scope == null) {
+            return chain.proceed(request);
+        }
+        Bulkhead bulkhead = bulkhead(scope);
+        bulkhead.acquire(maxQueuedRequests);
+        try {
+            return chain.proceed(request);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private Bulkhead bulkhead(String scope) {
+        Bulkhead bulkhead = bulkheads.get(scope);
+        if (bulkhead == null) {
+            Bulkhead created = new Bulkhead(scope, maxConcurrentRequests);
+            bulkhead = bulkheads.putIfAbsent(scope, created);
+            if (bulkhead == null) {
+                bulkhead = created;
+            }
+        }
+        return bulkhead;
+    }
+
+    /**
+     * Takes the scope from a request.
+     */
+    public interface ScopeResolver {
+        /**
+         * Returns the scope of a request.
+         *
+         * @param request the request
+         * @return the scope, or null to leave the request unlimited
+         */
+        String scope(Request request);
+    }
+
+    /**
+     * The limits and statistics of a scope. Slots are handed over to the waiting
+     * requests in arrival order.
+     */
+    private static final class Bulkhead {
+        private final String scope;
+        private final int maxConcurrentRequests;
+        private final ReentrantLock lock = new ReentrantLock();
+        /** The waiting requests, guarded by the lock. */
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        /** The number of requests in flight, guarded by the lock. */
+        private int inFlight;
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Bulkhead(String scope, int maxConcurrentRequests) {
+            this.scope = scope;
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        private int inFlightCount() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int queuedCount() {
+            lock.lock();
+            try {
+                return waiters.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Takes a free slot if no request is waiting for one, with the lock held.
+         *
+         * @throws RequestRejectedException if the request cannot wait either
+         */
+        private boolean tryAcquire(int maxQueuedRequests) throws RequestRejectedException {
+            if (inFlight < maxConcurrentRequests && waiters.isEmpty()) {
+                inFlight++;
+                return true;
+            }
+            if (waiters.size() >= maxQueuedRequests) {
+                rejected.incrementAndGet();
+                throw new RequestRejectedException("Too many requests in flight for scope " + scope, scope);
+            }
+            return false;
+        }
+
+        /**
+         * Waits for a slot on the calling thread.
+         */
+        private void acquire(int maxQueuedRequests) throws IOException {
+            Waiter handedOver = null;
+            lock.lock();
+            try {
+                if (tryAcquire(maxQueuedRequests)) {
+                    return;
+                }
+                Waiter waiter = new Waiter(lock.newCondition(), null);
+                waiters.add(waiter);
+                try {
+                    while (!waiter.admitted) {
+                        waiter.condition.await();
+                    }
+                } catch (InterruptedException e) {
+                    if (waiter.admitted) {
+                        // admitted concurrently, hand the slot over to the next one
+                        handedOver = releaseLocked();
+                    } else {
+                        waiters.remove(waiter);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to be admitted");
+                }
+            } finally {
+                lock.unlock();
+                admit(handedOver);
+            }
+        }
+
+        /**
+         * Takes a slot, or queues an admission to run on the thread releasing one.
+         *
+         * @return the waiter to withdraw the admission with, or null if the slot was taken
+         * @throws RequestRejectedException if the request cannot wait
+         */
+        private Waiter acquireAsync(int maxQueuedRequests, Runnable admission) throws RequestRejectedException {
+            lock.lock();
+            try {
+                if (tryAcquire(maxQueuedRequests)) {
+                    return null;
+                }
+                Waiter waiter = new Waiter(null, admission);
+                waiters.add(waiter);
+                return waiter;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Withdraws a waiting admission.
+         *
+         * @return true if it was still waiting
+         */
+        private boolean withdraw(Waiter waiter) {
+            lock.lock();
+            try {
+                return !waiter.admitted && waiters.remove(waiter);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release() {
+            Waiter next;
+            lock.lock();
+            try {
+                next = releaseLocked();
+            } finally {
+                lock.unlock();
+            }
+            admit(next);
+        }
+
+        /**
+         * Frees a slot or hands it over to the next waiting request.
+         *
+         * @return the admitted request if it was enqueued, to admit once the lock is released
+         */
+        private Waiter releaseLocked() {
+            Waiter next = waiters.poll();
+            if (next == null) {
+                inFlight--;
+                return null;
+            }
+            next.admitted = true;
+            if (next.condition != null) {
+                next.condition.signal();
+                return null;
+            }
+            return next;
+        }
+
+        private static void admit(Waiter waiter) {
+            if (waiter != null) {
+                waiter.admission.run();
+            }
+        }
+    }
+
+    /**
+     * A request waiting for a slot, either a thread waiting on its condition or an
+     * enqueued call waiting for its admission to run.
+     */
+    private static final class Waiter {
+        private final Condition condition;
+        private final Runnable admission;
+        private boolean admitted;
+
+        private Waiter(Condition condition, Runnable admission) {
+            this.condition = condition;
+            this.admission = admission;
+        }
+    }
+
+    /**
+     * A call checked against its scope before it is sent, holding its slot until its
+     * response headers are received.
+     */
+    private final class IsolatedCall implements Call {
+        private final Call delegate;
+        private final Bulkhead bulkhead;
+        private volatile boolean executed;
+        private volatile boolean canceled;
+        /** The waiting admission of the enqueued call and its callback. */
+        private volatile Waiter waiter;
+        private volatile Callback callback;
+
+        private IsolatedCall(Call delegate, Bulkhead bulkhead) {
+            this.delegate = delegate;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public Request request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Response execute() throws IOException {
+            executed = true;
+            bulkhead.acquire(maxQueuedRequests);
+            try {
+                return delegate.execute();
+            } finally {
+                bulkhead.release();
+            }
+        }
+
+        @Override
+        public void enqueue(final Callback callback) {
+            executed = true;
+            this.callback = callback;
+            Runnable admission = new Runnable() {
+                @Override
+                public void run() {
+                    if (canceled) {
+                        bulkhead.release();
+                        callback.onFailure(IsolatedCall.this, new IOException("Canceled"));
+                        return;
+                    }
+                    delegate.enqueue(new Callback() {
+                        @Override
+                        public void onFailure(Call call, IOException e) {
+                            bulkhead.release();
+                            callback.onFailure(IsolatedCall.this, e);
+                        }
+
+                        @Override
+                        public void onResponse(Call call, Response response) throws IOException {
+                            bulkhead.release();
+                            callback.onResponse(IsolatedCall.this, response);
+                        }
+                    });
+                }
+            };
+            try {
+                waiter = bulkhead.acquireAsync(maxQueuedRequests, admission);
+            } catch (RequestRejectedException e) {
+                callback.onFailure(this, e);
+                return;
+            }
+            if (waiter == null) {
+                admission.run();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            delegate.cancel();
+            Waiter pending = waiter;
+            if (pending != null && bulkhead.withdraw(pending)) {
+                callback.onFailure(this, new IOException("Canceled"));
+            }
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return executed || delegate.isExecuted();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled || delegate.isCanceled();
+        }
+    }
+
+    /**
+     * Scopes requests by the segment following "subscriptions" in the URL path.
+     */
+    private static final class SubscriptionResolver implements ScopeResolver {
+        private static final SubscriptionResolver INSTANCE = new SubscriptionResolver();
+
+        @Override
+        public String scope(Request request) {
+            List<String> segments = request.url().pathSegments();
+            for (int i = 0; i < segments.size() - 1; i++) {
+                if ("subscriptions".equalsIgnoreCase(segments.get(i)) && !segments.get(i + 1).isEmpty()) {
+                    return segments.get(i + 1).toLowerCase(Locale.ROOT);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Scopes requests by host name.
+     */
+    private static final class HostResolver implements ScopeResolver {
+        private static final HostResolver INSTANCE = new HostResolver();
+
+        @Override
+        public String scope(Request request) {
+            return request.url().host();
+        }
+    }
+
+    /**
+     * Scopes requests by the explicit scope of their context.
+     */
+    private static final class HeaderResolver implements ScopeResolver {
+        private static final HeaderResolver INSTANCE = new HeaderResolver();
+
+        @Override
+        public String scope(Request request) {
+            return RequestContext.of(request).bulkheadScope();
+        }
+    }
+}
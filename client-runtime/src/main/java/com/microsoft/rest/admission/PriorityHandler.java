@@ -0,0 +1,735 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.admission;
+
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An instance of this class limits the number of requests in flight and admits the
+ * waiting requests by priority class instead of in arrival order.
+ *
+ * Requests of lower classes age while they wait: a request is ranked by its arrival
+ * time delayed by one aging interval per class below {@link RequestPriority#INTERACTIVE},
+ * so a waiting background request eventually goes before newly arrived interactive
+ * ones and cannot starve.
+ *
+ * The handler can also shed load. The number of waiting requests can be bounded:
+ * when the queue is full, the newest waiting request of the lowest class below the
+ * arriving one is rejected to make room, or the arriving request itself is. The time
+ * a request may wait can be bounded as well. Shed requests fail right away with a
+ * {@link RequestRejectedException} instead of piling up while the service degrades.
+ *
+ * A request holds its slot until its response headers are received. The calls of
+ * the {@link #callFactory(Call.Factory) call factory} of the handler are admitted
+ * before they are enqueued to the dispatcher of the HTTP client, so that they wait
+ * here without holding a dispatcher thread, and the queue time and the shedding
+ * cover their whole wait; {@link com.microsoft.rest.RestClient} creates its calls
+ * this way and raises the dispatcher limits to the limit of the handler. Requests
+ * reaching the handler as an interceptor without going through the call factory
+ * block the thread running them while they wait.
+ */
+public final class PriorityHandler implements Interceptor {
+    /** The default number of requests in flight. */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 32;
+    /** The timer shedding the enqueued calls waiting too long, shared by all the handlers. */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PriorityHandler timer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** The maximum number of requests in flight. */
+    private final int maxConcurrentRequests;
+    /** The aging interval in nanoseconds. */
+    private final long agingNanos;
+    /** The maximum number of waiting requests. */
+    private volatile int maxQueuedRequests = Integer.MAX_VALUE;
+    /** The maximum queue time in nanoseconds, 0 for no limit. */
+    private volatile long maxQueueNanos;
+    /** The lock guarding the state below. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** The waiting requests, next to admit first. */
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+    /** The number of requests in flight. */
+    private int inFlight;
+    /** The sequence number of the next waiting request, to keep ties in order. */
+    private long sequence;
+    /** The number of waiting requests per priority class. */
+    private final int[] queued = new int[RequestPriority.values().length];
+    /** The number of admitted requests per priority class. */
+    private final long[] admitted = new long[RequestPriority.values().length];
+    /** The total queue time per priority class, in nanoseconds. */
+    private final long[] totalQueueNanos = new long[RequestPriority.values().length];
+    /** The longest queue time per priority class, in nanoseconds. */
+    private final long[] longestQueueNanos = new long[RequestPriority.values().length];
+    /** The number of rejected requests per priority class. */
+    private final long[] rejected = new long[RequestPriority.values().length];
+
+    /**
+     * Initialize an instance of {@link PriorityHandler} class with
+     * {@value #DEFAULT_MAX_CONCURRENT_REQUESTS} requests in flight and a 1 second
+     * aging interval.
+     */
+    public PriorityHandler() {
+        this(DEFAULT_MAX_CONCURRENT_REQUESTS, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Initialize an instance of {@link PriorityHandler} class.
+     *
+     * @param maxConcurrentRequests the maximum number of requests in flight
+     * @param agingInterval how long a request must wait to rank like a request of the class above
+     * @param unit the time unit of the aging interval
+     */
+    public PriorityHandler(int maxConcurrentRequests, long agingInterval, TimeUnit unit) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests < 1");
+        }
+        if (agingInterval < 0) {
+            throw new IllegalArgumentException("agingInterval < 0");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.agingNanos = unit.toNanos(agingInterval);
+    }
+
+    /**
+     * Bounds the number of waiting requests. Default is no limit. The calls of the
+     * {@link #callFactory(Call.Factory) call factory} wait here rather than in the
+     * dispatcher, so they are all counted.
+     *
+     * @param maxQueuedRequests the maximum number of waiting requests, 0 to reject as soon as all slots are taken
+     * @return the handler itself for chaining
+     */
+    public PriorityHandler withMaxQueuedRequests(int maxQueuedRequests) {
+        if (maxQueuedRequests < 0) {
+            throw new IllegalArgumentException("maxQueuedRequests < 0");
+        }
+        this.maxQueuedRequests = maxQueuedRequests;
+        return this;
+    }
+
+    /**
+     * Bounds the time a request may wait for a slot. Default is no limit. The calls of
+     * the {@link #callFactory(Call.Factory) call factory} wait from the moment they are
+     * enqueued or executed until they are handed to the HTTP client, which then runs
+     * them right away, so the bound covers their whole wait; an enqueued call waiting
+     * too long fails without taking a thread.
+     *
+     * @param maxQueueTime the maximum queue time, 0 for no limit
+     * @param unit the time unit of the maximum queue time
+     * @return the handler itself for chaining
+     */
+    public PriorityHandler withMaxQueueTime(long maxQueueTime, TimeUnit unit) {
+        if (maxQueueTime < 0) {
+            throw new IllegalArgumentException("maxQueueTime < 0");
+        }
+        this.maxQueueNanos = unit.toNanos(maxQueueTime);
+        return this;
+    }
+
+    /**
+     * @return the maximum number of requests in flight
+     */
+    public int maxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * @return the number of requests in flight
+     */
+    public int inFlightCount() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of a priority class waiting to be admitted.
+     *
+     * @param priority the priority class
+     * @return the number of waiting requests
+     */
+    public int queuedCount(RequestPriority priority) {
+        lock.lock();
+        try {
+            return queued[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of a priority class admitted so far.
+     *
+     * @param priority the priority class
+     * @return the number of admitted requests
+     */
+    public long admittedCount(RequestPriority priority) {
+        lock.lock();
+        try {
+            return admitted[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of a priority class rejected so far, because
+     * the queue was full or they waited too long.
+     *
+     * @param priority the priority class
+     * @return the number of rejected requests
+     */
+    public long rejectedCount(RequestPriority priority) {
+        lock.lock();
+        try {
+            return rejected[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the average time the admitted requests of a priority class waited.
+     *
+     * @param priority the priority class
+     * @param unit the time unit of the result
+     * @return the average queue time
+     */
+    public long averageQueueTime(RequestPriority priority, TimeUnit unit) {
+        lock.lock();
+        try {
+            long count = admitted[priority.ordinal()];
+            return count == 0 ? 0 : unit.convert(totalQueueNanos[priority.ordinal()] / count, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the longest time an admitted request of a priority class waited.
+     *
+     * @param priority the priority class
+     * @param unit the time unit of the result
+     * @return the maximum queue time
+     */
+    public long maxQueueTime(RequestPriority priority, TimeUnit unit) {
+        lock.lock();
+        try {
+            return unit.convert(longestQueueNanos[priority.ordinal()], TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wraps a call factory so that its calls are admitted by this handler before they
+     * are enqueued or executed, and hold their slot until their response headers are
+     * received. An enqueued call waiting for a slot holds no thread.
+     *
+     * @param delegate the factory creating the calls, usually the HTTP client
+     * @return the admitting call factory
+     */
+    public Call.Factory callFactory(Call.Factory delegate) {
+        return callFactory(delegate, null);
+    }
+
+    /**
+     * Wraps a call factory so that its calls are admitted by this handler before they
+     * are enqueued or executed. The custom headers of the client are stamped on the
+     * requests after the calls are created, so a priority set there is read from them
+     * when a call is created; like on the wire, the header overrides of the
+     * {@link RequestContext} of a call win over them, and they win over the priority
+     * of the context.
+     *
+     * @param delegate the factory creating the calls, usually the HTTP client
+     * @param customHeaders the custom headers of the client, or null if it has none
+     * @return the admitting call factory
+     */
+    public Call.Factory callFactory(final Call.Factory delegate, final CustomHeadersInterceptor customHeaders) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate == null");
+        }
+        return new Call.Factory() {
+            @Override
+            public Call newCall(Request request) {
+                RequestContext context = RequestContext.of(request);
+                RequestContext.Builder admitted = context.newBuilder();
+                String priority = priorityHeader(context, customHeaders);
+                if (priority != null) {
+                    admitted.withPriority(RequestPriority.fromHeaderValue(priority));
+                }
+                // the interceptor lets the calls admitted here through
+                context = admitted.withAttribute(PriorityHandler.class, PriorityHandler.this).build();
+                return new AdmittedCall(delegate.newCall(request.newBuilder().tag(context).build()), context);
+            }
+        };
+    }
+
+    /**
+     * @return the priority header the client will stamp on a request, or null if none
+     */
+    private static String priorityHeader(RequestContext context, CustomHeadersInterceptor customHeaders) {
+        String priority = context.headerOverrides().get(RequestPriority.HEADER_NAME);
+        if (priority != null || customHeaders == null) {
+            return priority;
+        }
+        for (Map.Entry<String, List<String>> header : customHeaders.headers().entrySet()) {
+            List<String> values = header.getValue();
+            if (RequestPriority.HEADER_NAME.equalsIgnoreCase(header.getKey()) && !values.isEmpty()) {
+                priority = values.get(values.size() - 1);
+            }
+        }
+        return priority;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestContext context = RequestContext.of(request);
+        if (request.header(RequestPriority.HEADER_NAME) != null) {
+            // a control header, never sent
+            request = request.newBuilder().removeHeader(RequestPriority.HEADER_NAME).build();
+        }
+        if (context.attribute(PriorityHandler.class) == this) {
+            return chain.proceed(request);
+        }
+        RequestPriority priority = context.priority();
+        acquire(priority, context);
+        try {
+            return chain.proceed(request);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Waits for a slot on the calling thread.
+     */
+    private void acquire(RequestPriority priority, RequestContext context) throws IOException {
+        Waiter shed = null;
+        Waiter handedOver = null;
+        lock.lock();
+        try {
+            if (tryAdmit(priority)) {
+                return;
+            }
+            shed = makeRoom(priority);
+            Waiter waiter = enqueue(new Waiter(priority, System.nanoTime(), lock.newCondition(), null));
+            long timeout = timeoutNanos(context);
+            long remaining = timeout;
+            try {
+                while (!waiter.admitted && !waiter.rejected) {
+                    if (timeout == 0) {
+                        waiter.condition.await();
+                    } else if (remaining > 0) {
+                        remaining = waiter.condition.awaitNanos(remaining);
+                    } else {
+                        removeWaiter(waiter);
+                        waiter.rejected = true;
+                        rejected[priority.ordinal()]++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (waiter.admitted) {
+                    // admitted concurrently, hand the slot over to the next one
+                    handedOver = releaseLocked();
+                } else if (!waiter.rejected) {
+                    removeWaiter(waiter);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to be admitted");
+            }
+            if (waiter.rejected) {
+                throw waiter.rejection();
+            }
+        } finally {
+            lock.unlock();
+            notifyRejected(shed);
+            notifyAdmitted(handedOver);
+        }
+    }
+
+    /**
+     * Admits a call asynchronously: the admission runs on the calling thread if a slot
+     * is free, and later on the thread releasing a slot otherwise.
+     */
+    private void acquireAsync(RequestPriority priority, RequestContext context, Admission admission) {
+        Waiter shed = null;
+        boolean admitted = false;
+        RequestRejectedException rejection = null;
+        lock.lock();
+        try {
+            if (tryAdmit(priority)) {
+                admitted = true;
+            } else {
+                try {
+                    shed = makeRoom(priority);
+                } catch (RequestRejectedException e) {
+                    rejection = e;
+                }
+                if (rejection == null) {
+                    final Waiter waiter = enqueue(new Waiter(priority, System.nanoTime(), null, admission));
+                    admission.waiter = waiter;
+                    long timeout = timeoutNanos(context);
+                    if (timeout > 0) {
+                        waiter.expiry = TIMER.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                expire(waiter);
+                            }
+                        }, timeout, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        notifyRejected(shed);
+        if (admitted) {
+            admission.admitted();
+        } else if (rejection != null) {
+            admission.rejected(rejection);
+        }
+    }
+
+    /**
+     * Takes a free slot if no request is waiting for one.
+     */
+    private boolean tryAdmit(RequestPriority priority) {
+        if (inFlight < maxConcurrentRequests && queue.isEmpty()) {
+            inFlight++;
+            recordAdmission(priority, 0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes room for a request of a priority class in a full queue by shedding the
+     * lowest waiting one.
+     *
+     * @return the shed request, to notify once the lock is released, or null
+     * @throws RequestRejectedException if no waiting request ranks below the arriving one
+     */
+    private Waiter makeRoom(RequestPriority priority) throws RequestRejectedException {
+        if (queue.size() < maxQueuedRequests) {
+            return null;
+        }
+        Waiter victim = lowestWaiter();
+        if (victim == null || victim.priority.ordinal() <= priority.ordinal()) {
+            rejected[priority.ordinal()]++;
+            throw new RequestRejectedException("Too many requests waiting, rejected a " + priority.headerValue() + " request");
+        }
+        // shed the lowest class to make room for this request
+        removeWaiter(victim);
+        victim.rejected = true;
+        rejected[victim.priority.ordinal()]++;
+        if (victim.condition != null) {
+            victim.condition.signal();
+            return null;
+        }
+        return victim;
+    }
+
+    private Waiter enqueue(Waiter waiter) {
+        waiter.rank = waiter.start + waiter.priority.ordinal() * agingNanos;
+        waiter.sequence = sequence++;
+        queue.add(waiter);
+        queued[waiter.priority.ordinal()]++;
+        return waiter;
+    }
+
+    /**
+     * @return the time a request may wait, bounded by its deadline, 0 for no limit
+     */
+    private long timeoutNanos(RequestContext context) {
+        long timeout = maxQueueNanos;
+        if (context.hasDeadline()) {
+            // never wait past the deadline of the request
+            long left = Math.max(1, context.remainingNanos());
+            timeout = timeout == 0 ? left : Math.min(timeout, left);
+        }
+        return timeout;
+    }
+
+    /**
+     * Sheds an enqueued call once it waited too long.
+     */
+    private void expire(Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiter.admitted || waiter.rejected) {
+                return;
+            }
+            removeWaiter(waiter);
+            waiter.rejected = true;
+            rejected[waiter.priority.ordinal()]++;
+        } finally {
+            lock.unlock();
+        }
+        notifyRejected(waiter);
+    }
+
+    /**
+     * Withdraws an enqueued call canceled while waiting.
+     *
+     * @return true if the call was still waiting
+     */
+    private boolean withdraw(Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiter.admitted || waiter.rejected) {
+                return false;
+            }
+            removeWaiter(waiter);
+            waiter.rejected = true;
+        } finally {
+            lock.unlock();
+        }
+        if (waiter.expiry != null) {
+            waiter.expiry.cancel(false);
+        }
+        return true;
+    }
+
+    private static void notifyRejected(Waiter waiter) {
+        if (waiter != null && waiter.admission != null) {
+            if (waiter.expiry != null) {
+                waiter.expiry.cancel(false);
+            }
+            waiter.admission.rejected(waiter.rejection());
+        }
+    }
+
+    private static void notifyAdmitted(Waiter waiter) {
+        if (waiter != null && waiter.admission != null) {
+            if (waiter.expiry != null) {
+                waiter.expiry.cancel(false);
+            }
+            waiter.admission.admitted();
+        }
+    }
+
+    /**
+     * @return the newest waiting request of the lowest priority class, or null if none is waiting
+     */
+    private Waiter lowestWaiter() {
+        Waiter lowest = null;
+        for (Waiter waiter : queue) {
+            if (lowest == null || waiter.priority.ordinal() > lowest.priority.ordinal()
+                    || (waiter.priority == lowest.priority && waiter.sequence > lowest.sequence)) {
+                lowest = waiter;
+            }
+        }
+        return lowest;
+    }
+
+    private void removeWaiter(Waiter waiter) {
+        queue.remove(waiter);
+        queued[waiter.priority.ordinal()]--;
+    }
+
+    private void release() {
+        Waiter next;
+        lock.lock();
+        try {
+            next = releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+        notifyAdmitted(next);
+    }
+
+    /**
+     * Frees a slot and hands it over to the next waiting request.
+     *
+     * @return the admitted request if it was enqueued, to notify once the lock is released
+     */
+    private Waiter releaseLocked() {
+        inFlight--;
+        Waiter next = queue.poll();
+        if (next == null) {
+            return null;
+        }
+        queued[next.priority.ordinal()]--;
+        next.admitted = true;
+        inFlight++;
+        recordAdmission(next.priority, System.nanoTime() - next.start);
+        if (next.condition != null) {
+            next.condition.signal();
+            return null;
+        }
+        return next;
+    }
+
+    private void recordAdmission(RequestPriority priority, long queueNanos) {
+        admitted[priority.ordinal()]++;
+        totalQueueNanos[priority.ordinal()] += queueNanos;
+        longestQueueNanos[priority.ordinal()] = Math.max(longestQueueNanos[priority.ordinal()], queueNanos);
+    }
+
+    /**
+     * A request waiting to be admitted, either a thread waiting on its condition or an
+     * enqueued call waiting for its admission to run.
+     */
+    private static final class Waiter implements Comparable<Waiter> {
+        private final RequestPriority priority;
+        private final long start;
+        private final Condition condition;
+        private final Admission admission;
+        private long rank;
+        private long sequence;
+        private boolean admitted;
+        private boolean rejected;
+        /** The timer shedding the enqueued call, if its queue time is bounded. */
+        private volatile ScheduledFuture<?> expiry;
+
+        private Waiter(RequestPriority priority, long start, Condition condition, Admission admission) {
+            this.priority = priority;
+            this.start = start;
+            this.condition = condition;
+            this.admission = admission;
+        }
+
+        private RequestRejectedException rejection() {
+            return new RequestRejectedException("Shed a " + priority.headerValue() + " request after waiting "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            long diff = rank - other.rank;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * What happens to an enqueued call once it is admitted or rejected.
+     */
+    private abstract static class Admission {
+        /** The waiter of the call while it waits for a slot. */
+        private volatile Waiter waiter;
+
+        abstract void admitted();
+
+        abstract void rejected(IOException e);
+    }
+
+    /**
+     * A call admitted by the handler before it is sent, holding its slot until its
+     * response headers are received.
+     */
+    private final class AdmittedCall implements Call {
+        private final Call delegate;
+        private final RequestContext context;
+        private volatile Admission admission;
+        private volatile boolean canceled;
+
+        private AdmittedCall(Call delegate, RequestContext context) {
+            this.delegate = delegate;
+            this.context = context;
+        }
+
+        @Override
+        public Request request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Response execute() throws IOException {
+            acquire(context.priority(), context);
+            try {
+                return delegate.execute();
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        public void enqueue(final Callback callback) {
+            admission = new Admission() {
+                @Override
+                void admitted() {
+                    if (canceled) {
+                        release();
+                        callback.onFailure(AdmittedCall.this, new IOException("Canceled"));
+                        return;
+                    }
+                    delegate.enqueue(new Callback() {
+                        @Override
+                        public void onFailure(Call call, IOException e) {
+                            release();
+                            callback.onFailure(AdmittedCall.this, e);
+                        }
+
+                        @Override
+                        public void onResponse(Call call, Response response) throws IOException {
+                            release();
+                            callback.onResponse(AdmittedCall.this, response);
+                        }
+                    });
+                }
+
+                @Override
+                void rejected(IOException e) {
+                    callback.onFailure(AdmittedCall.this, e);
+                }
+            };
+            acquireAsync(context.priority(), context, admission);
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            delegate.cancel();
+            Admission pending = admission;
+            Waiter waiter = pending == null ? null : pending.waiter;
+            if (waiter != null && withdraw(waiter)) {
+                pending.rejected(new IOException("Canceled"));
+            }
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return admission != null || delegate.isExecuted();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled || delegate.isCanceled();
+        }
+    }
+}
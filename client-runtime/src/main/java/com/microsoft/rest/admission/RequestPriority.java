@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.admission;
+
+import java.util.Locale;
+
+/**
+ * The priority class of a request. A request carries its priority in the
+ * {@value #HEADER_NAME} header, which a {@link PriorityHandler} removes before the
+ * request is sent. Requests without the header are {@link #NORMAL}.
+ */
+public enum RequestPriority {
+    /** User facing calls, served first. */
+    INTERACTIVE,
+    /** The default priority. */
+    NORMAL,
+    /** Long running operation polls, page prefetches and bulk jobs. */
+    BACKGROUND;
+
+    /** The header carrying the priority of a request. */
+    public static final String HEADER_NAME = "x-ms-request-priority";
+
+    /**
+     * @return the value of the {@value #HEADER_NAME} header for this priority
+     */
+    public String headerValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses the value of a {@value #HEADER_NAME} header.
+     *
+     * @param value the header value, may be null
+     * @return the priority, {@link #NORMAL} if the value is null or unknown
+     */
+    public static RequestPriority fromHeaderValue(String value) {
+        if (value != null) {
+            for (RequestPriority priority : values()) {
+                if (priority.name().equalsIgnoreCase(value)) {
+                    return priority;
+                }
+            }
+        }
+        return NORMAL;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.admission;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when a request is rejected by the client before it is sent,
+ * because a limit on the requests in flight or waiting was reached.
+ */
+public class RequestRejectedException extends IOException {
+    /** The scope the request was rejected in, if any. */
+    private final String scope;
+
+    /**
+     * Initializes a new instance of the RequestRejectedException class.
+     *
+     * @param message the exception message
+     */
+    public RequestRejectedException(String message) {
+        this(message, null);
+    }
+
+    /**
+     * Initializes a new instance of the RequestRejectedException class.
+     *
+     * @param message the exception message
+     * @param scope the scope the request was rejected in
+     */
+    public RequestRejectedException(String message, String scope) {
+        super(message);
+        this.scope = scope;
+    }
+
+    /**
+     * @return the scope the request was rejected in, or null if the limit is client wide
+     */
+    public String scope() {
+        return scope;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains classes that control how requests are admitted to the
+ * HTTP client, like priority classes, bulkheads and load shedding.
+ */
+package com.microsoft.rest.admission;
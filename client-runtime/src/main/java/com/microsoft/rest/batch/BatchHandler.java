@@ -0,0 +1,430 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An interceptor combining the GET requests issued within a short window into ARM
+ * batch requests. The first request of a window waits for the window to end, or for
+ * the batch to be full, then sends all the requests of the window as one POST to the
+ * batch endpoint of their host, and each request gets back its own response, with its
+ * own status code, headers and body, as if it had been sent on its own.
+ *
+ * Only requests to the same host with the same authorization are batched together.
+ * Each request of a batch carries its own headers, e.g. its client request ID and its
+ * preconditions; the batch request only has the headers all of them share. A request
+ * alone in its window is sent as it is. If the batch request is rejected, or only
+ * accepted for asynchronous processing, each request is sent on its own, and so is
+ * each request throttled or failing with a server error within the batch. The batch
+ * request is sent on the call of the first request; if it fails, e.g. because that
+ * call was canceled, only the first request fails and the others are sent on their
+ * own. The handler
+ * should be added before the retry handler, so that a batch is retried as a whole and
+ * the requests sent on their own are retried as usual, and after any handler limiting
+ * the requests per scope, so that each request is counted in its own scope.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class BatchHandler implements Interceptor {
+    /** The path and query of the ARM batch endpoint. */
+    public static final String DEFAULT_BATCH_PATH = "batch?api-version=2015-11-01";
+    /** The maximum number of requests in an ARM batch. */
+    public static final int MAX_BATCH_SIZE = 20;
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** The headers of a request that are not sent along with it in a batch. */
+    private static final Set<String> OUTER_HEADERS = new HashSet<>(Arrays.asList("authorization", "host", "content-length"));
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** The batches still accepting requests, by host and authorization. */
+    private final Map<String, Batch> openBatches = new HashMap<>();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchedRequestCount = new AtomicLong();
+    private String batchPath = DEFAULT_BATCH_PATH;
+    private int maxBatchSize = MAX_BATCH_SIZE;
+    private long windowNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Sets the maximum number of requests in a batch, {@link #MAX_BATCH_SIZE} by default.
+     *
+     * @param maxBatchSize the maximum number of requests in a batch
+     * @return the handler itself
+     */
+    public BatchHandler withMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1 || maxBatchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("maxBatchSize must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Sets how long the first request of a batch waits for other requests, 10
+     * milliseconds by default.
+     *
+     * @param window the time to wait
+     * @param unit the unit of the time
+     * @return the handler itself
+     */
+    public BatchHandler withWindow(long window, TimeUnit unit) {
+        this.windowNanos = unit.toNanos(window);
+        return this;
+    }
+
+    /**
+     * Sets the path and query of the batch endpoint, relative to the host of the
+     * requests, {@link #DEFAULT_BATCH_PATH} by default.
+     *
+     * @param batchPath the path and query of the batch endpoint
+     * @return the handler itself
+     */
+    public BatchHandler withBatchPath(String batchPath) {
+        if (batchPath == null) {
+            throw new NullPointerException("batchPath == null");
+        }
+        this.batchPath = batchPath;
+        return this;
+    }
+
+    /**
+     * @return the number of batch requests sent
+     */
+    public long batchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return the number of requests sent as part of a batch
+     */
+    public long batchedRequestCount() {
+        return batchedRequestCount.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+        Entry entry = new Entry(request);
+        Batch batch;
+        boolean leader = false;
+        lock.lock();
+        try {
+            String key = key(request);
+            batch = openBatches.get(key);
+            if (batch == null) {
+                batch = new Batch(lock.newCondition());
+                openBatches.put(key, batch);
+                leader = true;
+            }
+            batch.entries.add(entry);
+            if (batch.entries.size() >= maxBatchSize) {
+                openBatches.remove(key);
+                batch.closed = true;
+                batch.changed.signalAll();
+            }
+            if (leader) {
+                awaitBatch(key, batch);
+            } else {
+                awaitEntry(batch, entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (leader) {
+            if (batch.entries.size() == 1) {
+                return chain.proceed(request);
+            }
+            send(chain, batch);
+        }
+        if (entry.error != null) {
+            throw entry.error;
+        }
+        if (entry.response == null) {
+            // the batch was rejected, or the request is to be retried on its own
+            return chain.proceed(request);
+        }
+        return entry.response;
+    }
+
+    /**
+     * Waits for the window of a batch to end or for the batch to be full, with the lock held.
+     */
+    private void awaitBatch(String key, Batch batch) {
+        long nanos = windowNanos;
+        boolean interrupted = false;
+        while (!batch.closed && nanos > 0) {
+            try {
+                nanos = batch.changed.awaitNanos(nanos);
+            } catch (InterruptedException e) {
+                // the other requests of the batch depend on this one, send it anyway
+                interrupted = true;
+                break;
+            }
+        }
+        if (!batch.closed) {
+            openBatches.remove(key);
+            batch.closed = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the response to a request of a batch, with the lock held.
+     */
+    private static void awaitEntry(Batch batch, Entry entry) throws InterruptedIOException {
+        while (!entry.done) {
+            try {
+                batch.changed.await();
+            } catch (InterruptedException e) {
+                InterruptedIOException exception = new InterruptedIOException("Interrupted while waiting for a batch response");
+                exception.initCause(e);
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Sends a batch and completes its requests. If the batch cannot be sent, e.g.
+     * because the call of the leader was canceled, the other requests are sent on
+     * their own and only the leader fails.
+     */
+    private void send(Chain chain, Batch batch) throws IOException {
+        List<Entry> entries = batch.entries;
+        try {
+            Response response = chain.proceed(batchRequest(chain.request(), entries));
+            if (response.code() == 200) {
+                batchCount.incrementAndGet();
+                batchedRequestCount.addAndGet(entries.size());
+                complete(batch, response);
+            } else {
+                // rejected, or accepted for later: polling would keep all the requests
+                // of the batch waiting, so send them on their own instead
+                response.body().close();
+                complete(batch, null, null);
+            }
+        } catch (IOException | RuntimeException e) {
+            complete(batch, null, null);
+            throw e;
+        }
+    }
+
+    private Request batchRequest(Request first, List<Entry> entries) throws IOException {
+        ObjectNode body = MAPPER.createObjectNode();
+        ArrayNode requests = body.putArray("requests");
+        Headers shared = first.headers();
+        for (int i = 0; i < entries.size(); i++) {
+            Request request = entries.get(i).request;
+            HttpUrl url = request.url();
+            String query = url.encodedQuery();
+            ObjectNode item = requests.addObject()
+                    .put("httpMethod", "GET")
+                    .put("name", Integer.toString(i))
+                    .put("url", query == null ? url.encodedPath() : url.encodedPath() + "?" + query);
+            Headers headers = request.headers();
+            ObjectNode itemHeaders = item.putObject("headers");
+            for (String name : headers.names()) {
+                if (!OUTER_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    itemHeaders.put(name, join(headers.values(name)));
+                }
+            }
+            shared = sharedHeaders(shared, headers);
+        }
+        HttpUrl batchUrl = first.url().resolve("/" + batchPath);
+        // the batch is no request of the leader: leave its context, e.g. its deadline, out
+        return first.newBuilder()
+                .tag(null)
+                .url(batchUrl)
+                .headers(shared)
+                .post(RequestBody.create(JSON, MAPPER.writeValueAsBytes(body)))
+                .build();
+    }
+
+    /**
+     * @return the headers of the first set with the same values in the second
+     */
+    private static Headers sharedHeaders(Headers headers, Headers other) {
+        Headers.Builder shared = new Headers.Builder();
+        for (String name : headers.names()) {
+            List<String> values = headers.values(name);
+            if (values.equals(other.values(name))) {
+                for (String value : values) {
+                    shared.add(name, value);
+                }
+            }
+        }
+        return shared.build();
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(", ");
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Splits a batch response into the responses of its requests.
+     */
+    private void complete(Batch batch, Response batchResponse) throws IOException {
+        List<Entry> entries = batch.entries;
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(batchResponse.body().byteStream());
+        } finally {
+            batchResponse.body().close();
+        }
+        JsonNode responses = root == null ? null : root.get("responses");
+        Response[] split = new Response[entries.size()];
+        boolean[] resend = new boolean[entries.size()];
+        if (responses != null) {
+            for (int i = 0; i < responses.size(); i++) {
+                JsonNode item = responses.get(i);
+                int index = i;
+                if (item.hasNonNull("name")) {
+                    try {
+                        index = Integer.parseInt(item.get("name").asText());
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                }
+                if (index >= 0 && index < split.length) {
+                    int code = item.path("httpStatusCode").asInt(500);
+                    // the retry handler only sees the batch, send these on their own to be retried
+                    resend[index] = code == 429 || code >= 500;
+                    if (!resend[index]) {
+                        split[index] = itemResponse(entries.get(index).request, item, batchResponse);
+                    }
+                }
+            }
+        }
+        lock.lock();
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                entry.response = split[i];
+                if (split[i] == null && !resend[i]) {
+                    entry.error = new IOException("The batch response has no response for " + entry.request.url());
+                }
+                entry.done = true;
+            }
+            batch.changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Completes all the requests of a batch with the same outcome; neither a response
+     * nor an error means each request is to be sent on its own.
+     */
+    private void complete(Batch batch, Response response, IOException error) {
+        lock.lock();
+        try {
+            for (Entry entry : batch.entries) {
+                entry.response = response;
+                entry.error = error;
+                entry.done = true;
+            }
+            batch.changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Response itemResponse(Request request, JsonNode item, Response batchResponse) throws IOException {
+        Headers.Builder headers = new Headers.Builder();
+        JsonNode headerNode = item.get("headers");
+        if (headerNode != null) {
+            Iterator<Map.Entry<String, JsonNode>> fields = headerNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                headers.add(field.getKey(), field.getValue().asText());
+            }
+        }
+        JsonNode content = item.get("content");
+        String body = content == null || content.isNull() ? "" : MAPPER.writeValueAsString(content);
+        return new Response.Builder()
+                .request(request)
+                .protocol(batchResponse.protocol())
+                .code(item.path("httpStatusCode").asInt(500))
+                .message("")
+                .headers(headers.build())
+                .body(ResponseBody.create(JSON, body))
+                .build();
+    }
+
+    private static String key(Request request) {
+        HttpUrl url = request.url();
+        return url.scheme() + "://" + url.host() + ":" + url.port() + " " + request.header("Authorization");
+    }
+
+    /**
+     * The requests sent together.
+     */
+    private static final class Batch {
+        private final List<Entry> entries = new ArrayList<>();
+        /** Signalled when the batch is closed and when its responses arrive. */
+        private final Condition changed;
+        private boolean closed;
+
+        private Batch(Condition changed) {
+            this.changed = changed;
+        }
+    }
+
+    /**
+     * A request of a batch and its outcome.
+     */
+    private static final class Entry {
+        private final Request request;
+        private Response response;
+        private IOException error;
+        private boolean done;
+
+        private Entry(Request request) {
+            this.request = request;
+        }
+    }
+}
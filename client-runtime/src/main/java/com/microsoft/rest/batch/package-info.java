@@ -0,0 +1,5 @@
+/**
+ * The package contains classes that combine many small REST calls into ARM batch
+ * requests.
+ */
+package com.microsoft.rest.batch;
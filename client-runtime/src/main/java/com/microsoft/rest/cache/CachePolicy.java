@@ -0,0 +1,24 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.cache;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * How a GET request uses a {@link ResourceCache}, set as an attribute of its
+ * {@link com.microsoft.rest.context.RequestContext}. Unlike a
+ * {@code Cache-Control: no-cache} request header, which the cache honors as well, the
+ * attribute is not sent to the service.
+ */
+@Beta(SinceVersion.V1_2_0)
+public enum CachePolicy {
+    /** The request is served from the cache while the entry is fresh. */
+    DEFAULT,
+    /** The request goes to the service and updates the cache, e.g. a poll or a revalidation. */
+    REFRESH
+}
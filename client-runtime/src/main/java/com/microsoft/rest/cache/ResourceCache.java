@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.cache;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, in memory cache of the resources read by their ARM resource ID. The
+ * cache is attached to REST clients with
+ * {@link com.microsoft.rest.RestClient.Builder#withResourceCache(ResourceCache)} and
+ * can be shared by the clients of several services.
+ *
+ * A GET response is cached when it is successful and its body is the resource at
+ * the requested ID, and is served for the same ID and query while it is fresh.
+ * Entries are kept apart by authorization, so a client never sees a resource read
+ * with other credentials. A PUT, PATCH or DELETE of a resource through an attached
+ * client invalidates the resource and its child resources for all the credentials,
+ * and the final GET of a long running operation updates the entry.
+ *
+ * Once its time to live is over, an entry can still be served while it is
+ * revalidated in the background, for the stale-while-revalidate time.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class ResourceCache {
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private long staleWhileRevalidateNanos;
+    /** The largest body cached. */
+    private long maxBodySize = 1024 * 1024;
+
+    /** The entries by key, in access order. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** The keys of the entries by lower case resource ID, sorted to find child resources. */
+    private final TreeMap<String, Set<String>> keysById = new TreeMap<>();
+    /** Incremented by each write, so that reads overlapping a write are not cached. */
+    private long writeSequence;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries the maximum number of responses cached, the least recently
+     *                   used ones are evicted first
+     * @param timeToLive how long a response is served from the cache
+     * @param unit the unit of the time to live
+     */
+    public ResourceCache(int maxEntries, long timeToLive, TimeUnit unit) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+    }
+
+    /**
+     * Sets how long an expired response is still served while it is revalidated in
+     * the background. Responses are not served after their time to live by default.
+     *
+     * @param time the stale-while-revalidate time
+     * @param unit the unit of the time
+     * @return the cache itself
+     */
+    public ResourceCache withStaleWhileRevalidate(long time, TimeUnit unit) {
+        this.staleWhileRevalidateNanos = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * Sets the size of the largest response body cached, 1 MB by default.
+     *
+     * @param maxBodySize the size in bytes
+     * @return the cache itself
+     */
+    public ResourceCache withMaxBodySize(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+        return this;
+    }
+
+    /**
+     * @return the number of responses served fresh from the cache
+     */
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of expired responses served while being revalidated
+     */
+    public long staleHitCount() {
+        return staleHitCount.get();
+    }
+
+    /**
+     * @return the number of cacheable reads not served from the cache
+     */
+    public long missCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of entries removed by writes or by {@link #invalidate(String)}
+     */
+    public long invalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * @return the number of responses cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes a resource and its child resources from the cache.
+     *
+     * @param resourceId the ARM resource ID
+     */
+    public synchronized void invalidate(String resourceId) {
+        writeSequence++;
+        String id = normalize(resourceId);
+        removeId(id);
+        NavigableMap<String, Set<String>> children = keysById.subMap(id + "/", true, id + "0", false);
+        Iterator<Map.Entry<String, Set<String>>> iterator = children.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Set<String>> child = iterator.next();
+            for (String key : child.getValue()) {
+                entries.remove(key);
+                invalidationCount.incrementAndGet();
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes all the responses from the cache.
+     */
+    public synchronized void clear() {
+        writeSequence++;
+        entries.clear();
+        keysById.clear();
+    }
+
+    long maxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Marks the start of a write, so that the reads in flight are not cached.
+     */
+    synchronized void beginWrite() {
+        writeSequence++;
+    }
+
+    /**
+     * @return the current write sequence, to pass to {@link #put}
+     */
+    synchronized long readSequence() {
+        return writeSequence;
+    }
+
+    /**
+     * Looks up a response, counting the hit or the miss.
+     *
+     * @param key the key of the response
+     * @return the entry, fresh or to be revalidated, or null
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            long age = System.nanoTime() - entry.storedAtNanos;
+            if (age <= timeToLiveNanos) {
+                hitCount.incrementAndGet();
+                return entry;
+            }
+            if (age <= timeToLiveNanos + staleWhileRevalidateNanos) {
+                staleHitCount.incrementAndGet();
+                entry.stale = true;
+                return entry;
+            }
+            remove(key, entry.id);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a response, unless a write happened since the read started.
+     *
+     * @param key the key of the response
+     * @param entry the response
+     * @param sequence the write sequence when the read started
+     */
+    synchronized void put(String key, Entry entry, long sequence) {
+        if (sequence != writeSequence) {
+            return;
+        }
+        Entry previous = entries.get(key);
+        if (previous != null) {
+            remove(key, previous.id);
+        }
+        entries.put(key, entry);
+        Set<String> keys = keysById.get(entry.id);
+        if (keys == null) {
+            keys = new HashSet<>();
+            keysById.put(entry.id, keys);
+        }
+        keys.add(key);
+        while (entries.size() > maxEntries) {
+            Map.Entry<String, Entry> eldest = entries.entrySet().iterator().next();
+            remove(eldest.getKey(), eldest.getValue().id);
+        }
+    }
+
+    /**
+     * Stores a response written through the cache: a write may have been in flight, so
+     * the write sequence is not checked.
+     *
+     * @param key the key of the response
+     * @param entry the response
+     */
+    synchronized void update(String key, Entry entry) {
+        put(key, entry, writeSequence);
+    }
+
+    private void remove(String key, String id) {
+        entries.remove(key);
+        Set<String> keys = keysById.get(id);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysById.remove(id);
+            }
+        }
+    }
+
+    private void removeId(String id) {
+        Set<String> keys = keysById.remove(id);
+        if (keys != null) {
+            for (String key : keys) {
+                entries.remove(key);
+                invalidationCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Normalizes a resource ID: ARM resource IDs are case insensitive.
+     *
+     * @param resourceId the resource ID or path
+     * @return the normalized ID
+     */
+    static String normalize(String resourceId) {
+        String id = resourceId.toLowerCase(Locale.ROOT);
+        while (id.endsWith("/")) {
+            id = id.substring(0, id.length() - 1);
+        }
+        return id;
+    }
+
+    /**
+     * A cached response.
+     */
+    static final class Entry {
+        final String id;
+        final Protocol protocol;
+        final int code;
+        final String message;
+        final Headers headers;
+        final MediaType contentType;
+        final byte[] body;
+        final long storedAtNanos = System.nanoTime();
+        /** Whether the entry is served after its time to live. */
+        volatile boolean stale;
+        /** Whether a revalidation is in flight. */
+        final AtomicBoolean revalidating = new AtomicBoolean();
+
+        Entry(String id, Protocol protocol, int code, String message, Headers headers, MediaType contentType, byte[] body) {
+            this.id = id;
+            this.protocol = protocol;
+            this.code = code;
+            this.message = message;
+            this.headers = headers;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+}
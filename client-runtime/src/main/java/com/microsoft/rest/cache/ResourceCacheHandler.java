@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.admission.RequestPriority;
+import com.microsoft.rest.context.RequestContext;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * The interceptor serving the reads of a REST client from a {@link ResourceCache}
+ * and invalidating the resources it writes. Each client has its own handler, which
+ * revalidates stale responses with the client's own credentials.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class ResourceCacheHandler implements Interceptor {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ResourceCache cache;
+    /** The client revalidating stale responses, set once the client is built. */
+    private volatile OkHttpClient httpClient;
+
+    /**
+     * Creates a handler for a cache.
+     *
+     * @param cache the cache
+     */
+    public ResourceCacheHandler(ResourceCache cache) {
+        if (cache == null) {
+            throw new NullPointerException("cache == null");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * @return the cache the handler serves from
+     */
+    public ResourceCache cache() {
+        return cache;
+    }
+
+    /**
+     * Sets the client stale responses are revalidated with. Without a client, expired
+     * responses are never served.
+     *
+     * @param httpClient the client including this handler
+     * @return the handler itself
+     */
+    public ResourceCacheHandler withHttpClient(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+        return this;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String method = request.method();
+        if ("PUT".equals(method) || "PATCH".equals(method) || "DELETE".equals(method)) {
+            cache.beginWrite();
+            try {
+                return chain.proceed(request);
+            } finally {
+                cache.invalidate(request.url().encodedPath());
+            }
+        }
+        if (!"GET".equals(method)) {
+            return chain.proceed(request);
+        }
+        String key = key(request);
+        // polls and revalidations read through the cache but update it
+        boolean noCache = RequestContext.of(request).attribute(CachePolicy.class) == CachePolicy.REFRESH
+                || "no-cache".equalsIgnoreCase(request.header("Cache-Control"));
+        if (!noCache) {
+            ResourceCache.Entry entry = cache.get(key);
+            if (entry != null && (!entry.stale || revalidate(request, entry))) {
+                return toResponse(request, entry);
+            }
+        }
+        long sequence = cache.readSequence();
+        Response response = chain.proceed(request);
+        byte[] body = response.code() == 200 ? peekBody(response, cache.maxBodySize()) : null;
+        if (body == null) {
+            return response;
+        }
+        Response buffered = response.newBuilder()
+                .body(ResponseBody.create(response.body().contentType(), body))
+                .build();
+        String id = ResourceCache.normalize(request.url().encodedPath());
+        if (isResource(id, body)) {
+            ResourceCache.Entry entry = new ResourceCache.Entry(id, response.protocol(), response.code(),
+                    response.message(), response.headers(), response.body().contentType(), body);
+            if (noCache) {
+                cache.update(key, entry);
+            } else {
+                cache.put(key, entry, sequence);
+            }
+        }
+        return buffered;
+    }
+
+    /**
+     * Reads a JSON body of at most the given size. Larger bodies, and the bodies of
+     * unknown length going over it, are left to the caller untouched: the bytes read
+     * ahead stay in the buffer of their source.
+     *
+     * @return the body, or null if it is not cached
+     */
+    private static byte[] peekBody(Response response, long maxBodySize) throws IOException {
+        ResponseBody body = response.body();
+        if (body == null || body.contentLength() > maxBodySize) {
+            return null;
+        }
+        MediaType contentType = body.contentType();
+        if (contentType == null || !contentType.subtype().toLowerCase(Locale.ROOT).endsWith("json")) {
+            return null;
+        }
+        BufferedSource source = body.source();
+        if (source.request(maxBodySize + 1)) {
+            return null;
+        }
+        byte[] bytes = source.buffer().readByteArray();
+        body.close();
+        return bytes;
+    }
+
+    /**
+     * Starts revalidating a stale entry in the background, unless it already is.
+     *
+     * @return whether the stale entry can be served
+     */
+    private boolean revalidate(Request request, final ResourceCache.Entry entry) {
+        OkHttpClient client = httpClient;
+        if (client == null) {
+            return false;
+        }
+        if (entry.revalidating.compareAndSet(false, true)) {
+            // a request of its own: admitted in the background, without the deadline of the read
+            Request revalidation = request.newBuilder()
+                    .removeHeader("x-ms-client-request-id")
+                    .tag(new RequestContext.Builder()
+                            .withPriority(RequestPriority.BACKGROUND)
+                            .withAttribute(CachePolicy.class, CachePolicy.REFRESH)
+                            .build())
+                    .build();
+            client.newCall(revalidation).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    // the next stale read tries again
+                    entry.revalidating.set(false);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try {
+                        response.body().close();
+                    } finally {
+                        // a successful revalidation replaced the entry, try again otherwise
+                        entry.revalidating.set(false);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    private static Response toResponse(Request request, ResourceCache.Entry entry) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(entry.protocol)
+                .code(entry.code)
+                .message(entry.message)
+                .headers(entry.headers)
+                .body(ResponseBody.create(entry.contentType, entry.body))
+                .build();
+    }
+
+    /**
+     * Checks that a response body is the resource at an ID, and not a list or an
+     * operation status.
+     */
+    private static boolean isResource(String id, byte[] body) {
+        try {
+            JsonNode node = MAPPER.readTree(body);
+            return node != null && node.hasNonNull("id") && id.equals(ResourceCache.normalize(node.get("id").asText()));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The key of a read: the authorization keeps the credentials apart, and the query
+     * the API versions.
+     */
+    private static String key(Request request) {
+        HttpUrl url = request.url();
+        String query = url.encodedQuery();
+        return request.header("Authorization") + "\n" + ResourceCache.normalize(url.encodedPath())
+                + (query == null ? "" : "?" + query);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains classes that cache resources read by their ARM resource
+ * ID and invalidate them on writes.
+ */
+package com.microsoft.rest.cache;
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.context;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import okhttp3.Headers;
+
+import java.util.Map;
+
+/**
+ * Headers replacing the custom headers of the clients for the calls made on a thread
+ * while the scope is open, e.g. the correlation ID of an incoming request:
+ * <pre>
+ * try (HeaderScope scope = HeaderScope.open("x-ms-correlation-request-id", id)) {
+ *     client.resources().list();
+ * }
+ * </pre>
+ * The scope is a {@link RequestScope} with header overrides only: the headers are
+ * taken when a call is created and travel in its {@link RequestContext}, so they also
+ * apply to calls subscribed to or completing on other threads. Nested scopes add to
+ * the headers of the enclosing one and must be closed first.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class HeaderScope implements AutoCloseable {
+    private final RequestScope scope;
+
+    private HeaderScope(RequestScope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Opens a scope with a single header on the calling thread.
+     *
+     * @param name the name of the header
+     * @param value the value of the header
+     * @return the scope, to close on the same thread
+     */
+    public static HeaderScope open(String name, String value) {
+        return new HeaderScope(RequestScope.open(new RequestContext.Builder().withHeaderOverride(name, value).build()));
+    }
+
+    /**
+     * Opens a scope with headers on the calling thread.
+     *
+     * @param headers the headers by name
+     * @return the scope, to close on the same thread
+     */
+    public static HeaderScope open(Map<String, String> headers) {
+        RequestContext.Builder builder = new RequestContext.Builder();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.withHeaderOverride(header.getKey(), header.getValue());
+        }
+        return new HeaderScope(RequestScope.open(builder.build()));
+    }
+
+    /**
+     * @return the headers of the scope open on the calling thread, empty if there is none
+     */
+    public static Headers current() {
+        return RequestScope.current().headerOverrides();
+    }
+
+    /**
+     * @return the headers of this scope, including the ones of the enclosing scopes
+     */
+    public Headers headers() {
+        return scope.context().headerOverrides();
+    }
+
+    /**
+     * Closes the scope, restoring the enclosing one.
+     *
+     * @throws IllegalStateException if the scope is not the innermost one open on the calling thread
+     */
+    @Override
+    public void close() {
+        scope.close();
+    }
+}
@@ -0,0 +1,401 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.context;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.admission.BulkheadHandler;
+import com.microsoft.rest.admission.RequestPriority;
+import okhttp3.Headers;
+import okhttp3.Request;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The typed settings of a single request: the logging context, the host parameters,
+ * the priority, the bulkhead scope, the header overrides, the deadline and any
+ * attributes of the layers above. The context is attached to the OkHttp {@link Request} as its tag, so the
+ * interceptors of the client read it without looking up, splitting and removing
+ * control headers.
+ *
+ * The control headers generated code and custom headers set are still understood:
+ * {@link #attach(Request)} moves them into the context once per call, and
+ * {@link #of(Request)} merges the ones added after that. The calls of generated
+ * code get the rest of the settings from a {@link RequestScope}.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RequestContext {
+    /** The header naming the logger of a request. */
+    public static final String LOGGING_CONTEXT_HEADER = "x-ms-logging-context";
+    /** The header with the replacements of a parameterized host, in pattern and value pairs. */
+    public static final String PARAMETERIZED_HOST_HEADER = "x-ms-parameterized-host";
+
+    private static final Headers NO_HEADERS = new Headers.Builder().build();
+
+    /** The context of a request without any settings. */
+    public static final RequestContext EMPTY = new Builder().build();
+
+    private final String loggingContext;
+    private final List<String> hostParameters;
+    private final RequestPriority priority;
+    private final String bulkheadScope;
+    private final Headers headerOverrides;
+    /** The deadline in {@link System#nanoTime()} units, valid if {@link #hasDeadline} is set. */
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private final Map<Class<?>, Object> attributes;
+
+    private RequestContext(Builder builder) {
+        this.loggingContext = builder.loggingContext;
+        this.hostParameters = builder.hostParameters;
+        this.priority = builder.priority;
+        this.bulkheadScope = builder.bulkheadScope;
+        this.headerOverrides = builder.headerOverrides;
+        this.deadlineNanos = builder.deadlineNanos;
+        this.hasDeadline = builder.hasDeadline;
+        // the builder copies the map on write, so it can be shared
+        this.attributes = builder.attributes;
+    }
+
+    /**
+     * Gets the context of a request: the attached one, updated with the control
+     * headers the request carries. The headers are compared once and nothing is
+     * allocated if there are none.
+     *
+     * @param request the request
+     * @return the context of the request, {@link #EMPTY} if it has none
+     */
+    public static RequestContext of(Request request) {
+        RequestContext attached = attached(request);
+        Headers headers = request.headers();
+        Builder builder = null;
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i);
+            if (isControlHeader(name)) {
+                if (builder == null) {
+                    builder = attached.newBuilder();
+                }
+                builder.withHeader(name, headers.value(i));
+            }
+        }
+        return builder == null ? attached : builder.build();
+    }
+
+    /**
+     * Moves the control headers of a request into its context, along with the settings
+     * of the {@link RequestScope} or {@link HeaderScope} open on the calling thread.
+     *
+     * @param request the request
+     * @return the request with its context attached as the tag and without control
+     *     headers, or the same request if there was nothing to move
+     */
+    public static Request attach(Request request) {
+        RequestContext context = of(request).withDefaults(RequestScope.current());
+        if (context == attached(request)) {
+            return request;
+        }
+        return request.newBuilder()
+                .removeHeader(LOGGING_CONTEXT_HEADER)
+                .removeHeader(PARAMETERIZED_HOST_HEADER)
+                .removeHeader(RequestPriority.HEADER_NAME)
+                .removeHeader(BulkheadHandler.SCOPE_HEADER_NAME)
+                .tag(context)
+                .build();
+    }
+
+    /**
+     * Fills the settings this context does not have from another one. The header
+     * overrides and attributes of both are kept, this context winning, and the
+     * earliest deadline applies.
+     *
+     * @param defaults the context to take the missing settings from
+     * @return the merged context, or this context if the other one is empty
+     */
+    RequestContext withDefaults(RequestContext defaults) {
+        if (defaults == EMPTY || defaults == this) {
+            return this;
+        }
+        Builder builder = defaults.newBuilder();
+        if (loggingContext != null) {
+            builder.loggingContext = loggingContext;
+        }
+        if (!hostParameters.isEmpty()) {
+            builder.hostParameters = hostParameters;
+        }
+        if (priority != null) {
+            builder.priority = priority;
+        }
+        if (bulkheadScope != null) {
+            builder.bulkheadScope = bulkheadScope;
+        }
+        if (headerOverrides.size() > 0) {
+            Headers.Builder headers = defaults.headerOverrides.newBuilder();
+            for (String name : headerOverrides.names()) {
+                headers.removeAll(name);
+            }
+            for (int i = 0; i < headerOverrides.size(); i++) {
+                headers.add(headerOverrides.name(i), headerOverrides.value(i));
+            }
+            builder.headerOverrides = headers.build();
+        }
+        if (hasDeadline && (!builder.hasDeadline || deadlineNanos - builder.deadlineNanos < 0)) {
+            builder.deadlineNanos = deadlineNanos;
+            builder.hasDeadline = true;
+        }
+        if (!attributes.isEmpty()) {
+            Map<Class<?>, Object> merged = new HashMap<>(defaults.attributes);
+            merged.putAll(attributes);
+            builder.attributes = merged;
+        }
+        return builder.build();
+    }
+
+    private static RequestContext attached(Request request) {
+        // an untagged request returns itself as the tag
+        Object tag = request.tag();
+        return tag instanceof RequestContext ? (RequestContext) tag : EMPTY;
+    }
+
+    private static boolean isControlHeader(String name) {
+        return LOGGING_CONTEXT_HEADER.equalsIgnoreCase(name)
+                || PARAMETERIZED_HOST_HEADER.equalsIgnoreCase(name)
+                || RequestPriority.HEADER_NAME.equalsIgnoreCase(name)
+                || BulkheadHandler.SCOPE_HEADER_NAME.equalsIgnoreCase(name);
+    }
+
+    /**
+     * @return the name of the logger of the request, or null if not set
+     */
+    public String loggingContext() {
+        return loggingContext;
+    }
+
+    /**
+     * @return the replacements of a parameterized host in pattern and value pairs, empty if not set
+     */
+    public List<String> hostParameters() {
+        return hostParameters;
+    }
+
+    /**
+     * @return the priority of the request, {@link RequestPriority#NORMAL} if not set
+     */
+    public RequestPriority priority() {
+        return priority == null ? RequestPriority.NORMAL : priority;
+    }
+
+    /**
+     * @return the bulkhead scope of the request, or null if not set
+     */
+    public String bulkheadScope() {
+        return bulkheadScope;
+    }
+
+    /**
+     * @return the headers replacing the custom headers of the client for this request
+     */
+    public Headers headerOverrides() {
+        return headerOverrides;
+    }
+
+    /**
+     * @return true if the request has a deadline
+     */
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    /**
+     * @return the nanoseconds left before the deadline, negative once it has passed
+     *     and {@link Long#MAX_VALUE} if there is none
+     */
+    public long remainingNanos() {
+        return hasDeadline ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the deadline of the request has passed
+     */
+    public boolean isExpired() {
+        return hasDeadline && remainingNanos() <= 0;
+    }
+
+    /**
+     * Gets an attribute set by a layer above the client, e.g. tracing.
+     *
+     * @param type the type of the attribute
+     * @param <T> the type of the attribute
+     * @return the attribute, or null if not set
+     */
+    public <T> T attribute(Class<T> type) {
+        return type.cast(attributes.get(type));
+    }
+
+    /**
+     * @return a builder initialized with the settings of this context
+     */
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * The builder of a {@link RequestContext}.
+     */
+    public static final class Builder {
+        private String loggingContext;
+        private List<String> hostParameters = Collections.emptyList();
+        private RequestPriority priority;
+        private String bulkheadScope;
+        private Headers headerOverrides = NO_HEADERS;
+        private long deadlineNanos;
+        private boolean hasDeadline;
+        private Map<Class<?>, Object> attributes = Collections.emptyMap();
+
+        /**
+         * Creates a builder of an empty context.
+         */
+        public Builder() {
+        }
+
+        private Builder(RequestContext context) {
+            this.loggingContext = context.loggingContext;
+            this.hostParameters = context.hostParameters;
+            this.priority = context.priority;
+            this.bulkheadScope = context.bulkheadScope;
+            this.headerOverrides = context.headerOverrides;
+            this.deadlineNanos = context.deadlineNanos;
+            this.hasDeadline = context.hasDeadline;
+            this.attributes = context.attributes;
+        }
+
+        /**
+         * Sets the name of the logger of the request.
+         *
+         * @param loggingContext the name of the logger
+         * @return the builder itself for chaining
+         */
+        public Builder withLoggingContext(String loggingContext) {
+            this.loggingContext = loggingContext;
+            return this;
+        }
+
+        /**
+         * Sets the replacements of a parameterized host. E.g. {subdomain}.microsoft.com
+         * becomes azure.microsoft.com with "{subdomain}", "azure".
+         *
+         * @param replacements the strings to replace in the URL, each followed by its replacement
+         * @return the builder itself for chaining
+         */
+        public Builder withHostParameters(String... replacements) {
+            if (replacements.length % 2 != 0) {
+                throw new IllegalArgumentException("Must provide a replacement value for each pattern");
+            }
+            this.hostParameters = Collections.unmodifiableList(Arrays.asList(replacements.clone()));
+            return this;
+        }
+
+        /**
+         * Sets the priority of the request.
+         *
+         * @param priority the priority
+         * @return the builder itself for chaining
+         */
+        public Builder withPriority(RequestPriority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Sets the bulkhead scope of the request.
+         *
+         * @param bulkheadScope the scope
+         * @return the builder itself for chaining
+         */
+        public Builder withBulkheadScope(String bulkheadScope) {
+            this.bulkheadScope = bulkheadScope;
+            return this;
+        }
+
+        /**
+         * Sets a header of the request replacing the custom header of the client with
+         * the same name, without deriving a client for a single call.
+         *
+         * @param name the name of the header
+         * @param value the value of the header
+         * @return the builder itself for chaining
+         */
+        public Builder withHeaderOverride(String name, String value) {
+            this.headerOverrides = headerOverrides.newBuilder().set(name, value).build();
+            return this;
+        }
+
+        /**
+         * Sets the deadline of the request to a time from now. Once it has passed, the
+         * request is neither retried nor kept waiting for admission.
+         *
+         * @param timeout the time from now
+         * @param unit the unit of the time
+         * @return the builder itself for chaining
+         */
+        public Builder withTimeout(long timeout, TimeUnit unit) {
+            this.deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+            this.hasDeadline = true;
+            return this;
+        }
+
+        /**
+         * Sets an attribute for a layer above the client, e.g. tracing.
+         *
+         * @param type the type of the attribute
+         * @param value the attribute, or null to remove it
+         * @param <T> the type of the attribute
+         * @return the builder itself for chaining
+         */
+        public <T> Builder withAttribute(Class<T> type, T value) {
+            Map<Class<?>, Object> copy = new HashMap<>(attributes);
+            if (value == null) {
+                copy.remove(type);
+            } else {
+                copy.put(type, value);
+            }
+            this.attributes = copy;
+            return this;
+        }
+
+        /**
+         * Sets the setting carried by a control header.
+         *
+         * @param name the name of the header
+         * @param value the value of the header
+         * @return the builder itself for chaining
+         */
+        Builder withHeader(String name, String value) {
+            if (LOGGING_CONTEXT_HEADER.equalsIgnoreCase(name)) {
+                return withLoggingContext(value);
+            } else if (PARAMETERIZED_HOST_HEADER.equalsIgnoreCase(name)) {
+                return value.isEmpty() ? withHostParameters() : withHostParameters(value.split(", "));
+            } else if (RequestPriority.HEADER_NAME.equalsIgnoreCase(name)) {
+                return withPriority(RequestPriority.fromHeaderValue(value));
+            } else if (BulkheadHandler.SCOPE_HEADER_NAME.equalsIgnoreCase(name)) {
+                return withBulkheadScope(value);
+            }
+            return this;
+        }
+
+        /**
+         * @return the context
+         */
+        public RequestContext build() {
+            return new RequestContext(this);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.context;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import okhttp3.Call;
+import okhttp3.Request;
+
+/**
+ * The call factory of the Retrofit instance of a REST client, attaching the
+ * {@link RequestContext} of each request before it enters the interceptors.
+ * Retrofit has no way of setting request tags, so the control headers of the
+ * service interfaces are moved into the context here.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RequestContextCallFactory implements Call.Factory {
+    private final Call.Factory delegate;
+
+    /**
+     * Creates a call factory.
+     *
+     * @param delegate the factory creating the calls, usually the HTTP client
+     */
+    public RequestContextCallFactory(Call.Factory delegate) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate == null");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Call newCall(Request request) {
+        return delegate.newCall(RequestContext.attach(request));
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.context;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * A {@link RequestContext} for the calls made on a thread while the scope is open,
+ * which is how the calls of generated service interfaces, taking no context, get a
+ * deadline, header overrides or attributes:
+ * <pre>
+ * RequestContext context = new RequestContext.Builder().withTimeout(30, TimeUnit.SECONDS).build();
+ * try (RequestScope scope = RequestScope.open(context)) {
+ *     client.virtualMachines().list();
+ * }
+ * </pre>
+ * The settings of a call itself win over the ones of the scope, except for the
+ * deadline, where the earliest applies; it counts from when the context was built.
+ * Nested scopes add to the enclosing one and must be closed first.
+ *
+ * The scope is taken when a call is created, i.e. when the service method is
+ * called, and travels with the call, so subscribing on another thread keeps it, as
+ * do the polls of long running operations and the next pages of lists.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RequestScope implements AutoCloseable {
+    private static final ThreadLocal<RequestScope> CURRENT = new ThreadLocal<>();
+
+    private final RequestScope parent;
+    private final RequestContext context;
+
+    private RequestScope(RequestScope parent, RequestContext context) {
+        this.parent = parent;
+        this.context = context;
+    }
+
+    /**
+     * Opens a scope on the calling thread.
+     *
+     * @param context the settings of the calls made in the scope
+     * @return the scope, to close on the same thread
+     */
+    public static RequestScope open(RequestContext context) {
+        if (context == null) {
+            throw new NullPointerException("context == null");
+        }
+        RequestScope parent = CURRENT.get();
+        return push(parent, parent == null ? context : context.withDefaults(parent.context));
+    }
+
+    /**
+     * Reopens a context captured with {@link #current()} on the calling thread, e.g.
+     * when a call created on one thread is sent from another. Unlike
+     * {@link #open(RequestContext)}, the scopes open on the calling thread do not add
+     * to the context until the returned scope is closed.
+     *
+     * @param context the captured context
+     * @return the scope, to close on the same thread
+     */
+    public static RequestScope restore(RequestContext context) {
+        if (context == null) {
+            throw new NullPointerException("context == null");
+        }
+        return push(CURRENT.get(), context);
+    }
+
+    private static RequestScope push(RequestScope parent, RequestContext context) {
+        RequestScope scope = new RequestScope(parent, context);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the context of the scope open on the calling thread, {@link RequestContext#EMPTY} if there is none
+     */
+    public static RequestContext current() {
+        RequestScope scope = CURRENT.get();
+        return scope == null ? RequestContext.EMPTY : scope.context;
+    }
+
+    /**
+     * @return the context of this scope, including the settings of the enclosing scopes
+     */
+    public RequestContext context() {
+        return context;
+    }
+
+    /**
+     * Closes the scope, restoring the enclosing one.
+     *
+     * @throws IllegalStateException if the scope is not the innermost one open on the calling thread
+     */
+    @Override
+    public void close() {
+        if (CURRENT.get() != this) {
+            throw new IllegalStateException("The scope is not the innermost one open on this thread");
+        }
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.context;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * The first call adapter factory of the Retrofit instance of a REST client. It takes
+ * the {@link RequestScope} open when a service method is called and hands the next
+ * adapter a call carrying it, so the scope still applies when the call is sent later
+ * or from another thread, e.g. when an observable is subscribed to on a scheduler.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RequestScopeCallAdapterFactory extends CallAdapter.Factory {
+    private RequestScopeCallAdapterFactory() {
+    }
+
+    /**
+     * @return the call adapter factory
+     */
+    public static RequestScopeCallAdapterFactory create() {
+        return new RequestScopeCallAdapterFactory();
+    }
+
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        final CallAdapter<?> delegate = retrofit.nextCallAdapter(this, returnType, annotations);
+        return new CallAdapter<Object>() {
+            @Override
+            public Type responseType() {
+                return delegate.responseType();
+            }
+
+            @Override
+            public <R> Object adapt(Call<R> call) {
+                return delegate.adapt(new ScopedCall<>(call, RequestScope.current()));
+            }
+        };
+    }
+
+    /**
+     * A call creating its HTTP call in the scope it was created in.
+     *
+     * @param <T> the type of the body
+     */
+    private static final class ScopedCall<T> implements Call<T> {
+        private final Call<T> delegate;
+        private final RequestContext scope;
+
+        ScopedCall(Call<T> delegate, RequestContext scope) {
+            this.delegate = delegate;
+            this.scope = scope;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            try (RequestScope restored = RequestScope.restore(scope)) {
+                return delegate.execute();
+            }
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            // the HTTP call is created before enqueue returns
+            try (RequestScope restored = RequestScope.restore(scope)) {
+                delegate.enqueue(callback);
+            }
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return delegate.isExecuted();
+        }
+
+        @Override
+        public void cancel() {
+            delegate.cancel();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return delegate.isCanceled();
+        }
+
+        @Override
+        public Call<T> clone() {
+            return new ScopedCall<>(delegate.clone(), scope);
+        }
+
+        @Override
+        public Request request() {
+            try (RequestScope restored = RequestScope.restore(scope)) {
+                return delegate.request();
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains classes to attach typed per-request settings to HTTP
+ * requests, read by the interceptors of the client in place of control headers.
+ */
+package com.microsoft.rest.context;
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.events;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * Receives the events of the runtime, typically to record them into a profiler.
+ *
+ * An event is begun with {@link #begin(RuntimeEventType)}, which returns a handle
+ * of the listener's choosing, or null if the event is not to be recorded; the
+ * handle is then passed to the method ending the event, possibly on another
+ * thread. A listener is installed with {@link RuntimeEvents#setListener}, or found
+ * by {@link java.util.ServiceLoader} when the runtime is first used.
+ *
+ * The methods are called on the threads doing the work and must be fast, thread
+ * safe and never throw.
+ */
+@Beta(SinceVersion.V1_2_0)
+public interface RuntimeEventListener {
+    /**
+     * Begins an event.
+     *
+     * @param type the type of the event
+     * @return the handle of the event, or null not to record it
+     */
+    Object begin(RuntimeEventType type);
+
+    /**
+     * Ends an {@link RuntimeEventType#HTTP_CALL} event.
+     *
+     * @param event the handle of the event
+     * @param operation the logging context of the call, or its HTTP method if it has none
+     * @param method the HTTP method
+     * @param url the URL, without its query
+     * @param statusCode the status code of the response, or 0 if the call failed
+     * @param bytesSent the length of the request body
+     * @param bytesReceived the number of response body bytes read
+     */
+    void httpCallEnded(Object event, String operation, String method, String url, int statusCode,
+                       long bytesSent, long bytesReceived);
+
+    /**
+     * Ends a {@link RuntimeEventType#SERIALIZATION} event.
+     *
+     * @param event the handle of the event
+     * @param type the name of the type serialized
+     * @param size the number of characters written
+     */
+    void serializationEnded(Object event, String type, long size);
+
+    /**
+     * Ends a {@link RuntimeEventType#DESERIALIZATION} event.
+     *
+     * @param event the handle of the event
+     * @param type the name of the type deserialized
+     * @param size the number of characters read
+     */
+    void deserializationEnded(Object event, String type, long size);
+
+    /**
+     * Ends a {@link RuntimeEventType#POLL} event.
+     *
+     * @param event the handle of the event
+     * @param operation the logging context of the operation polled
+     * @param statusCode the status code of the poll, or 0 if it failed
+     */
+    void pollEnded(Object event, String operation, int statusCode);
+
+    /**
+     * Ends a {@link RuntimeEventType#PAGE_LOAD} event.
+     *
+     * @param event the handle of the event
+     * @param list the name of the type of the paged list
+     * @param items the number of items in the page, or -1 if there was none or it failed to load
+     * @param hasNextPage whether there is a page after it
+     */
+    void pageLoadEnded(Object event, String list, int items, boolean hasNextPage);
+
+    /**
+     * Ends a {@link RuntimeEventType#TOKEN} event.
+     *
+     * @param event the handle of the event
+     * @param resource the resource the token is for
+     * @param cached true if the token was cached, false if it was acquired, or null if the credentials did not tell
+     */
+    void tokenEnded(Object event, String resource, Boolean cached);
+}
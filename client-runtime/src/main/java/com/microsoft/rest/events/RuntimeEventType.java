@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.events;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * The types of the events reported to a {@link RuntimeEventListener}.
+ */
+@Beta(SinceVersion.V1_2_0)
+public enum RuntimeEventType {
+    /** A call through a client, from its start until its response body is closed. */
+    HTTP_CALL,
+    /** The serialization of an object to JSON. */
+    SERIALIZATION,
+    /** The deserialization of an object from JSON. */
+    DESERIALIZATION,
+    /** A poll of a long running operation. */
+    POLL,
+    /** The load of the next page of a paged list. */
+    PAGE_LOAD,
+    /** The authentication of a request with an Azure token. */
+    TOKEN
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.events;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the {@link RuntimeEventListener} of the runtime. Until one is set, the
+ * first listener found by {@link ServiceLoader} is used, so that adding a module
+ * such as {@code azure-client-runtime-jfr} to the class path is enough.
+ *
+ * Clients built while there is no listener do not report their calls.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RuntimeEvents {
+    private static volatile RuntimeEventListener listener = load();
+
+    private RuntimeEvents() {
+    }
+
+    /**
+     * @return the listener of the runtime, or null if there is none
+     */
+    public static RuntimeEventListener listener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener of the runtime, replacing the one found on the class path.
+     *
+     * @param listener the listener, or null to report nothing
+     */
+    public static void setListener(RuntimeEventListener listener) {
+        RuntimeEvents.listener = listener;
+    }
+
+    /**
+     * Begins an event with a listener, if there is one.
+     *
+     * @param listener the listener, possibly null
+     * @param type the type of the event
+     * @return the handle of the event, or null if it is not recorded
+     */
+    public static Object begin(RuntimeEventListener listener, RuntimeEventType type) {
+        if (listener == null) {
+            return null;
+        }
+        try {
+            return listener.begin(type);
+        } catch (RuntimeException e) {
+            // events never fail the work they describe
+            return null;
+        }
+    }
+
+    /**
+     * @param type a type
+     * @return the name of the type, with its type arguments
+     */
+    public static String typeName(Type type) {
+        if (type == null) {
+            return null;
+        }
+        return type instanceof Class<?> ? ((Class<?>) type).getName() : type.toString();
+    }
+
+    private static RuntimeEventListener load() {
+        try {
+            Iterator<RuntimeEventListener> listeners =
+                    ServiceLoader.load(RuntimeEventListener.class, RuntimeEvents.class.getClassLoader()).iterator();
+            if (listeners.hasNext()) {
+                return listeners.next();
+            }
+        } catch (ServiceConfigurationError | LinkageError e) {
+            // a listener that cannot be loaded, e.g. on a runtime without its API, reports nothing
+        }
+        return null;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.events;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.context.RequestContext;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reports the calls of a client as {@link RuntimeEventType#HTTP_CALL} events to
+ * the listener of the runtime. A call ends when its response body is exhausted or
+ * closed, or when it fails. {@code RestClient.Builder} adds the interceptor first
+ * when there is a listener.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RuntimeEventsInterceptor implements Interceptor {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        RuntimeEventListener listener = RuntimeEvents.listener();
+        Object event = RuntimeEvents.begin(listener, RuntimeEventType.HTTP_CALL);
+        if (event == null) {
+            return chain.proceed(chain.request());
+        }
+        HttpCall call = new HttpCall(listener, event, chain.request());
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            call.end(0);
+            throw e;
+        }
+        return call.wrap(response);
+    }
+
+    /**
+     * A call in progress.
+     */
+    private static final class HttpCall {
+        private final RuntimeEventListener listener;
+        private final Object event;
+        private final Request request;
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private volatile long bytesReceived;
+
+        private HttpCall(RuntimeEventListener listener, Object event, Request request) {
+            this.listener = listener;
+            this.event = event;
+            this.request = request;
+        }
+
+        private void end(int statusCode) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            String operation = RequestContext.of(request).loggingContext();
+            long bytesSent = 0;
+            try {
+                if (request.body() != null) {
+                    bytesSent = Math.max(0, request.body().contentLength());
+                }
+            } catch (IOException e) {
+                // unknown length
+            }
+            try {
+                listener.httpCallEnded(event, operation != null ? operation : request.method(), request.method(),
+                        request.url().newBuilder().query(null).build().toString(), statusCode, bytesSent, bytesReceived);
+            } catch (RuntimeException e) {
+                // events never fail a call
+            }
+        }
+
+        private Response wrap(final Response response) {
+            final ResponseBody body = response.body();
+            if (body == null) {
+                end(response.code());
+                return response;
+            }
+            Source source = new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read;
+                    try {
+                        read = super.read(sink, byteCount);
+                    } catch (IOException e) {
+                        end(0);
+                        throw e;
+                    }
+                    if (read == -1) {
+                        end(response.code());
+                    } else {
+                        bytesReceived += read;
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        end(response.code());
+                    }
+                }
+            };
+            return response.newBuilder()
+                    .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+                    .build();
+        }
+    }
+}
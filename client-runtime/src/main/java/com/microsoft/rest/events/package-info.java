@@ -0,0 +1,5 @@
+/**
+ * The package contains classes to report the calls, serializations, polls, page
+ * loads and token acquisitions of the runtime to a listener, such as a profiler.
+ */
+package com.microsoft.rest.events;
@@ -0,0 +1,438 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.LogLevel;
+import com.microsoft.rest.context.RequestContext;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A logging interceptor that keeps formatting and logging off the threads of the
+ * calls. Each sampled exchange is recorded as a structured event into a bounded
+ * ring buffer of preallocated slots, without locking, and a background thread
+ * drains the buffer to SLF4J. When the buffer is full the event is dropped and
+ * counted rather than slowing down the call.
+ *
+ * Recording only keeps references to the immutable URL and headers of the
+ * exchange; bodies are captured up to a maximum size, and decoded, decompressed
+ * and pretty printed by the background thread. With the log level set to
+ * {@link LogLevel#NONE} the interceptor costs nothing.
+ *
+ * The background thread is a daemon thread shared by the copies of the interceptor,
+ * and stops once {@link #close()} is called.
+ */
+@Beta(SinceVersion.V1_2_0)
+public class AsyncLoggingInterceptor extends LoggingInterceptor {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /** The default number of events the buffer holds. */
+    private static final int DEFAULT_CAPACITY = 8192;
+    /** The default maximum number of bytes logged of a body. */
+    private static final int DEFAULT_MAX_BODY_SIZE = 4096;
+    /** How long the background thread waits when the buffer is empty. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Ring ring;
+    private volatile LogSampler sampler;
+
+    /**
+     * Creates an interceptor with a buffer of the default capacity.
+     *
+     * @param logLevel the level of traffic to log
+     */
+    public AsyncLoggingInterceptor(LogLevel logLevel) {
+        this(logLevel, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an interceptor.
+     *
+     * @param logLevel the level of traffic to log
+     * @param capacity the number of events the buffer holds
+     */
+    public AsyncLoggingInterceptor(LogLevel logLevel, int capacity) {
+        super(logLevel);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.ring = new Ring(capacity);
+        withMaxBodySize(DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * Creates an interceptor sharing the buffer of another one, for subclasses
+     * overriding {@link #copy()}.
+     *
+     * @param other the interceptor to share the buffer of
+     */
+    protected AsyncLoggingInterceptor(AsyncLoggingInterceptor other) {
+        super(other.logLevel());
+        this.ring = other.ring;
+        this.sampler = other.sampler;
+        withMaxBodySize(other.maxBodySize());
+    }
+
+    /**
+     * Creates an interceptor sharing the buffer and the background thread of this
+     * one, with its own settings initialized from this one.
+     *
+     * @return the new interceptor
+     */
+    public AsyncLoggingInterceptor copy() {
+        return new AsyncLoggingInterceptor(this);
+    }
+
+    /**
+     * Sets the sampler deciding which exchanges are logged. All of them are by default.
+     *
+     * @param sampler the sampler, or null to log all the exchanges
+     * @return the interceptor itself for chaining
+     */
+    public AsyncLoggingInterceptor withSampler(LogSampler sampler) {
+        this.sampler = sampler;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes logged of a body, 4 KiB by default.
+     *
+     * @param maxBodySize the maximum number of bytes
+     * @return the interceptor itself for chaining
+     */
+    @Override
+    public AsyncLoggingInterceptor withMaxBodySize(int maxBodySize) {
+        super.withMaxBodySize(maxBodySize);
+        return this;
+    }
+
+    /**
+     * @return the number of events dropped because the buffer was full
+     */
+    public long droppedCount() {
+        return ring.dropped.get();
+    }
+
+    /**
+     * Logs the recorded events on the calling thread, e.g. before shutting down.
+     */
+    public void flush() {
+        ring.drain();
+    }
+
+    /**
+     * Logs the remaining events and stops the background thread.
+     */
+    public void close() {
+        ring.closed = true;
+        LockSupport.unpark(ring.thread);
+        ring.drain();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        LogLevel level = logLevel();
+        if (level == LogLevel.NONE) {
+            return chain.proceed(request);
+        }
+        boolean headers = level == LogLevel.HEADERS || level == LogLevel.BODY_AND_HEADERS;
+        boolean bodies = level == LogLevel.BODY || level == LogLevel.BODY_AND_HEADERS;
+        int maxBody = maxBodySize();
+        BodyCapture requestCapture = null;
+        if (bodies && request.body() != null) {
+            // capture the beginning of the body as it is written to the network
+            requestCapture = new BodyCapture(maxBody, false);
+            request = request.newBuilder().method(request.method(), requestCapture.tee(request.body())).build();
+        }
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            record(request, headers, requestCapture, null, null, -1, System.nanoTime() - start, e);
+            throw e;
+        }
+        long tookNanos = System.nanoTime() - start;
+
+        ByteString responseBody = null;
+        long responseBodyLength = -1;
+        ResponseBody body = response.body();
+        if (bodies && body != null) {
+            // peek at the beginning of the body, leaving the rest to the consumer
+            responseBodyLength = body.contentLength();
+            BufferedSource source = body.source();
+            if (!source.request(maxBody + 1L)) {
+                // the whole body is buffered, its length is known
+                responseBodyLength = source.buffer().size();
+            }
+            responseBody = prefix(source.buffer(), maxBody);
+        }
+        record(request, headers, requestCapture, response, responseBody, responseBodyLength, tookNanos, null);
+        return response;
+    }
+
+    private static ByteString prefix(Buffer buffer, int maxBytes) {
+        Buffer prefix = new Buffer();
+        buffer.copyTo(prefix, 0, Math.min(buffer.size(), maxBytes));
+        return prefix.readByteString();
+    }
+
+    private void record(Request request, boolean headers, BodyCapture requestCapture,
+                        Response response, ByteString responseBody, long responseBodyLength, long tookNanos, Exception failure) {
+        String operation = RequestContext.of(request).loggingContext();
+        if (operation == null) {
+            operation = "";
+        }
+        LogSampler current = sampler;
+        if (current != null && !current.sample(operation, response == null ? 0 : response.code())) {
+            return;
+        }
+        Slot slot = ring.claim();
+        if (slot == null) {
+            return;
+        }
+        slot.owner = this;
+        slot.operation = operation;
+        slot.method = request.method();
+        slot.url = request.url();
+        slot.requestHeaders = headers ? request.headers() : null;
+        if (requestCapture != null) {
+            slot.requestBody = requestCapture.captured().readByteString();
+            slot.requestBodyLength = requestCapture.byteCount();
+        }
+        slot.requestContentType = request.body() == null ? null : request.body().contentType();
+        slot.tookNanos = tookNanos;
+        slot.failure = failure;
+        if (response != null) {
+            slot.code = response.code();
+            slot.message = response.message();
+            slot.responseHeaders = headers ? response.headers() : null;
+            slot.responseBody = responseBody;
+            slot.responseBodyLength = responseBodyLength;
+            slot.responseContentType = response.body() == null ? null : response.body().contentType();
+        }
+        ring.publish(slot);
+    }
+
+    /**
+     * Formats an event and logs it, on the background thread.
+     */
+    private void write(Slot slot) {
+        Logger logger = LoggerFactory.getLogger(slot.operation);
+        StringBuilder message = new StringBuilder(256);
+        message.append("--> ").append(slot.method).append(' ').append(slot.url);
+        appendHeaders(message, slot.requestHeaders);
+        appendBody(message, slot.requestBody, slot.requestBodyLength, slot.requestContentType, false);
+        if (slot.failure != null) {
+            message.append("\n<-- HTTP FAILED: ").append(slot.failure);
+        } else {
+            message.append("\n<-- ").append(slot.code).append(' ').append(slot.message).append(' ').append(slot.url)
+                    .append(" (").append(TimeUnit.NANOSECONDS.toMillis(slot.tookNanos)).append(" ms, ")
+                    .append(slot.responseBodyLength != -1 ? slot.responseBodyLength + "-byte" : "unknown-length")
+                    .append(" body)");
+            appendHeaders(message, slot.responseHeaders);
+            boolean gzipped = slot.responseHeaders != null && slot.responseHeaders.get("Content-Encoding") != null
+                    && slot.responseHeaders.get("Content-Encoding").toLowerCase().contains("gzip");
+            appendBody(message, slot.responseBody, slot.responseBodyLength, slot.responseContentType, gzipped);
+        }
+        log(logger, message.toString());
+    }
+
+    private static void appendHeaders(StringBuilder message, Headers headers) {
+        if (headers == null) {
+            return;
+        }
+        for (int i = 0; i < headers.size(); i++) {
+            if (!RequestContext.LOGGING_CONTEXT_HEADER.equalsIgnoreCase(headers.name(i))) {
+                message.append('\n').append(headers.name(i)).append(": ").append(headers.value(i));
+            }
+        }
+    }
+
+    private void appendBody(StringBuilder message, ByteString body, long length, MediaType contentType, boolean gzipped) {
+        if (body == null) {
+            return;
+        }
+        Buffer buffer = new Buffer().write(body);
+        boolean truncated = length != body.size();
+        if (gzipped) {
+            buffer = gunzip(buffer);
+        }
+        try {
+            if (!isPlaintext(buffer)) {
+                message.append("\n(binary ").append(body.size()).append("-byte body omitted)");
+                return;
+            }
+        } catch (EOFException e) {
+            return;
+        }
+        Charset charset = contentType == null ? UTF8 : contentType.charset(UTF8);
+        String content = buffer.readString(charset);
+        if (!truncated && logLevel().isPrettyJson()) {
+            try {
+                content = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(MAPPER.readValue(content, JsonNode.class));
+            } catch (IOException e) {
+                // swallow, keep original content
+            }
+        }
+        message.append('\n').append(body.size()).append(truncated ? "-byte body prefix:\n" : "-byte body:\n").append(content);
+    }
+
+    /**
+     * Decompresses as much of a possibly truncated gzip stream as possible.
+     */
+    private static Buffer gunzip(Buffer compressed) {
+        BodyCapture capture = new BodyCapture(Long.MAX_VALUE - 1, true);
+        capture.capture(compressed, 0, compressed.size());
+        capture.close();
+        return capture.captured();
+    }
+
+    /**
+     * A preallocated event slot.
+     */
+    private static final class Slot {
+        /** The sequence the slot was published for, plus one. */
+        private volatile long published;
+
+        private AsyncLoggingInterceptor owner;
+        private String operation;
+        private String method;
+        private HttpUrl url;
+        private Headers requestHeaders;
+        private ByteString requestBody;
+        private long requestBodyLength;
+        private MediaType requestContentType;
+        private long tookNanos;
+        private Exception failure;
+        private int code;
+        private String message;
+        private Headers responseHeaders;
+        private ByteString responseBody;
+        private long responseBodyLength;
+        private MediaType responseContentType;
+        /** The sequence the slot was claimed for, set by the producer. */
+        private long sequence;
+
+        private void clear() {
+            owner = null;
+            operation = null;
+            method = null;
+            url = null;
+            requestHeaders = null;
+            requestBody = null;
+            requestContentType = null;
+            failure = null;
+            message = null;
+            responseHeaders = null;
+            responseBody = null;
+            responseContentType = null;
+            requestBodyLength = -1;
+            responseBodyLength = -1;
+            code = 0;
+        }
+    }
+
+    /**
+     * The bounded multiple producer, single consumer ring of slots, with the thread
+     * draining it.
+     */
+    private static final class Ring implements Runnable {
+        private final Slot[] slots;
+        /** The next sequence to claim. */
+        private final AtomicLong tail = new AtomicLong();
+        /** The next sequence to drain, only advanced by the draining thread. */
+        private volatile long head;
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread thread;
+        private volatile boolean closed;
+
+        private Ring(int capacity) {
+            slots = new Slot[capacity];
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new Slot();
+                slots[i].clear();
+            }
+            thread = new Thread(this, "azure-rest-logging");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * @return a slot to fill and publish, or null if the ring is full
+         */
+        private Slot claim() {
+            while (true) {
+                long sequence = tail.get();
+                if (sequence - head >= slots.length) {
+                    dropped.incrementAndGet();
+                    return null;
+                }
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    Slot slot = slots[(int) (sequence % slots.length)];
+                    slot.sequence = sequence;
+                    return slot;
+                }
+            }
+        }
+
+        private void publish(Slot slot) {
+            slot.published = slot.sequence + 1;
+        }
+
+        /**
+         * Logs the published events in order, stopping at the first one not published yet.
+         */
+        private synchronized void drain() {
+            while (true) {
+                long sequence = head;
+                Slot slot = slots[(int) (sequence % slots.length)];
+                if (slot.published != sequence + 1) {
+                    return;
+                }
+                try {
+                    slot.owner.write(slot);
+                } catch (RuntimeException e) {
+                    // a failing logger must not stop the draining
+                } finally {
+                    slot.clear();
+                    head = sequence + 1;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                drain();
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+    }
+}
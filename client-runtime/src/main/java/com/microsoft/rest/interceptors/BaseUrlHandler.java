@@ -6,48 +6,230 @@
 
 package com.microsoft.rest.interceptors;
 
+import com.microsoft.rest.context.RequestContext;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Handles dynamic replacements on base URL. The arguments must be in pairs
  * with the string in raw URL to replace as replacements[i] and the dynamic
  * part as replacements[i+1]. E.g. {subdomain}.microsoft.com can be set
- * dynamically by setting header x-ms-parameterized-host: "{subdomain}, azure"
+ * dynamically by setting header x-ms-parameterized-host: "{subdomain}, azure",
+ * or the host parameters of the {@link RequestContext} of the request.
+ *
+ * The scheme, host and port of a URL are compiled once per set of patterns into
+ * a template of literal parts and slots, and the URLs it resolves to are cached by
+ * replacement values, so that repeated hosts take neither a regular expression nor
+ * a URL parse. Patterns occurring in the path or the query of the URL, and
+ * replacements with a path of their own, take the general route.
  */
 public final class BaseUrlHandler implements Interceptor {
+    /** The maximum number of templates kept. */
+    private static final int MAX_TEMPLATES = 64;
+    /** The maximum number of resolved URLs kept per template. */
+    private static final int MAX_URLS_PER_TEMPLATE = 256;
+    /** Marks replacements that do not resolve to a bare scheme, host and port. */
+    private static final HttpUrl UNRESOLVED = HttpUrl.parse("http://localhost/");
+
+    /** The templates by scheme, host, port and patterns. */
+    private final BoundedCache<String, HostTemplate> templates = new BoundedCache<>(MAX_TEMPLATES);
+
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request request = chain.request();
-        String parameters = request.header("x-ms-parameterized-host");
-        if (parameters != null && !parameters.isEmpty()) {
-            String[] replacements = parameters.split(", ");
-            if (replacements.length % 2 != 0) {
-                throw new IllegalArgumentException("Must provide a replacement value for each pattern");
-            }
-            String baseUrl = request.url().toString();
-            for (int i = 0; i < replacements.length; i += 2) {
-                baseUrl = baseUrl.replaceAll("(?i)\\Q" + replacements[i] + "\\E", replacements[i + 1]);
-            }
-            baseUrl = removeRedundantProtocol(baseUrl);
-            HttpUrl baseHttpUrl = HttpUrl.parse(baseUrl);
+        List<String> replacements = RequestContext.of(request).hostParameters();
+        if (!replacements.isEmpty()) {
+            HttpUrl url = resolve(request.url(), replacements);
             request = request.newBuilder()
-                    .url(baseHttpUrl)
-                    .removeHeader("x-ms-parameterized-host")
+                    .url(url)
+                    .removeHeader(RequestContext.PARAMETERIZED_HOST_HEADER)
                     .build();
         }
         return chain.proceed(request);
     }
 
-    private String removeRedundantProtocol(String url) {
+    private HttpUrl resolve(HttpUrl url, List<String> replacements) {
+        String urlString = url.toString();
+        // HttpUrl always has a path, which starts right after the authority
+        int pathStart = urlString.indexOf('/', urlString.indexOf("://") + 3);
+        for (int i = 0; i < replacements.size(); i += 2) {
+            if (indexOfIgnoreCase(urlString, replacements.get(i), pathStart) >= 0) {
+                return replaceAll(urlString, replacements);
+            }
+        }
+        StringBuilder key = new StringBuilder(urlString.length() + 32).append(urlString, 0, pathStart);
+        for (int i = 0; i < replacements.size(); i += 2) {
+            key.append('\n').append(replacements.get(i));
+        }
+        String templateKey = key.toString();
+        HostTemplate template = templates.get(templateKey);
+        if (template == null) {
+            template = new HostTemplate(urlString.substring(0, pathStart), replacements);
+            templates.put(templateKey, template);
+        }
+        HttpUrl base = template.resolve(replacements);
+        if (base == UNRESOLVED) {
+            return replaceAll(urlString, replacements);
+        }
+        return base.newBuilder()
+                .encodedPath(url.encodedPath())
+                .encodedQuery(url.encodedQuery())
+                .encodedFragment(url.encodedFragment())
+                .build();
+    }
+
+    /**
+     * Replaces the patterns anywhere in a URL, the general route.
+     */
+    private static HttpUrl replaceAll(String url, List<String> replacements) {
+        for (int i = 0; i < replacements.size(); i += 2) {
+            url = replaceIgnoreCase(url, replacements.get(i), replacements.get(i + 1));
+        }
+        return HttpUrl.parse(removeRedundantProtocol(url));
+    }
+
+    private static String replaceIgnoreCase(String text, String pattern, String replacement) {
+        int index = indexOfIgnoreCase(text, pattern, 0);
+        if (index < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length() + replacement.length());
+        int start = 0;
+        while (index >= 0) {
+            builder.append(text, start, index).append(replacement);
+            start = index + pattern.length();
+            index = indexOfIgnoreCase(text, pattern, start);
+        }
+        return builder.append(text, start, text.length()).toString();
+    }
+
+    private static int indexOfIgnoreCase(String text, String pattern, int from) {
+        if (pattern.isEmpty()) {
+            return -1;
+        }
+        for (int i = from; i <= text.length() - pattern.length(); i++) {
+            if (text.regionMatches(true, i, pattern, 0, pattern.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String removeRedundantProtocol(String url) {
         int last = url.lastIndexOf("://") - 1;
         while (last >= 0 && Character.isLetter(url.charAt(last))) {
             --last;
         }
         return url.substring(last + 1);
     }
+
+    /**
+     * The scheme, host and port of a URL split at the occurrences of the patterns.
+     */
+    private static final class HostTemplate {
+        /** The literal parts, one more than the slots. */
+        private final String[] literals;
+        /** The index in the replacements of the value of each slot. */
+        private final int[] slots;
+        /** The resolved URLs by replacements. */
+        private final BoundedCache<List<String>, HttpUrl> urls = new BoundedCache<>(MAX_URLS_PER_TEMPLATE);
+
+        private HostTemplate(String base, List<String> replacements) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            int start = 0;
+            while (true) {
+                // the earliest occurrence of any pattern, the first pattern on a tie,
+                // which is what replacing the patterns in order would replace
+                int index = -1;
+                int slot = -1;
+                for (int i = 0; i < replacements.size(); i += 2) {
+                    int found = indexOfIgnoreCase(base, replacements.get(i), start);
+                    if (found >= 0 && (index < 0 || found < index)) {
+                        index = found;
+                        slot = i + 1;
+                    }
+                }
+                if (index < 0) {
+                    break;
+                }
+                literals.add(base.substring(start, index));
+                slots.add(slot);
+                start = index + replacements.get(slot - 1).length();
+            }
+            literals.add(base.substring(start));
+            this.literals = literals.toArray(new String[literals.size()]);
+            this.slots = new int[slots.size()];
+            for (int i = 0; i < this.slots.length; i++) {
+                this.slots[i] = slots.get(i);
+            }
+        }
+
+        /**
+         * @return the URL with the root path for the values of the slots, or
+         *     {@link #UNRESOLVED} if it does not consist of a scheme, host and port only
+         */
+        private HttpUrl resolve(List<String> replacements) {
+            HttpUrl url = urls.get(replacements);
+            if (url == null) {
+                StringBuilder builder = new StringBuilder(literals[0]);
+                for (int i = 0; i < slots.length; i++) {
+                    builder.append(replacements.get(slots[i])).append(literals[i + 1]);
+                }
+                String base = removeRedundantProtocol(builder.toString());
+                int authority = base.indexOf("://") + 3;
+                url = UNRESOLVED;
+                if (authority >= 3 && indexOfAny(base, authority) < 0) {
+                    HttpUrl parsed = HttpUrl.parse(base + "/");
+                    if (parsed != null) {
+                        url = parsed;
+                    }
+                }
+                urls.put(replacements, url);
+            }
+            return url;
+        }
+
+        private static int indexOfAny(String text, int from) {
+            for (int i = from; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '/' || c == '?' || c == '#' || c == '\\') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A map keeping the most recently used entries.
+     */
+    private static final class BoundedCache<K, V> {
+        private final LinkedHashMap<K, V> map;
+
+        private BoundedCache(final int maxEntries) {
+            this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        private synchronized V get(K key) {
+            return map.get(key);
+        }
+
+        private synchronized void put(K key, V value) {
+            map.put(key, value);
+        }
+    }
 }
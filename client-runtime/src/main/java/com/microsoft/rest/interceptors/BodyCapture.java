@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Captures the beginning of a body as it streams to or from the network, for
+ * logging. At most a maximum number of bytes are kept, decompressed on the fly
+ * if the body is gzipped, so that logging never holds a whole body in memory.
+ */
+final class BodyCapture {
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int FHCRC = 2;
+
+    private final long maxBytes;
+    private final Buffer captured = new Buffer();
+    private long byteCount;
+    private boolean truncated;
+
+    /** The gzip header read so far, null once read or if the body is not gzipped. */
+    private Buffer gzipHeader;
+    private Inflater inflater;
+    private boolean malformed;
+
+    /**
+     * @param maxBytes the maximum number of bytes to keep
+     * @param gzipped whether the body is gzipped
+     */
+    BodyCapture(long maxBytes, boolean gzipped) {
+        this.maxBytes = maxBytes;
+        if (gzipped) {
+            this.gzipHeader = new Buffer();
+            this.inflater = new Inflater(true);
+        }
+    }
+
+    /**
+     * @return the beginning of the body, decompressed
+     */
+    Buffer captured() {
+        return captured;
+    }
+
+    /**
+     * @return the number of bytes of the body seen, as they went over the wire
+     */
+    long byteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return whether only the beginning of the body was kept
+     */
+    boolean truncated() {
+        return truncated;
+    }
+
+    /**
+     * @return whether the body could not be decompressed
+     */
+    boolean malformed() {
+        return malformed;
+    }
+
+    /**
+     * Releases the decompressor, the capture is complete.
+     */
+    void close() {
+        if (inflater != null) {
+            if (!truncated && !malformed && !inflater.finished()) {
+                // the stream ended before the end of the compressed data
+                malformed = true;
+            }
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+    /**
+     * @param delegate the sink the body is written to
+     * @return a sink writing to the delegate and capturing what is written
+     */
+    Sink sink(Sink delegate) {
+        return new ForwardingSink(delegate) {
+            @Override
+            public void write(Buffer source, long count) throws IOException {
+                capture(source, 0, count);
+                super.write(source, count);
+            }
+        };
+    }
+
+    /**
+     * @param body the body to capture
+     * @return a body writing the given one and capturing what is written
+     */
+    RequestBody tee(final RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return body.contentLength();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                BufferedSink tee = Okio.buffer(sink(sink));
+                body.writeTo(tee);
+                tee.emit();
+            }
+        };
+    }
+
+    /**
+     * Captures bytes of the body.
+     *
+     * @param source the buffer holding the bytes
+     * @param offset the offset of the bytes in the buffer
+     * @param count the number of bytes
+     */
+    void capture(Buffer source, long offset, long count) {
+        byteCount += count;
+        if (truncated || malformed || count == 0) {
+            return;
+        }
+        if (inflater == null) {
+            long kept = Math.min(count, maxBytes - captured.size());
+            source.copyTo(captured, offset, kept);
+            truncated = kept < count;
+            return;
+        }
+        Buffer input = new Buffer();
+        if (gzipHeader != null) {
+            source.copyTo(gzipHeader, offset, count);
+            long headerLength = gzipHeaderLength(gzipHeader);
+            if (headerLength < 0) {
+                return;
+            }
+            gzipHeader.copyTo(input, headerLength, gzipHeader.size() - headerLength);
+            gzipHeader = null;
+        } else {
+            source.copyTo(input, offset, count);
+        }
+        inflate(input.readByteArray());
+    }
+
+    private void inflate(byte[] input) {
+        inflater.setInput(input);
+        byte[] output = new byte[(int) Math.min(8192, maxBytes + 1)];
+        try {
+            while (!inflater.finished()) {
+                long room = maxBytes - captured.size();
+                // inflate one byte more than there is room for to tell a full capture from a truncated one
+                int read = inflater.inflate(output, 0, (int) Math.min(output.length, room + 1));
+                if (read == 0) {
+                    return;
+                }
+                if (read > room) {
+                    captured.write(output, 0, (int) room);
+                    truncated = true;
+                    return;
+                }
+                captured.write(output, 0, read);
+            }
+        } catch (DataFormatException e) {
+            malformed = true;
+        }
+    }
+
+    /**
+     * @return the length of a gzip header, or -1 if more bytes are needed
+     */
+    private long gzipHeaderLength(Buffer header) {
+        if (header.size() < 10) {
+            return -1;
+        }
+        if (header.getByte(0) != (byte) 0x1f || header.getByte(1) != (byte) 0x8b) {
+            malformed = true;
+            return -1;
+        }
+        int flags = header.getByte(3);
+        long length = 10;
+        if ((flags & FEXTRA) != 0) {
+            if (header.size() < length + 2) {
+                return -1;
+            }
+            length += 2 + ((header.getByte(length) & 0xff) | (header.getByte(length + 1) & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            length = skipZeroTerminated(header, length);
+        }
+        if ((flags & FCOMMENT) != 0 && length >= 0) {
+            length = skipZeroTerminated(header, length);
+        }
+        if ((flags & FHCRC) != 0 && length >= 0) {
+            length += 2;
+        }
+        return length >= 0 && length <= header.size() ? length : -1;
+    }
+
+    private static long skipZeroTerminated(Buffer header, long from) {
+        if (from >= header.size()) {
+            return -1;
+        }
+        long index = header.indexOf((byte) 0, from);
+        return index < 0 ? -1 : index + 1;
+    }
+}
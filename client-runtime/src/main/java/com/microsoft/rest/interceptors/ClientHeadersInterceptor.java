@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.tracing.IdGenerator;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Stamps the headers a REST client sets on every request in a single rebuild of the
+ * request: the 'x-ms-client-request-id' header if the request has none, the
+ * 'User-Agent' header and the custom headers. It has the effect of a
+ * {@link RequestIdHeaderInterceptor}, a {@link UserAgentInterceptor} and a
+ * {@link CustomHeadersInterceptor} in this order, which would copy the request
+ * and its headers three times. The header overrides of the {@link RequestContext}
+ * of the request replace the custom headers.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class ClientHeadersInterceptor implements Interceptor {
+    private static final String REQUEST_ID_HEADER = "x-ms-client-request-id";
+
+    private final UserAgentInterceptor userAgentInterceptor;
+    private final CustomHeadersInterceptor customHeadersInterceptor;
+
+    /**
+     * Creates an interceptor stamping the headers of two interceptors. Changes made
+     * to them later apply to the next requests.
+     *
+     * @param userAgentInterceptor the interceptor holding the user agent
+     * @param customHeadersInterceptor the interceptor holding the custom headers
+     */
+    public ClientHeadersInterceptor(UserAgentInterceptor userAgentInterceptor, CustomHeadersInterceptor customHeadersInterceptor) {
+        if (userAgentInterceptor == null) {
+            throw new NullPointerException("userAgentInterceptor == null");
+        }
+        if (customHeadersInterceptor == null) {
+            throw new NullPointerException("customHeadersInterceptor == null");
+        }
+        this.userAgentInterceptor = userAgentInterceptor;
+        this.customHeadersInterceptor = customHeadersInterceptor;
+    }
+
+    /**
+     * @return the interceptor holding the user agent
+     */
+    public UserAgentInterceptor userAgentInterceptor() {
+        return userAgentInterceptor;
+    }
+
+    /**
+     * @return the interceptor holding the custom headers
+     */
+    public CustomHeadersInterceptor customHeadersInterceptor() {
+        return customHeadersInterceptor;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Request.Builder builder = request.newBuilder();
+        if (request.header(REQUEST_ID_HEADER) == null) {
+            builder.header(REQUEST_ID_HEADER, IdGenerator.requestId());
+        }
+        builder.header("User-Agent", userAgentInterceptor.headerValue(request.header("User-Agent")));
+        Headers customHeaders = customHeadersInterceptor.snapshot();
+        for (int i = 0; i < customHeaders.size(); i++) {
+            builder.header(customHeaders.name(i), customHeaders.value(i));
+        }
+        Headers overrides = RequestContext.of(request).headerOverrides();
+        for (int i = 0; i < overrides.size(); i++) {
+            builder.header(overrides.name(i), overrides.value(i));
+        }
+        return chain.proceed(builder.build());
+    }
+}
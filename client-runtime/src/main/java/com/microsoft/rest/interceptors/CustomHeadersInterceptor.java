@@ -21,25 +21,28 @@ import java.util.Map;
 /**
  * An instance of this class enables adding custom headers in client requests
  * when added to the {@link okhttp3.OkHttpClient} interceptors.
+ *
+ * The headers are kept in an immutable state which each change replaces as a whole,
+ * so that requests read the headers without locking and never see a change half
+ * applied while another thread updates them.
  */
 public final class CustomHeadersInterceptor implements Interceptor {
     /**
-     * @return the currently stored custom headers
+     * @return an immutable copy of the currently stored custom headers
      */
     public Map<String, List<String>> headers() {
-        return headers;
+        return state.headers;
     }
 
     /**
-     * A mapping of custom headers.
+     * The current headers, replaced by each change.
      */
-    private Map<String, List<String>> headers;
+    private volatile State state = State.EMPTY;
 
     /**
      * Initialize an instance of {@link CustomHeadersInterceptor} class.
      */
     public CustomHeadersInterceptor() {
-        headers = new HashMap<String, List<String>>();
     }
 
     /**
@@ -61,9 +64,10 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param value the value of the header.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor replaceHeader(String name, String value) {
-        this.headers.put(name, new ArrayList<String>());
-        this.headers.get(name).add(value);
+    public synchronized CustomHeadersInterceptor replaceHeader(String name, String value) {
+        Map<String, List<String>> headers = new HashMap<>(state.headers);
+        headers.put(name, Collections.singletonList(value));
+        this.state = new State(headers);
         return this;
     }
 
@@ -75,11 +79,15 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param value the value of the header.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeader(String name, String value) {
-        if (!this.headers.containsKey(name)) {
-            this.headers.put(name, new ArrayList<String>());
+    public synchronized CustomHeadersInterceptor addHeader(String name, String value) {
+        Map<String, List<String>> headers = new HashMap<>(state.headers);
+        List<String> values = new ArrayList<>();
+        if (headers.containsKey(name)) {
+            values.addAll(headers.get(name));
         }
-        this.headers.get(name).add(value);
+        values.add(value);
+        headers.put(name, values);
+        this.state = new State(headers);
         return this;
     }
 
@@ -90,8 +98,7 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @return the interceptor instance itself.
      */
     public CustomHeadersInterceptor addHeaders(Headers headers) {
-        this.headers.putAll(headers.toMultimap());
-        return this;
+        return addHeaderMultimap(headers.toMultimap());
     }
 
     /**
@@ -100,10 +107,12 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param headers a map of headers.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeaderMap(Map<String, String> headers) {
+    public synchronized CustomHeadersInterceptor addHeaderMap(Map<String, String> headers) {
+        Map<String, List<String>> copy = new HashMap<>(state.headers);
         for (Map.Entry<String, String> header : headers.entrySet()) {
-            this.headers.put(header.getKey(), Collections.singletonList(header.getValue()));
+            copy.put(header.getKey(), Collections.singletonList(header.getValue()));
         }
+        this.state = new State(copy);
         return this;
     }
 
@@ -113,8 +122,10 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param headers a multimap of headers.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeaderMultimap(Map<String, List<String>> headers) {
-        this.headers.putAll(headers);
+    public synchronized CustomHeadersInterceptor addHeaderMultimap(Map<String, List<String>> headers) {
+        Map<String, List<String>> copy = new HashMap<>(state.headers);
+        copy.putAll(headers);
+        this.state = new State(copy);
         return this;
     }
 
@@ -124,19 +135,57 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param name the name of the header to remove.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor removeHeader(String name) {
-        this.headers.remove(name);
+    public synchronized CustomHeadersInterceptor removeHeader(String name) {
+        Map<String, List<String>> headers = new HashMap<>(state.headers);
+        headers.remove(name);
+        this.state = new State(headers);
         return this;
     }
 
+    /**
+     * Gets the headers to set on each request. Of the values of a name, the last one
+     * is set.
+     *
+     * @return the immutable headers
+     */
+    Headers snapshot() {
+        return state.snapshot;
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
+        Headers current = snapshot();
+        if (current.size() == 0) {
+            return chain.proceed(chain.request());
+        }
         Request.Builder builder = chain.request().newBuilder();
-        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
-            for (String value : header.getValue()) {
-                builder = builder.header(header.getKey(), value);
-            }
+        for (int i = 0; i < current.size(); i++) {
+            builder.header(current.name(i), current.value(i));
         }
         return chain.proceed(builder.build());
     }
+
+    /**
+     * The immutable headers of the interceptor, along with the headers set on the requests.
+     */
+    private static final class State {
+        private static final State EMPTY = new State(Collections.<String, List<String>>emptyMap());
+
+        private final Map<String, List<String>> headers;
+        private final Headers snapshot;
+
+        private State(Map<String, List<String>> headers) {
+            Map<String, List<String>> copy = new HashMap<>();
+            Headers.Builder builder = new Headers.Builder();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                List<String> values = Collections.unmodifiableList(new ArrayList<>(header.getValue()));
+                copy.put(header.getKey(), values);
+                if (!values.isEmpty()) {
+                    builder.set(header.getKey(), values.get(values.size() - 1));
+                }
+            }
+            this.headers = Collections.unmodifiableMap(copy);
+            this.snapshot = builder.build();
+        }
+    }
 }
@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * Decides which exchanges an {@link AsyncLoggingInterceptor} logs.
+ */
+@Beta(SinceVersion.V1_2_0)
+public interface LogSampler {
+    /**
+     * Decides whether to log an exchange once its response or failure is known.
+     *
+     * @param operation the logging context of the request, empty if not set
+     * @param statusCode the status code of the response, 0 if the request failed
+     * @return true to log the exchange
+     */
+    boolean sample(String operation, int statusCode);
+}
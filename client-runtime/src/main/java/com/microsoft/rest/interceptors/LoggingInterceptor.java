@@ -9,34 +9,44 @@ package com.microsoft.rest.interceptors;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Joiner;
-import com.google.common.io.CharStreams;
 import com.microsoft.rest.LogLevel;
+import com.microsoft.rest.context.RequestContext;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okio.Buffer;
-import okio.BufferedSource;
+import okio.BufferedSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPInputStream;
 
 /**
  * An OkHttp interceptor that handles logging of HTTP requests and responses.
+ *
+ * Bodies are logged as they stream: the request body as it is written to the
+ * network and the response body as the consumer reads it, once the end is
+ * reached or the body is closed. Only the first bytes of a body are kept, see
+ * {@link #withMaxBodySize(int)}, and gzipped bodies are decompressed on the fly.
  */
 public class LoggingInterceptor implements Interceptor {
-    private static final String LOGGING_HEADER = "x-ms-logging-context";
     private static final ObjectMapper MAPPER = new ObjectMapper();
-    private LogLevel logLevel;
+    private static final Charset UTF8 = Charset.forName("UTF8");
+    /** The default maximum number of bytes logged of a body. */
+    private static final int DEFAULT_MAX_BODY_SIZE = 64 * 1024;
+    private volatile LogLevel logLevel;
+    private volatile int maxBodySize = DEFAULT_MAX_BODY_SIZE;
 
     /**
      * Creates an interceptor with a LogLevel enum.
@@ -57,9 +67,12 @@ public class LoggingInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        // get logger
         Request request = chain.request();
-        String context = request.header(LOGGING_HEADER);
+        if (logLevel == LogLevel.NONE) {
+            return chain.proceed(request);
+        }
+        // get logger
+        String context = RequestContext.of(request).loggingContext();
         if (context == null) {
             context = "";
         }
@@ -72,39 +85,16 @@ public class LoggingInterceptor implements Interceptor {
         // log headers
         if (logLevel == LogLevel.HEADERS || logLevel == LogLevel.BODY_AND_HEADERS) {
             for (String header : request.headers().names()) {
-                if (!LOGGING_HEADER.equals(header)) {
+                if (!RequestContext.LOGGING_CONTEXT_HEADER.equalsIgnoreCase(header)) {
                     log(logger, String.format("%s: %s", header, Joiner.on(", ").join(request.headers(header))));
                 }
             }
         }
-        // log body
-        if (logLevel == LogLevel.BODY || logLevel == LogLevel.BODY_AND_HEADERS) {
-            if (request.body() != null) {
-                Buffer buffer = new Buffer();
-                request.body().writeTo(buffer);
-
-                Charset charset = Charset.forName("UTF8");
-                MediaType contentType = request.body().contentType();
-                if (contentType != null) {
-                    charset = contentType.charset(charset);
-                }
-
-                if (isPlaintext(buffer)) {
-                    String content = buffer.clone().readString(charset);
-                    if (logLevel.isPrettyJson()) {
-                        try {
-                            content = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(MAPPER.readValue(content, JsonNode.class));
-                        } catch (Exception e) {
-                            // swallow, keep original content
-                        }
-                    }
-                    log(logger, String.format("%s-byte body:\n%s", request.body().contentLength(), content));
-                    log(logger, "--> END " + request.method());
-                } else {
-                    log(logger, "--> END " + request.method() + " (binary "
-                            + request.body().contentLength() + "-byte body omitted)");
-                }
-            }
+        // log body, as it is written
+        if ((logLevel == LogLevel.BODY || logLevel == LogLevel.BODY_AND_HEADERS) && request.body() != null) {
+            request = request.newBuilder()
+                    .method(request.method(), new LoggingRequestBody(request, logger, logLevel, maxBodySize))
+                    .build();
         }
 
         long startNs = System.nanoTime();
@@ -133,49 +123,45 @@ public class LoggingInterceptor implements Interceptor {
             }
         }
 
-        // log body
-        if (logLevel == LogLevel.BODY || logLevel == LogLevel.BODY_AND_HEADERS) {
-            if (response.body() != null) {
-                BufferedSource source = responseBody.source();
-                source.request(Long.MAX_VALUE); // Buffer the entire body.
-                Buffer buffer = source.buffer();
+        // log body, as it is read
+        if ((logLevel == LogLevel.BODY || logLevel == LogLevel.BODY_AND_HEADERS) && responseBody != null) {
+            final BodyCapture capture = new BodyCapture(maxBodySize, StringUtils.containsIgnoreCase(response.header("content-encoding"), "gzip"));
+            final Logger responseLogger = logger;
+            final LogLevel responseLogLevel = logLevel;
+            final MediaType contentType = responseBody.contentType();
+            Source source = new ForwardingSource(responseBody.source()) {
+                private boolean done;
 
-                Charset charset = Charset.forName("UTF8");
-                MediaType contentType = responseBody.contentType();
-                if (contentType != null) {
-                    try {
-                        charset = contentType.charset(charset);
-                    } catch (UnsupportedCharsetException e) {
-                        log(logger, "Couldn't decode the response body; charset is likely malformed.");
-                        log(logger, "<-- END HTTP");
-                        return response;
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read == -1) {
+                        done();
+                    } else {
+                        capture.capture(sink, sink.size() - read, read);
                     }
+                    return read;
                 }
 
-                boolean gzipped = response.header("content-encoding") != null && StringUtils.containsIgnoreCase(response.header("content-encoding"), "gzip");
-                if (!isPlaintext(buffer) && !gzipped) {
-                    log(logger, "<-- END HTTP (binary " + buffer.size() + "-byte body omitted)");
-                    return response;
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        done();
+                    }
                 }
 
-                if (contentLength != 0) {
-                    String content;
-                    if (gzipped) {
-                        content = CharStreams.toString(new InputStreamReader(new GZIPInputStream(buffer.clone().inputStream())));
-                    } else {
-                        content = buffer.clone().readString(charset);
+                private void done() {
+                    if (!done) {
+                        done = true;
+                        logBody(responseLogger, responseLogLevel, capture, contentType, "<-- END HTTP");
                     }
-                    if (logLevel.isPrettyJson()) {
-                        try {
-                            content = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(MAPPER.readValue(content, JsonNode.class));
-                        } catch (Exception e) {
-                            // swallow, keep original content
-                        }
-                    }
-                    log(logger, String.format("%s-byte body:\n%s", buffer.size(), content));
                 }
-                log(logger, "<-- END HTTP");
-            }
+            };
+            response = response.newBuilder()
+                    .body(ResponseBody.create(contentType, contentLength, Okio.buffer(source)))
+                    .build();
         }
         return response;
     }
@@ -197,7 +183,115 @@ public class LoggingInterceptor implements Interceptor {
         return this;
     }
 
-    private static boolean isPlaintext(Buffer buffer) throws EOFException {
+    /**
+     * @return the maximum number of bytes logged of a body
+     */
+    public int maxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Sets the maximum number of bytes logged of a body, 64 KiB by default.
+     * @param maxBodySize the maximum number of bytes
+     * @return the interceptor
+     */
+    public LoggingInterceptor withMaxBodySize(int maxBodySize) {
+        if (maxBodySize < 0) {
+            throw new IllegalArgumentException("maxBodySize must not be negative");
+        }
+        this.maxBodySize = maxBodySize;
+        return this;
+    }
+
+    /**
+     * Logs a captured body once it has been written or read.
+     */
+    private void logBody(Logger logger, LogLevel logLevel, BodyCapture capture, MediaType contentType, String end) {
+        capture.close();
+        Charset charset = UTF8;
+        if (contentType != null) {
+            try {
+                charset = contentType.charset(charset);
+            } catch (UnsupportedCharsetException e) {
+                log(logger, "Couldn't decode the body; charset is likely malformed.");
+                log(logger, end);
+                return;
+            }
+        }
+        Buffer buffer = capture.captured();
+        boolean plaintext;
+        try {
+            plaintext = !capture.malformed() && isPlaintext(buffer);
+        } catch (EOFException e) {
+            plaintext = false;
+        }
+        if (!plaintext) {
+            log(logger, end + " (binary " + capture.byteCount() + "-byte body omitted)");
+            return;
+        }
+        if (capture.byteCount() != 0) {
+            long captured = buffer.size();
+            String content = buffer.readString(charset);
+            if (capture.truncated()) {
+                log(logger, String.format("%s-byte body, first %s bytes:\n%s", capture.byteCount(), captured, content));
+            } else {
+                if (logLevel.isPrettyJson()) {
+                    try {
+                        content = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(MAPPER.readValue(content, JsonNode.class));
+                    } catch (Exception e) {
+                        // swallow, keep original content
+                    }
+                }
+                log(logger, String.format("%s-byte body:\n%s", capture.byteCount(), content));
+            }
+        }
+        log(logger, end);
+    }
+
+    /**
+     * A request body logging itself as it is written.
+     */
+    private final class LoggingRequestBody extends RequestBody {
+        private final RequestBody body;
+        private final String method;
+        private final boolean gzipped;
+        private final Logger logger;
+        private final LogLevel logLevel;
+        private final int maxBodySize;
+
+        private LoggingRequestBody(Request request, Logger logger, LogLevel logLevel, int maxBodySize) {
+            this.body = request.body();
+            this.method = request.method();
+            this.gzipped = StringUtils.containsIgnoreCase(request.header("content-encoding"), "gzip");
+            this.logger = logger;
+            this.logLevel = logLevel;
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return body.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            BodyCapture capture = new BodyCapture(maxBodySize, gzipped);
+            BufferedSink tee = Okio.buffer(capture.sink(sink));
+            try {
+                body.writeTo(tee);
+                tee.emit();
+            } finally {
+                logBody(logger, logLevel, capture, body.contentType(), "--> END " + method);
+            }
+        }
+    }
+
+    static boolean isPlaintext(Buffer buffer) throws EOFException {
         try {
             Buffer prefix = new Buffer();
             long byteCount = buffer.size() < 64 ? buffer.size() : 64;
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs a random share of the exchanges. The share is taken from the rate set for
+ * the status class of the response if any, otherwise from the rate set for the
+ * operation if any, otherwise from the default rate. E.g. to log all the failures
+ * but only one in a hundred successful polls:
+ * <pre>
+ * new RateLogSampler(1.0)
+ *     .withOperationRate("poll", 0.01)
+ *     .withStatusClassRate(4, 1.0)
+ *     .withStatusClassRate(5, 1.0)
+ *     .withStatusClassRate(0, 1.0);
+ * </pre>
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RateLogSampler implements LogSampler {
+    private final double defaultRate;
+    /** The rates by status class, 0 for failed requests, NaN if not set. */
+    private final double[] statusClassRates = new double[6];
+    private final ConcurrentMap<String, Double> operationRates = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a sampler.
+     *
+     * @param defaultRate the share of exchanges to log without a specific rate, from 0 to 1
+     */
+    public RateLogSampler(double defaultRate) {
+        this.defaultRate = checkRate(defaultRate);
+        Arrays.fill(statusClassRates, Double.NaN);
+    }
+
+    /**
+     * Sets the share of the exchanges of an operation to log.
+     *
+     * @param operation the logging context of the requests of the operation
+     * @param rate the share to log, from 0 to 1
+     * @return the sampler itself for chaining
+     */
+    public RateLogSampler withOperationRate(String operation, double rate) {
+        operationRates.put(operation, checkRate(rate));
+        return this;
+    }
+
+    /**
+     * Sets the share of the responses of a status class to log.
+     *
+     * @param statusClass the hundreds digit of the status codes, 0 for failed requests
+     * @param rate the share to log, from 0 to 1
+     * @return the sampler itself for chaining
+     */
+    public RateLogSampler withStatusClassRate(int statusClass, double rate) {
+        if (statusClass < 0 || statusClass >= statusClassRates.length) {
+            throw new IllegalArgumentException("statusClass must be from 0 to 5");
+        }
+        statusClassRates[statusClass] = checkRate(rate);
+        return this;
+    }
+
+    @Override
+    public boolean sample(String operation, int statusCode) {
+        int statusClass = statusCode / 100;
+        double rate = statusClass < statusClassRates.length ? statusClassRates[statusClass] : Double.NaN;
+        if (Double.isNaN(rate)) {
+            Double operationRate = operationRates.get(operation);
+            rate = operationRate != null ? operationRate : defaultRate;
+        }
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private static double checkRate(double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("rate must be from 0 to 1");
+        }
+        return rate;
+    }
+}
@@ -6,12 +6,12 @@
 
 package com.microsoft.rest.interceptors;
 
+import com.microsoft.rest.tracing.IdGenerator;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
-import java.util.UUID;
 
 /**
  * An instance of this class puts an UUID in the request header. Azure uses
@@ -23,7 +23,7 @@ public final class RequestIdHeaderInterceptor implements Interceptor {
         Request request = chain.request();
         if (request.header("x-ms-client-request-id") == null) {
             request = chain.request().newBuilder()
-                    .header("x-ms-client-request-id", UUID.randomUUID().toString())
+                    .header("x-ms-client-request-id", IdGenerator.requestId())
                     .build();
         }
         return chain.proceed(request);
@@ -24,7 +24,7 @@ public final class UserAgentInterceptor implements Interceptor {
     /**
      * The user agent header string.
      */
-    private String userAgent;
+    private volatile String userAgent;
 
     /**
      * Initialize an instance of {@link UserAgentInterceptor} class with the default
@@ -65,8 +65,20 @@ public final class UserAgentInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        Request request = chain.request();
-        String header = request.header("User-Agent");
+        Request request = chain.request().newBuilder()
+                .header("User-Agent", headerValue(chain.request().header("User-Agent")))
+                .build();
+        return chain.proceed(request);
+    }
+
+    /**
+     * Computes the User-Agent header of a request.
+     *
+     * @param header the User-Agent header the request has, or null
+     * @return the User-Agent header to send
+     */
+    String headerValue(String header) {
+        String userAgent = this.userAgent;
         if (header == null) {
             header = DEFAULT_USER_AGENT_HEADER;
         }
@@ -77,9 +89,6 @@ public final class UserAgentInterceptor implements Interceptor {
                 header = userAgent + " " + header;
             }
         }
-        request = chain.request().newBuilder()
-                .header("User-Agent", header)
-                .build();
-        return chain.proceed(request);
+        return header;
     }
 }
@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.introspection;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * The phases of a call in flight.
+ */
+@Beta(SinceVersion.V1_2_0)
+public enum CallPhase {
+    /** Before the first attempt: authentication, cache, batching and admission. */
+    PREPARING,
+    /** An attempt is in progress, from connecting until the response headers are received. */
+    NETWORK,
+    /** Between attempts, or after the last one until the response reaches the caller. */
+    RETRY_WAIT,
+    /** The response body is being read. */
+    BODY_READ
+}
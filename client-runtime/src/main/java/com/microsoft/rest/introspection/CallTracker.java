@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.introspection;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.context.RequestContext;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the calls of a client in flight and their phase, from the start of a
+ * call until its response body is exhausted or closed, or until it fails.
+ *
+ * The tracker is added as the first application interceptor and its {@link
+ * #networkInterceptor()} as a network interceptor; {@code RestClient.Builder} does
+ * both unless call tracking is turned off. A call costs the insertion and removal
+ * of an entry in a concurrent set.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class CallTracker implements Interceptor {
+    private final Set<TrackedCall> calls = Collections.newSetFromMap(new ConcurrentHashMap<TrackedCall, Boolean>());
+    private final Interceptor networkInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            TrackedCall call = RequestContext.of(chain.request()).attribute(TrackedCall.class);
+            if (call == null) {
+                return chain.proceed(chain.request());
+            }
+            call.attempts++;
+            call.phase = CallPhase.NETWORK;
+            try {
+                return chain.proceed(chain.request());
+            } finally {
+                call.phase = CallPhase.RETRY_WAIT;
+            }
+        }
+    };
+
+    /**
+     * @return the interceptor to add as a network interceptor, following the attempts
+     */
+    public Interceptor networkInterceptor() {
+        return networkInterceptor;
+    }
+
+    /**
+     * @return the number of calls in flight
+     */
+    public int inFlightCount() {
+        return calls.size();
+    }
+
+    /**
+     * @return the calls in flight, the oldest first
+     */
+    public List<InFlightCall> inFlightCalls() {
+        long now = System.nanoTime();
+        List<InFlightCall> snapshot = new ArrayList<>(calls.size());
+        for (TrackedCall call : calls) {
+            snapshot.add(call.snapshot(now));
+        }
+        Collections.sort(snapshot, new Comparator<InFlightCall>() {
+            @Override
+            public int compare(InFlightCall left, InFlightCall right) {
+                return Long.compare(right.ageMillis(), left.ageMillis());
+            }
+        });
+        return snapshot;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestContext context = RequestContext.of(request);
+        final TrackedCall call = new TrackedCall(request, context.loggingContext());
+        request = request.newBuilder()
+                .tag(context.newBuilder().withAttribute(TrackedCall.class, call).build())
+                .build();
+        calls.add(call);
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            calls.remove(call);
+            throw e;
+        }
+        final ResponseBody body = response.body();
+        if (body == null) {
+            calls.remove(call);
+            return response;
+        }
+        call.phase = CallPhase.BODY_READ;
+        Source source = new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read;
+                try {
+                    read = super.read(sink, byteCount);
+                } catch (IOException e) {
+                    calls.remove(call);
+                    throw e;
+                }
+                if (read == -1) {
+                    calls.remove(call);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    calls.remove(call);
+                }
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+                .build();
+    }
+
+    /**
+     * A call in flight. Its phase and attempts are only written by the thread
+     * running the call, and read by snapshots.
+     */
+    private static final class TrackedCall {
+        private final String operation;
+        private final String method;
+        private final String host;
+        private final String path;
+        private final long startTimeMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private volatile CallPhase phase = CallPhase.PREPARING;
+        private volatile int attempts;
+
+        private TrackedCall(Request request, String loggingContext) {
+            this.operation = loggingContext != null ? loggingContext : request.method();
+            this.method = request.method();
+            this.host = request.url().host();
+            this.path = request.url().encodedPath();
+        }
+
+        private InFlightCall snapshot(long now) {
+            return new InFlightCall(operation, method, host, path, startTimeMillis, now - startNanos, phase, attempts);
+        }
+    }
+}
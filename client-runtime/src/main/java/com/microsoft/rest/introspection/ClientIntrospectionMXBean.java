@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.introspection;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import java.util.Map;
+
+/**
+ * The state of a client, as exposed through JMX by {@link JmxIntrospection}. Each
+ * attribute is read from a new snapshot; {@link #getSnapshot()} has them all from
+ * a single one.
+ */
+@Beta(SinceVersion.V1_2_0)
+public interface ClientIntrospectionMXBean {
+    /**
+     * @return the number of calls waiting in the dispatcher for a slot
+     */
+    int getQueuedCalls();
+
+    /**
+     * @return the number of calls the dispatcher is running
+     */
+    int getRunningCalls();
+
+    /**
+     * @return the number of queued and running calls by host
+     */
+    Map<String, Integer> getCallsByHost();
+
+    /**
+     * @return the number of connections in the pool
+     */
+    int getConnections();
+
+    /**
+     * @return the number of idle connections in the pool
+     */
+    int getIdleConnections();
+
+    /**
+     * @return the number of connections in use
+     */
+    int getActiveConnections();
+
+    /**
+     * @return the number of calls in flight
+     */
+    int getInFlightCalls();
+
+    /**
+     * @return the oldest calls in flight, at most 10, described with their age and phase
+     */
+    String[] getOldestCalls();
+
+    /**
+     * @return the number of long running operations being polled
+     */
+    int getPollingOperations();
+
+    /**
+     * @return a consistent snapshot of the whole state, as text
+     */
+    String getSnapshot();
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.introspection;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of the state of a client: the calls queued and running in its
+ * dispatcher and the hosts they target, the connections of its pool, the calls in
+ * flight with their phase, and the long running operations being polled.
+ *
+ * The dispatcher and the connection pool are each read under their own lock, so
+ * that their counts are consistent. They are shared by the clients derived from
+ * the same client, and so are their counts.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class ClientSnapshot {
+    private final long timeMillis;
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final Map<String, Integer> queuedCallsByHost;
+    private final Map<String, Integer> runningCallsByHost;
+    private final int queuedCalls;
+    private final int runningCalls;
+    private final int connections;
+    private final int idleConnections;
+    private final List<InFlightCall> inFlightCalls;
+    private final int pollingOperations;
+
+    private ClientSnapshot(long timeMillis, int maxRequests, int maxRequestsPerHost, List<Call> queued, List<Call> running,
+                           int connections, int idleConnections, List<InFlightCall> inFlightCalls) {
+        this.timeMillis = timeMillis;
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.queuedCalls = queued.size();
+        this.runningCalls = running.size();
+        this.queuedCallsByHost = countByHost(queued);
+        this.runningCallsByHost = countByHost(running);
+        this.connections = connections;
+        this.idleConnections = idleConnections;
+        this.inFlightCalls = inFlightCalls;
+        this.pollingOperations = 0;
+    }
+
+    private ClientSnapshot(ClientSnapshot other, int pollingOperations) {
+        this.timeMillis = other.timeMillis;
+        this.maxRequests = other.maxRequests;
+        this.maxRequestsPerHost = other.maxRequestsPerHost;
+        this.queuedCalls = other.queuedCalls;
+        this.runningCalls = other.runningCalls;
+        this.queuedCallsByHost = other.queuedCallsByHost;
+        this.runningCallsByHost = other.runningCallsByHost;
+        this.connections = other.connections;
+        this.idleConnections = other.idleConnections;
+        this.inFlightCalls = other.inFlightCalls;
+        this.pollingOperations = pollingOperations;
+    }
+
+    /**
+     * Takes a snapshot of an HTTP client.
+     *
+     * @param httpClient the HTTP client
+     * @param tracker the tracker of the calls of the client, or null if they are not tracked
+     * @return the snapshot
+     */
+    public static ClientSnapshot of(OkHttpClient httpClient, CallTracker tracker) {
+        Dispatcher dispatcher = httpClient.dispatcher();
+        List<Call> queued;
+        List<Call> running;
+        int maxRequests;
+        int maxRequestsPerHost;
+        synchronized (dispatcher) {
+            queued = dispatcher.queuedCalls();
+            running = dispatcher.runningCalls();
+            maxRequests = dispatcher.getMaxRequests();
+            maxRequestsPerHost = dispatcher.getMaxRequestsPerHost();
+        }
+        ConnectionPool pool = httpClient.connectionPool();
+        int connections;
+        int idleConnections;
+        synchronized (pool) {
+            connections = pool.connectionCount();
+            idleConnections = pool.idleConnectionCount();
+        }
+        List<InFlightCall> inFlightCalls = tracker == null
+                ? Collections.<InFlightCall>emptyList()
+                : Collections.unmodifiableList(tracker.inFlightCalls());
+        return new ClientSnapshot(System.currentTimeMillis(), maxRequests, maxRequestsPerHost, queued, running,
+                connections, idleConnections, inFlightCalls);
+    }
+
+    /**
+     * @param pollingOperations the number of long running operations being polled
+     * @return a copy of the snapshot with the number of long running operations being polled
+     */
+    public ClientSnapshot withPollingOperations(int pollingOperations) {
+        return new ClientSnapshot(this, pollingOperations);
+    }
+
+    /**
+     * @return the time of the snapshot, in milliseconds since the epoch
+     */
+    public long timeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return the number of calls waiting in the dispatcher for a slot
+     */
+    public int queuedCalls() {
+        return queuedCalls;
+    }
+
+    /**
+     * @return the number of calls the dispatcher is running, synchronous ones included
+     */
+    public int runningCalls() {
+        return runningCalls;
+    }
+
+    /**
+     * @return the maximum number of asynchronous calls the dispatcher runs at once
+     */
+    public int maxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * @return the maximum number of asynchronous calls the dispatcher runs at once against a host
+     */
+    public int maxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * @return the number of queued calls by host, sorted by host
+     */
+    public Map<String, Integer> queuedCallsByHost() {
+        return queuedCallsByHost;
+    }
+
+    /**
+     * @return the number of running calls by host, sorted by host
+     */
+    public Map<String, Integer> runningCallsByHost() {
+        return runningCallsByHost;
+    }
+
+    /**
+     * @return the number of connections in the pool
+     */
+    public int connections() {
+        return connections;
+    }
+
+    /**
+     * @return the number of idle connections in the pool
+     */
+    public int idleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * @return the number of connections in use
+     */
+    public int activeConnections() {
+        return Math.max(0, connections - idleConnections);
+    }
+
+    /**
+     * @return the calls in flight, the oldest first, or an empty list if the calls are not tracked
+     */
+    public List<InFlightCall> inFlightCalls() {
+        return inFlightCalls;
+    }
+
+    /**
+     * @return the number of long running operations being polled, 0 for clients that do not poll
+     */
+    public int pollingOperations() {
+        return pollingOperations;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+                .append("queued=").append(queuedCalls).append(' ').append(queuedCallsByHost)
+                .append(" running=").append(runningCalls).append(' ').append(runningCallsByHost)
+                .append(" connections=").append(connections).append(" idle=").append(idleConnections)
+                .append(" polling=").append(pollingOperations)
+                .append(" inFlight=").append(inFlightCalls.size());
+        for (InFlightCall call : inFlightCalls) {
+            builder.append("\n  ").append(call);
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, Integer> countByHost(List<Call> calls) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Call call : calls) {
+            String host = call.request().url().host();
+            Integer count = counts.get(host);
+            counts.put(host, count == null ? 1 : count + 1);
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.introspection;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A call in flight, as of a {@link ClientSnapshot}.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class InFlightCall {
+    private final String operation;
+    private final String method;
+    private final String host;
+    private final String path;
+    private final long startTimeMillis;
+    private final long ageMillis;
+    private final CallPhase phase;
+    private final int attempts;
+
+    InFlightCall(String operation, String method, String host, String path, long startTimeMillis, long ageNanos,
+                 CallPhase phase, int attempts) {
+        this.operation = operation;
+        this.method = method;
+        this.host = host;
+        this.path = path;
+        this.startTimeMillis = startTimeMillis;
+        this.ageMillis = TimeUnit.NANOSECONDS.toMillis(ageNanos);
+        this.phase = phase;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return the logging context of the call, or its HTTP method if it has none
+     */
+    public String operation() {
+        return operation;
+    }
+
+    /**
+     * @return the HTTP method
+     */
+    public String method() {
+        return method;
+    }
+
+    /**
+     * @return the host the call targets
+     */
+    public String host() {
+        return host;
+    }
+
+    /**
+     * @return the path of the URL, without its query
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * @return the time the call started, in milliseconds since the epoch
+     */
+    public long startTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return the time since the call started, in milliseconds
+     */
+    public long ageMillis() {
+        return ageMillis;
+    }
+
+    /**
+     * @return the phase the call is in
+     */
+    public CallPhase phase() {
+        return phase;
+    }
+
+    /**
+     * @return the number of attempts sent to the network so far
+     */
+    public int attempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + method + " " + host + path + " " + phase + " for " + ageMillis + "ms, attempts=" + attempts;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.introspection;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * A client whose state can be inspected while it runs.
+ */
+@Beta(SinceVersion.V1_2_0)
+public interface Introspectable {
+    /**
+     * @return a snapshot of the state of the client
+     */
+    ClientSnapshot snapshot();
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.introspection;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exposes the state of a client through the platform MBean server, as {@code
+ * com.microsoft.rest:type=ClientIntrospection,name=<name>}. {@link #close()}
+ * unregisters the bean.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class JmxIntrospection implements ClientIntrospectionMXBean, AutoCloseable {
+    private static final int OLDEST_CALLS = 10;
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final Introspectable client;
+    private final ObjectName objectName;
+
+    /**
+     * Registers the bean of a client.
+     *
+     * @param name the name of the client, unique in the JVM
+     * @param client the client, e.g. a {@code RestClient} or an {@code AzureClient}
+     */
+    public JmxIntrospection(String name, Introspectable client) {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (client == null) {
+            throw new NullPointerException("client == null");
+        }
+        this.client = client;
+        try {
+            this.objectName = new ObjectName("com.microsoft.rest:type=ClientIntrospection,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot register the introspection of client " + name, e);
+        }
+    }
+
+    @Override
+    public int getQueuedCalls() {
+        return client.snapshot().queuedCalls();
+    }
+
+    @Override
+    public int getRunningCalls() {
+        return client.snapshot().runningCalls();
+    }
+
+    @Override
+    public Map<String, Integer> getCallsByHost() {
+        ClientSnapshot snapshot = client.snapshot();
+        Map<String, Integer> calls = new TreeMap<>(snapshot.runningCallsByHost());
+        for (Map.Entry<String, Integer> queued : snapshot.queuedCallsByHost().entrySet()) {
+            Integer running = calls.get(queued.getKey());
+            calls.put(queued.getKey(), running == null ? queued.getValue() : running + queued.getValue());
+        }
+        return calls;
+    }
+
+    @Override
+    public int getConnections() {
+        return client.snapshot().connections();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return client.snapshot().idleConnections();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return client.snapshot().activeConnections();
+    }
+
+    @Override
+    public int getInFlightCalls() {
+        return client.snapshot().inFlightCalls().size();
+    }
+
+    @Override
+    public String[] getOldestCalls() {
+        List<InFlightCall> calls = client.snapshot().inFlightCalls();
+        String[] oldest = new String[Math.min(OLDEST_CALLS, calls.size())];
+        for (int i = 0; i < oldest.length; i++) {
+            oldest[i] = calls.get(i).toString();
+        }
+        return oldest;
+    }
+
+    @Override
+    public int getPollingOperations() {
+        return client.snapshot().pollingOperations();
+    }
+
+    @Override
+    public String getSnapshot() {
+        return client.snapshot().toString();
+    }
+
+    /**
+     * Unregisters the bean.
+     */
+    @Override
+    public void close() {
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            // already unregistered
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * The package contains classes to take snapshots of the state of a client, its
+ * dispatcher queues, connection pool and calls in flight, and to expose them
+ * through JMX.
+ */
+package com.microsoft.rest.introspection;
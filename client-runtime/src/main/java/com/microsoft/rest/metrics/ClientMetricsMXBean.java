@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * The JMX view of the calls of a client as a whole, registered by
+ * {@link JmxMetricsRecorder}. Durations are in milliseconds.
+ */
+@Beta(SinceVersion.V1_2_0)
+public interface ClientMetricsMXBean {
+    /**
+     * @return the number of calls in progress
+     */
+    long getInFlight();
+
+    /**
+     * @return the number of calls started
+     */
+    long getCalls();
+
+    /**
+     * @return the number of calls failed without a response
+     */
+    long getFailures();
+
+    /**
+     * @return the number of response bodies deserialized
+     */
+    long getDeserializationCount();
+
+    /**
+     * @return the mean deserialization time
+     */
+    double getDeserializationMeanMillis();
+
+    /**
+     * @return the 99th percentile of the deserialization time
+     */
+    double getDeserializationP99Millis();
+
+    /**
+     * @return the number of requests authenticated
+     */
+    long getTokenAcquisitionCount();
+
+    /**
+     * @return the mean authentication time, token acquisition included
+     */
+    double getTokenAcquisitionMeanMillis();
+
+    /**
+     * @return the longest authentication time, token acquisition included
+     */
+    double getTokenAcquisitionMaxMillis();
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default {@link MetricsRecorder}, aggregating the metrics in memory and exposing
+ * them through the platform MBean server, without any dependency. The client as a
+ * whole is registered as {@code com.microsoft.rest:type=Client,name=<name>}, and
+ * each operation and status class as {@code com.microsoft.rest:type=Operation,
+ * client=<name>,operation=<operation>,status=<status class>} once it is first seen.
+ *
+ * Latencies are kept in histograms of bounded relative error, see
+ * {@link OperationMetricsMXBean}. {@link #close()} unregisters the beans.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class JmxMetricsRecorder implements MetricsRecorder, ClientMetricsMXBean, AutoCloseable {
+    private static final String DOMAIN = "com.microsoft.rest";
+    private static final String[] STATUS_CLASSES = {"failed", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final String name;
+    private final ObjectName objectName;
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final LatencyHistogram deserialization = new LatencyHistogram();
+    private final LatencyHistogram tokenAcquisition = new LatencyHistogram();
+
+    /**
+     * Creates a recorder and registers the bean of the client.
+     *
+     * @param name the name of the client, unique in the JVM
+     */
+    public JmxMetricsRecorder(String name) {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        this.name = name;
+        try {
+            this.objectName = new ObjectName(DOMAIN + ":type=Client,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot register the metrics of client " + name, e);
+        }
+    }
+
+    /**
+     * @return the name of the client
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @param operation the operation
+     * @param statusClass the status class, e.g. "2xx", or "failed"
+     * @return the metrics of the operation ending with the status class, or null if there was no such call
+     */
+    public OperationMetricsMXBean operation(String operation, String statusClass) {
+        return operations.get(key(operation, statusClass));
+    }
+
+    @Override
+    public void callStarted(String operation) {
+        calls.incrementAndGet();
+        inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void callEnded(String operation, int statusCode, long latencyNanos, int retries, long bytesSent, long bytesReceived) {
+        inFlight.decrementAndGet();
+        if (statusCode == 0) {
+            failures.incrementAndGet();
+        }
+        String statusClass = statusCode / 100 < STATUS_CLASSES.length ? STATUS_CLASSES[statusCode / 100] : "other";
+        String key = key(operation, statusClass);
+        OperationMetrics metrics = operations.get(key);
+        if (metrics == null) {
+            metrics = new OperationMetrics(operation, statusClass);
+            OperationMetrics existing = operations.putIfAbsent(key, metrics);
+            if (existing != null) {
+                metrics = existing;
+            } else {
+                metrics.register();
+            }
+        }
+        metrics.latency.record(latencyNanos);
+        metrics.retries.addAndGet(retries);
+        metrics.bytesSent.addAndGet(bytesSent);
+        metrics.bytesReceived.addAndGet(bytesReceived);
+    }
+
+    @Override
+    public void deserialized(String operation, long nanos) {
+        deserialization.record(nanos);
+    }
+
+    @Override
+    public void tokenAcquired(long nanos) {
+        tokenAcquisition.record(nanos);
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getDeserializationCount() {
+        return deserialization.count();
+    }
+
+    @Override
+    public double getDeserializationMeanMillis() {
+        return deserialization.meanMillis();
+    }
+
+    @Override
+    public double getDeserializationP99Millis() {
+        return deserialization.percentileMillis(99);
+    }
+
+    @Override
+    public long getTokenAcquisitionCount() {
+        return tokenAcquisition.count();
+    }
+
+    @Override
+    public double getTokenAcquisitionMeanMillis() {
+        return tokenAcquisition.meanMillis();
+    }
+
+    @Override
+    public double getTokenAcquisitionMaxMillis() {
+        return tokenAcquisition.maxMillis();
+    }
+
+    /**
+     * Unregisters the beans of the client and of its operations.
+     */
+    @Override
+    public void close() {
+        for (OperationMetrics metrics : operations.values()) {
+            unregister(metrics.objectName);
+        }
+        unregister(objectName);
+    }
+
+    private void unregister(ObjectName objectName) {
+        try {
+            if (objectName != null && server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            // already unregistered
+        }
+    }
+
+    private static String key(String operation, String statusClass) {
+        return operation + '\n' + statusClass;
+    }
+
+    /**
+     * The metrics of an operation and status class.
+     */
+    private final class OperationMetrics implements OperationMetricsMXBean {
+        private final String operation;
+        private final String statusClass;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private volatile ObjectName objectName;
+
+        private OperationMetrics(String operation, String statusClass) {
+            this.operation = operation;
+            this.statusClass = statusClass;
+        }
+
+        private void register() {
+            try {
+                ObjectName objectName = new ObjectName(DOMAIN + ":type=Operation,client=" + ObjectName.quote(name)
+                        + ",operation=" + ObjectName.quote(operation) + ",status=" + statusClass);
+                server.registerMBean(this, objectName);
+                this.objectName = objectName;
+            } catch (JMException e) {
+                // the metrics are still aggregated and available from the recorder
+            }
+        }
+
+        @Override
+        public String getOperation() {
+            return operation;
+        }
+
+        @Override
+        public String getStatusClass() {
+            return statusClass;
+        }
+
+        @Override
+        public long getCount() {
+            return latency.count();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return latency.meanMillis();
+        }
+
+        @Override
+        public double getP50Millis() {
+            return latency.percentileMillis(50);
+        }
+
+        @Override
+        public double getP90Millis() {
+            return latency.percentileMillis(90);
+        }
+
+        @Override
+        public double getP99Millis() {
+            return latency.percentileMillis(99);
+        }
+
+        @Override
+        public double getP999Millis() {
+            return latency.percentileMillis(99.9);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return latency.maxMillis();
+        }
+
+        @Override
+        public long getRetries() {
+            return retries.get();
+        }
+
+        @Override
+        public long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        @Override
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+    }
+}
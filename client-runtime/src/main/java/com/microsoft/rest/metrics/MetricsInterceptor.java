@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.context.RequestContext;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the metrics of the calls of a client into a {@link MetricsRecorder}.
+ *
+ * The interceptor is added as the first application interceptor, so that a call is
+ * measured as a whole, and its {@link #networkInterceptor()} as a network
+ * interceptor counting the attempts and the bytes sent. The credentials interceptor
+ * is wrapped with {@link #timeTokenAcquisition(Interceptor)}. {@code
+ * RestClient.Builder.withMetrics()} does all three.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class MetricsInterceptor implements Interceptor {
+    private final MetricsRecorder recorder;
+    private final Interceptor networkInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            CallMetrics call = RequestContext.of(request).attribute(CallMetrics.class);
+            if (call != null) {
+                call.attempts.incrementAndGet();
+                if (request.body() != null) {
+                    call.bytesSent.addAndGet(Math.max(0, request.body().contentLength()));
+                }
+            }
+            return chain.proceed(request);
+        }
+    };
+
+    /**
+     * Creates an interceptor recording into a recorder.
+     *
+     * @param recorder the recorder of the metrics
+     */
+    public MetricsInterceptor(MetricsRecorder recorder) {
+        if (recorder == null) {
+            throw new NullPointerException("recorder == null");
+        }
+        this.recorder = recorder;
+    }
+
+    /**
+     * @return the recorder of the metrics
+     */
+    public MetricsRecorder recorder() {
+        return recorder;
+    }
+
+    /**
+     * @return the interceptor to add as a network interceptor, counting the attempts
+     */
+    public Interceptor networkInterceptor() {
+        return networkInterceptor;
+    }
+
+    /**
+     * Wraps the interceptor applying the credentials of a client, to record the time
+     * it spends before passing the request on.
+     *
+     * @param credentialsInterceptor the interceptor applying the credentials
+     * @return the wrapping interceptor
+     */
+    public Interceptor timeTokenAcquisition(final Interceptor credentialsInterceptor) {
+        return new Interceptor() {
+            @Override
+            public Response intercept(final Chain chain) throws IOException {
+                final long start = System.nanoTime();
+                final boolean[] recorded = new boolean[1];
+                return credentialsInterceptor.intercept(new Chain() {
+                    @Override
+                    public Request request() {
+                        return chain.request();
+                    }
+
+                    @Override
+                    public Response proceed(Request request) throws IOException {
+                        if (!recorded[0]) {
+                            recorded[0] = true;
+                            tokenAcquired(System.nanoTime() - start);
+                        }
+                        return chain.proceed(request);
+                    }
+
+                    @Override
+                    public Connection connection() {
+                        return chain.connection();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Records the deserialization of the response body of a request made through a
+     * client recording metrics; does nothing for other requests.
+     *
+     * @param request the request, as found on its response
+     * @param nanos the time the deserialization took, in nanoseconds
+     */
+    public static void recordDeserialization(Request request, long nanos) {
+        CallMetrics call = RequestContext.of(request).attribute(CallMetrics.class);
+        if (call != null) {
+            try {
+                call.recorder.deserialized(call.operation, nanos);
+            } catch (RuntimeException e) {
+                // metrics never fail a call
+            }
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestContext context = RequestContext.of(request);
+        String operation = context.loggingContext() != null ? context.loggingContext() : request.method();
+        CallMetrics call = new CallMetrics(recorder, operation);
+        try {
+            recorder.callStarted(operation);
+        } catch (RuntimeException e) {
+            // metrics never fail a call
+        }
+        request = request.newBuilder()
+                .tag(context.newBuilder().withAttribute(CallMetrics.class, call).build())
+                .build();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            call.end(0);
+            throw e;
+        }
+        return call.wrap(response);
+    }
+
+    private void tokenAcquired(long nanos) {
+        try {
+            recorder.tokenAcquired(nanos);
+        } catch (RuntimeException e) {
+            // metrics never fail a call
+        }
+    }
+
+    /**
+     * The metrics of a call in progress.
+     */
+    private static final class CallMetrics {
+        private final MetricsRecorder recorder;
+        private final String operation;
+        private final long start = System.nanoTime();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final AtomicInteger ended = new AtomicInteger();
+
+        private CallMetrics(MetricsRecorder recorder, String operation) {
+            this.recorder = recorder;
+            this.operation = operation;
+        }
+
+        private void end(int statusCode) {
+            if (ended.compareAndSet(0, 1)) {
+                try {
+                    recorder.callEnded(operation, statusCode, System.nanoTime() - start,
+                            Math.max(0, attempts.get() - 1), bytesSent.get(), bytesReceived.get());
+                } catch (RuntimeException e) {
+                    // metrics never fail a call
+                }
+            }
+        }
+
+        /**
+         * Ends the call when the body of its response is exhausted or closed.
+         */
+        private Response wrap(final Response response) {
+            final ResponseBody body = response.body();
+            if (body == null) {
+                end(response.code());
+                return response;
+            }
+            Source source = new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read;
+                    try {
+                        read = super.read(sink, byteCount);
+                    } catch (IOException e) {
+                        end(0);
+                        throw e;
+                    }
+                    if (read == -1) {
+                        end(response.code());
+                    } else {
+                        bytesReceived.addAndGet(read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        end(response.code());
+                    }
+                }
+            };
+            return response.newBuilder()
+                    .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+                    .build();
+        }
+    }
+}
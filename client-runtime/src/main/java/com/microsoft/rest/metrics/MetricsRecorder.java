@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * Receives the metrics of the calls of a client, to aggregate them or forward
+ * them to a metrics system. {@link JmxMetricsRecorder} is the default.
+ *
+ * The operation of a call is its logging context, or its HTTP method if it has
+ * none. The methods are called on the threads of the calls and must be fast and
+ * thread safe; exceptions they throw are ignored.
+ */
+@Beta(SinceVersion.V1_2_0)
+public interface MetricsRecorder {
+    /**
+     * Records the start of a call.
+     *
+     * @param operation the operation of the call
+     */
+    void callStarted(String operation);
+
+    /**
+     * Records the end of a call, when its response body is closed.
+     *
+     * @param operation the operation of the call
+     * @param statusCode the status code of the last response, or 0 if the call failed
+     * @param latencyNanos the duration of the call, retries included, in nanoseconds
+     * @param retries the number of attempts after the first one
+     * @param bytesSent the number of request body bytes sent, over all the attempts
+     * @param bytesReceived the number of response body bytes read
+     */
+    void callEnded(String operation, int statusCode, long latencyNanos, int retries, long bytesSent, long bytesReceived);
+
+    /**
+     * Records the deserialization of a response body.
+     *
+     * @param operation the operation of the call
+     * @param nanos the time it took, in nanoseconds
+     */
+    void deserialized(String operation, long nanos);
+
+    /**
+     * Records the authentication of a request by the credentials of the client,
+     * including the acquisition or refresh of a token.
+     *
+     * @param nanos the time it took, in nanoseconds
+     */
+    void tokenAcquired(long nanos);
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * The JMX view of the calls of an operation ending with a status class, registered
+ * by {@link JmxMetricsRecorder}. Durations are in milliseconds.
+ */
+@Beta(SinceVersion.V1_2_0)
+public interface OperationMetricsMXBean {
+    /**
+     * @return the operation
+     */
+    String getOperation();
+
+    /**
+     * @return the status class, e.g. "2xx", or "failed" for calls without a response
+     */
+    String getStatusClass();
+
+    /**
+     * @return the number of calls
+     */
+    long getCount();
+
+    /**
+     * @return the mean latency
+     */
+    double getMeanMillis();
+
+    /**
+     * @return the median latency
+     */
+    double getP50Millis();
+
+    /**
+     * @return the 90th percentile of the latency
+     */
+    double getP90Millis();
+
+    /**
+     * @return the 99th percentile of the latency
+     */
+    double getP99Millis();
+
+    /**
+     * @return the 99.9th percentile of the latency
+     */
+    double getP999Millis();
+
+    /**
+     * @return the longest latency
+     */
+    double getMaxMillis();
+
+    /**
+     * @return the number of retries
+     */
+    long getRetries();
+
+    /**
+     * @return the number of request body bytes sent
+     */
+    long getBytesSent();
+
+    /**
+     * @return the number of response body bytes received
+     */
+    long getBytesReceived();
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.context.RequestContext;
+import okhttp3.Request;
+
+import java.util.Locale;
+
+/**
+ * The timing of a call, broken down into phases, as found on its
+ * {@code ServiceResponse} when the client records response timings. The phases do
+ * not overlap; together they account for the time from the start of the call until
+ * its response body is deserialized.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class ResponseTiming {
+    /**
+     * The phases of a call.
+     */
+    public enum Phase {
+        /** From the start of the call to its first attempt, token acquisition excepted: admission, batching, priority. */
+        QUEUE,
+        /** The authentication of the request by the credentials of the client, token acquisition included. */
+        TOKEN,
+        /** The attempts, from sending the request until the response headers are received, connecting included. */
+        NETWORK,
+        /** The time between attempts, mostly the back-off of the retries. */
+        RETRY_WAIT,
+        /** From the response headers of the last attempt until the response body is read. */
+        BODY_READ,
+        /** The deserialization of the response body. */
+        DESERIALIZATION
+    }
+
+    private final long start = System.nanoTime();
+    private final long[] nanos = new long[Phase.values().length];
+    private int attempts;
+    private boolean connectionReused;
+    private long responseBytes;
+    private long attemptStart;
+    private long attemptEnd;
+    private long headersReceived;
+    private long end;
+
+    ResponseTiming() {
+    }
+
+    /**
+     * @param request a request, or the request of a response
+     * @return the timing of the call, or null if its client does not record response timings
+     */
+    public static ResponseTiming of(Request request) {
+        return request == null ? null : RequestContext.of(request).attribute(ResponseTiming.class);
+    }
+
+    /**
+     * @param phase a phase
+     * @return the time spent in the phase, in nanoseconds
+     */
+    public synchronized long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @return the time from the start of the call until its response body was read,
+     * or until now if it is still being read, in nanoseconds
+     */
+    public synchronized long elapsedNanos() {
+        return (end != 0 ? end : System.nanoTime()) - start;
+    }
+
+    /**
+     * @return the number of attempts sent to the network, 0 if the response was served by a cache
+     */
+    public synchronized int attempts() {
+        return attempts;
+    }
+
+    /**
+     * @return whether the last attempt reused a connection of the pool
+     */
+    public synchronized boolean connectionReused() {
+        return connectionReused;
+    }
+
+    /**
+     * @return the number of response body bytes read
+     */
+    public synchronized long responseBytes() {
+        return responseBytes;
+    }
+
+    synchronized void addTokenNanos(long tokenNanos) {
+        nanos[Phase.TOKEN.ordinal()] += tokenNanos;
+    }
+
+    synchronized void attemptStarted(boolean reused) {
+        long now = System.nanoTime();
+        if (attempts == 0) {
+            nanos[Phase.QUEUE.ordinal()] = Math.max(0, now - start - nanos[Phase.TOKEN.ordinal()]);
+        } else {
+            nanos[Phase.RETRY_WAIT.ordinal()] += now - attemptEnd;
+        }
+        attempts++;
+        attemptStart = now;
+        connectionReused = reused;
+    }
+
+    synchronized void attemptEnded() {
+        attemptEnd = System.nanoTime();
+        nanos[Phase.NETWORK.ordinal()] += attemptEnd - attemptStart;
+    }
+
+    synchronized void headersReceived() {
+        headersReceived = System.nanoTime();
+        if (attempts == 0) {
+            // served without reaching the network
+            nanos[Phase.QUEUE.ordinal()] = Math.max(0, headersReceived - start - nanos[Phase.TOKEN.ordinal()]);
+        }
+    }
+
+    synchronized void bytesRead(long count) {
+        responseBytes += count;
+    }
+
+    synchronized void bodyRead() {
+        if (end == 0) {
+            end = System.nanoTime();
+            nanos[Phase.BODY_READ.ordinal()] = headersReceived != 0 ? end - headersReceived : 0;
+        }
+    }
+
+    synchronized void addDeserializationNanos(long deserializationNanos) {
+        nanos[Phase.DESERIALIZATION.ordinal()] += deserializationNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT, "elapsed=%.3fms", elapsedNanos() / 1e6));
+        for (Phase phase : Phase.values()) {
+            builder.append(String.format(Locale.ROOT, " %s=%.3fms",
+                    phase.name().toLowerCase(Locale.ROOT), nanos[phase.ordinal()] / 1e6));
+        }
+        return builder.append(" attempts=").append(attempts)
+                .append(" reused=").append(connectionReused)
+                .append(" bytes=").append(responseBytes)
+                .toString();
+    }
+}
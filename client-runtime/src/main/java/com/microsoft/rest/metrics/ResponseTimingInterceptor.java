@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.context.RequestContext;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Records a {@link ResponseTiming} for each call of a client, found on its
+ * {@code ServiceResponse}.
+ *
+ * The interceptor is added as the first application interceptor, its {@link
+ * #networkInterceptor()} as a network interceptor timing the attempts, and the
+ * credentials interceptor is wrapped with {@link #timeTokenAcquisition(Interceptor)}.
+ * {@code RestClient.Builder.withResponseTiming()} does all three.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class ResponseTimingInterceptor implements Interceptor {
+    /** The connections already used, to tell whether an attempt reuses one. */
+    private final Set<Connection> connections = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>()));
+    private final Interceptor networkInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            ResponseTiming timing = ResponseTiming.of(request);
+            if (timing == null) {
+                return chain.proceed(request);
+            }
+            Connection connection = chain.connection();
+            timing.attemptStarted(connection != null && !connections.add(connection));
+            try {
+                return chain.proceed(request);
+            } finally {
+                timing.attemptEnded();
+            }
+        }
+    };
+
+    /**
+     * @return the interceptor to add as a network interceptor, timing the attempts
+     */
+    public Interceptor networkInterceptor() {
+        return networkInterceptor;
+    }
+
+    /**
+     * Wraps the interceptor applying the credentials of a client, to record the time
+     * it spends before passing the request on.
+     *
+     * @param credentialsInterceptor the interceptor applying the credentials
+     * @return the wrapping interceptor
+     */
+    public Interceptor timeTokenAcquisition(final Interceptor credentialsInterceptor) {
+        return new Interceptor() {
+            @Override
+            public Response intercept(final Chain chain) throws IOException {
+                final ResponseTiming timing = ResponseTiming.of(chain.request());
+                if (timing == null) {
+                    return credentialsInterceptor.intercept(chain);
+                }
+                final long start = System.nanoTime();
+                final boolean[] recorded = new boolean[1];
+                return credentialsInterceptor.intercept(new Chain() {
+                    @Override
+                    public Request request() {
+                        return chain.request();
+                    }
+
+                    @Override
+                    public Response proceed(Request request) throws IOException {
+                        if (!recorded[0]) {
+                            recorded[0] = true;
+                            timing.addTokenNanos(System.nanoTime() - start);
+                        }
+                        return chain.proceed(request);
+                    }
+
+                    @Override
+                    public Connection connection() {
+                        return chain.connection();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Records the deserialization of the response body of a request made through a
+     * client recording response timings; does nothing for other requests.
+     *
+     * @param request the request, as found on its response
+     * @param nanos the time the deserialization took, in nanoseconds
+     */
+    public static void recordDeserialization(Request request, long nanos) {
+        ResponseTiming timing = ResponseTiming.of(request);
+        if (timing != null) {
+            timing.addDeserializationNanos(nanos);
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final ResponseTiming timing = new ResponseTiming();
+        Request request = chain.request();
+        request = request.newBuilder()
+                .tag(RequestContext.of(request).newBuilder().withAttribute(ResponseTiming.class, timing).build())
+                .build();
+        Response response = chain.proceed(request);
+        timing.headersReceived();
+        ResponseBody body = response.body();
+        if (body == null) {
+            timing.bodyRead();
+            return response;
+        }
+        Source source = new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read == -1) {
+                    timing.bodyRead();
+                } else {
+                    timing.bytesRead(read);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    timing.bodyRead();
+                }
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+                .build();
+    }
+}
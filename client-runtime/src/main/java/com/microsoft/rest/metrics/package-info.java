@@ -0,0 +1,5 @@
+/**
+ * The package contains classes to record the metrics of the calls of a client,
+ * a default recorder exposing them through JMX, and the timing of each response.
+ */
+package com.microsoft.rest.metrics;
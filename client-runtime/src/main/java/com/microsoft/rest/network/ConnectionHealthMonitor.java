@@ -0,0 +1,364 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.network;
+
+import okhttp3.Connection;
+import okhttp3.Dns;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manages the health of pooled connections and of the remote addresses behind a host.
+ *
+ * Pooled HTTP/1.1 connections idle for longer than a threshold are validated before
+ * they are reused. A connection closed or half-closed by the server, usually by a load
+ * balancer dropping idle flows, is discarded and the request transparently moves to a
+ * new connection instead of failing on the stale one. The validation relies on an
+ * internal health check of OkHttp 3.3; with an OkHttp version without it, only the
+ * connections whose socket is already closed are detected.
+ *
+ * The time to response headers is also tracked per remote address with an
+ * exponentially weighted moving average. An address much slower than the other
+ * addresses of the same host is ejected for a while: it is left out of DNS results
+ * and its pooled connections are retired on their next use. At most half of the
+ * addresses of a host are ejected at the same time. Statistics are kept for the 256
+ * most recently used hosts.
+ *
+ * Register the monitor with {@code RestClient.Builder.withConnectionHealthMonitor()}.
+ */
+public final class ConnectionHealthMonitor {
+    /** The weight of a new sample in the moving average. */
+    private static final double EWMA_ALPHA = 0.3;
+    /** The number of hosts tracked at most, the least recently used ones are forgotten. */
+    private static final int MAX_HOSTS = 256;
+    /**
+     * The extensive health check of OkHttp connections, {@code RealConnection.isHealthy(boolean)}.
+     * It is internal to OkHttp 3.3 and may move in other versions, so it is looked up
+     * once; null if it is not found, in which case only closed sockets are detected.
+     */
+    private static final Method IS_HEALTHY = isHealthyMethod();
+
+    /** The DNS to resolve host names with. */
+    private final Dns delegate;
+    /** The idle time after which a connection is validated, in nanoseconds. */
+    private volatile long idleValidationNanos = TimeUnit.SECONDS.toNanos(5);
+    /** How many times slower than its peers an address must be to get ejected. */
+    private volatile double ejectionFactor = 3.0;
+    /** The number of samples an address needs before it can be ejected. */
+    private volatile int minimumSamples = 10;
+    /** How long an address stays ejected, in nanoseconds. */
+    private volatile long ejectionNanos = TimeUnit.SECONDS.toNanos(30);
+
+    /** The last use of each pooled connection. */
+    private final Map<Connection, Long> lastUsed = new WeakHashMap<>();
+    /** The latency statistics of each address, by host name, in access order. */
+    private final Map<String, Map<InetAddress, AddressStats>> hosts =
+            new LinkedHashMap<String, Map<InetAddress, AddressStats>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<InetAddress, AddressStats>> eldest) {
+                    return size() > MAX_HOSTS;
+                }
+            };
+    /** The network interceptor validating connections and recording latencies. */
+    private final Interceptor interceptor = new HealthInterceptor();
+    /** The number of stale connections detected. */
+    private final AtomicLong staleConnections = new AtomicLong();
+    /** The number of times an address was ejected. */
+    private final AtomicLong ejections = new AtomicLong();
+
+    /**
+     * Creates a monitor resolving host names with the system DNS.
+     */
+    public ConnectionHealthMonitor() {
+        this(Dns.SYSTEM);
+    }
+
+    /**
+     * Creates a monitor.
+     *
+     * @param delegate the DNS to resolve host names with
+     */
+    public ConnectionHealthMonitor(Dns delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate == null");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets how long a pooled connection can stay idle before it gets validated on
+     * its next use. Default is 5 seconds.
+     *
+     * @param idleTime the idle time
+     * @param unit the time unit of the idle time
+     * @return the monitor itself for chaining
+     */
+    public ConnectionHealthMonitor withIdleValidation(long idleTime, TimeUnit unit) {
+        if (idleTime < 0) {
+            throw new IllegalArgumentException("idleTime < 0");
+        }
+        this.idleValidationNanos = unit.toNanos(idleTime);
+        return this;
+    }
+
+    /**
+     * Sets when a slow address gets ejected. An address is ejected when its average
+     * latency exceeds the median of the other addresses of the host by the given
+     * factor. Defaults are a factor of 3, 10 samples and 30 seconds.
+     *
+     * @param factor how many times slower than the median an address must be
+     * @param minimumSamples the number of samples an address needs before it can be ejected
+     * @param ejectionTime how long an ejected address is left out
+     * @param unit the time unit of the ejection time
+     * @return the monitor itself for chaining
+     */
+    public ConnectionHealthMonitor withOutlierEjection(double factor, int minimumSamples, long ejectionTime, TimeUnit unit) {
+        if (factor <= 1.0) {
+            throw new IllegalArgumentException("factor <= 1.0");
+        }
+        if (minimumSamples < 1) {
+            throw new IllegalArgumentException("minimumSamples < 1");
+        }
+        this.ejectionFactor = factor;
+        this.minimumSamples = minimumSamples;
+        this.ejectionNanos = unit.toNanos(ejectionTime);
+        return this;
+    }
+
+    /**
+     * @return the network interceptor validating connections and recording latencies
+     */
+    public Interceptor networkInterceptor() {
+        return interceptor;
+    }
+
+    /**
+     * @return the DNS leaving the ejected addresses out
+     */
+    public Dns dns() {
+        return new Dns() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                return filter(hostname, delegate.lookup(hostname));
+            }
+        };
+    }
+
+    /**
+     * @return the number of stale pooled connections detected and discarded
+     */
+    public long staleConnectionCount() {
+        return staleConnections.get();
+    }
+
+    /**
+     * @return the number of times an address was ejected
+     */
+    public long ejectionCount() {
+        return ejections.get();
+    }
+
+    /**
+     * Returns the addresses of a host currently ejected.
+     *
+     * @param hostname the host name
+     * @return the ejected addresses
+     */
+    public Set<InetAddress> ejectedAddresses(String hostname) {
+        Set<InetAddress> ejected = new HashSet<>();
+        long now = System.nanoTime();
+        synchronized (hosts) {
+            Map<InetAddress, AddressStats> addresses = hosts.get(hostname);
+            if (addresses != null) {
+                for (Map.Entry<InetAddress, AddressStats> entry : addresses.entrySet()) {
+                    if (entry.getValue().isEjected(now)) {
+                        ejected.add(entry.getKey());
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableSet(ejected);
+    }
+
+    private List<InetAddress> filter(String hostname, List<InetAddress> resolved) {
+        long now = System.nanoTime();
+        List<InetAddress> result = new ArrayList<>(resolved.size());
+        synchronized (hosts) {
+            Map<InetAddress, AddressStats> addresses = hosts.get(hostname);
+            if (addresses == null) {
+                return resolved;
+            }
+            for (InetAddress address : resolved) {
+                AddressStats stats = addresses.get(address);
+                if (stats == null || !stats.isEjected(now)) {
+                    result.add(address);
+                }
+            }
+        }
+        // never leave a host without an address
+        return result.isEmpty() ? resolved : result;
+    }
+
+    private boolean isEjected(String hostname, InetAddress address) {
+        synchronized (hosts) {
+            Map<InetAddress, AddressStats> addresses = hosts.get(hostname);
+            AddressStats stats = addresses == null ? null : addresses.get(address);
+            return stats != null && stats.isEjected(System.nanoTime());
+        }
+    }
+
+    private void record(String hostname, InetAddress address, long latencyNanos) {
+        long now = System.nanoTime();
+        synchronized (hosts) {
+            Map<InetAddress, AddressStats> addresses = hosts.get(hostname);
+            if (addresses == null) {
+                addresses = new HashMap<>();
+                hosts.put(hostname, addresses);
+            }
+            AddressStats stats = addresses.get(address);
+            if (stats == null) {
+                stats = new AddressStats();
+                addresses.put(address, stats);
+            }
+            if (stats.isEjected(now)) {
+                return;
+            }
+            stats.add(latencyNanos);
+            if (stats.samples < minimumSamples || addresses.size() < 2) {
+                return;
+            }
+            // compare against the median of the other addresses with enough samples
+            List<Double> averages = new ArrayList<>(addresses.size());
+            int ejected = 0;
+            for (AddressStats other : addresses.values()) {
+                if (other.isEjected(now)) {
+                    ejected++;
+                } else if (other != stats && other.samples >= minimumSamples) {
+                    averages.add(other.average);
+                }
+            }
+            if (averages.isEmpty() || (ejected + 1) * 2 > addresses.size()) {
+                return;
+            }
+            Double[] sorted = averages.toArray(new Double[averages.size()]);
+            Arrays.sort(sorted);
+            double median = sorted.length % 2 == 1
+                    ? sorted[sorted.length / 2]
+                    : (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+            if (stats.average > median * ejectionFactor) {
+                // start over with fresh statistics when the address comes back
+                stats.ejectedUntil = now + ejectionNanos;
+                stats.samples = 0;
+                stats.average = 0;
+                ejections.incrementAndGet();
+            }
+        }
+    }
+
+    private static Method isHealthyMethod() {
+        try {
+            return Class.forName("okhttp3.internal.io.RealConnection").getMethod("isHealthy", boolean.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean isStale(Connection connection) {
+        if (IS_HEALTHY != null && IS_HEALTHY.getDeclaringClass().isInstance(connection)) {
+            // the extensive check OkHttp only runs itself before requests other than
+            // GET; it looks for the end of stream through the buffered source of the
+            // connection, so no byte or TLS record read ahead is lost
+            try {
+                return !(Boolean) IS_HEALTHY.invoke(connection, true);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                // fall back to the socket state
+            }
+        }
+        Socket socket = connection.socket();
+        return socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown();
+    }
+
+    /**
+     * The latency statistics of a remote address.
+     */
+    private static final class AddressStats {
+        private int samples;
+        private double average;
+        private long ejectedUntil;
+
+        private void add(long latencyNanos) {
+            average = samples == 0 ? latencyNanos : EWMA_ALPHA * latencyNanos + (1 - EWMA_ALPHA) * average;
+            samples++;
+        }
+
+        private boolean isEjected(long now) {
+            return ejectedUntil != 0 && ejectedUntil - now > 0;
+        }
+    }
+
+    /**
+     * The network interceptor validating reused connections and recording latencies.
+     */
+    private final class HealthInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Connection connection = chain.connection();
+            if (connection == null) {
+                return chain.proceed(chain.request());
+            }
+            String hostname = chain.request().url().host();
+            boolean direct = connection.route().proxy().type() == Proxy.Type.DIRECT;
+            InetAddress address = connection.route().socketAddress().getAddress();
+            long start = System.nanoTime();
+            Long previous;
+            synchronized (lastUsed) {
+                previous = lastUsed.put(connection, start);
+            }
+            if (previous != null) {
+                if (direct && isEjected(hostname, address)) {
+                    // OkHttp retires the connection and retries on a new one
+                    throw new IOException("Remote address " + address + " of " + hostname + " is ejected");
+                }
+                boolean http1 = connection.protocol() == Protocol.HTTP_1_1 || connection.protocol() == Protocol.HTTP_1_0;
+                if (http1 && start - previous > idleValidationNanos && isStale(connection)) {
+                    staleConnections.incrementAndGet();
+                    throw new IOException("Pooled connection to " + hostname + " was closed by the remote end");
+                }
+            }
+            Response response = chain.proceed(chain.request());
+            long end = System.nanoTime();
+            synchronized (lastUsed) {
+                lastUsed.put(connection, end);
+            }
+            if (direct) {
+                record(hostname, address, end - start);
+            }
+            return response;
+        }
+    }
+}
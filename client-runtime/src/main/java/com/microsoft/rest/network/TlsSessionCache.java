@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.network;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A TLS client session cache that can be shared by many HTTP clients in the same
+ * process, so that a connection opened by one client can resume a TLS session
+ * negotiated by another one instead of doing a full handshake.
+ *
+ * The cache also counts the handshakes done through it, split into full and
+ * resumed handshakes. A handshake is counted when its connection is first used by a
+ * client with the {@link #networkInterceptor() network interceptor} of the cache.
+ */
+public final class TlsSessionCache {
+    /** The default maximum number of cached sessions. */
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 1000;
+    /** The default lifetime of a cached session in seconds. */
+    public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 60 * 60 * 4;
+
+    /** The SSL context holding the client session cache. */
+    private final SSLContext sslContext;
+    /** The trust manager used by the SSL context. */
+    private final X509TrustManager trustManager;
+    /** The socket factory tracking handshakes. */
+    private final SSLSocketFactory sslSocketFactory;
+    /** The number of full handshakes. */
+    private final AtomicLong fullHandshakes = new AtomicLong();
+    /** The number of abbreviated handshakes resuming a cached session. */
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+    /** The creation time in milliseconds of the sockets not used yet. */
+    private final Map<Socket, Long> unusedSockets = new WeakHashMap<>();
+    /** The network interceptor counting the handshakes of new connections. */
+    private final Interceptor interceptor = new HandshakeInterceptor();
+
+    /**
+     * Creates a session cache with the default size and session timeout and the
+     * platform default trust manager.
+     */
+    public TlsSessionCache() {
+        this(DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Creates a session cache with the platform default trust manager.
+     *
+     * @param sessionCacheSize the maximum number of cached sessions, 0 for no limit
+     * @param sessionTimeoutSeconds the lifetime of a cached session in seconds, 0 for no limit
+     */
+    public TlsSessionCache(int sessionCacheSize, int sessionTimeoutSeconds) {
+        this(sessionCacheSize, sessionTimeoutSeconds, defaultTrustManager());
+    }
+
+    /**
+     * Creates a session cache.
+     *
+     * @param sessionCacheSize the maximum number of cached sessions, 0 for no limit
+     * @param sessionTimeoutSeconds the lifetime of a cached session in seconds, 0 for no limit
+     * @param trustManager the trust manager to validate server certificates with
+     */
+    public TlsSessionCache(int sessionCacheSize, int sessionTimeoutSeconds, X509TrustManager trustManager) {
+        if (trustManager == null) {
+            throw new IllegalArgumentException("trustManager == null");
+        }
+        try {
+            this.sslContext = SSLContext.getInstance("TLS");
+            this.sslContext.init(null, new TrustManager[] {trustManager}, null);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize the TLS context", e);
+        }
+        this.sslContext.getClientSessionContext().setSessionCacheSize(sessionCacheSize);
+        this.sslContext.getClientSessionContext().setSessionTimeout(sessionTimeoutSeconds);
+        this.trustManager = trustManager;
+        this.sslSocketFactory = new TrackingSslSocketFactory(sslContext.getSocketFactory());
+    }
+
+    /**
+     * Returns the process wide session cache.
+     *
+     * @return the shared session cache
+     */
+    public static TlsSessionCache shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * @return the socket factory creating TLS sockets backed by this cache
+     */
+    public SSLSocketFactory sslSocketFactory() {
+        return sslSocketFactory;
+    }
+
+    /**
+     * @return the network interceptor counting the handshakes of new connections
+     */
+    public Interceptor networkInterceptor() {
+        return interceptor;
+    }
+
+    /**
+     * @return the trust manager validating server certificates
+     */
+    public X509TrustManager trustManager() {
+        return trustManager;
+    }
+
+    /**
+     * @return the number of full TLS handshakes done so far
+     */
+    public long fullHandshakeCount() {
+        return fullHandshakes.get();
+    }
+
+    /**
+     * @return the number of TLS handshakes that resumed a cached session so far
+     */
+    public long resumedHandshakeCount() {
+        return resumedHandshakes.get();
+    }
+
+    /**
+     * Removes all cached sessions, forcing full handshakes on the next connections.
+     */
+    public void invalidateAll() {
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        Enumeration<byte[]> ids = sessionContext.getIds();
+        while (ids.hasMoreElements()) {
+            SSLSession session = sessionContext.getSession(ids.nextElement());
+            if (session != null) {
+                session.invalidate();
+            }
+        }
+    }
+
+    private static X509TrustManager defaultTrustManager() {
+        try {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init((KeyStore) null);
+            for (TrustManager trustManager : factory.getTrustManagers()) {
+                if (trustManager instanceof X509TrustManager) {
+                    return (X509TrustManager) trustManager;
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to load the default trust manager", e);
+        }
+        throw new IllegalStateException("No X509TrustManager available on the platform");
+    }
+
+    private void countHandshake(Socket socket) {
+        Long createdMillis;
+        synchronized (unusedSockets) {
+            createdMillis = unusedSockets.remove(socket);
+        }
+        if (createdMillis == null || !(socket instanceof SSLSocket)) {
+            return;
+        }
+        // the handshake is done by now; a resumed session was negotiated before this socket existed
+        if (((SSLSocket) socket).getSession().getCreationTime() < createdMillis) {
+            resumedHandshakes.incrementAndGet();
+        } else {
+            fullHandshakes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Lazy holder for the shared instance.
+     */
+    private static final class SharedHolder {
+        private static final TlsSessionCache INSTANCE = new TlsSessionCache();
+    }
+
+    /**
+     * The network interceptor counting the handshake of a connection on its first use.
+     */
+    private final class HandshakeInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Connection connection = chain.connection();
+            if (connection != null) {
+                countHandshake(connection.socket());
+            }
+            return chain.proceed(chain.request());
+        }
+    }
+
+    /**
+     * A socket factory remembering when the sockets it creates were created.
+     */
+    private final class TrackingSslSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory delegate;
+
+        private TrackingSslSocketFactory(SSLSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return track(delegate.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return track(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return track(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return track(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return track(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return track(delegate.createSocket(address, port, localAddress, localPort));
+        }
+
+        private Socket track(Socket socket) {
+            if (socket instanceof SSLSocket) {
+                synchronized (unusedSockets) {
+                    unusedSockets.put(socket, System.currentTimeMillis());
+                }
+            }
+            return socket;
+        }
+    }
+}
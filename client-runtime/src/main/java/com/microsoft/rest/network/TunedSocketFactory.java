@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.network;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * A socket factory that applies a set of socket options on every socket it creates.
+ * Options that are not set keep the platform defaults.
+ */
+public final class TunedSocketFactory extends SocketFactory {
+    /** The factory creating the actual sockets. */
+    private final SocketFactory delegate;
+    /** The value for TCP_NODELAY, null for the platform default. */
+    private Boolean tcpNoDelay;
+    /** The value for SO_KEEPALIVE, null for the platform default. */
+    private Boolean keepAlive;
+    /** The value for SO_SNDBUF, -1 for the platform default. */
+    private int sendBufferSize = -1;
+    /** The value for SO_RCVBUF, -1 for the platform default. */
+    private int receiveBufferSize = -1;
+
+    /**
+     * Creates a factory on top of the default socket factory.
+     */
+    public TunedSocketFactory() {
+        this(SocketFactory.getDefault());
+    }
+
+    /**
+     * Creates a factory on top of another socket factory.
+     *
+     * @param delegate the socket factory creating the actual sockets
+     */
+    public TunedSocketFactory(SocketFactory delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate == null");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets TCP_NODELAY, which disables Nagle's algorithm.
+     *
+     * @param tcpNoDelay true to send small packets immediately
+     * @return the factory itself
+     */
+    public TunedSocketFactory withTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    /**
+     * Sets SO_KEEPALIVE, which sends TCP keep-alive probes on idle connections.
+     *
+     * @param keepAlive true to enable TCP keep-alive
+     * @return the factory itself
+     */
+    public TunedSocketFactory withKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * Sets the size of the socket send buffer (SO_SNDBUF).
+     *
+     * @param sendBufferSize the buffer size in bytes
+     * @return the factory itself
+     */
+    public TunedSocketFactory withSendBufferSize(int sendBufferSize) {
+        if (sendBufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid send buffer size: " + sendBufferSize);
+        }
+        this.sendBufferSize = sendBufferSize;
+        return this;
+    }
+
+    /**
+     * Sets the size of the socket receive buffer (SO_RCVBUF).
+     *
+     * @param receiveBufferSize the buffer size in bytes
+     * @return the factory itself
+     */
+    public TunedSocketFactory withReceiveBufferSize(int receiveBufferSize) {
+        if (receiveBufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid receive buffer size: " + receiveBufferSize);
+        }
+        this.receiveBufferSize = receiveBufferSize;
+        return this;
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket configure(Socket socket) throws SocketException {
+        if (tcpNoDelay != null) {
+            socket.setTcpNoDelay(tcpNoDelay);
+        }
+        if (keepAlive != null) {
+            socket.setKeepAlive(keepAlive);
+        }
+        // buffer sizes must be set before connecting to affect the TCP window
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        return socket;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains classes that tune the network stack of the HTTP client,
+ * like socket options and TLS session resumption.
+ */
+package com.microsoft.rest.network;
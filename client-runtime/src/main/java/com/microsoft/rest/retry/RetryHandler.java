@@ -6,11 +6,13 @@
 
 package com.microsoft.rest.retry;
 
+import com.microsoft.rest.context.RequestContext;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
 /**
  * An instance of this interceptor placed in the request pipeline handles retriable errors.
@@ -71,15 +73,22 @@ public final class RetryHandler implements Interceptor {
     public Response intercept(Chain chain) throws IOException {
         Request request = chain.request();
 
+        RequestContext context = RequestContext.of(request);
+
         // try the request
         Response response = chain.proceed(request);
 
         int tryCount = 0;
-        while (retryStrategy.shouldRetry(tryCount, response)) {
+        // a request past its deadline is not retried
+        while (retryStrategy.shouldRetry(tryCount, response) && !context.isExpired()) {
             tryCount++;
             if (response.body() != null) {
                 response.body().close();
             }
+            // a cancelled call fails on its next attempt, an interrupted one stops here
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted before retry " + tryCount);
+            }
             // retry the request
             response = chain.proceed(request);
         }
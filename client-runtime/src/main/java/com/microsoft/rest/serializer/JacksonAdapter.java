@@ -17,6 +17,9 @@ import com.fasterxml.jackson.datatype.joda.JodaModule;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.microsoft.rest.CollectionFormat;
+import com.microsoft.rest.events.RuntimeEventListener;
+import com.microsoft.rest.events.RuntimeEventType;
+import com.microsoft.rest.events.RuntimeEvents;
 import com.microsoft.rest.protocol.SerializerAdapter;
 
 import java.io.IOException;
@@ -79,9 +82,15 @@ public class JacksonAdapter implements SerializerAdapter<ObjectMapper> {
         if (object == null) {
             return null;
         }
+        RuntimeEventListener listener = RuntimeEvents.listener();
+        Object event = RuntimeEvents.begin(listener, RuntimeEventType.SERIALIZATION);
         StringWriter writer = new StringWriter();
         serializer().writeValue(writer, object);
-        return writer.toString();
+        String serialized = writer.toString();
+        if (event != null) {
+            listener.serializationEnded(event, object.getClass().getName(), serialized.length());
+        }
+        return serialized;
     }
 
     @Override
@@ -128,7 +137,13 @@ public class JacksonAdapter implements SerializerAdapter<ObjectMapper> {
         if (value == null || value.isEmpty()) {
             return null;
         }
-        return (T) serializer().readValue(value, constructJavaType(type));
+        RuntimeEventListener listener = RuntimeEvents.listener();
+        Object event = RuntimeEvents.begin(listener, RuntimeEventType.DESERIALIZATION);
+        T deserialized = (T) serializer().readValue(value, constructJavaType(type));
+        if (event != null) {
+            listener.deserializationEnded(event, RuntimeEvents.typeName(type), value.length());
+        }
+        return deserialized;
     }
 
     /**
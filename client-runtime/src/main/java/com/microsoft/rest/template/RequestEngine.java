@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.template;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.context.RequestScope;
+import com.microsoft.rest.protocol.SerializerAdapter;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import retrofit2.Response;
+import rx.Observable;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+
+import java.io.IOException;
+
+/**
+ * Executes {@link RequestTemplate}s directly on the HTTP client of a
+ * {@link com.microsoft.rest.RestClient}, going through the same interceptors as
+ * the Retrofit calls. The responses are returned as Retrofit responses, with the
+ * bodies buffered, so code handling Retrofit responses can use either and the
+ * connection is released even when the caller never reads the body.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RequestEngine {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final Call.Factory callFactory;
+    private final HttpUrl baseUrl;
+    private final SerializerAdapter<?> serializerAdapter;
+    private final boolean asyncCalls;
+
+    /**
+     * Creates an engine.
+     *
+     * @param callFactory the factory of the calls executing the requests, usually the HTTP client
+     * @param baseUrl the URL the URL templates are relative to
+     * @param serializerAdapter the adapter serializing the request bodies
+     * @param asyncCalls whether the observables enqueue the calls instead of executing
+     *                   them on the subscribing thread
+     */
+    public RequestEngine(Call.Factory callFactory, HttpUrl baseUrl, SerializerAdapter<?> serializerAdapter, boolean asyncCalls) {
+        this.callFactory = callFactory;
+        this.baseUrl = baseUrl;
+        this.serializerAdapter = serializerAdapter;
+        this.asyncCalls = asyncCalls;
+    }
+
+    /**
+     * Creates the request of an operation.
+     *
+     * @param template the operation
+     * @param arguments the values of the slots of the template
+     * @return the request
+     * @throws IOException thrown if the body cannot be serialized
+     */
+    public Request newRequest(RequestTemplate template, Object... arguments) throws IOException {
+        if (arguments.length != template.argumentCount()) {
+            throw new IllegalArgumentException("Expected " + template.argumentCount() + " arguments but got " + arguments.length);
+        }
+        String expanded = template.expandUrl(arguments);
+        HttpUrl url = baseUrl.resolve(expanded);
+        if (url == null) {
+            throw new IllegalArgumentException("Malformed URL. Base: " + baseUrl + ", relative: " + expanded);
+        }
+        if (template.queryCount() > 0) {
+            HttpUrl.Builder urlBuilder = url.newBuilder();
+            int offset = template.queryOffset();
+            for (int i = 0; i < template.queryCount(); i++) {
+                Object value = arguments[offset + i];
+                if (value != null) {
+                    urlBuilder.addQueryParameter(template.queryName(i), value.toString());
+                }
+            }
+            url = urlBuilder.build();
+        }
+        Request.Builder builder = new Request.Builder().url(url);
+        String[] constantHeaders = template.constantHeaders();
+        for (int i = 0; i < constantHeaders.length; i += 2) {
+            builder.addHeader(constantHeaders[i], constantHeaders[i + 1]);
+        }
+        int offset = template.headerOffset();
+        for (int i = 0; i < template.headerCount(); i++) {
+            Object value = arguments[offset + i];
+            if (value != null) {
+                builder.addHeader(template.headerName(i), value.toString());
+            }
+        }
+        RequestBody body = null;
+        if (template.hasBody()) {
+            Object value = arguments[arguments.length - 1];
+            if (value instanceof RequestBody) {
+                body = (RequestBody) value;
+            } else {
+                body = RequestBody.create(JSON, value == null ? "" : serializerAdapter.serialize(value));
+            }
+        }
+        // control headers of the template travel in the context of the request
+        return RequestContext.attach(builder.method(template.httpMethod(), body).build());
+    }
+
+    /**
+     * Creates the call of an operation.
+     *
+     * @param template the operation
+     * @param arguments the values of the slots of the template
+     * @return the call, not executed yet
+     * @throws IOException thrown if the body cannot be serialized
+     */
+    public Call newCall(RequestTemplate template, Object... arguments) throws IOException {
+        return callFactory.newCall(newRequest(template, arguments));
+    }
+
+    /**
+     * Executes an operation on the calling thread.
+     *
+     * @param template the operation
+     * @param arguments the values of the slots of the template
+     * @return the response
+     * @throws IOException thrown by the HTTP call
+     */
+    public Response<ResponseBody> execute(RequestTemplate template, Object... arguments) throws IOException {
+        return toResponse(newCall(template, arguments).execute());
+    }
+
+    /**
+     * Creates an observable executing an operation when subscribed to. Depending on the
+     * client, the call is enqueued on the HTTP dispatcher or executed on the subscribing
+     * thread; unsubscribing cancels it either way. The call is made in the
+     * {@link RequestScope} open when this method is called.
+     *
+     * @param template the operation
+     * @param arguments the values of the slots of the template
+     * @return the observable of the response
+     */
+    public Observable<Response<ResponseBody>> executeAsync(final RequestTemplate template, final Object... arguments) {
+        // the scope of the caller applies, not the one of the subscribing thread
+        final RequestContext scope = RequestScope.current();
+        Single<Response<ResponseBody>> single = Single.create(new Single.OnSubscribe<Response<ResponseBody>>() {
+            @Override
+            public void call(final SingleSubscriber<? super Response<ResponseBody>> subscriber) {
+                final Call call;
+                try (RequestScope restored = RequestScope.restore(scope)) {
+                    call = newCall(template, arguments);
+                } catch (IOException | RuntimeException e) {
+                    subscriber.onError(e);
+                    return;
+                }
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        call.cancel();
+                    }
+                }));
+                if (!asyncCalls) {
+                    try {
+                        Response<ResponseBody> response = toResponse(call.execute());
+                        if (!subscriber.isUnsubscribed()) {
+                            subscriber.onSuccess(response);
+                        }
+                    } catch (Throwable t) {
+                        Exceptions.throwIfFatal(t);
+                        if (!subscriber.isUnsubscribed()) {
+                            subscriber.onError(t);
+                        }
+                    }
+                    return;
+                }
+                call.enqueue(new Callback() {
+                    @Override
+                    public void onResponse(Call c, okhttp3.Response rawResponse) {
+                        Response<ResponseBody> response;
+                        try {
+                            response = toResponse(rawResponse);
+                        } catch (IOException e) {
+                            onFailure(c, e);
+                            return;
+                        }
+                        if (!subscriber.isUnsubscribed()) {
+                            subscriber.onSuccess(response);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call c, IOException e) {
+                        if (!subscriber.isUnsubscribed()) {
+                            subscriber.onError(e);
+                        }
+                    }
+                });
+            }
+        });
+        if (asyncCalls) {
+            // release the dispatcher thread right away, as the Retrofit calls do
+            single = single.observeOn(Schedulers.io());
+        }
+        return single.toObservable();
+    }
+
+    /**
+     * Wraps a raw response the way Retrofit does for non-streaming calls,
+     * buffering the body and closing the raw one.
+     *
+     * @param rawResponse the raw response
+     * @return the Retrofit response
+     * @throws IOException thrown if the body cannot be read
+     */
+    private static Response<ResponseBody> toResponse(okhttp3.Response rawResponse) throws IOException {
+        ResponseBody body = rawResponse.body();
+        int code = rawResponse.code();
+        if (code == 204 || code == 205) {
+            body.close();
+            return Response.success(null, rawResponse);
+        }
+        ResponseBody buffered;
+        try {
+            Buffer buffer = new Buffer();
+            body.source().readAll(buffer);
+            buffered = ResponseBody.create(body.contentType(), buffer.size(), buffer);
+        } finally {
+            body.close();
+        }
+        if (code < 200 || code >= 300) {
+            return Response.error(buffered, rawResponse);
+        }
+        return Response.success(buffered, rawResponse);
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.template;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable REST operation compiled once from its HTTP method and URL template,
+ * so that creating a request for it does no annotation parsing or converter lookup.
+ * Requests are created and executed by a {@link RequestEngine}.
+ *
+ * Variables in the URL template are written as {@code {name}} and are encoded as
+ * path segments, or as {@code {+name}} to be inserted as they are, e.g. for an
+ * already encoded next page link or polling URL. The static parts of the template
+ * are encoded when it is compiled.
+ *
+ * The arguments of a request are passed in the order of the slots: the URL
+ * variables in the order they appear in the template, then the query parameters and
+ * the headers in the order they were declared, then the body if there is one.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class RequestTemplate {
+    /** Characters encoded in path variables, on top of controls and non ASCII characters. */
+    private static final String PATH_ENCODE_SET = " \"<>^`{}|\\?#/%";
+    /** Characters encoded in the static parts of the URL template. */
+    private static final String STATIC_ENCODE_SET = " \"<>^`{}|\\";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final String httpMethod;
+    /** The static parts of the URL, one more than the URL variables. */
+    private final String[] segments;
+    /** Whether each URL variable is inserted without encoding. */
+    private final boolean[] reserved;
+    private final String[] variableNames;
+    private final String[] queryNames;
+    private final String[] headerNames;
+    private final String[] constantHeaders;
+    private final boolean hasBody;
+
+    private RequestTemplate(Builder builder, List<String> segments, List<String> variableNames, List<Boolean> reserved) {
+        this.httpMethod = builder.httpMethod;
+        this.segments = segments.toArray(new String[segments.size()]);
+        this.variableNames = variableNames.toArray(new String[variableNames.size()]);
+        this.reserved = new boolean[reserved.size()];
+        for (int i = 0; i < this.reserved.length; i++) {
+            this.reserved[i] = reserved.get(i);
+        }
+        this.queryNames = builder.queryNames.toArray(new String[builder.queryNames.size()]);
+        this.headerNames = builder.headerNames.toArray(new String[builder.headerNames.size()]);
+        this.constantHeaders = builder.constantHeaders.toArray(new String[builder.constantHeaders.size()]);
+        this.hasBody = builder.hasBody;
+    }
+
+    /**
+     * @return the HTTP method
+     */
+    public String httpMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * @return the names of the URL variables, in the order of their slots
+     */
+    public List<String> variableNames() {
+        return Collections.unmodifiableList(Arrays.asList(variableNames));
+    }
+
+    /**
+     * @return the number of arguments a request for this template takes
+     */
+    public int argumentCount() {
+        return variableNames.length + queryNames.length + headerNames.length + (hasBody ? 1 : 0);
+    }
+
+    /**
+     * @return whether the requests carry a body
+     */
+    public boolean hasBody() {
+        return hasBody;
+    }
+
+    /**
+     * Expands the URL template, relative to the base URL unless the result is absolute.
+     *
+     * @param arguments the request arguments
+     * @return the expanded URL without the query parameters
+     */
+    String expandUrl(Object[] arguments) {
+        StringBuilder url = new StringBuilder(segments[0]);
+        for (int i = 0; i < variableNames.length; i++) {
+            Object value = arguments[i];
+            if (value == null) {
+                throw new IllegalArgumentException("URL variable \"" + variableNames[i] + "\" value must not be null.");
+            }
+            if (reserved[i]) {
+                url.append(value);
+            } else {
+                encode(url, value.toString(), PATH_ENCODE_SET);
+            }
+            url.append(segments[i + 1]);
+        }
+        return url.toString();
+    }
+
+    int queryCount() {
+        return queryNames.length;
+    }
+
+    String queryName(int index) {
+        return queryNames[index];
+    }
+
+    int queryOffset() {
+        return variableNames.length;
+    }
+
+    int headerCount() {
+        return headerNames.length;
+    }
+
+    String headerName(int index) {
+        return headerNames[index];
+    }
+
+    int headerOffset() {
+        return variableNames.length + queryNames.length;
+    }
+
+    /**
+     * @return the constant headers, as names followed by their values
+     */
+    String[] constantHeaders() {
+        return constantHeaders;
+    }
+
+    private static void encode(StringBuilder out, String value, String encodeSet) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c > 0x1f && c < 0x7f && encodeSet.indexOf(c) < 0) {
+                out.append(c);
+                continue;
+            }
+            int codePoint = value.codePointAt(i);
+            i += Character.charCount(codePoint) - 1;
+            for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                out.append('%').append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+        }
+    }
+
+    /**
+     * The builder compiling a request template.
+     */
+    public static final class Builder {
+        private final String httpMethod;
+        private final String urlTemplate;
+        private final List<String> queryNames = new ArrayList<>();
+        private final List<String> headerNames = new ArrayList<>();
+        private final List<String> constantHeaders = new ArrayList<>();
+        private boolean hasBody;
+
+        /**
+         * Creates a builder for an operation.
+         *
+         * @param httpMethod the HTTP method, e.g. "GET"
+         * @param urlTemplate the URL template, relative to the base URL of the client
+         *                    unless it expands to an absolute URL
+         */
+        public Builder(String httpMethod, String urlTemplate) {
+            if (httpMethod == null) {
+                throw new NullPointerException("httpMethod == null");
+            }
+            if (urlTemplate == null) {
+                throw new NullPointerException("urlTemplate == null");
+            }
+            this.httpMethod = httpMethod.toUpperCase(Locale.ROOT);
+            this.urlTemplate = urlTemplate;
+        }
+
+        /**
+         * Adds a query parameter slot. A null argument leaves the parameter out.
+         *
+         * @param name the name of the query parameter
+         * @return the builder itself
+         */
+        public Builder withQueryParameter(String name) {
+            queryNames.add(name);
+            return this;
+        }
+
+        /**
+         * Adds a header slot. A null argument leaves the header out.
+         *
+         * @param name the name of the header
+         * @return the builder itself
+         */
+        public Builder withHeader(String name) {
+            headerNames.add(name);
+            return this;
+        }
+
+        /**
+         * Adds a header with the same value on all the requests.
+         *
+         * @param name the name of the header
+         * @param value the value of the header
+         * @return the builder itself
+         */
+        public Builder withConstantHeader(String name, String value) {
+            constantHeaders.add(name);
+            constantHeaders.add(value);
+            return this;
+        }
+
+        /**
+         * Adds a body slot, as the last argument. The body is serialized to JSON by the
+         * serializer adapter of the client, unless it is already a
+         * {@link okhttp3.RequestBody}.
+         *
+         * @return the builder itself
+         */
+        public Builder withBody() {
+            this.hasBody = true;
+            return this;
+        }
+
+        /**
+         * Compiles the template.
+         *
+         * @return the request template
+         */
+        public RequestTemplate build() {
+            List<String> segments = new ArrayList<>();
+            List<String> variableNames = new ArrayList<>();
+            List<Boolean> reserved = new ArrayList<>();
+            StringBuilder segment = new StringBuilder();
+            int start = 0;
+            while (true) {
+                int open = urlTemplate.indexOf('{', start);
+                if (open < 0) {
+                    break;
+                }
+                int close = urlTemplate.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed variable in URL template " + urlTemplate);
+                }
+                encode(segment, urlTemplate.substring(start, open), STATIC_ENCODE_SET);
+                segments.add(segment.toString());
+                segment.setLength(0);
+                String name = urlTemplate.substring(open + 1, close);
+                boolean isReserved = name.startsWith("+");
+                if (isReserved) {
+                    name = name.substring(1);
+                }
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Empty variable in URL template " + urlTemplate);
+                }
+                variableNames.add(name);
+                reserved.add(isReserved);
+                start = close + 1;
+            }
+            encode(segment, urlTemplate.substring(start), STATIC_ENCODE_SET);
+            segments.add(segment.toString());
+            return new RequestTemplate(this, segments, variableNames, reserved);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains classes to execute REST calls from precompiled request
+ * templates directly on the HTTP client, without Retrofit.
+ */
+package com.microsoft.rest.template;
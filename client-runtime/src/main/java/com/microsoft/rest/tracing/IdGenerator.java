@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.tracing;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the identifiers of requests and traces from a thread local random
+ * generator. Unlike {@link java.util.UUID#randomUUID()}, which draws from a shared
+ * {@link java.security.SecureRandom}, it neither blocks nor contends between
+ * threads. The identifiers are unique, not unpredictable.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class IdGenerator {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private IdGenerator() {
+    }
+
+    /**
+     * @return a random version 4 UUID in its canonical form, for request IDs
+     */
+    public static String requestId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = (random.nextLong() & 0xffffffffffff0fffL) | 0x0000000000004000L;
+        long low = (random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        char[] chars = new char[36];
+        hex(high >>> 32, chars, 0, 8);
+        chars[8] = '-';
+        hex(high >>> 16, chars, 9, 4);
+        chars[13] = '-';
+        hex(high, chars, 14, 4);
+        chars[18] = '-';
+        hex(low >>> 48, chars, 19, 4);
+        chars[23] = '-';
+        hex(low, chars, 24, 12);
+        return new String(chars);
+    }
+
+    /**
+     * @return a random, non-zero 16 byte trace ID in lowercase hex
+     */
+    public static String traceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high;
+        long low;
+        do {
+            high = random.nextLong();
+            low = random.nextLong();
+        } while (high == 0 && low == 0);
+        char[] chars = new char[32];
+        hex(high, chars, 0, 16);
+        hex(low, chars, 16, 16);
+        return new String(chars);
+    }
+
+    /**
+     * @return a random, non-zero 8 byte span ID in lowercase hex
+     */
+    public static String spanId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        char[] chars = new char[16];
+        hex(id, chars, 0, 16);
+        return new String(chars);
+    }
+
+    /**
+     * Writes the low digits of a value in hex.
+     */
+    private static void hex(long value, char[] chars, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
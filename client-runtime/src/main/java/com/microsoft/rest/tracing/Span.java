@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.tracing;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A timed operation of a trace that ended: a call of a client, made of one
+ * attempt or more, or one of these attempts. Instances are immutable.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class Span {
+    /**
+     * The kinds of spans.
+     */
+    public enum Kind {
+        /** A call, from its start to its response body being closed, retries included. */
+        CALL,
+        /** An attempt of a call sent to the network. */
+        ATTEMPT
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final TraceContext context;
+    private final String parentSpanId;
+    private final String method;
+    private final String url;
+    private final long startTimeMillis;
+    private final long durationNanos;
+    private final Map<SpanPhase, Long> phases;
+    private final int attempts;
+    private final int statusCode;
+    private final Throwable error;
+
+    Span(Kind kind, String name, TraceContext context, String parentSpanId, String method, String url,
+         long startTimeMillis, long durationNanos, EnumMap<SpanPhase, Long> phases, int attempts,
+         int statusCode, Throwable error) {
+        this.kind = kind;
+        this.name = name;
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.method = method;
+        this.url = url;
+        this.startTimeMillis = startTimeMillis;
+        this.durationNanos = durationNanos;
+        this.phases = Collections.unmodifiableMap(phases);
+        this.attempts = attempts;
+        this.statusCode = statusCode;
+        this.error = error;
+    }
+
+    /**
+     * @return whether the span is a call or an attempt
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return the name of the span, the logging context of the call if it has one
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the trace and span IDs of the span
+     */
+    public TraceContext context() {
+        return context;
+    }
+
+    /**
+     * @return the ID of the parent span, or null for the root span of a trace
+     */
+    public String parentSpanId() {
+        return parentSpanId;
+    }
+
+    /**
+     * @return the HTTP method of the request
+     */
+    public String method() {
+        return method;
+    }
+
+    /**
+     * @return the URL of the request
+     */
+    public String url() {
+        return url;
+    }
+
+    /**
+     * @return the start time of the span, in milliseconds since the epoch
+     */
+    public long startTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return the duration of the span, in nanoseconds
+     */
+    public long durationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the time spent in each phase in nanoseconds, summed over the attempts
+     *     for a call; phases not reached are missing
+     */
+    public Map<SpanPhase, Long> phases() {
+        return phases;
+    }
+
+    /**
+     * @return the number of attempts of a call, or the number of an attempt starting at 1
+     */
+    public int attempts() {
+        return attempts;
+    }
+
+    /**
+     * @return the status code of the response, or 0 if there is none
+     */
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the error the span failed with, or null
+     */
+    public Throwable error() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + name + " " + context.traceparent() + " " + statusCode + " " + durationNanos + "ns " + phases;
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.tracing;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * Receives the spans of sampled traces once they end, e.g. to forward them to a
+ * tracing system. Spans are exported on the threads of the calls, so an exporter
+ * should hand them off quickly; exceptions it throws are ignored.
+ */
+@Beta(SinceVersion.V1_2_0)
+public interface SpanExporter {
+    /**
+     * Exports a span that ended.
+     *
+     * @param span the span
+     */
+    void export(Span span);
+}
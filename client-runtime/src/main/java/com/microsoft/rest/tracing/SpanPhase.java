@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.tracing;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * The timed phases of a call.
+ */
+@Beta(SinceVersion.V1_2_0)
+public enum SpanPhase {
+    /**
+     * From the start of the call, or the end of the previous attempt, to the request
+     * reaching the network: admission, batching, the back-off before a retry and
+     * the connection, including DNS resolution, connecting and the TLS handshake
+     * when no pooled connection is reused.
+     */
+    QUEUE,
+    /** Writing the request body to the network. */
+    REQUEST_WRITE,
+    /** From the request being sent to the response headers being read. */
+    TIME_TO_FIRST_BYTE,
+    /** Reading the response body, including its deserialization, until it is closed. */
+    BODY_READ
+}
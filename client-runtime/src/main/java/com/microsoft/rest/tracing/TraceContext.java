@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.tracing;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+
+/**
+ * The position of a span in a trace, as propagated by the W3C trace context
+ * 'traceparent' and 'tracestate' headers. Instances are immutable.
+ *
+ * A caller passes the context of its own span to the calls of a client as an
+ * attribute of their {@link com.microsoft.rest.context.RequestContext}, or as
+ * 'traceparent' and 'tracestate' headers, e.g. with a
+ * {@link com.microsoft.rest.context.HeaderScope}.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class TraceContext {
+    /** The name of the header carrying the trace ID, the span ID and the flags. */
+    public static final String TRACEPARENT_HEADER = "traceparent";
+    /** The name of the header carrying vendor specific trace state. */
+    public static final String TRACESTATE_HEADER = "tracestate";
+
+    private static final String VERSION = "00";
+    private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+    private static final String INVALID_SPAN_ID = "0000000000000000";
+
+    private final String traceId;
+    private final String spanId;
+    private final boolean sampled;
+    private final String traceState;
+
+    private TraceContext(String traceId, String spanId, boolean sampled, String traceState) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sampled = sampled;
+        this.traceState = traceState;
+    }
+
+    /**
+     * @return the context of the root span of a new, sampled trace
+     */
+    public static TraceContext newRoot() {
+        return new TraceContext(IdGenerator.traceId(), IdGenerator.spanId(), true, null);
+    }
+
+    /**
+     * Parses the W3C trace context headers.
+     *
+     * @param traceparent the value of the 'traceparent' header
+     * @param tracestate the value of the 'tracestate' header, or null
+     * @return the context, or null if the 'traceparent' header is missing or invalid
+     */
+    public static TraceContext parse(String traceparent, String tracestate) {
+        if (traceparent == null) {
+            return null;
+        }
+        String value = traceparent.trim();
+        // version "-" trace-id "-" parent-id "-" trace-flags, later versions may append fields
+        if (value.length() < 55 || value.charAt(2) != '-' || value.charAt(35) != '-' || value.charAt(52) != '-'
+                || (value.length() > 55 && (value.startsWith(VERSION) || value.charAt(55) != '-'))) {
+            return null;
+        }
+        String version = value.substring(0, 2);
+        String traceId = value.substring(3, 35);
+        String spanId = value.substring(36, 52);
+        String flags = value.substring(53, 55);
+        if (!isHex(version) || "ff".equals(version) || !isHex(traceId) || !isHex(spanId) || !isHex(flags)
+                || INVALID_TRACE_ID.equals(traceId) || INVALID_SPAN_ID.equals(spanId)) {
+            return null;
+        }
+        boolean sampled = (Character.digit(flags.charAt(1), 16) & 1) != 0;
+        String state = tracestate == null || tracestate.trim().isEmpty() ? null : tracestate.trim();
+        return new TraceContext(traceId, spanId, sampled, state);
+    }
+
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the context of a new span of the same trace, child of this one
+     */
+    public TraceContext newChild() {
+        return new TraceContext(traceId, IdGenerator.spanId(), sampled, traceState);
+    }
+
+    /**
+     * @return the ID of the trace, 32 lowercase hex digits
+     */
+    public String traceId() {
+        return traceId;
+    }
+
+    /**
+     * @return the ID of the span, 16 lowercase hex digits
+     */
+    public String spanId() {
+        return spanId;
+    }
+
+    /**
+     * @return whether the caller records the trace; spans of traces not sampled are not exported
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * @return the vendor specific trace state, or null
+     */
+    public String traceState() {
+        return traceState;
+    }
+
+    /**
+     * @return the value of the 'traceparent' header for this context
+     */
+    public String traceparent() {
+        return VERSION + "-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    @Override
+    public String toString() {
+        return traceparent();
+    }
+}
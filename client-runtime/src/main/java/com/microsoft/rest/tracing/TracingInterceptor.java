@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.tracing;
+
+import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.context.RequestContext;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traces the calls of a client. Each call gets a span, child of the
+ * {@link TraceContext} passed by the caller if any, and each attempt of the call
+ * sent to the network a span of its own, propagated in the 'traceparent' and
+ * 'tracestate' headers of the request. The spans are timed by {@link SpanPhase}
+ * and handed to a {@link SpanExporter} when the response body is closed.
+ *
+ * The interceptor is added as an application interceptor, and its
+ * {@link #networkInterceptor()} as a network interceptor; {@code
+ * RestClient.Builder.withTracing()} does both. The context of the span of the call
+ * is set as the {@link TraceContext} attribute of the {@link RequestContext} of the
+ * request, for the interceptors after this one.
+ */
+@Beta(SinceVersion.V1_2_0)
+public final class TracingInterceptor implements Interceptor {
+    private final SpanExporter exporter;
+    private final Interceptor networkInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            return interceptAttempt(chain);
+        }
+    };
+
+    /**
+     * Creates an interceptor exporting the spans of sampled traces.
+     *
+     * @param exporter the exporter of the spans
+     */
+    public TracingInterceptor(SpanExporter exporter) {
+        if (exporter == null) {
+            throw new NullPointerException("exporter == null");
+        }
+        this.exporter = exporter;
+    }
+
+    /**
+     * @return the exporter of the spans
+     */
+    public SpanExporter exporter() {
+        return exporter;
+    }
+
+    /**
+     * @return the interceptor to add as a network interceptor, timing the attempts
+     */
+    public Interceptor networkInterceptor() {
+        return networkInterceptor;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestContext context = RequestContext.of(request);
+        TraceContext parent = parent(request, context);
+        TraceContext callContext = parent == null ? TraceContext.newRoot() : parent.newChild();
+        String name = context.loggingContext() != null
+                ? context.loggingContext()
+                : request.method() + " " + request.url().encodedPath();
+        CallRecorder call = new CallRecorder(name, request, callContext, parent == null ? null : parent.spanId());
+        request = request.newBuilder()
+                .tag(context.newBuilder()
+                        .withAttribute(TraceContext.class, callContext)
+                        .withAttribute(CallRecorder.class, call)
+                        .build())
+                .build();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            call.end(0, e);
+            throw e;
+        }
+        return call.wrap(response);
+    }
+
+    private Response interceptAttempt(Chain chain) throws IOException {
+        Request request = chain.request();
+        CallRecorder call = RequestContext.of(request).attribute(CallRecorder.class);
+        if (call == null) {
+            // not traced by the application interceptor
+            return chain.proceed(request);
+        }
+        final AttemptRecorder attempt = call.newAttempt();
+        Request.Builder builder = request.newBuilder()
+                .header(TraceContext.TRACEPARENT_HEADER, attempt.context.traceparent());
+        if (attempt.context.traceState() != null) {
+            builder.header(TraceContext.TRACESTATE_HEADER, attempt.context.traceState());
+        }
+        final RequestBody body = request.body();
+        if (body != null) {
+            builder.method(request.method(), new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return body.contentType();
+                }
+
+                @Override
+                public long contentLength() throws IOException {
+                    return body.contentLength();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    long start = System.nanoTime();
+                    try {
+                        body.writeTo(sink);
+                    } finally {
+                        attempt.phase(SpanPhase.REQUEST_WRITE, System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+        long sent = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(builder.build());
+        } catch (IOException | RuntimeException e) {
+            attempt.end(0, e);
+            throw e;
+        }
+        Long written = attempt.phases.get(SpanPhase.REQUEST_WRITE);
+        attempt.phase(SpanPhase.TIME_TO_FIRST_BYTE, System.nanoTime() - sent - (written == null ? 0 : written));
+        return attempt.wrap(response);
+    }
+
+    private static TraceContext parent(Request request, RequestContext context) {
+        TraceContext parent = context.attribute(TraceContext.class);
+        if (parent == null) {
+            String traceparent = context.headerOverrides().get(TraceContext.TRACEPARENT_HEADER);
+            if (traceparent != null) {
+                parent = TraceContext.parse(traceparent, context.headerOverrides().get(TraceContext.TRACESTATE_HEADER));
+            } else {
+                parent = TraceContext.parse(request.header(TraceContext.TRACEPARENT_HEADER),
+                        request.header(TraceContext.TRACESTATE_HEADER));
+            }
+        }
+        return parent;
+    }
+
+    private void export(Span span) {
+        if (span.context().isSampled()) {
+            try {
+                exporter.export(span);
+            } catch (RuntimeException e) {
+                // tracing never fails a call
+            }
+        }
+    }
+
+    /**
+     * The timing of a call or of an attempt, ending when its response body is closed.
+     */
+    private abstract class Recorder {
+        final String name;
+        final String method;
+        final String url;
+        final TraceContext context;
+        final String parentSpanId;
+        final long startMillis;
+        final long startNanos;
+        final EnumMap<SpanPhase, Long> phases = new EnumMap<>(SpanPhase.class);
+        private boolean ended;
+
+        Recorder(String name, String method, String url, TraceContext context, String parentSpanId, long startNanos) {
+            this.name = name;
+            this.method = method;
+            this.url = url;
+            this.context = context;
+            this.parentSpanId = parentSpanId;
+            this.startNanos = startNanos;
+            this.startMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        synchronized void phase(SpanPhase phase, long nanos) {
+            Long total = phases.get(phase);
+            phases.put(phase, total == null ? nanos : total + nanos);
+        }
+
+        void end(int statusCode, Throwable error) {
+            Span span;
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+                span = span(System.nanoTime() - startNanos, statusCode, error);
+            }
+            export(span);
+        }
+
+        abstract Span span(long durationNanos, int statusCode, Throwable error);
+
+        /**
+         * Ends the recording when the body of a response is exhausted or closed.
+         */
+        Response wrap(final Response response) {
+            final ResponseBody body = response.body();
+            if (body == null) {
+                end(response.code(), null);
+                return response;
+            }
+            final long received = System.nanoTime();
+            Source source = new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    try {
+                        long read = super.read(sink, byteCount);
+                        if (read == -1) {
+                            done(null);
+                        }
+                        return read;
+                    } catch (IOException e) {
+                        done(e);
+                        throw e;
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        done(null);
+                    }
+                }
+
+                private void done(Throwable error) {
+                    if (Recorder.this instanceof AttemptRecorder) {
+                        synchronized (Recorder.this) {
+                            if (!ended && !phases.containsKey(SpanPhase.BODY_READ)) {
+                                phase(SpanPhase.BODY_READ, System.nanoTime() - received);
+                            }
+                        }
+                    }
+                    end(response.code(), error);
+                }
+            };
+            return response.newBuilder()
+                    .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+                    .build();
+        }
+    }
+
+    /**
+     * The timing of a call, the sum of its attempts.
+     */
+    private final class CallRecorder extends Recorder {
+        private int attempts;
+        /** When the call started, or the last attempt ended. */
+        private long mark = startNanos;
+
+        CallRecorder(String name, Request request, TraceContext context, String parentSpanId) {
+            super(name, request.method(), request.url().toString(), context, parentSpanId, System.nanoTime());
+        }
+
+        /**
+         * @return the recorder of a new attempt, starting when the previous one ended
+         */
+        synchronized AttemptRecorder newAttempt() {
+            attempts++;
+            AttemptRecorder attempt = new AttemptRecorder(this, attempts, mark);
+            attempt.phase(SpanPhase.QUEUE, System.nanoTime() - mark);
+            return attempt;
+        }
+
+        synchronized void attemptEnded(AttemptRecorder attempt) {
+            mark = System.nanoTime();
+            for (Map.Entry<SpanPhase, Long> entry : attempt.phases.entrySet()) {
+                phase(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        Span span(long durationNanos, int statusCode, Throwable error) {
+            return new Span(Span.Kind.CALL, name, context, parentSpanId, method, url,
+                    startMillis, durationNanos, new EnumMap<>(phases), attempts, statusCode, error);
+        }
+    }
+
+    /**
+     * The timing of an attempt of a call.
+     */
+    private final class AttemptRecorder extends Recorder {
+        private final CallRecorder call;
+        private final int number;
+
+        AttemptRecorder(CallRecorder call, int number, long startNanos) {
+            super(call.name, call.method, call.url, call.context.newChild(), call.context.spanId(), startNanos);
+            this.call = call;
+            this.number = number;
+        }
+
+        @Override
+        Span span(long durationNanos, int statusCode, Throwable error) {
+            call.attemptEnded(this);
+            return new Span(Span.Kind.ATTEMPT, name, context, parentSpanId, method, url,
+                    startMillis, durationNanos, new EnumMap<>(phases), number, statusCode, error);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The package contains classes to trace the calls of a client with W3C trace
+ * context propagation, and to export the timed spans of the calls.
+ */
+package com.microsoft.rest.tracing;
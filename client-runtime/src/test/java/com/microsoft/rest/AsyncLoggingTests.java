@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.interceptors.AsyncLoggingInterceptor;
+import com.microsoft.rest.interceptors.LogSampler;
+import com.microsoft.rest.interceptors.RateLogSampler;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncLoggingTests {
+    private static final String BODY = "{\"name\":\"value\",\"list\":[1,2,3,4,5,6,7,8,9,10]}";
+
+    private static class CapturingInterceptor extends AsyncLoggingInterceptor {
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch blocker;
+
+        CapturingInterceptor(LogLevel logLevel, int capacity) {
+            super(logLevel, capacity);
+        }
+
+        @Override
+        protected void log(Logger logger, String s) {
+            CountDownLatch latch = blocker;
+            if (latch != null) {
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            messages.add(s);
+        }
+    }
+
+    @Test
+    public void bodiesAreTruncatedAndSampled() throws Exception {
+        CapturingInterceptor logging = new CapturingInterceptor(LogLevel.BODY_AND_HEADERS, 16);
+        logging.withMaxBodySize(10).withSampler(new RateLogSampler(0).withStatusClassRate(2, 1));
+        OkHttpClient httpClient = newClient(logging);
+        try {
+            Response response = send(httpClient, "operation", 200);
+            // the consumer still reads the whole body
+            Assert.assertEquals(BODY, response.body().string());
+            send(httpClient, "operation", 500);
+            logging.flush();
+            Assert.assertEquals(1, logging.messages.size());
+            String message = logging.messages.get(0);
+            Assert.assertTrue(message, message.startsWith("--> PUT http://localhost/"));
+            Assert.assertTrue(message, message.contains("\n<-- 200 OK http://localhost/"));
+            Assert.assertTrue(message, message.contains("\n10-byte body prefix:\n{\"name\":\"v"));
+            Assert.assertFalse(message, message.contains(BODY));
+
+            logging.messages.clear();
+            logging.withMaxBodySize(1024).withSampler(null);
+            send(httpClient, "operation", 200);
+            logging.flush();
+            Assert.assertTrue(logging.messages.get(0), logging.messages.get(0).contains("-byte body:\n" + BODY));
+        } finally {
+            logging.close();
+        }
+    }
+
+    @Test
+    public void eventsAreDroppedWhenTheBufferIsFull() throws Exception {
+        CapturingInterceptor logging = new CapturingInterceptor(LogLevel.BASIC, 2);
+        CountDownLatch blocker = new CountDownLatch(1);
+        logging.blocker = blocker;
+        OkHttpClient httpClient = newClient(logging);
+        try {
+            for (int i = 0; i < 10; i++) {
+                send(httpClient, "operation", 200);
+            }
+            // the calls are not held up by the blocked logger
+            Assert.assertTrue(logging.droppedCount() >= 7);
+            blocker.countDown();
+            logging.flush();
+            Assert.assertEquals(10, logging.messages.size() + logging.droppedCount());
+        } finally {
+            logging.close();
+        }
+    }
+
+    @Test
+    public void nothingIsRecordedWithoutLogging() throws Exception {
+        CapturingInterceptor logging = new CapturingInterceptor(LogLevel.NONE, 1);
+        final int[] sampled = new int[1];
+        logging.withSampler(new LogSampler() {
+            @Override
+            public boolean sample(String operation, int statusCode) {
+                sampled[0]++;
+                return true;
+            }
+        });
+        OkHttpClient httpClient = newClient(logging);
+        try {
+            send(httpClient, "operation", 200);
+            send(httpClient, "operation", 200);
+            logging.flush();
+            Assert.assertEquals(0, sampled[0]);
+            Assert.assertEquals(0, logging.droppedCount());
+            Assert.assertTrue(logging.messages.isEmpty());
+        } finally {
+            logging.close();
+        }
+    }
+
+    private static Response send(OkHttpClient httpClient, String operation, int code) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url("http://localhost/")
+                .header(RequestContext.LOGGING_CONTEXT_HEADER, operation)
+                .put(RequestBody.create(MediaType.parse("application/json"), BODY));
+        if (code != 200) {
+            builder.header("x-ms-test-code", Integer.toString(code));
+        }
+        Response response = httpClient.newCall(RequestContext.attach(builder.build())).execute();
+        Assert.assertEquals(code, response.code());
+        return response;
+    }
+
+    private static OkHttpClient newClient(AsyncLoggingInterceptor logging) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(logging)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        String code = chain.request().header("x-ms-test-code");
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(code == null ? 200 : Integer.parseInt(code))
+                                .message("OK")
+                                .body(ResponseBody.create(MediaType.parse("application/json"), BODY))
+                                .build();
+                    }
+                })
+                .build();
+    }
+}
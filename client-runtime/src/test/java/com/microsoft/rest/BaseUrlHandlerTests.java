@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.interceptors.BaseUrlHandler;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class BaseUrlHandlerTests {
+    @Test
+    public void parameterizedHostsAreReplaced() throws Exception {
+        OkHttpClient httpClient = newClient();
+        String url = "https://{vaultBaseUrl}/keys/my%20key?api-version=2016-10-01";
+        Assert.assertEquals("https://myvault.vault.azure.net/keys/my%20key?api-version=2016-10-01",
+                send(httpClient, url, "{vaultBaseUrl}, https://myvault.vault.azure.net"));
+        // served from the cache
+        Assert.assertEquals("https://myvault.vault.azure.net/keys/my%20key?api-version=2016-10-01",
+                send(httpClient, url, "{vaultBaseUrl}, https://myvault.vault.azure.net"));
+        Assert.assertEquals("https://other.vault.azure.net/keys/my%20key?api-version=2016-10-01",
+                send(httpClient, url, "{vaultBaseUrl}, https://other.vault.azure.net"));
+
+        Assert.assertEquals("https://account.azuredatalakestore.net:8443/webhdfs/v1/",
+                send(httpClient, "https://{accountName}.{suffix}:8443/webhdfs/v1/",
+                        "{accountName}, account, {suffix}, azuredatalakestore.net"));
+    }
+
+    @Test
+    public void patternsOutsideTheHostAreReplaced() throws Exception {
+        OkHttpClient httpClient = newClient();
+        // a pattern in the query
+        Assert.assertEquals("https://account.net/files?account=account",
+                send(httpClient, "https://{name}.net/files?account={name}", "{name}, account"));
+        // a replacement with a path of its own
+        Assert.assertEquals("https://myvault.vault.azure.net/base/keys",
+                send(httpClient, "https://{vaultBaseUrl}/keys", "{vaultBaseUrl}, https://myvault.vault.azure.net/base"));
+        // the header is still understood when no context is attached
+        final Request[] seen = new Request[1];
+        Request request = new Request.Builder().url("https://{vaultBaseUrl}/keys")
+                .header(RequestContext.PARAMETERIZED_HOST_HEADER, "{vaultBaseUrl}, https://myvault.vault.azure.net")
+                .build();
+        newClient(seen).newCall(request).execute();
+        Assert.assertEquals("https://myvault.vault.azure.net/keys", seen[0].url().toString());
+        Assert.assertNull(seen[0].header(RequestContext.PARAMETERIZED_HOST_HEADER));
+    }
+
+    private static String send(OkHttpClient httpClient, String url, String parameters) throws IOException {
+        Request request = RequestContext.attach(new Request.Builder().url(url)
+                .header(RequestContext.PARAMETERIZED_HOST_HEADER, parameters)
+                .build());
+        return httpClient.newCall(request).execute().request().url().toString();
+    }
+
+    private static OkHttpClient newClient() {
+        return newClient(new Request[1]);
+    }
+
+    private static OkHttpClient newClient(final Request[] seen) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(new BaseUrlHandler())
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        seen[0] = chain.request();
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .build();
+                    }
+                })
+                .build();
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.microsoft.rest.admission.BulkheadHandler;
+import com.microsoft.rest.batch.BatchHandler;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class BatchHandlerTests {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> batchRequestIds = Collections.synchronizedList(new ArrayList<String>());
+    private volatile boolean batchSupported = true;
+    private volatile boolean batchAccepted = false;
+    /** Received when a batch arrives, and awaited before answering it if set. */
+    private volatile CountDownLatch batchReceived;
+    private volatile CountDownLatch batchReleased;
+
+    /**
+     * Starts a local stand-in for ARM: resources are returned with their path as id,
+     * except the ones named "missing", and the batch endpoint runs the requests it gets,
+     * answering the ones named "busy" with a server error.
+     */
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String method = exchange.getRequestMethod();
+                String uri = exchange.getRequestURI().toString();
+                received.add(method + " " + uri);
+                if (method.equals("POST") && uri.startsWith("/batch")) {
+                    batchRequestIds.add(String.valueOf(exchange.getRequestHeaders().getFirst("x-ms-client-request-id")));
+                    if (!batchSupported) {
+                        respond(exchange, 404, "{}");
+                        return;
+                    }
+                    if (batchReleased != null) {
+                        batchReceived.countDown();
+                        try {
+                            batchReleased.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                    if (batchAccepted) {
+                        exchange.getResponseHeaders().add("Location", "/batch/operations/1");
+                        exchange.getResponseHeaders().add("Retry-After", "60");
+                        respond(exchange, 202, "{}");
+                        return;
+                    }
+                    JsonNode requests = MAPPER.readTree(exchange.getRequestBody()).get("requests");
+                    ObjectNode body = MAPPER.createObjectNode();
+                    ArrayNode responses = body.putArray("responses");
+                    for (JsonNode request : requests) {
+                        String url = request.get("url").asText();
+                        ObjectNode response = responses.addObject();
+                        response.put("name", request.get("name").asText());
+                        response.put("httpStatusCode", url.contains("missing") ? 404 : url.contains("busy") ? 503 : 200);
+                        response.putObject("headers")
+                                .put("x-ms-request-id", "item-" + request.get("name").asText())
+                                .put("x-ms-client-request-id", request.path("headers").path("x-ms-client-request-id").asText());
+                        response.putObject("content").put(url.contains("missing") ? "error" : "id", url);
+                    }
+                    respond(exchange, 200, MAPPER.writeValueAsString(body));
+                } else {
+                    respond(exchange, uri.contains("missing") ? 404 : 200, "{\"id\":\"" + uri + "\"}");
+                }
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void concurrentGetsAreBatched() throws Exception {
+        BatchHandler batchHandler = new BatchHandler().withWindow(500, TimeUnit.MILLISECONDS);
+        RestClient restClient = newClient(batchHandler);
+        List<Response> responses = getAll(restClient, "/resources/1?api-version=1", "/resources/2", "/resources/missing");
+
+        Assert.assertEquals(Collections.singletonList("POST /batch?api-version=2015-11-01"), received);
+        Assert.assertEquals(1, batchHandler.batchCount());
+        Assert.assertEquals(3, batchHandler.batchedRequestCount());
+        Assert.assertEquals(200, responses.get(0).code());
+        Assert.assertEquals("{\"id\":\"/resources/1?api-version=1\"}", responses.get(0).body().string());
+        Assert.assertEquals("item-0", responses.get(0).header("x-ms-request-id"));
+        // each request keeps its own headers, the batch only has the shared ones
+        Assert.assertEquals("/resources/1?api-version=1", responses.get(0).header("x-ms-client-request-id"));
+        Assert.assertEquals("/resources/2", responses.get(1).header("x-ms-client-request-id"));
+        Assert.assertEquals(Collections.singletonList("null"), batchRequestIds);
+        Assert.assertEquals(200, responses.get(1).code());
+        Assert.assertEquals("{\"id\":\"/resources/2\"}", responses.get(1).body().string());
+        Assert.assertEquals(404, responses.get(2).code());
+        Assert.assertEquals("{\"error\":\"/resources/missing\"}", responses.get(2).body().string());
+
+        // a request alone in its window is sent as it is
+        received.clear();
+        Assert.assertEquals(200, getAll(restClient, "/resources/3").get(0).code());
+        Assert.assertEquals(Collections.singletonList("GET /resources/3"), received);
+    }
+
+    @Test
+    public void fullBatchIsSentWithoutWaiting() throws Exception {
+        BatchHandler batchHandler = new BatchHandler()
+                .withWindow(1, TimeUnit.MINUTES)
+                .withMaxBatchSize(2);
+        long start = System.nanoTime();
+        List<Response> responses = getAll(newClient(batchHandler), "/resources/1", "/resources/2");
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+        Assert.assertEquals(1, batchHandler.batchCount());
+        Assert.assertEquals(200, responses.get(0).code());
+        Assert.assertEquals(200, responses.get(1).code());
+    }
+
+    @Test
+    public void rejectedBatchFallsBackToSingleRequests() throws Exception {
+        batchSupported = false;
+        BatchHandler batchHandler = new BatchHandler().withWindow(1, TimeUnit.MINUTES).withMaxBatchSize(2);
+        List<Response> responses = getAll(newClient(batchHandler), "/resources/1", "/resources/missing");
+        Assert.assertEquals(0, batchHandler.batchCount());
+        Assert.assertEquals(3, received.size());
+        Assert.assertEquals(200, responses.get(0).code());
+        Assert.assertEquals(404, responses.get(1).code());
+    }
+
+    @Test
+    public void failedRequestsOfABatchAreRetriedOnTheirOwn() throws Exception {
+        BatchHandler batchHandler = new BatchHandler().withWindow(1, TimeUnit.MINUTES).withMaxBatchSize(2);
+        List<Response> responses = getAll(newClient(batchHandler), "/resources/1", "/resources/busy");
+        Assert.assertEquals(1, batchHandler.batchCount());
+        Assert.assertEquals(200, responses.get(0).code());
+        Assert.assertEquals(200, responses.get(1).code());
+        Assert.assertEquals("{\"id\":\"/resources/busy\"}", responses.get(1).body().string());
+        Assert.assertTrue(received.contains("GET /resources/busy"));
+        Assert.assertFalse(received.contains("GET /resources/1"));
+    }
+
+    @Test
+    public void acceptedBatchFallsBackToSingleRequestsWithoutPolling() throws Exception {
+        batchAccepted = true;
+        BatchHandler batchHandler = new BatchHandler().withWindow(1, TimeUnit.MINUTES).withMaxBatchSize(2);
+        long start = System.nanoTime();
+        List<Response> responses = getAll(newClient(batchHandler), "/resources/1", "/resources/2");
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+        Assert.assertEquals(0, batchHandler.batchCount());
+        Assert.assertEquals(3, received.size());
+        Assert.assertEquals(200, responses.get(0).code());
+        Assert.assertEquals(200, responses.get(1).code());
+    }
+
+    @Test
+    public void batchedRequestsTakeTheirOwnBulkheadSlots() throws Exception {
+        BatchHandler batchHandler = new BatchHandler().withWindow(1, TimeUnit.MINUTES).withMaxBatchSize(2);
+        BulkheadHandler bulkheadHandler = new BulkheadHandler(BulkheadHandler.bySubscription(), 10, 10);
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost:" + server.getAddress().getPort() + "/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withBatchHandler(batchHandler)
+                .withBulkheadHandler(bulkheadHandler)
+                .build();
+        List<Response> responses = getAll(restClient, "/subscriptions/a/resources/1", "/subscriptions/b/resources/2");
+        Assert.assertEquals(1, batchHandler.batchCount());
+        Assert.assertEquals(200, responses.get(1).code());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b")), bulkheadHandler.scopes());
+    }
+
+    @Test
+    public void canceledLeaderFailsAlone() throws Exception {
+        batchReceived = new CountDownLatch(1);
+        batchReleased = new CountDownLatch(1);
+        BatchHandler batchHandler = new BatchHandler().withWindow(1, TimeUnit.MINUTES).withMaxBatchSize(2);
+        final RestClient restClient = newClient(batchHandler);
+        final Call leader = restClient.httpClient().newCall(request("/resources/1"));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Response> leaderResponse = executor.submit(new Callable<Response>() {
+                @Override
+                public Response call() throws Exception {
+                    return leader.execute();
+                }
+            });
+            Thread.sleep(50);
+            Future<Response> followerResponse = executor.submit(new Callable<Response>() {
+                @Override
+                public Response call() throws Exception {
+                    return restClient.httpClient().newCall(request("/resources/2")).execute();
+                }
+            });
+            Assert.assertTrue(batchReceived.await(30, TimeUnit.SECONDS));
+            leader.cancel();
+            Response response = followerResponse.get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(200, response.code());
+            Assert.assertEquals("{\"id\":\"/resources/2\"}", response.body().string());
+            try {
+                leaderResponse.get(30, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            batchReleased.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private RestClient newClient(BatchHandler batchHandler) {
+        return new RestClient.Builder()
+                .withBaseUrl("http://localhost:" + server.getAddress().getPort() + "/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withBatchHandler(batchHandler)
+                .build();
+    }
+
+    private List<Response> getAll(final RestClient restClient, String... paths) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(paths.length);
+        try {
+            List<Future<Response>> futures = new ArrayList<>();
+            for (final String path : paths) {
+                futures.add(executor.submit(new Callable<Response>() {
+                    @Override
+                    public Response call() throws Exception {
+                        return restClient.httpClient().newCall(request(path)).execute();
+                    }
+                }));
+                // keep the order of the requests in the batch
+                Thread.sleep(50);
+            }
+            List<Response> responses = new ArrayList<>();
+            for (Future<Response> future : futures) {
+                responses.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return responses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Request request(String path) {
+        String url = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + path;
+        return new Request.Builder().url(url).header("x-ms-client-request-id", path).build();
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.admission.BulkheadHandler;
+import com.microsoft.rest.admission.RequestRejectedException;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BulkheadHandlerTests {
+    private static final String SLOW = "https://management.azure.com/subscriptions/SLOW/resourceGroups/rg?api-version=2016-09-01";
+    private static final String OTHER = "https://management.azure.com/subscriptions/other/resourceGroups/rg?api-version=2016-09-01";
+
+    @Test
+    public void saturatedScopeIsRejected() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        BulkheadHandler handler = new BulkheadHandler(BulkheadHandler.bySubscription(), 1, 0);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(handler)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if (chain.request().url().toString().equals(SLOW)) {
+                            try {
+                                blocked.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .build();
+                    }
+                })
+                .build();
+        final CountDownLatch done = new CountDownLatch(1);
+        client.newCall(new Request.Builder().url(SLOW).build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                done.countDown();
+            }
+        });
+        while (handler.inFlightCount("slow") == 0) {
+            Thread.sleep(10);
+        }
+        try {
+            client.newCall(new Request.Builder().url(SLOW).build()).execute();
+            Assert.fail();
+        } catch (RequestRejectedException e) {
+            Assert.assertEquals("slow", e.scope());
+        }
+        Assert.assertEquals(200, client.newCall(new Request.Builder().url(OTHER).build()).execute().code());
+        Assert.assertEquals(200, client.newCall(new Request.Builder().url("https://management.azure.com/providers").build()).execute().code());
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, handler.rejectedCount("slow"));
+        Assert.assertEquals(0, handler.rejectedCount("other"));
+        Assert.assertEquals(0, handler.inFlightCount("slow"));
+        Assert.assertEquals(2, handler.scopes().size());
+    }
+
+    @Test
+    public void enqueuedCallsWaitForTheirScopeWithoutAThread() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        BulkheadHandler handler = new BulkheadHandler(BulkheadHandler.bySubscription(), 1, 10);
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("https://management.azure.com/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withBulkheadHandler(handler)
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if (chain.request().url().toString().equals(SLOW)) {
+                            try {
+                                blocked.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .build();
+                    }
+                })
+                .build();
+        Call.Factory callFactory = restClient.retrofit().callFactory();
+        final List<Object> outcomes = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch done = new CountDownLatch(6);
+        Callback callback = new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                outcomes.add(e);
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                outcomes.add(response.code());
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < 6; i++) {
+            callFactory.newCall(new Request.Builder().url(SLOW).build()).enqueue(callback);
+        }
+        Assert.assertEquals(1, handler.inFlightCount("slow"));
+        Assert.assertEquals(5, handler.queuedCount("slow"));
+        // the waiting calls hold no dispatcher thread, other scopes go on
+        Assert.assertEquals(1, restClient.httpClient().dispatcher().runningCallsCount());
+        Assert.assertEquals(0, restClient.httpClient().dispatcher().queuedCallsCount());
+        Assert.assertEquals(200, callFactory.newCall(new Request.Builder().url(OTHER).build()).execute().code());
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.nCopies(6, (Object) 200), outcomes);
+        Assert.assertEquals(0, handler.inFlightCount("slow"));
+        Assert.assertEquals(0, handler.queuedCount("slow"));
+    }
+
+    @Test
+    public void explicitScopeHeaderIsRemoved() throws Exception {
+        BulkheadHandler handler = new BulkheadHandler(BulkheadHandler.byHeader(), 1, 0);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(handler)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Assert.assertNull(chain.request().header(BulkheadHandler.SCOPE_HEADER_NAME));
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .build();
+                    }
+                })
+                .build();
+        Request request = new Request.Builder()
+                .url(OTHER)
+                .header(BulkheadHandler.SCOPE_HEADER_NAME, "tenant1")
+                .build();
+        Assert.assertEquals(200, client.newCall(request).execute().code());
+        Assert.assertTrue(handler.scopes().contains("tenant1"));
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.LoggingInterceptor;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoggingInterceptorTests {
+    private static final MediaType TEXT = MediaType.parse("text/plain");
+
+    private static class CapturingInterceptor extends LoggingInterceptor {
+        private final List<String> messages = new ArrayList<>();
+
+        CapturingInterceptor(LogLevel logLevel) {
+            super(logLevel);
+        }
+
+        @Override
+        protected void log(Logger logger, String s) {
+            messages.add(s);
+        }
+    }
+
+    @Test
+    public void bodiesAreLoggedAsTheyStream() throws Exception {
+        CapturingInterceptor logging = new CapturingInterceptor(LogLevel.BODY);
+        logging.withMaxBodySize(8);
+        final String requestContent = "0123456789abcdef";
+        final String responseContent = repeat("response", 1000);
+        OkHttpClient httpClient = newClient(logging, responseContent, false);
+
+        Response response = httpClient.newCall(new Request.Builder()
+                .url("http://localhost/")
+                .post(RequestBody.create(TEXT, requestContent))
+                .build()).execute();
+        // the request body is logged as the network writes it
+        Assert.assertTrue(logging.messages.toString(), logging.messages.contains("16-byte body, first 8 bytes:\n01234567"));
+        Assert.assertTrue(logging.messages.contains("--> END POST"));
+        // the response body is logged once consumed
+        Assert.assertFalse(logging.messages.contains("<-- END HTTP"));
+        Assert.assertEquals(responseContent, response.body().string());
+        Assert.assertTrue(logging.messages.toString(), logging.messages.contains("8000-byte body, first 8 bytes:\nresponse"));
+        Assert.assertEquals("<-- END HTTP", logging.messages.get(logging.messages.size() - 1));
+    }
+
+    @Test
+    public void gzippedBodiesAreDecompressedOnTheFly() throws Exception {
+        CapturingInterceptor logging = new CapturingInterceptor(LogLevel.BODY);
+        logging.withMaxBodySize(12);
+        String content = repeat("compressed", 1000);
+        OkHttpClient httpClient = newClient(logging, content, true);
+        Response response = httpClient.newCall(new Request.Builder().url("http://localhost/").build()).execute();
+        Buffer compressed = new Buffer();
+        compressed.writeAll(response.body().source());
+        Assert.assertEquals(content, Okio.buffer(new GzipSource(compressed)).readUtf8());
+        String logged = logging.messages.get(logging.messages.size() - 2);
+        Assert.assertTrue(logged, logged.endsWith("-byte body, first 12 bytes:\ncompressedco"));
+
+        // a body small enough is logged whole
+        logging.messages.clear();
+        logging.withMaxBodySize(64 * 1024);
+        response = httpClient.newCall(new Request.Builder().url("http://localhost/").build()).execute();
+        response.body().bytes();
+        logged = logging.messages.get(logging.messages.size() - 2);
+        Assert.assertTrue(logged.endsWith("-byte body:\n" + content));
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    private static OkHttpClient newClient(LoggingInterceptor logging, final String content, final boolean gzipped) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(logging)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Request request = chain.request();
+                        if (request.body() != null) {
+                            request.body().writeTo(new Buffer());
+                        }
+                        Buffer body = new Buffer();
+                        BufferedSink sink = gzipped ? Okio.buffer(new GzipSink(body)) : body;
+                        sink.writeUtf8(content);
+                        sink.close();
+                        Response.Builder builder = new Response.Builder()
+                                .request(request)
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .body(ResponseBody.create(TEXT, body.size(), body));
+                        if (gzipped) {
+                            builder.header("Content-Encoding", "gzip");
+                        }
+                        return builder.build();
+                    }
+                })
+                .build();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.credentials.TokenCredentials;
+import com.microsoft.rest.metrics.JmxMetricsRecorder;
+import com.microsoft.rest.metrics.OperationMetricsMXBean;
+import com.microsoft.rest.metrics.ResponseTiming;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsTests {
+    private interface Service {
+        @GET("resource")
+        Call<ResponseBody> get(@Header("x-ms-logging-context") String loggingContext);
+    }
+
+    @Test
+    public void callsAreMeasuredAndExposedThroughJmx() throws Exception {
+        // the server fails the first attempt
+        ServerSocket server = TracingTests.startServer(new ArrayList<String>(), 503, 200);
+        try (JmxMetricsRecorder recorder = new JmxMetricsRecorder("metricsTests")) {
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl("http://127.0.0.1:" + server.getLocalPort() + "/")
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withCredentials(new TokenCredentials("Bearer", "token"))
+                    .withMetrics(recorder)
+                    .build();
+            Retrofit retrofit = restClient.retrofit();
+            retrofit2.Response<ResponseBody> response = retrofit.create(Service.class).get("getResource").execute();
+            ServiceResponse<String> result = new ServiceResponseBuilder.Factory()
+                    .<String, RestException>newInstance(restClient.serializerAdapter())
+                    .register(200, String.class)
+                    .build(response);
+            Assert.assertEquals("ok", result.body());
+
+            Assert.assertEquals(1, recorder.getCalls());
+            Assert.assertEquals(0, recorder.getInFlight());
+            Assert.assertEquals(1, recorder.getTokenAcquisitionCount());
+            Assert.assertEquals(1, recorder.getDeserializationCount());
+            OperationMetricsMXBean operation = recorder.operation("getResource", "2xx");
+            Assert.assertEquals(1, operation.getCount());
+            Assert.assertEquals(1, operation.getRetries());
+            Assert.assertEquals(4, operation.getBytesReceived());
+
+            // the same through JMX
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(1L, mbeanServer.getAttribute(
+                    new ObjectName("com.microsoft.rest:type=Client,name=\"metricsTests\""), "Calls"));
+            Assert.assertEquals(1L, mbeanServer.getAttribute(new ObjectName(
+                    "com.microsoft.rest:type=Operation,client=\"metricsTests\",operation=\"getResource\",status=2xx"), "Retries"));
+
+            // a call in progress until its body is closed
+            okhttp3.Response raw = restClient.httpClient().newCall(RequestContext.attach(new Request.Builder()
+                    .url("http://127.0.0.1:" + server.getLocalPort() + "/resource")
+                    .build())).execute();
+            Assert.assertEquals(1, recorder.getInFlight());
+            raw.body().close();
+            Assert.assertEquals(0, recorder.getInFlight());
+            Assert.assertEquals(1, recorder.operation("GET", "2xx").getCount());
+        } finally {
+            server.close();
+        }
+        Assert.assertTrue(ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName("com.microsoft.rest:client=\"metricsTests\",*"), null).isEmpty());
+    }
+
+    @Test
+    public void responsesCarryTheirTiming() throws Exception {
+        // the server fails the first attempt
+        ServerSocket server = TracingTests.startServer(new ArrayList<String>(), 503, 200);
+        try {
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl("http://127.0.0.1:" + server.getLocalPort() + "/")
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withCredentials(new TokenCredentials("Bearer", "token"))
+                    .withResponseTiming(true)
+                    .build();
+            retrofit2.Response<ResponseBody> response = restClient.retrofit().create(Service.class).get("getResource").execute();
+            ServiceResponse<String> result = new ServiceResponseBuilder.Factory()
+                    .<String, RestException>newInstance(restClient.serializerAdapter())
+                    .register(200, String.class)
+                    .build(response);
+            Assert.assertEquals("ok", result.body());
+
+            ResponseTiming timing = result.timing();
+            Assert.assertNotNull(timing);
+            Assert.assertEquals(2, timing.attempts());
+            Assert.assertFalse(timing.connectionReused());
+            Assert.assertEquals(4, timing.responseBytes());
+            Assert.assertTrue(timing.nanos(ResponseTiming.Phase.NETWORK) > 0);
+            Assert.assertTrue(timing.nanos(ResponseTiming.Phase.RETRY_WAIT) > 0);
+            Assert.assertTrue(timing.nanos(ResponseTiming.Phase.DESERIALIZATION) > 0);
+            long phases = 0;
+            for (ResponseTiming.Phase phase : ResponseTiming.Phase.values()) {
+                phases += timing.nanos(phase);
+            }
+            Assert.assertTrue(phases - timing.nanos(ResponseTiming.Phase.DESERIALIZATION) <= timing.elapsedNanos());
+            Assert.assertTrue(timing.toString(), timing.toString().contains(" attempts=2 "));
+
+            // clients not recording timings
+            Assert.assertNull(new ServiceResponse<>(null, retrofit2.Response.success(ResponseBody.create(null, ""))).timing());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void percentilesHaveBoundedError() {
+        try (JmxMetricsRecorder recorder = new JmxMetricsRecorder("percentiles")) {
+            for (int i = 1; i <= 1000; i++) {
+                recorder.callStarted("op");
+                recorder.callEnded("op", 200, TimeUnit.MILLISECONDS.toNanos(i), 0, 0, 0);
+            }
+            OperationMetricsMXBean operation = recorder.operation("op", "2xx");
+            Assert.assertEquals(1000, operation.getCount());
+            Assert.assertEquals(500, operation.getP50Millis(), 500 * 0.03);
+            Assert.assertEquals(990, operation.getP99Millis(), 990 * 0.03);
+            Assert.assertEquals(1000, operation.getMaxMillis(), 0.001);
+            Assert.assertEquals(500.5, operation.getMeanMillis(), 0.001);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.network.ConnectionHealthMonitor;
+import com.microsoft.rest.network.TlsSessionCache;
+import com.microsoft.rest.network.TunedSocketFactory;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.ConnectionSpec;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NetworkTests {
+    @Test
+    public void tunedSocketFactoryAppliesOptions() throws Exception {
+        TunedSocketFactory factory = new TunedSocketFactory()
+                .withTcpNoDelay(true)
+                .withKeepAlive(true)
+                .withReceiveBufferSize(128 * 1024);
+        Socket socket = factory.createSocket();
+        try {
+            Assert.assertTrue(socket.getTcpNoDelay());
+            Assert.assertTrue(socket.getKeepAlive());
+            Assert.assertTrue(socket.getReceiveBufferSize() > 0);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void tlsSessionCacheIsSharedAcrossClients() {
+        TlsSessionCache cache = new TlsSessionCache();
+        TunedSocketFactory socketFactory = new TunedSocketFactory().withTcpNoDelay(true);
+        RestClient first = new RestClient.Builder()
+                .withBaseUrl("https://management.azure.com/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withSocketFactory(socketFactory)
+                .withConnectionSpecs(ConnectionSpec.MODERN_TLS)
+                .withTlsSessionCache(cache)
+                .build();
+        RestClient second = first.newBuilder().build();
+        Assert.assertSame(socketFactory, first.httpClient().socketFactory());
+        Assert.assertSame(cache.sslSocketFactory(), first.httpClient().sslSocketFactory());
+        Assert.assertSame(cache.sslSocketFactory(), second.httpClient().sslSocketFactory());
+        Assert.assertEquals(1, second.httpClient().connectionSpecs().size());
+        Assert.assertEquals(1, Collections.frequency(second.httpClient().networkInterceptors(), cache.networkInterceptor()));
+        Assert.assertEquals(0, cache.fullHandshakeCount());
+        Assert.assertEquals(0, cache.resumedHandshakeCount());
+        Assert.assertSame(TlsSessionCache.shared(), TlsSessionCache.shared());
+    }
+
+    @Test
+    public void tlsSessionIsResumedByAnotherClient() throws Exception {
+        char[] password = "password".toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream input = NetworkTests.class.getResourceAsStream("/localhost.p12")) {
+            keyStore.load(input, password);
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password);
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        X509TrustManager trustManager = (X509TrustManager) trustManagerFactory.getTrustManagers()[0];
+
+        // the server closes every connection after answering on it, so each request does a handshake
+        ServerSocket server = serverContext.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        startServer(server, 0, 0);
+        try {
+            TlsSessionCache cache = new TlsSessionCache(TlsSessionCache.DEFAULT_SESSION_CACHE_SIZE,
+                    TlsSessionCache.DEFAULT_SESSION_TIMEOUT_SECONDS, trustManager);
+            String url = "https://localhost:" + server.getLocalPort() + "/";
+            Assert.assertEquals(200, execute(newTlsClient(url, cache), url));
+            Assert.assertEquals(1, cache.fullHandshakeCount());
+            Assert.assertEquals(0, cache.resumedHandshakeCount());
+            // a client with its own connection pool resumes the session of the first one
+            Assert.assertEquals(200, execute(newTlsClient(url, cache), url));
+            Assert.assertEquals(1, cache.fullHandshakeCount());
+            Assert.assertEquals(1, cache.resumedHandshakeCount());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void staleConnectionIsReplaced() throws Exception {
+        // the server closes every connection 50 ms after answering on it
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        startServer(server, 0, 50);
+        try {
+            ConnectionHealthMonitor monitor = new ConnectionHealthMonitor()
+                    .withIdleValidation(10, TimeUnit.MILLISECONDS);
+            OkHttpClient client = new RestClient.Builder()
+                    .withBaseUrl("http://localhost:" + server.getLocalPort() + "/")
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withConnectionHealthMonitor(monitor)
+                    .withConnectionKeepAlive(4, TimeUnit.MINUTES)
+                    .build().httpClient();
+            String url = "http://127.0.0.1:" + server.getLocalPort() + "/";
+            Assert.assertEquals(200, execute(client, url));
+            Thread.sleep(300);
+            Assert.assertEquals(200, execute(client, url));
+            Assert.assertEquals(1, monitor.staleConnectionCount());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void okHttpHealthCheckIsAvailable() throws Exception {
+        // the monitor validates idle connections with this internal API of OkHttp 3.3,
+        // and only detects closed sockets without it
+        Assert.assertNotNull(Class.forName("okhttp3.internal.io.RealConnection").getMethod("isHealthy", boolean.class));
+    }
+
+    @Test
+    public void slowAddressIsEjected() throws Exception {
+        // the server answers slowly on 127.0.0.2 and closes every connection
+        final ServerSocket server = new ServerSocket(0);
+        startServer(server, 100, 0);
+        try {
+            final InetAddress fast = InetAddress.getByName("127.0.0.1");
+            final InetAddress slow = InetAddress.getByName("127.0.0.2");
+            final AtomicInteger lookups = new AtomicInteger();
+            ConnectionHealthMonitor monitor = new ConnectionHealthMonitor(new Dns() {
+                @Override
+                public List<InetAddress> lookup(String hostname) {
+                    List<InetAddress> addresses = Arrays.asList(fast, slow);
+                    Collections.rotate(addresses, lookups.getAndIncrement());
+                    return addresses;
+                }
+            }).withOutlierEjection(2.0, 2, 1, TimeUnit.MINUTES);
+            OkHttpClient client = new RestClient.Builder()
+                    .withBaseUrl("http://example.com/")
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withConnectionHealthMonitor(monitor)
+                    .build().httpClient();
+            String url = "http://example.com:" + server.getLocalPort() + "/";
+            for (int i = 0; i < 6; i++) {
+                Assert.assertEquals(200, execute(client, url));
+            }
+            Assert.assertEquals(Collections.singleton(slow), monitor.ejectedAddresses("example.com"));
+            Assert.assertEquals(Collections.singletonList(fast), monitor.dns().lookup("example.com"));
+            Assert.assertEquals(1, monitor.ejectionCount());
+        } finally {
+            server.close();
+        }
+    }
+
+    private static OkHttpClient newTlsClient(String url, TlsSessionCache cache) {
+        return new RestClient.Builder()
+                .withBaseUrl(url)
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withTlsSessionCache(cache)
+                .build().httpClient();
+    }
+
+    private static int execute(OkHttpClient client, String url) throws IOException {
+        Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+        response.body().close();
+        return response.code();
+    }
+
+    private static void startServer(final ServerSocket server, final long slowDelayMillis, final long closeAfterMillis) {
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        Thread handler = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket, slowDelayMillis, closeAfterMillis);
+                            }
+                        });
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static void serve(Socket socket, long slowDelayMillis, long closeAfterMillis) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            OutputStream output = socket.getOutputStream();
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                while (line != null && !line.isEmpty()) {
+                    line = reader.readLine();
+                }
+                if (socket.getLocalAddress().getHostAddress().equals("127.0.0.2")) {
+                    Thread.sleep(slowDelayMillis);
+                }
+                String connection = closeAfterMillis == 0 ? "Connection: close\r\n" : "";
+                output.write(("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n" + connection + "\r\n").getBytes("US-ASCII"));
+                output.flush();
+                if (closeAfterMillis >= 0) {
+                    Thread.sleep(closeAfterMillis);
+                    break;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // connection is done
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.admission.PriorityHandler;
+import com.microsoft.rest.admission.RequestPriority;
+import com.microsoft.rest.admission.RequestRejectedException;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.context.RequestScope;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Query;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PriorityHandlerTests {
+    private interface Service {
+        @GET("test")
+        Observable<ResponseBody> get(@Query("name") String name, @Header("x-ms-request-priority") String priority);
+    }
+
+    @Test
+    public void higherClassesGoFirst() throws Exception {
+        PriorityHandler handler = new PriorityHandler(1, 1, TimeUnit.HOURS);
+        List<String> served = serve(handler, RequestPriority.BACKGROUND, RequestPriority.NORMAL, RequestPriority.INTERACTIVE);
+        Assert.assertEquals(Arrays.asList("first", "interactive", "normal", "background"), served);
+        Assert.assertEquals(2, handler.admittedCount(RequestPriority.NORMAL));
+        Assert.assertEquals(1, handler.admittedCount(RequestPriority.BACKGROUND));
+        Assert.assertTrue(handler.maxQueueTime(RequestPriority.BACKGROUND, TimeUnit.NANOSECONDS)
+                >= handler.maxQueueTime(RequestPriority.INTERACTIVE, TimeUnit.NANOSECONDS));
+        Assert.assertEquals(0, handler.inFlightCount());
+        Assert.assertEquals(0, handler.queuedCount(RequestPriority.BACKGROUND));
+    }
+
+    @Test
+    public void waitingRequestsAge() throws Exception {
+        // with no aging interval all classes rank by arrival time
+        PriorityHandler handler = new PriorityHandler(1, 0, TimeUnit.SECONDS);
+        List<String> served = serve(handler, RequestPriority.BACKGROUND, RequestPriority.NORMAL, RequestPriority.INTERACTIVE);
+        Assert.assertEquals(Arrays.asList("first", "background", "normal", "interactive"), served);
+    }
+
+    @Test
+    public void priorityOfCustomHeadersIsAdmittedAndNotSent() throws Exception {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sent.add(String.valueOf(exchange.getRequestHeaders().getFirst(RequestPriority.HEADER_NAME)));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            PriorityHandler handler = new PriorityHandler();
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort())
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withPriorityHandler(handler)
+                    .build();
+            RestClient background = restClient.newDerivedBuilder()
+                    .withHeader(RequestPriority.HEADER_NAME, RequestPriority.BACKGROUND.headerValue())
+                    .build();
+            Service service = background.retrofit().create(Service.class);
+            service.get("derived", null).toBlocking().single();
+            Assert.assertEquals(1, handler.admittedCount(RequestPriority.BACKGROUND));
+
+            // the header overrides of the context win over the custom headers
+            RequestContext context = new RequestContext.Builder()
+                    .withHeaderOverride(RequestPriority.HEADER_NAME, RequestPriority.INTERACTIVE.headerValue())
+                    .build();
+            try (RequestScope scope = RequestScope.open(context)) {
+                service.get("override", null).toBlocking().single();
+            }
+            Assert.assertEquals(1, handler.admittedCount(RequestPriority.INTERACTIVE));
+            Assert.assertEquals(0, handler.admittedCount(RequestPriority.NORMAL));
+            Assert.assertEquals(Arrays.asList("null", "null"), sent);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void lowestClassIsShedFirst() throws Exception {
+        PriorityHandler handler = new PriorityHandler(1, 1, TimeUnit.HOURS).withMaxQueuedRequests(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> served = Collections.synchronizedList(new ArrayList<String>());
+        OkHttpClient client = newClient(handler, blocked, served);
+        final List<IOException> failures = Collections.synchronizedList(new ArrayList<IOException>());
+        final CountDownLatch done = new CountDownLatch(3);
+        Callback callback = new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                failures.add(e);
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                done.countDown();
+            }
+        };
+        client.newCall(request("first", RequestPriority.NORMAL)).enqueue(callback);
+        while (handler.inFlightCount() == 0) {
+            Thread.sleep(10);
+        }
+        client.newCall(request("background", RequestPriority.BACKGROUND)).enqueue(callback);
+        while (handler.queuedCount(RequestPriority.BACKGROUND) == 0) {
+            Thread.sleep(10);
+        }
+        // the interactive request takes the place of the background one
+        client.newCall(request("interactive", RequestPriority.INTERACTIVE)).enqueue(callback);
+        while (handler.queuedCount(RequestPriority.INTERACTIVE) == 0) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, handler.queuedCount(RequestPriority.BACKGROUND));
+        // a new background request finds no lower class to shed
+        try {
+            client.newCall(request("late", RequestPriority.BACKGROUND)).execute();
+            Assert.fail();
+        } catch (RequestRejectedException e) {
+            Assert.assertTrue(e.getMessage().contains("background"));
+        }
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("first", "interactive"), served);
+        Assert.assertEquals(1, failures.size());
+        Assert.assertTrue(failures.get(0) instanceof RequestRejectedException);
+        Assert.assertEquals(2, handler.rejectedCount(RequestPriority.BACKGROUND));
+        Assert.assertEquals(0, handler.rejectedCount(RequestPriority.INTERACTIVE));
+    }
+
+    @Test
+    public void requestIsShedAfterMaxQueueTime() throws Exception {
+        PriorityHandler handler = new PriorityHandler(1, 1, TimeUnit.SECONDS).withMaxQueueTime(50, TimeUnit.MILLISECONDS);
+        CountDownLatch blocked = new CountDownLatch(1);
+        OkHttpClient client = newClient(handler, blocked, new ArrayList<String>());
+        client.newCall(request("first", RequestPriority.NORMAL)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+            }
+        });
+        while (handler.inFlightCount() == 0) {
+            Thread.sleep(10);
+        }
+        long start = System.nanoTime();
+        try {
+            client.newCall(request("second", RequestPriority.INTERACTIVE)).execute();
+            Assert.fail();
+        } catch (RequestRejectedException e) {
+            Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        } finally {
+            blocked.countDown();
+        }
+        Assert.assertEquals(0, handler.queuedCount(RequestPriority.INTERACTIVE));
+        Assert.assertEquals(1, handler.rejectedCount(RequestPriority.INTERACTIVE));
+    }
+
+    @Test
+    public void enqueuedCallsWaitWithoutAThread() throws Exception {
+        PriorityHandler handler = new PriorityHandler(1, 1, TimeUnit.HOURS).withMaxQueueTime(10, TimeUnit.SECONDS);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<String> served = Collections.synchronizedList(new ArrayList<String>());
+        RestClient restClient = newRestClient(handler, blocked, served);
+        Service service = restClient.retrofit().create(Service.class);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        CountDownLatch done = new CountDownLatch(12);
+        service.get("first", null).subscribe(subscriber(done, failures));
+        while (handler.inFlightCount() == 0) {
+            Thread.sleep(10);
+        }
+        // more waiting calls than the dispatcher runs at once
+        restClient.httpClient().dispatcher().setMaxRequests(2);
+        for (int i = 0; i < 10; i++) {
+            service.get("background", RequestPriority.BACKGROUND.headerValue()).subscribe(subscriber(done, failures));
+        }
+        service.get("interactive", RequestPriority.INTERACTIVE.headerValue()).subscribe(subscriber(done, failures));
+        Assert.assertEquals(10, handler.queuedCount(RequestPriority.BACKGROUND));
+        Assert.assertEquals(1, handler.queuedCount(RequestPriority.INTERACTIVE));
+        // the waiting calls hold no dispatcher thread
+        Assert.assertEquals(1, restClient.httpClient().dispatcher().runningCallsCount());
+        Assert.assertEquals(0, restClient.httpClient().dispatcher().queuedCallsCount());
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(failures.isEmpty());
+        Assert.assertEquals(12, served.size());
+        Assert.assertEquals("first", served.get(0));
+        Assert.assertEquals("interactive", served.get(1));
+        Assert.assertEquals(10, handler.admittedCount(RequestPriority.BACKGROUND));
+        Assert.assertEquals(0, handler.inFlightCount());
+    }
+
+    @Test
+    public void enqueuedCallIsShedAfterMaxQueueTime() throws Exception {
+        PriorityHandler handler = new PriorityHandler(1, 1, TimeUnit.SECONDS)
+                .withMaxQueueTime(50, TimeUnit.MILLISECONDS)
+                .withMaxQueuedRequests(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        RestClient restClient = newRestClient(handler, blocked, new ArrayList<String>());
+        Service service = restClient.retrofit().create(Service.class);
+        service.get("first", null).subscribe(subscriber(new CountDownLatch(1), new ArrayList<Throwable>()));
+        while (handler.inFlightCount() == 0) {
+            Thread.sleep(10);
+        }
+        // a waiting background call is shed to make room
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        CountDownLatch shed = new CountDownLatch(1);
+        service.get("background", RequestPriority.BACKGROUND.headerValue()).subscribe(subscriber(shed, failures));
+        long start = System.nanoTime();
+        try {
+            service.get("second", RequestPriority.INTERACTIVE.headerValue()).toBlocking().single();
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof RequestRejectedException);
+            Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        } finally {
+            blocked.countDown();
+        }
+        Assert.assertTrue(shed.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(failures.get(0) instanceof RequestRejectedException);
+        Assert.assertEquals(1, handler.rejectedCount(RequestPriority.BACKGROUND));
+        Assert.assertEquals(0, handler.queuedCount(RequestPriority.INTERACTIVE));
+        Assert.assertEquals(1, handler.rejectedCount(RequestPriority.INTERACTIVE));
+    }
+
+    @Test
+    public void dispatcherLimitsFollowTheHandler() {
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withPriorityHandler(new PriorityHandler(100, 1, TimeUnit.SECONDS))
+                .build();
+        Assert.assertEquals(100, restClient.httpClient().dispatcher().getMaxRequests());
+        Assert.assertEquals(100, restClient.httpClient().dispatcher().getMaxRequestsPerHost());
+    }
+
+    private static Request request(String name, RequestPriority priority) {
+        return new Request.Builder()
+                .url("http://localhost/?name=" + name)
+                .header(RequestPriority.HEADER_NAME, priority.headerValue())
+                .build();
+    }
+
+    private static OkHttpClient newClient(PriorityHandler handler, final CountDownLatch blocked, final List<String> served) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(handler)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Request request = chain.request();
+                        Assert.assertNull(request.header(RequestPriority.HEADER_NAME));
+                        String name = request.url().queryParameter("name");
+                        served.add(name);
+                        if ("first".equals(name)) {
+                            try {
+                                blocked.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                        }
+                        return new Response.Builder()
+                                .request(request)
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .build();
+                    }
+                })
+                .build();
+    }
+
+    private static RestClient newRestClient(PriorityHandler handler, final CountDownLatch blocked, final List<String> served) {
+        return new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withPriorityHandler(handler)
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Request request = chain.request();
+                        String name = request.url().queryParameter("name");
+                        served.add(name);
+                        if ("first".equals(name)) {
+                            try {
+                                blocked.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                        }
+                        return new Response.Builder()
+                                .request(request)
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), "ok"))
+                                .build();
+                    }
+                })
+                .build();
+    }
+
+    private static Subscriber<ResponseBody> subscriber(final CountDownLatch done, final List<Throwable> failures) {
+        return new Subscriber<ResponseBody>() {
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                failures.add(e);
+                done.countDown();
+            }
+
+            @Override
+            public void onNext(ResponseBody body) {
+            }
+        };
+    }
+
+    private static List<String> serve(PriorityHandler handler, RequestPriority... priorities) throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> served = Collections.synchronizedList(new ArrayList<String>());
+        OkHttpClient client = newClient(handler, blocked, served);
+        final CountDownLatch done = new CountDownLatch(priorities.length + 1);
+        Callback callback = new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                done.countDown();
+            }
+        };
+        client.newCall(new Request.Builder().url("http://localhost/?name=first").build()).enqueue(callback);
+        while (handler.inFlightCount() == 0) {
+            Thread.sleep(10);
+        }
+        for (RequestPriority priority : priorities) {
+            client.newCall(request(priority.headerValue(), priority)).enqueue(callback);
+            while (handler.queuedCount(priority) == 0) {
+                Thread.sleep(10);
+            }
+        }
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        return served;
+    }
+}
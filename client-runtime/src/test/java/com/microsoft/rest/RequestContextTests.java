@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.admission.BulkheadHandler;
+import com.microsoft.rest.admission.RequestPriority;
+import com.microsoft.rest.context.HeaderScope;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.context.RequestScope;
+import com.microsoft.rest.retry.RetryHandler;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestContextTests {
+    private interface Service {
+        @GET("test")
+        Call<ResponseBody> get(@Header("x-ms-logging-context") String loggingContext,
+                               @Header("x-ms-parameterized-host") String host,
+                               @Header("x-ms-request-priority") String priority);
+
+        @GET("test")
+        Observable<ResponseBody> getAsync();
+    }
+
+    @Test
+    public void controlHeadersMoveIntoTheContext() {
+        Request plain = new Request.Builder().url("http://localhost/").header("Accept", "application/json").build();
+        Assert.assertSame(RequestContext.EMPTY, RequestContext.of(plain));
+        Assert.assertSame(plain, RequestContext.attach(plain));
+
+        Request request = RequestContext.attach(plain.newBuilder()
+                .header(RequestContext.LOGGING_CONTEXT_HEADER, "operation")
+                .header(BulkheadHandler.SCOPE_HEADER_NAME, "tenant1")
+                .build());
+        Assert.assertNull(request.header(RequestContext.LOGGING_CONTEXT_HEADER));
+        Assert.assertNull(request.header(BulkheadHandler.SCOPE_HEADER_NAME));
+        Assert.assertEquals("application/json", request.header("Accept"));
+        RequestContext context = (RequestContext) request.tag();
+        Assert.assertSame(context, RequestContext.of(request));
+        Assert.assertSame(request, RequestContext.attach(request));
+        Assert.assertEquals("operation", context.loggingContext());
+        Assert.assertEquals("tenant1", context.bulkheadScope());
+        Assert.assertEquals(RequestPriority.NORMAL, context.priority());
+
+        // headers set after attaching, e.g. by a client derived for a tenant, take precedence
+        RequestContext merged = RequestContext.of(request.newBuilder()
+                .header(BulkheadHandler.SCOPE_HEADER_NAME, "tenant2")
+                .build());
+        Assert.assertEquals("operation", merged.loggingContext());
+        Assert.assertEquals("tenant2", merged.bulkheadScope());
+        Assert.assertEquals("tenant1", context.bulkheadScope());
+
+        RequestContext withAttribute = context.newBuilder().withAttribute(String.class, "trace").build();
+        Assert.assertEquals("trace", withAttribute.attribute(String.class));
+        Assert.assertNull(context.attribute(String.class));
+    }
+
+    @Test
+    public void retrofitCallsCarryTheContext() throws Exception {
+        final Request[] seen = new Request[1];
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        seen[0] = chain.request();
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), "ok"))
+                                .build();
+                    }
+                })
+                .build();
+        Service service = restClient.retrofit().create(Service.class);
+        Assert.assertEquals("ok", service.get("operation", "localhost, example.org", "background").execute().body().string());
+
+        Request request = seen[0];
+        Assert.assertEquals("example.org", request.url().host());
+        Assert.assertNull(request.header(RequestContext.LOGGING_CONTEXT_HEADER));
+        Assert.assertNull(request.header(RequestContext.PARAMETERIZED_HOST_HEADER));
+        Assert.assertNull(request.header(RequestPriority.HEADER_NAME));
+        RequestContext context = RequestContext.of(request);
+        Assert.assertEquals("operation", context.loggingContext());
+        Assert.assertEquals(Arrays.asList("localhost", "example.org"), context.hostParameters());
+        Assert.assertEquals(RequestPriority.BACKGROUND, context.priority());
+    }
+
+    @Test
+    public void expiredRequestsAreNotRetried() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(new RetryHandler())
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        attempts.incrementAndGet();
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(503)
+                                .build();
+                    }
+                })
+                .build();
+        RequestContext context = new RequestContext.Builder().withTimeout(0, TimeUnit.MILLISECONDS).build();
+        Assert.assertTrue(context.isExpired());
+        Response response = httpClient.newCall(new Request.Builder().url("http://localhost/").tag(context).build()).execute();
+        Assert.assertEquals(503, response.code());
+        Assert.assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void scopedContextsReachServiceCalls() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final Request[] seen = new Request[1];
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        attempts.incrementAndGet();
+                        seen[0] = chain.request();
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(503)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), "busy"))
+                                .build();
+                    }
+                })
+                .build();
+        Service service = restClient.retrofit().create(Service.class);
+        RequestContext context = new RequestContext.Builder()
+                .withTimeout(0, TimeUnit.MILLISECONDS)
+                .withHeaderOverride("x-ms-tenant", "scope")
+                .withLoggingContext("scope")
+                .withAttribute(String.class, "attribute")
+                .build();
+        try (RequestScope scope = RequestScope.open(context)) {
+            Assert.assertEquals(503, service.get("operation", null, null).execute().code());
+        }
+        // the expired call is not retried
+        Assert.assertEquals(1, attempts.get());
+        RequestContext seenContext = RequestContext.of(seen[0]);
+        Assert.assertTrue(seenContext.isExpired());
+        Assert.assertEquals("scope", seenContext.headerOverrides().get("x-ms-tenant"));
+        Assert.assertEquals("attribute", seenContext.attribute(String.class));
+        // the settings of the call win over the ones of the scope
+        Assert.assertEquals("operation", seenContext.loggingContext());
+
+        Assert.assertSame(RequestContext.EMPTY, RequestScope.current());
+        service.get("operation", null, null).execute();
+        Assert.assertFalse(RequestContext.of(seen[0]).hasDeadline());
+        Assert.assertEquals(0, RequestContext.of(seen[0]).headerOverrides().size());
+    }
+
+    @Test
+    public void scopesAreTakenWhenTheCallIsCreated() throws Exception {
+        final List<Request> seen = new CopyOnWriteArrayList<>();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        seen.add(chain.request());
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), "ok"))
+                                .build();
+                    }
+                })
+                .build();
+        Service service = restClient.retrofit().create(Service.class);
+        Observable<ResponseBody> observable;
+        Call<ResponseBody> call;
+        try (HeaderScope scope = HeaderScope.open("x-ms-correlation-request-id", "scope")) {
+            observable = service.getAsync();
+            call = service.get(null, null, null);
+        }
+        try (HeaderScope other = HeaderScope.open("x-ms-correlation-request-id", "other")) {
+            // subscribed to on another thread, and twice
+            observable.subscribeOn(Schedulers.newThread()).toBlocking().single();
+            observable.subscribeOn(Schedulers.newThread()).toBlocking().single();
+            call.execute();
+        }
+        Assert.assertEquals(3, seen.size());
+        for (Request request : seen) {
+            Assert.assertEquals("scope", RequestContext.of(request).headerOverrides().get("x-ms-correlation-request-id"));
+        }
+
+        // a call created outside of any scope does not pick up the one it is sent in
+        seen.clear();
+        observable = service.getAsync();
+        try (HeaderScope scope = HeaderScope.open("x-ms-correlation-request-id", "late")) {
+            observable.toBlocking().single();
+        }
+        Assert.assertNull(RequestContext.of(seen.get(0)).headerOverrides().get("x-ms-correlation-request-id"));
+    }
+
+    @Test
+    public void headerOverridesReplaceCustomHeaders() throws Exception {
+        final Request[] seen = new Request[1];
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .build();
+        restClient.headers().addHeader("x-ms-tenant", "client").addHeader("x-ms-app", "app");
+        try {
+            restClient.headers().headers().put("x-ms-tenant", null);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // the headers only change through the interceptor
+        }
+        OkHttpClient httpClient = restClient.httpClient().newBuilder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        seen[0] = chain.request();
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .build();
+                    }
+                })
+                .build();
+        Request request = new Request.Builder().url("http://localhost/").build();
+
+        httpClient.newCall(RequestContext.attach(request)).execute();
+        Assert.assertEquals("client", seen[0].header("x-ms-tenant"));
+
+        HeaderScope outer = HeaderScope.open("x-ms-tenant", "scope");
+        try {
+            try (HeaderScope inner = HeaderScope.open("x-ms-app", "inner")) {
+                Assert.assertEquals(2, inner.headers().size());
+                // the scope is taken when the call is made
+                Request scoped = RequestContext.attach(request);
+                httpClient.newCall(scoped).execute();
+                Assert.assertEquals("scope", seen[0].header("x-ms-tenant"));
+                Assert.assertEquals("inner", seen[0].header("x-ms-app"));
+            }
+            Request call = request.newBuilder()
+                    .tag(new RequestContext.Builder().withHeaderOverride("x-ms-tenant", "call").build())
+                    .build();
+            httpClient.newCall(RequestContext.attach(call)).execute();
+            Assert.assertEquals("call", seen[0].header("x-ms-tenant"));
+            Assert.assertEquals("app", seen[0].header("x-ms-app"));
+        } finally {
+            outer.close();
+        }
+        Assert.assertEquals(0, HeaderScope.current().size());
+        httpClient.newCall(RequestContext.attach(request)).execute();
+        Assert.assertEquals("client", seen[0].header("x-ms-tenant"));
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.microsoft.rest.template.RequestEngine;
+import com.microsoft.rest.template.RequestTemplate;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class RequestTemplateTests {
+    private static final RequestTemplate PUT_TEMPLATE = new RequestTemplate.Builder("put", "subscriptions/{subscriptionId}/resourceGroups/{name}")
+            .withQueryParameter("api-version")
+            .withHeader("x-ms-client-request-id")
+            .withConstantHeader("Accept", "application/json")
+            .withBody()
+            .build();
+
+    @Test
+    public void requestIsExpandedFromTemplate() throws Exception {
+        RestClient restClient = newClient(false);
+        Assert.assertEquals(5, PUT_TEMPLATE.argumentCount());
+        Request request = restClient.requestEngine().newRequest(PUT_TEMPLATE,
+                "sub", "my group/é?", "2016-09-01", null, Collections.singletonMap("location", "westus"));
+        Assert.assertEquals("PUT", request.method());
+        Assert.assertEquals("http://localhost/subscriptions/sub/resourceGroups/my%20group%2F%C3%A9%3F?api-version=2016-09-01",
+                request.url().toString());
+        Assert.assertEquals("application/json", request.header("Accept"));
+        Assert.assertNull(request.header("x-ms-client-request-id"));
+        Buffer body = new Buffer();
+        request.body().writeTo(body);
+        Assert.assertEquals("{\"location\":\"westus\"}", body.readUtf8());
+
+        try {
+            restClient.requestEngine().newRequest(PUT_TEMPLATE, null, "name", null, null, null);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("subscriptionId"));
+        }
+    }
+
+    @Test
+    public void reservedVariablesAreResolvedAsIs() throws Exception {
+        RequestTemplate template = new RequestTemplate.Builder("GET", "{+url}").build();
+        RequestEngine engine = newClient(false).requestEngine();
+        Assert.assertEquals("http://localhost/operations/1?api-version=1%202",
+                engine.newRequest(template, "/operations/1?api-version=1%202").url().toString());
+        Assert.assertEquals("https://other/next?page=2",
+                engine.newRequest(template, "https://other/next?page=2").url().toString());
+    }
+
+    @Test
+    public void templatesExecuteThroughInterceptors() throws Exception {
+        RequestTemplate template = new RequestTemplate.Builder("GET", "status/{code}").build();
+        for (boolean asyncCalls : new boolean[] {false, true}) {
+            RequestEngine engine = newClient(asyncCalls).requestEngine();
+            retrofit2.Response<ResponseBody> response = engine.execute(template, 200);
+            Assert.assertEquals("200", response.body().string());
+
+            response = engine.executeAsync(template, 404).toBlocking().single();
+            Assert.assertFalse(response.isSuccessful());
+            Assert.assertEquals("404", response.errorBody().string());
+
+            response = engine.executeAsync(template, 204).toBlocking().single();
+            Assert.assertTrue(response.isSuccessful());
+            Assert.assertNull(response.body());
+        }
+    }
+
+    private static RestClient newClient(boolean asyncCalls) {
+        return new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withAsyncCalls(asyncCalls)
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        String code = chain.request().url().pathSegments().get(1);
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(Integer.parseInt(code))
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), code))
+                                .build();
+                    }
+                })
+                .build();
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.admission.PriorityHandler;
+import com.microsoft.rest.admission.RequestPriority;
+import com.microsoft.rest.cache.ResourceCache;
+import com.microsoft.rest.credentials.TokenCredentials;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResourceCacheTests {
+    private static final String GROUP = "/subscriptions/sub/resourceGroups/rg";
+    private static final String VM = GROUP + "/providers/Microsoft.Compute/virtualMachines/vm1";
+
+    private HttpServer server;
+    private final AtomicInteger reads = new AtomicInteger();
+    private volatile int readStatus = 200;
+
+    /**
+     * Starts a local stand-in for ARM returning each resource with its path as id and
+     * the number of reads so far as version, and the lists without id.
+     */
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                String body;
+                if (exchange.getRequestMethod().equals("GET")) {
+                    int version = reads.incrementAndGet();
+                    body = path.endsWith("virtualMachines")
+                            ? "{\"value\":[]}"
+                            : "{\"id\":\"" + path.toUpperCase() + "\",\"version\":" + version + "}";
+                } else {
+                    body = "{}";
+                }
+                String padding = exchange.getRequestURI().getQuery();
+                if (padding != null && padding.startsWith("padding=")) {
+                    StringBuilder padded = new StringBuilder(body);
+                    for (int i = Integer.parseInt(padding.substring(8)); i > 0; i--) {
+                        padded.append(' ');
+                    }
+                    body = padded.toString();
+                }
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                // the padded bodies are chunked, their length is unknown
+                int status = exchange.getRequestMethod().equals("GET") ? readStatus : 200;
+                exchange.sendResponseHeaders(status, padding == null ? bytes.length : 0);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void resourcesAreServedUntilWritten() throws Exception {
+        ResourceCache cache = new ResourceCache(100, 1, TimeUnit.MINUTES);
+        RestClient restClient = newClient(cache, "token");
+        Assert.assertEquals("1", version(get(restClient, VM, null)));
+        Assert.assertEquals("1", version(get(restClient, VM, null)));
+        Assert.assertEquals(1, cache.hitCount());
+        // the API version is part of the key
+        Assert.assertEquals("2", version(get(restClient, VM + "?api-version=2", null)));
+
+        // lists are not resources
+        get(restClient, GROUP + "/providers/Microsoft.Compute/virtualMachines", null);
+        get(restClient, GROUP + "/providers/Microsoft.Compute/virtualMachines", null);
+        Assert.assertEquals(4, reads.get());
+
+        // a write invalidates the resource
+        send(restClient, "PUT", VM);
+        Assert.assertEquals("5", version(get(restClient, VM, null)));
+        Assert.assertEquals("5", version(get(restClient, VM, null)));
+
+        // deleting a resource group invalidates its resources
+        get(restClient, GROUP, null);
+        send(restClient, "DELETE", GROUP);
+        Assert.assertEquals("7", version(get(restClient, VM, null)));
+        Assert.assertTrue(cache.invalidationCount() >= 3);
+
+        // a poll goes to the service and updates the entry
+        Assert.assertEquals("8", version(get(restClient, VM, "no-cache")));
+        Assert.assertEquals("8", version(get(restClient, VM, null)));
+    }
+
+    @Test
+    public void credentialsDoNotShareEntries() throws Exception {
+        ResourceCache cache = new ResourceCache(100, 1, TimeUnit.MINUTES);
+        RestClient restClient = newClient(cache, "token");
+        RestClient other = restClient.newDerivedBuilder()
+                .withCredentials(new TokenCredentials("Bearer", "other"))
+                .build();
+        Assert.assertEquals("1", version(get(restClient, VM, null)));
+        Assert.assertEquals("2", version(get(other, VM, null)));
+        Assert.assertEquals("2", version(get(other, VM, null)));
+        // writes invalidate the resource for all the credentials
+        send(other, "PATCH", VM);
+        Assert.assertEquals("3", version(get(restClient, VM, null)));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void staleResourceIsServedWhileRevalidated() throws Exception {
+        ResourceCache cache = new ResourceCache(1, 1, TimeUnit.MILLISECONDS)
+                .withStaleWhileRevalidate(1, TimeUnit.MINUTES);
+        RestClient restClient = newClient(cache, "token");
+        Assert.assertEquals("1", version(get(restClient, VM, null)));
+        Thread.sleep(10);
+        Assert.assertEquals("1", version(get(restClient, VM, null)));
+        Assert.assertEquals(1, cache.staleHitCount());
+        for (int i = 0; i < 100 && reads.get() < 2; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(2, reads.get());
+
+        // the cache is bounded
+        get(restClient, GROUP, null);
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void failedRevalidationIsTriedAgainInTheBackground() throws Exception {
+        ResourceCache cache = new ResourceCache(10, 1, TimeUnit.MILLISECONDS)
+                .withStaleWhileRevalidate(1, TimeUnit.MINUTES);
+        PriorityHandler priorityHandler = new PriorityHandler();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost:" + server.getAddress().getPort() + "/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withResourceCache(cache)
+                .withPriorityHandler(priorityHandler)
+                .build();
+        Assert.assertEquals("1", version(get(restClient, VM, null)));
+        Thread.sleep(10);
+        readStatus = 404;
+        Assert.assertEquals("1", version(get(restClient, VM, null)));
+        for (int i = 0; i < 100 && reads.get() < 2; i++) {
+            Thread.sleep(50);
+        }
+        readStatus = 200;
+        for (int i = 0; i < 100 && reads.get() < 3; i++) {
+            Assert.assertEquals("1", version(get(restClient, VM, null)));
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(3, reads.get());
+        // the revalidations are requests of their own, admitted in the background
+        Assert.assertEquals(1, priorityHandler.admittedCount(RequestPriority.NORMAL));
+        Assert.assertEquals(2, priorityHandler.admittedCount(RequestPriority.BACKGROUND));
+    }
+
+    @Test
+    public void bodiesOfUnknownLengthAreReadUpToTheLimit() throws Exception {
+        ResourceCache cache = new ResourceCache(100, 1, TimeUnit.MINUTES).withMaxBodySize(1024);
+        RestClient restClient = newClient(cache, "token");
+        // a small chunked resource is cached
+        Assert.assertEquals("1", version(get(restClient, VM + "?padding=10", null)));
+        Assert.assertEquals("1", version(get(restClient, VM + "?padding=10", null)));
+        Assert.assertEquals(1, reads.get());
+
+        // a large one is passed through whole, and not cached
+        String body = get(restClient, VM + "?padding=100000", null).body().string();
+        Assert.assertEquals(100000, body.length() - body.trim().length());
+        Assert.assertTrue(body.trim().endsWith("\"version\":2}"));
+        get(restClient, VM + "?padding=100000", null).close();
+        Assert.assertEquals(3, reads.get());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    private RestClient newClient(ResourceCache cache, String token) {
+        return new RestClient.Builder()
+                .withBaseUrl("http://localhost:" + server.getAddress().getPort() + "/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withCredentials(new TokenCredentials("Bearer", token))
+                .withResourceCache(cache)
+                .build();
+    }
+
+    private Response get(RestClient restClient, String path, String cacheControl) throws IOException {
+        Request.Builder request = new Request.Builder().url(url(path));
+        if (cacheControl != null) {
+            request.header("Cache-Control", cacheControl);
+        }
+        return restClient.httpClient().newCall(request.build()).execute();
+    }
+
+    private void send(RestClient restClient, String method, String path) throws IOException {
+        RequestBody body = method.equals("DELETE") ? null : RequestBody.create(MediaType.parse("application/json"), "{}");
+        restClient.httpClient().newCall(new Request.Builder().url(url(path)).method(method, body).build()).execute().close();
+    }
+
+    private String url(String path) {
+        return "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + path;
+    }
+
+    private static String version(Response response) throws IOException {
+        String body = response.body().string().trim();
+        return body.substring(body.lastIndexOf(':') + 1, body.length() - 1);
+    }
+}
@@ -9,19 +9,32 @@ package com.microsoft.rest;
 
 import com.microsoft.rest.credentials.BasicAuthenticationCredentials;
 import com.microsoft.rest.credentials.TokenCredentials;
-import com.microsoft.rest.interceptors.UserAgentInterceptor;
+import com.microsoft.rest.interceptors.ClientHeadersInterceptor;
+import com.microsoft.rest.introspection.CallPhase;
+import com.microsoft.rest.introspection.ClientSnapshot;
+import com.microsoft.rest.introspection.InFlightCall;
+import com.microsoft.rest.introspection.JmxIntrospection;
 import com.microsoft.rest.protocol.ResponseBuilder;
 import com.microsoft.rest.protocol.SerializerAdapter;
 import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.junit.Assert;
 import org.junit.Test;
 import retrofit2.Converter;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 public class RestClientTests {
@@ -39,6 +52,72 @@ public class RestClientTests {
         Assert.assertNull(restClient.credentials());
     }
 
+    @Test
+    public void snapshotShowsCallsInFlight() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        entered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .body(ResponseBody.create(null, "ok"))
+                                .build();
+                    }
+                })
+                .build();
+        final CountDownLatch done = new CountDownLatch(1);
+        restClient.httpClient().newCall(new Request.Builder().url("http://localhost/blocked?query").build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                done.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.body().close();
+                done.countDown();
+            }
+        });
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+        try (JmxIntrospection jmx = new JmxIntrospection("restClientTests", restClient)) {
+            ClientSnapshot snapshot = restClient.snapshot();
+            Assert.assertEquals(0, snapshot.queuedCalls());
+            Assert.assertEquals(1, snapshot.runningCalls());
+            Assert.assertEquals(Integer.valueOf(1), snapshot.runningCallsByHost().get("localhost"));
+            Assert.assertEquals(1, snapshot.inFlightCalls().size());
+            InFlightCall call = snapshot.inFlightCalls().get(0);
+            Assert.assertEquals("GET", call.operation());
+            Assert.assertEquals("/blocked", call.path());
+            Assert.assertEquals(CallPhase.PREPARING, call.phase());
+            Assert.assertEquals(0, call.attempts());
+
+            ObjectName name = new ObjectName("com.microsoft.rest:type=ClientIntrospection,name=\"restClientTests\"");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(1, server.getAttribute(name, "InFlightCalls"));
+            Assert.assertEquals(1, ((String[]) server.getAttribute(name, "OldestCalls")).length);
+        } finally {
+            release.countDown();
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(restClient.snapshot().inFlightCalls().isEmpty());
+
+        RestClient untracked = restClient.newBuilder().withCallTracking(false).build();
+        Assert.assertTrue(untracked.snapshot().inFlightCalls().isEmpty());
+    }
+
     @Test
     public void newBuilderKeepsConfigs() {
         RestClient restClient = new RestClient.Builder()
@@ -69,12 +148,7 @@ public class RestClientTests {
         Assert.assertEquals(restClient.serializerAdapter(), newClient.serializerAdapter());
         Assert.assertEquals(restClient.responseBuilderFactory(), newClient.responseBuilderFactory());
         Assert.assertEquals(restClient.credentials(), newClient.credentials());
-        for (Interceptor interceptor :
-            newClient.httpClient().interceptors()) {
-            if (interceptor instanceof UserAgentInterceptor) {
-                Assert.assertEquals("user", ((UserAgentInterceptor) interceptor).userAgent());
-            }
-        }
+        Assert.assertEquals("user", userAgent(newClient));
         Assert.assertEquals(restClient.httpClient().interceptors().size(), newClient.httpClient().interceptors().size());
         Assert.assertEquals(restClient.httpClient().networkInterceptors().size(), newClient.httpClient().networkInterceptors().size());
         Assert.assertEquals(TimeUnit.MINUTES.toMillis(100), newClient.httpClient().connectTimeoutMillis());
@@ -153,18 +227,56 @@ public class RestClientTests {
         Assert.assertNotEquals(restClient.serializerAdapter(), newClient.serializerAdapter());
         Assert.assertNotEquals(restClient.responseBuilderFactory(), newClient.responseBuilderFactory());
         Assert.assertNotEquals(restClient.credentials(), newClient.credentials());
-        for (Interceptor interceptor :
-            restClient.httpClient().interceptors()) {
-            if (interceptor instanceof UserAgentInterceptor) {
-                Assert.assertEquals("user", ((UserAgentInterceptor) interceptor).userAgent());
-            }
-        }
-        for (Interceptor interceptor :
-            newClient.httpClient().interceptors()) {
-            if (interceptor instanceof UserAgentInterceptor) {
-                Assert.assertEquals("anotheruser", ((UserAgentInterceptor) interceptor).userAgent());
+        Assert.assertEquals("user", userAgent(restClient));
+        Assert.assertEquals("anotheruser", userAgent(newClient));
+        Assert.assertNotEquals(restClient.httpClient().connectTimeoutMillis(), newClient.httpClient().connectTimeoutMillis());
+    }
+
+    @Test
+    public void derivedClientSharesResources() {
+        RestClient restClient = new RestClient.Builder()
+            .withBaseUrl("http://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .withCredentials(new TokenCredentials("Bearer", "token"))
+            .withUserAgent("user")
+            .build();
+        restClient.headers().addHeader("x-ms-tenant", "parent");
+        RestClient derived = restClient.newDerivedBuilder()
+            .withBaseUrl("https://contoso.com")
+            .withCredentials(new TokenCredentials("Bearer", "tenant-token"))
+            .withHeader("x-ms-tenant", "derived")
+            .build();
+        Assert.assertEquals("https://contoso.com/", derived.retrofit().baseUrl().toString());
+        Assert.assertSame(restClient.httpClient().connectionPool(), derived.httpClient().connectionPool());
+        Assert.assertSame(restClient.httpClient().dispatcher(), derived.httpClient().dispatcher());
+        Assert.assertSame(restClient.serializerAdapter(), derived.serializerAdapter());
+        Assert.assertSame(restClient.responseBuilderFactory(), derived.responseBuilderFactory());
+        Assert.assertNotEquals(restClient.credentials(), derived.credentials());
+        Assert.assertEquals(restClient.httpClient().interceptors().size(), derived.httpClient().interceptors().size());
+        Assert.assertEquals("parent", restClient.headers().headers().get("x-ms-tenant").get(0));
+        Assert.assertEquals("derived", derived.headers().headers().get("x-ms-tenant").get(0));
+
+        RestClient anonymous = new RestClient.Builder()
+            .withBaseUrl("http://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .build();
+        RestClient authenticated = anonymous.newDerivedBuilder()
+            .withCredentials(new TokenCredentials("Bearer", "tenant-token"))
+            .build();
+        Assert.assertEquals(anonymous.httpClient().interceptors().size() + 1, authenticated.httpClient().interceptors().size());
+        RestClient copy = derived.newBuilder().build();
+        Assert.assertEquals(derived.credentials(), copy.credentials());
+        Assert.assertEquals(derived.httpClient().interceptors().size(), copy.httpClient().interceptors().size());
+    }
+
+    private static String userAgent(RestClient restClient) {
+        for (Interceptor interceptor : restClient.httpClient().interceptors()) {
+            if (interceptor instanceof ClientHeadersInterceptor) {
+                return ((ClientHeadersInterceptor) interceptor).userAgentInterceptor().userAgent();
             }
         }
-        Assert.assertNotEquals(restClient.httpClient().connectTimeoutMillis(), newClient.httpClient().connectTimeoutMillis());
+        return null;
     }
 }
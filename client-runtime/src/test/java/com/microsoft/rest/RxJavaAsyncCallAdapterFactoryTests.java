@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.adapter.rxjava.HttpException;
+import retrofit2.adapter.rxjava.Result;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+import rx.Observable;
+import rx.Single;
+
+import java.io.IOException;
+
+public class RxJavaAsyncCallAdapterFactoryTests {
+    private interface Service {
+        @GET("{code}")
+        Observable<retrofit2.Response<ResponseBody>> response(@Path("code") int code);
+
+        @GET("{code}")
+        Observable<ResponseBody> body(@Path("code") int code);
+
+        @GET("{code}")
+        Single<Result<ResponseBody>> result(@Path("code") int code);
+    }
+
+    @Test
+    public void asyncCallsRunOnTheDispatcher() throws Exception {
+        final String[] threadName = new String[1];
+        RestClient restClient = newClient(true, threadName);
+        Service service = restClient.retrofit().create(Service.class);
+        retrofit2.Response<ResponseBody> response = service.response(200).toBlocking().single();
+        Assert.assertEquals("200", response.body().string());
+        Assert.assertNotEquals(Thread.currentThread().getName(), threadName[0]);
+        Assert.assertEquals(restClient.httpClient().dispatcher().getMaxRequests(),
+                restClient.httpClient().dispatcher().getMaxRequestsPerHost());
+
+        Assert.assertEquals("200", service.body(200).toBlocking().single().string());
+        try {
+            service.body(404).toBlocking().single();
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof HttpException);
+            Assert.assertEquals(404, ((HttpException) e.getCause()).code());
+        }
+        Result<ResponseBody> result = service.result(500).toBlocking().value();
+        Assert.assertFalse(result.isError());
+        Assert.assertEquals(500, result.response().code());
+    }
+
+    @Test
+    public void syncCallsRunOnTheSubscribingThread() throws Exception {
+        final String[] threadName = new String[1];
+        RestClient restClient = newClient(false, threadName);
+        Service service = restClient.retrofit().create(Service.class);
+        Assert.assertEquals("200", service.body(200).toBlocking().single().string());
+        Assert.assertEquals(Thread.currentThread().getName(), threadName[0]);
+        Assert.assertEquals(5, restClient.httpClient().dispatcher().getMaxRequestsPerHost());
+        // the mode is kept by copies of the client
+        service = restClient.newBuilder().build().retrofit().create(Service.class);
+        Assert.assertEquals("200", service.body(200).toBlocking().single().string());
+        Assert.assertEquals(Thread.currentThread().getName(), threadName[0]);
+    }
+
+    private static RestClient newClient(boolean asyncCalls, final String[] threadName) {
+        return new RestClient.Builder()
+                .withBaseUrl("http://localhost/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withAsyncCalls(asyncCalls)
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        threadName[0] = Thread.currentThread().getName();
+                        String code = chain.request().url().pathSegments().get(0);
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(Integer.parseInt(code))
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), code))
+                                .build();
+                    }
+                })
+                .build();
+    }
+}
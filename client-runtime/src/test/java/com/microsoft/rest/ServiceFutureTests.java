@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+import rx.functions.Action0;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ServiceFutureTests {
+    @Test
+    public void completedFutureIsNotCancelled() throws Exception {
+        ServiceFuture<String> future = ServiceFuture.fromResponse(Observable.just(new ServiceResponse<>("done", null)));
+        Assert.assertEquals("done", future.get());
+        Assert.assertFalse(future.isCancelled());
+        Assert.assertFalse(future.cancel(true));
+    }
+
+    @Test
+    public void cancelUnsubscribes() {
+        final AtomicBoolean unsubscribed = new AtomicBoolean();
+        ServiceFuture<String> future = ServiceFuture.fromBody(Observable.<String>never().doOnUnsubscribe(new Action0() {
+            @Override
+            public void call() {
+                unsubscribed.set(true);
+            }
+        }), null);
+        Assert.assertFalse(future.isCancelled());
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(unsubscribed.get());
+        Assert.assertTrue(future.isCancelled());
+    }
+}
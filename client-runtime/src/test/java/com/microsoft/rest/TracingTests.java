@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.context.HeaderScope;
+import com.microsoft.rest.context.RequestContext;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import com.microsoft.rest.tracing.IdGenerator;
+import com.microsoft.rest.tracing.Span;
+import com.microsoft.rest.tracing.SpanExporter;
+import com.microsoft.rest.tracing.SpanPhase;
+import com.microsoft.rest.tracing.TraceContext;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TracingTests {
+    @Test
+    public void traceContextIsPropagatedAndSpansExported() throws Exception {
+        final List<String> traceparents = new CopyOnWriteArrayList<>();
+        // the server fails the first attempt
+        ServerSocket server = startServer(traceparents, 503, 200);
+        try {
+            final List<Span> spans = new CopyOnWriteArrayList<>();
+            OkHttpClient httpClient = new RestClient.Builder()
+                    .withBaseUrl("http://localhost/")
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withTracing(new SpanExporter() {
+                        @Override
+                        public void export(Span span) {
+                            spans.add(span);
+                        }
+                    })
+                    .build().httpClient();
+            TraceContext parent = TraceContext.newRoot();
+            Request request;
+            try (HeaderScope scope = HeaderScope.open(TraceContext.TRACEPARENT_HEADER, parent.traceparent())) {
+                request = RequestContext.attach(new Request.Builder()
+                        .url("http://127.0.0.1:" + server.getLocalPort() + "/resource")
+                        .header(RequestContext.LOGGING_CONTEXT_HEADER, "getResource")
+                        .build());
+            }
+            Response response = httpClient.newCall(request).execute();
+            Assert.assertEquals(200, response.code());
+            // the call ends once its body is consumed
+            Assert.assertEquals(1, spans.size());
+            response.body().close();
+
+            Assert.assertEquals(3, spans.size());
+            Span first = spans.get(0);
+            Span second = spans.get(1);
+            Span call = spans.get(2);
+            Assert.assertEquals(Span.Kind.ATTEMPT, first.kind());
+            Assert.assertEquals(503, first.statusCode());
+            Assert.assertEquals(Span.Kind.ATTEMPT, second.kind());
+            Assert.assertEquals(2, second.attempts());
+            Assert.assertEquals(Span.Kind.CALL, call.kind());
+            Assert.assertEquals("getResource", call.name());
+            Assert.assertEquals(2, call.attempts());
+            Assert.assertEquals(200, call.statusCode());
+
+            // the call is a child of the caller's span, and the attempts children of the call
+            Assert.assertEquals(parent.traceId(), call.context().traceId());
+            Assert.assertEquals(parent.spanId(), call.parentSpanId());
+            Assert.assertEquals(call.context().spanId(), first.parentSpanId());
+            Assert.assertEquals(call.context().spanId(), second.parentSpanId());
+            Assert.assertEquals(2, traceparents.size());
+            Assert.assertEquals(first.context().traceparent(), traceparents.get(0));
+            Assert.assertEquals(second.context().traceparent(), traceparents.get(1));
+
+            Assert.assertTrue(call.phases().containsKey(SpanPhase.QUEUE));
+            Assert.assertTrue(call.phases().containsKey(SpanPhase.TIME_TO_FIRST_BYTE));
+            Assert.assertTrue(call.phases().containsKey(SpanPhase.BODY_READ));
+            Assert.assertTrue(call.durationNanos() >= first.durationNanos() + second.durationNanos());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void traceContextsAreParsed() {
+        TraceContext context = TraceContext.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01", "congo=t61rcWkgMzE");
+        Assert.assertEquals("0af7651916cd43dd8448eb211c80319c", context.traceId());
+        Assert.assertEquals("b7ad6b7169203331", context.spanId());
+        Assert.assertTrue(context.isSampled());
+        Assert.assertEquals("congo=t61rcWkgMzE", context.traceState());
+        TraceContext child = context.newChild();
+        Assert.assertEquals(context.traceId(), child.traceId());
+        Assert.assertNotEquals(context.spanId(), child.spanId());
+
+        Assert.assertFalse(TraceContext.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-00", null).isSampled());
+        Assert.assertNull(TraceContext.parse("00-00000000000000000000000000000000-b7ad6b7169203331-01", null));
+        Assert.assertNull(TraceContext.parse("00-0AF7651916CD43DD8448EB211C80319C-b7ad6b7169203331-01", null));
+        Assert.assertNull(TraceContext.parse("ff-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01", null));
+        Assert.assertNull(TraceContext.parse("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-extra", null));
+        Assert.assertNotNull(TraceContext.parse("01-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01-extra", null));
+
+        String requestId = IdGenerator.requestId();
+        UUID uuid = UUID.fromString(requestId);
+        Assert.assertEquals(requestId, uuid.toString());
+        Assert.assertEquals(4, uuid.version());
+        Assert.assertEquals(2, uuid.variant());
+        Assert.assertNotEquals(requestId, IdGenerator.requestId());
+    }
+
+    /**
+     * Starts a server answering "ok" in JSON with the given status codes in turn, closing each connection.
+     */
+    static ServerSocket startServer(final List<String> traceparents, final int... codes) throws IOException {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int served = 0;
+                while (!server.isClosed()) {
+                    try (Socket socket = server.accept()) {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                        String line = reader.readLine();
+                        while (line != null && !line.isEmpty()) {
+                            if (line.toLowerCase().startsWith(TraceContext.TRACEPARENT_HEADER + ":")) {
+                                traceparents.add(line.substring(line.indexOf(':') + 1).trim());
+                            }
+                            line = reader.readLine();
+                        }
+                        int code = codes[Math.min(served++, codes.length - 1)];
+                        OutputStream output = socket.getOutputStream();
+                        output.write(("HTTP/1.1 " + code + " Status\r\nContent-Length: 4\r\nConnection: close\r\n\r\n\"ok\"")
+                                .getBytes("US-ASCII"));
+                        output.flush();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+}
@@ -6,6 +6,8 @@
 
 package com.microsoft.rest;
 
+import com.microsoft.rest.interceptors.ClientHeadersInterceptor;
+import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
 import com.microsoft.rest.interceptors.UserAgentInterceptor;
 import org.junit.Assert;
 import org.junit.Test;
@@ -63,4 +65,37 @@ public class UserAgentTests {
                 .newCall(new Request.Builder().get().url("http://localhost").build()).execute();
         Assert.assertEquals(200, response.code());
     }
+
+    @Test
+    public void clientHeadersAreStampedTogether() throws Exception {
+        CustomHeadersInterceptor customHeaders = new CustomHeadersInterceptor("x-ms-tenant", "first");
+        final Request[] seen = new Request[1];
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(new ClientHeadersInterceptor(new UserAgentInterceptor().withUserAgent("Awesome"), customHeaders))
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        seen[0] = chain.request();
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        httpClient.newCall(new Request.Builder().get().url("http://localhost")
+                .header("User-Agent", "Generated").build()).execute();
+        Assert.assertEquals("Awesome Generated", seen[0].header("User-Agent"));
+        Assert.assertEquals("first", seen[0].header("x-ms-tenant"));
+        Assert.assertNotNull(seen[0].header("x-ms-client-request-id"));
+
+        // changes apply to the next requests, and an existing request ID is kept
+        customHeaders.replaceHeader("x-ms-tenant", "second");
+        httpClient.newCall(new Request.Builder().get().url("http://localhost")
+                .header("x-ms-client-request-id", "id").build()).execute();
+        Assert.assertEquals("Awesome", seen[0].header("User-Agent"));
+        Assert.assertEquals("second", seen[0].header("x-ms-tenant"));
+        Assert.assertEquals("id", seen[0].header("x-ms-client-request-id"));
+    }
 }